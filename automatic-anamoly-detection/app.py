@@ -1,3 +1,4 @@
+import asyncio
 import base64
 import json
 import os
@@ -7,7 +8,7 @@ import tempfile
 import time
 from pathlib import Path
 from threading import Lock
-from typing import Optional
+from typing import List, Optional
 
 from fastapi import FastAPI, File, Form, HTTPException, UploadFile
 import requests
@@ -182,24 +183,70 @@ async def infer_endpoint(
     except Exception as exc:
         raise HTTPException(status_code=500, detail=str(exc)) from exc
 
-    duration_ms = int((time.perf_counter() - started) * 1000)
-    boxed_b64 = base64.b64encode(inference["boxed_bytes"]).decode("ascii")
+    response = _inference_response(inference)
+    response["duration_ms"] = int((time.perf_counter() - started) * 1000)
+    return response
 
+
+@api.post("/infer_batch")
+async def infer_batch_endpoint(
+    files: List[UploadFile] = File(...),
+    sensitivity: float = Form(1.0),
+    feedback_json: str = Form(""),
+    ckpt_url: str = Form("", description="Optional override for checkpoint URL"),
+):
+    """Run several images with one set of parameters; results keep the order of ``files``."""
+    if not files:
+        raise HTTPException(status_code=400, detail="at least one file is required")
+
+    started = time.perf_counter()
+    loop = asyncio.get_running_loop()
+    results = []
+    for upload in files:
+        filename = upload.filename or "upload.png"
+        file_bytes = await upload.read()
+        if not file_bytes:
+            results.append({"filename": filename, "detail": "Uploaded file is empty"})
+            continue
+        try:
+            # Off the event loop, so a long batch doesn't stall other requests and health checks
+            inference = await loop.run_in_executor(
+                None,
+                _run_inference_bytes,
+                file_bytes,
+                filename,
+                sensitivity,
+                feedback_json,
+                ckpt_url or None,
+            )
+        except Exception as exc:
+            results.append({"filename": filename, "detail": str(exc)})
+            continue
+        item = _inference_response(inference)
+        item["filename"] = filename
+        results.append(item)
+
+    return {
+        "results": results,
+        "duration_ms": int((time.perf_counter() - started) * 1000),
+    }
+
+
+def _inference_response(inference):
     return {
         "label": inference.get("label"),
         "json": inference.get("json"),
         "json_text": inference.get("json_text"),
-        "boxed_image_base64": boxed_b64,
+        "boxed_image_base64": base64.b64encode(inference["boxed_bytes"]).decode("ascii"),
         "boxed_image_ext": inference.get("boxed_image_ext", ".png"),
         "feedback_applied": inference.get("feedback_applied"),
-        "duration_ms": duration_ms,
     }
 
 
 @api.get("/", include_in_schema=False)
 def root():
     return {
-        "message": "PatchCore anomaly detection API is running. POST /infer with multipart form: file, sensitivity (float), feedback_json (string), optional ckpt_url."
+        "message": "PatchCore anomaly detection API is running. POST /infer with multipart form: file, sensitivity (float), feedback_json (string), optional ckpt_url. POST /infer_batch takes repeated files fields with the same parameters."
     }
 
 
@@ -0,0 +1,42 @@
+package com.example.transformer_manager_backkend.config;
+
+import java.net.URI;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.example.transformer_manager_backkend.service.BlobStore;
+import com.example.transformer_manager_backkend.service.LocalBlobStore;
+import com.example.transformer_manager_backkend.service.S3BlobStore;
+
+/**
+ * Picks where uploads are stored: the local upload directory (default) or an S3-compatible
+ * bucket shared by every node ({@code app.storage.type=s3}).
+ */
+@Configuration
+public class BlobStoreConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.storage.type", havingValue = "local", matchIfMissing = true)
+    public BlobStore localBlobStore(@Value("${upload.directory:./uploads}") String uploadDirectory) {
+        return new LocalBlobStore(Paths.get(uploadDirectory));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.storage.type", havingValue = "s3")
+    public BlobStore s3BlobStore(@Value("${app.storage.s3.endpoint}") String endpoint,
+            @Value("${app.storage.s3.bucket}") String bucket,
+            @Value("${app.storage.s3.region:us-east-1}") String region,
+            @Value("${app.storage.s3.access-key}") String accessKey,
+            @Value("${app.storage.s3.secret-key}") String secretKey,
+            @Value("${app.storage.s3.path-style:true}") boolean pathStyle,
+            @Value("${app.storage.s3.timeout-ms:30000}") long timeoutMs,
+            @Value("${app.storage.s3.cache-max-bytes:1073741824}") long cacheMaxBytes) {
+        return new S3BlobStore(URI.create(endpoint), bucket, region, accessKey, secretKey, pathStyle,
+                Duration.ofMillis(timeoutMs), Paths.get("uploads", "blob-cache"), cacheMaxBytes);
+    }
+}
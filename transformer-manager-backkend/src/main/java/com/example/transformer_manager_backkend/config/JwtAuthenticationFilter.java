@@ -1,5 +1,8 @@
 package com.example.transformer_manager_backkend.config;
 
+import com.example.transformer_manager_backkend.service.PrincipalCache;
+import com.example.transformer_manager_backkend.service.PrincipalCache.CachedPrincipal;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -9,25 +12,27 @@ import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Optional;
 
+/**
+ * Authenticates requests from the bearer token alone: the signature, expiry and role claims
+ * are trusted, and {@link PrincipalCache} only checks (from memory, most of the time) that
+ * the account still exists and the token hasn't been revoked.
+ */
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
-    private final UserDetailsService userDetailsService;
+    private final PrincipalCache principalCache;
     private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
 
-    public JwtAuthenticationFilter(JwtUtil jwtUtil, UserDetailsService userDetailsService) {
+    public JwtAuthenticationFilter(JwtUtil jwtUtil, PrincipalCache principalCache) {
         this.jwtUtil = jwtUtil;
-        this.userDetailsService = userDetailsService;
+        this.principalCache = principalCache;
     }
 
     @Override
@@ -35,37 +40,28 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
         final String authorizationHeader = request.getHeader("Authorization");
 
-        String username = null;
-        String jwt = null;
+        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            Claims claims = jwtUtil.parseToken(authorizationHeader.substring(7));
+            Optional<CachedPrincipal> principal = claims == null || claims.getSubject() == null
+                    ? Optional.empty()
+                    : principalCache.resolveToken(claims.getSubject(),
+                            claims.getIssuedAt() == null ? null : claims.getIssuedAt().toInstant());
 
-        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            jwt = authorizationHeader.substring(7);
-            username = jwtUtil.extractUsername(jwt);
-        }
-
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
-
-            if (jwtUtil.validateToken(jwt, userDetails)) {
-                // Extract authorities from JWT token; fallback to userDetails if missing/empty
-                List<String> authorities = jwtUtil.extractAuthorities(jwt);
-                List<SimpleGrantedAuthority> grantedAuthorities;
-                if (authorities == null || authorities.isEmpty()) {
-                    grantedAuthorities = userDetails.getAuthorities().stream()
-                            .map(ga -> new SimpleGrantedAuthority(ga.getAuthority()))
-                            .collect(Collectors.toList());
-                } else {
-                    grantedAuthorities = authorities.stream()
-                            .map(role -> role.startsWith("ROLE_") ? role : "ROLE_" + role)
-                            .map(SimpleGrantedAuthority::new)
-                            .collect(Collectors.toList());
-                }
+            if (principal.isPresent()) {
+                // Authorities come from the token; older tokens without them fall back to the account's role
+                List<String> authorities = jwtUtil.extractAuthorities(claims);
+                List<SimpleGrantedAuthority> grantedAuthorities = (authorities.isEmpty()
+                        ? List.of(principal.get().getRole())
+                        : authorities).stream()
+                        .map(role -> role.startsWith("ROLE_") ? role : "ROLE_" + role)
+                        .map(SimpleGrantedAuthority::new)
+                        .toList();
 
-                logger.info("JWT auth for user={} authorities={}", username,
-                        grantedAuthorities.stream().map(SimpleGrantedAuthority::getAuthority).toList());
+                logger.debug("JWT auth for user={} authorities={}", claims.getSubject(), grantedAuthorities);
 
                 UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
-                        userDetails, null, grantedAuthorities);
+                        principal.get(), null, grantedAuthorities);
                 authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authenticationToken);
             }
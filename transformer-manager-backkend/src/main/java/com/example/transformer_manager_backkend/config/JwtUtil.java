@@ -2,6 +2,8 @@
 package com.example.transformer_manager_backkend.config;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -19,14 +21,19 @@ import java.util.function.Function;
 @Component
 public class JwtUtil {
 
-    @Value("${jwt.secret}")
-    private String secret;
+    private final Key signingKey;
+    private final Long expiration;
+    private final JwtParser parser;
 
-    @Value("${jwt.expiration}")
-    private Long expiration;
+    public JwtUtil(@Value("${jwt.secret}") String secret, @Value("${jwt.expiration}") Long expiration) {
+        // Built once; every authenticated request verifies a signature with it
+        this.signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        this.expiration = expiration;
+        this.parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+    }
 
     private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
+        return signingKey;
     }
 
     public String generateToken(UserDetails userDetails) {
@@ -48,9 +55,24 @@ public class JwtUtil {
                 .compact();
     }
 
-    public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+    /**
+     * Verify the signature and expiry and return the claims, or null for an invalid token.
+     */
+    public Claims parseToken(String token) {
+        try {
+            return extractAllClaims(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<String> extractAuthorities(Claims claims) {
+        Object authorities = claims.get("authorities");
+        if (authorities instanceof List) {
+            return (List<String>) authorities;
+        }
+        return List.of();
     }
 
     public String extractUsername(String token) {
@@ -61,29 +83,12 @@ public class JwtUtil {
         return extractClaim(token, Claims::getExpiration);
     }
 
-    @SuppressWarnings("unchecked")
-    public List<String> extractAuthorities(String token) {
-        Object authorities = extractClaim(token, claims -> claims.get("authorities"));
-        if (authorities instanceof List) {
-            return (List<String>) authorities;
-        }
-        return List.of();
-    }
-
     private <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
         final Claims claims = extractAllClaims(token);
         return claimsResolver.apply(claims);
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+        return parser.parseClaimsJws(token).getBody();
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.example.transformer_manager_backkend.config;
 
+import com.example.transformer_manager_backkend.service.PrincipalCache;
 import com.example.transformer_manager_backkend.service.UniversalDetailsService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -27,10 +28,13 @@ public class SecurityConfig {
 
     private final JwtUtil jwtUtil;
     private final UniversalDetailsService universalDetailsService;
+    private final PrincipalCache principalCache;
 
-    public SecurityConfig(JwtUtil jwtUtil, UniversalDetailsService universalDetailsService) {
+    public SecurityConfig(JwtUtil jwtUtil, UniversalDetailsService universalDetailsService,
+            PrincipalCache principalCache) {
         this.jwtUtil = jwtUtil;
         this.universalDetailsService = universalDetailsService;
+        this.principalCache = principalCache;
     }
 
     @Bean
@@ -68,7 +72,7 @@ public class SecurityConfig {
 
     @Bean
     public JwtAuthenticationFilter jwtAuthenticationFilter() {
-        return new JwtAuthenticationFilter(jwtUtil, universalDetailsService);
+        return new JwtAuthenticationFilter(jwtUtil, principalCache);
     }
 
     @Bean
@@ -1,56 +1,82 @@
 package com.example.transformer_manager_backkend.controller;
 
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import com.example.transformer_manager_backkend.service.AnalysisOutputStore;
+import com.example.transformer_manager_backkend.service.BlobStore;
+import com.example.transformer_manager_backkend.service.FileServingService;
+import com.example.transformer_manager_backkend.service.ImageDerivativeService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.web.bind.annotation.*;
 
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Optional;
 
+/**
+ * Analysis outputs ({@code /analysis/<revision>/<name>}, or {@code /analysis/<name>} for older
+ * ones), wherever the blob store keeps them.
+ */
 @RestController
-@RequestMapping("/analysis")
-@CrossOrigin(origins = "http://localhost:3000")
+@CrossOrigin(origins = "*")
 public class AnalysisFileController {
 
-    @GetMapping("/{filename:.+}")
-    public ResponseEntity<Resource> serveAnalysisFile(@PathVariable String filename) {
-        try {
-            // Security check - prevent directory traversal
-            if (filename.contains("..") || filename.contains("/") || filename.contains("\\")) {
-                return ResponseEntity.badRequest().build();
-            }
+    private final AnalysisOutputStore analysisOutputStore;
+    private final FileServingService fileServingService;
+    private final ImageDerivativeService imageDerivativeService;
 
-            Path file = Paths.get("uploads", "analysis").resolve(filename);
-            Resource resource = new UrlResource(file.toUri());
+    public AnalysisFileController(AnalysisOutputStore analysisOutputStore, FileServingService fileServingService,
+            ImageDerivativeService imageDerivativeService) {
+        this.analysisOutputStore = analysisOutputStore;
+        this.fileServingService = fileServingService;
+        this.imageDerivativeService = imageDerivativeService;
+    }
 
-            if (resource.exists() && resource.isReadable()) {
-                MediaType mediaType = getMediaTypeForFile(filename);
+    @GetMapping({ "/analysis/{filename:.+}", "/api/files/analysis/{filename:.+}",
+            "/api/files/uploads/analysis/{filename:.+}" })
+    public void serveAnalysisFile(@PathVariable String filename,
+            @RequestParam(value = "w", required = false) Integer width,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        serve("/analysis/" + filename, width, request, response);
+    }
 
-                return ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + resource.getFilename() + "\"")
-                        .contentType(mediaType)
-                        .body(resource);
-            } else {
-                return ResponseEntity.notFound().build();
-            }
-        } catch (Exception e) {
-            return ResponseEntity.notFound().build();
-        }
+    @GetMapping({ "/analysis/{revision:[0-9a-f]{12}}/{filename:.+}",
+            "/api/files/analysis/{revision:[0-9a-f]{12}}/{filename:.+}",
+            "/api/files/uploads/analysis/{revision:[0-9a-f]{12}}/{filename:.+}" })
+    public void serveAnalysisRevision(@PathVariable String revision, @PathVariable String filename,
+            @RequestParam(value = "w", required = false) Integer width,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        serve("/analysis/" + revision + "/" + filename, width, request, response);
     }
 
-    private MediaType getMediaTypeForFile(String filename) {
-        String lowerName = filename.toLowerCase();
-        if (lowerName.endsWith(".png")) {
-            return MediaType.IMAGE_PNG;
-        } else if (lowerName.endsWith(".jpg") || lowerName.endsWith(".jpeg")) {
-            return MediaType.IMAGE_JPEG;
-        } else if (lowerName.endsWith(".json")) {
-            return MediaType.APPLICATION_JSON;
-        } else {
-            return MediaType.APPLICATION_OCTET_STREAM;
+    /**
+     * Serve an output; with {@code w}, a downscaled JPEG at least that many pixels wide. When the
+     * blob store hands out direct URLs, full-size requests are redirected there.
+     */
+    private void serve(String webPath, Integer width, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (width != null && width <= 0) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        if (width == null) {
+            Optional<URI> directUrl = analysisOutputStore.directUrl(webPath);
+            if (directUrl.isPresent()) {
+                response.sendRedirect(directUrl.get().toString());
+                return;
+            }
+        }
+        // Also rejects names that would leave the analysis prefix
+        Optional<BlobStore.LocalFile> file = analysisOutputStore.localFile(webPath);
+        if (file.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        // Revisioned outputs are never rewritten; older ones may have been redrawn in place
+        boolean immutable = analysisOutputStore.isImmutable(webPath);
+        try (BlobStore.LocalFile local = file.get();
+                BlobStore.LocalFile served = width != null ? imageDerivativeService.derivativeFor(local, width)
+                        : local) {
+            fileServingService.serve(served, immutable, request, response);
         }
     }
-}
\ No newline at end of file
+}
@@ -1,9 +1,8 @@
 package com.example.transformer_manager_backkend.controller;
 
 import com.example.transformer_manager_backkend.entity.Annotation;
-import com.example.transformer_manager_backkend.repository.AdminRepository;
-import com.example.transformer_manager_backkend.repository.UserRepository;
 import com.example.transformer_manager_backkend.service.AnnotationService;
+import com.example.transformer_manager_backkend.service.PrincipalCache;
 import jakarta.annotation.security.PermitAll;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -29,15 +28,11 @@ import java.util.Optional;
 public class AnnotationController {
 
     private final AnnotationService annotationService;
-    private final AdminRepository adminRepository;
-    private final UserRepository userRepository;
+    private final PrincipalCache principalCache;
 
-    public AnnotationController(AnnotationService annotationService,
-            AdminRepository adminRepository,
-            UserRepository userRepository) {
+    public AnnotationController(AnnotationService annotationService, PrincipalCache principalCache) {
         this.annotationService = annotationService;
-        this.adminRepository = adminRepository;
-        this.userRepository = userRepository;
+        this.principalCache = principalCache;
     }
 
     /**
@@ -170,16 +165,9 @@ public class AnnotationController {
             if (authentication == null || principal == null) {
                 return null; // allow unauthenticated usage; annotator is unknown
             }
-            boolean isAdmin = authentication.getAuthorities().stream()
-                    .anyMatch(authority -> authority.getAuthority().equals("ROLE_ADMIN"));
-
-            if (isAdmin) {
-                return adminRepository.findByUsername(principal.getName())
-                        .orElse(null);
-            } else {
-                return userRepository.findByUsername(principal.getName())
-                        .orElse(null);
-            }
+            return principalCache.current(principal)
+                    .map(caller -> caller.isAdmin() ? (Object) caller.toAdmin() : caller.toUser())
+                    .orElse(null);
         } catch (Exception e) {
             return null;
         }
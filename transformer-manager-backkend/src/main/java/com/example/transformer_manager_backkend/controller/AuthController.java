@@ -2,20 +2,20 @@
 package com.example.transformer_manager_backkend.controller;
 
 import com.example.transformer_manager_backkend.config.JwtUtil;
-import com.example.transformer_manager_backkend.entity.Admin;
-import com.example.transformer_manager_backkend.entity.User;
-import com.example.transformer_manager_backkend.repository.AdminRepository;
-import com.example.transformer_manager_backkend.repository.UserRepository;
-import com.example.transformer_manager_backkend.service.UniversalDetailsService;
+import com.example.transformer_manager_backkend.service.PrincipalCache;
+import com.example.transformer_manager_backkend.service.PrincipalCache.CachedPrincipal;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.security.Principal;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -24,53 +24,53 @@ import java.util.Map;
 public class AuthController {
 
     private final AuthenticationManager authenticationManager;
-    private final UniversalDetailsService universalDetailsService;
     private final JwtUtil jwtUtil;
-    private final AdminRepository adminRepository;
-    private final UserRepository userRepository;
+    private final PrincipalCache principalCache;
 
     public AuthController(AuthenticationManager authenticationManager,
-            UniversalDetailsService universalDetailsService,
             JwtUtil jwtUtil,
-            AdminRepository adminRepository,
-            UserRepository userRepository) {
+            PrincipalCache principalCache) {
         this.authenticationManager = authenticationManager;
-        this.universalDetailsService = universalDetailsService;
         this.jwtUtil = jwtUtil;
-        this.adminRepository = adminRepository;
-        this.userRepository = userRepository;
+        this.principalCache = principalCache;
     }
 
     @PostMapping("/login")
     public ResponseEntity<?> createAuthenticationToken(@RequestBody AuthRequest authRequest) throws Exception {
+        Authentication authentication;
         try {
-            authenticationManager.authenticate(
+            authentication = authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(authRequest.getUsername(), authRequest.getPassword()));
         } catch (Exception e) {
             throw new Exception("Incorrect username or password", e);
         }
 
-        final UserDetails userDetails = universalDetailsService.loadUserByUsername(authRequest.getUsername());
-        final String jwt = jwtUtil.generateToken(userDetails);
-        final String role = universalDetailsService.getUserRole(authRequest.getUsername());
+        // Drop any cached lookup so the new token is checked against the current account
+        principalCache.evict(authRequest.getUsername());
+        final String jwt = jwtUtil.generateToken((UserDetails) authentication.getPrincipal());
+        final CachedPrincipal caller = principalCache.resolve(authRequest.getUsername())
+                .orElseThrow(() -> new Exception("User not found"));
 
         Map<String, Object> response = new HashMap<>();
         response.put("token", jwt);
-        response.put("role", role);
-
-        if ("ADMIN".equals(role)) {
-            Admin admin = adminRepository.findByUsername(authRequest.getUsername())
-                    .orElseThrow(() -> new Exception("Admin not found"));
-            response.put("user", admin);
-        } else if ("USER".equals(role)) {
-            User user = userRepository.findByUsername(authRequest.getUsername())
-                    .orElseThrow(() -> new Exception("User not found"));
-            response.put("user", user);
-        }
+        response.put("role", caller.getRole());
+        response.put("user", caller.isAdmin() ? caller.toAdmin() : caller.toUser());
 
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Revoke every token issued to the caller so far, signing them out on all devices.
+     */
+    @PostMapping("/revoke")
+    public ResponseEntity<?> revokeTokens(Principal principal) {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        principalCache.revokeTokens(principal.getName());
+        return ResponseEntity.noContent().build();
+    }
+
     public static class AuthRequest {
         private String username;
         private String password;
@@ -1,152 +1,54 @@
 package com.example.transformer_manager_backkend.controller;
 
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import com.example.transformer_manager_backkend.service.BlobStore;
+import com.example.transformer_manager_backkend.service.FileServingService;
+import com.example.transformer_manager_backkend.service.ImageDerivativeService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
+/**
+ * Uploads from before content addressing, which stay on the local disk. Analysis outputs are
+ * served by {@link AnalysisFileController}.
+ */
 @RestController
 @RequestMapping("/api/files")
 @CrossOrigin(origins = "*")
 public class FileController {
 
-    @GetMapping("/uploads/{filename:.+}")
-    public ResponseEntity<Resource> serveUploadedFile(@PathVariable String filename) {
-        try {
-            Path file;
-
-            // Handle analysis subdirectory
-            if (filename.startsWith("analysis/")) {
-                // Security check for analysis files
-                String analysisFile = filename.substring("analysis/".length());
-                if (analysisFile.contains("..") || analysisFile.contains("\\")) {
-                    return ResponseEntity.badRequest().build();
-                }
-                file = Paths.get("uploads", "analysis").resolve(analysisFile);
-            } else {
-                // Security check - prevent directory traversal for regular uploads
-                if (filename.contains("..") || filename.contains("/") || filename.contains("\\")) {
-                    return ResponseEntity.badRequest().build();
-                }
-                file = Paths.get("uploads").resolve(filename);
-            }
-
-            Resource resource = new UrlResource(file.toUri());
-
-            if (resource.exists() && resource.isReadable()) {
-                MediaType mediaType = getMediaTypeForFile(filename);
-                return ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + resource.getFilename() + "\"")
-                        .contentType(mediaType)
-                        .body(resource);
-            } else {
-                return ResponseEntity.notFound().build();
-            }
-        } catch (Exception e) {
-            return ResponseEntity.notFound().build();
-        }
-    }
-
-    @GetMapping("/{filename:.+}")
-    public ResponseEntity<Resource> serveAnalysisFileAlternate(@PathVariable String filename) {
-        try {
-            // Handle analysis subdirectory with leading slash format
-            if (filename.startsWith("analysis/")) {
-                // Security check for analysis files
-                String analysisFile = filename.substring("analysis/".length());
-                if (analysisFile.contains("..") || analysisFile.contains("\\")) {
-                    return ResponseEntity.badRequest().build();
-                }
-                Path file = Paths.get("uploads", "analysis").resolve(analysisFile);
-                Resource resource = new UrlResource(file.toUri());
+    private final FileServingService fileServingService;
+    private final ImageDerivativeService imageDerivativeService;
 
-                if (resource.exists() && resource.isReadable()) {
-                    MediaType mediaType = getMediaTypeForFile(filename);
-                    return ResponseEntity.ok()
-                            .header(HttpHeaders.CONTENT_DISPOSITION,
-                                    "inline; filename=\"" + resource.getFilename() + "\"")
-                            .contentType(mediaType)
-                            .body(resource);
-                } else {
-                    return ResponseEntity.notFound().build();
-                }
-            }
-            return ResponseEntity.notFound().build();
-        } catch (Exception e) {
-            return ResponseEntity.notFound().build();
-        }
+    public FileController(FileServingService fileServingService, ImageDerivativeService imageDerivativeService) {
+        this.fileServingService = fileServingService;
+        this.imageDerivativeService = imageDerivativeService;
     }
 
-    @GetMapping("/analysis/{filename:.+}")
-    public ResponseEntity<Resource> serveAnalysisFile(@PathVariable String filename) {
-        try {
-            // Security check - prevent directory traversal
-            if (filename.contains("..") || filename.contains("/") || filename.contains("\\")) {
-                return ResponseEntity.badRequest().build();
-            }
-
-            Path file = Paths.get("uploads", "analysis").resolve(filename);
-            Resource resource = new UrlResource(file.toUri());
-
-            if (resource.exists() && resource.isReadable()) {
-                MediaType mediaType = getMediaTypeForFile(filename);
-
-                return ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + resource.getFilename() + "\"")
-                        .contentType(mediaType)
-                        .body(resource);
-            } else {
-                return ResponseEntity.notFound().build();
-            }
-        } catch (Exception e) {
-            return ResponseEntity.notFound().build();
+    /**
+     * Serve an upload; with {@code w}, a downscaled JPEG at least that many pixels wide.
+     */
+    @GetMapping("/uploads/{filename:.+}")
+    public void serveUploadedFile(@PathVariable String filename,
+            @RequestParam(value = "w", required = false) Integer width,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // Security check - prevent directory traversal
+        if (filename.contains("..") || filename.contains("/") || filename.contains("\\")
+                || (width != null && width <= 0)) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return;
         }
-    }
-
-    @GetMapping("/analysis/{subpath}/{filename:.+}")
-    public ResponseEntity<Resource> serveAnalysisFileWithSubpath(@PathVariable String subpath,
-            @PathVariable String filename) {
-        try {
-            // Security check - prevent directory traversal
-            if (filename.contains("..") || subpath.contains("..") ||
-                    filename.contains("/") || filename.contains("\\") ||
-                    subpath.contains("/") || subpath.contains("\\")) {
-                return ResponseEntity.badRequest().build();
-            }
-
-            Path file = Paths.get("uploads", "analysis", subpath).resolve(filename);
-            Resource resource = new UrlResource(file.toUri());
-
-            if (resource.exists() && resource.isReadable()) {
-                MediaType mediaType = getMediaTypeForFile(filename);
-
-                return ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + resource.getFilename() + "\"")
-                        .contentType(mediaType)
-                        .body(resource);
-            } else {
-                return ResponseEntity.notFound().build();
-            }
-        } catch (Exception e) {
-            return ResponseEntity.notFound().build();
+        Path file = Paths.get("uploads").resolve(filename);
+        if (width == null) {
+            // Uploads get a unique name and are never rewritten
+            fileServingService.serve(file, true, request, response);
+            return;
         }
-    }
-
-    private MediaType getMediaTypeForFile(String filename) {
-        String lowerName = filename.toLowerCase();
-        if (lowerName.endsWith(".png")) {
-            return MediaType.IMAGE_PNG;
-        } else if (lowerName.endsWith(".jpg") || lowerName.endsWith(".jpeg")) {
-            return MediaType.IMAGE_JPEG;
-        } else if (lowerName.endsWith(".json")) {
-            return MediaType.APPLICATION_JSON;
-        } else {
-            return MediaType.APPLICATION_OCTET_STREAM;
+        try (BlobStore.LocalFile served = imageDerivativeService.derivativeFor(BlobStore.LocalFile.of(file), width)) {
+            fileServingService.serve(served, true, request, response);
         }
     }
 }
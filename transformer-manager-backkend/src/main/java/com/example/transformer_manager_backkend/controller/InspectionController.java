@@ -1,14 +1,12 @@
 package com.example.transformer_manager_backkend.controller;
 
-import com.example.transformer_manager_backkend.entity.Admin;
-import com.example.transformer_manager_backkend.entity.User;
 import com.example.transformer_manager_backkend.entity.Inspection;
-import com.example.transformer_manager_backkend.repository.AdminRepository;
-import com.example.transformer_manager_backkend.repository.UserRepository;
 import com.example.transformer_manager_backkend.service.InspectionService;
+import com.example.transformer_manager_backkend.service.InspectionService.InspectionView;
+import com.example.transformer_manager_backkend.service.PrincipalCache;
+import com.example.transformer_manager_backkend.service.PrincipalCache.CachedPrincipal;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -22,15 +20,11 @@ import java.util.List;
 public class InspectionController {
 
     private final InspectionService inspectionService;
-    private final AdminRepository adminRepository;
-    private final UserRepository userRepository;
+    private final PrincipalCache principalCache;
 
-    public InspectionController(InspectionService inspectionService,
-            AdminRepository adminRepository,
-            UserRepository userRepository) {
+    public InspectionController(InspectionService inspectionService, PrincipalCache principalCache) {
         this.inspectionService = inspectionService;
-        this.adminRepository = adminRepository;
-        this.userRepository = userRepository;
+        this.principalCache = principalCache;
     }
 
     @PostMapping
@@ -40,7 +34,6 @@ public class InspectionController {
             @RequestParam(value = "notes", required = false) String notes,
             @RequestParam(value = "images", required = false) List<MultipartFile> images,
             @RequestParam(value = "inspectionDate", required = false) String inspectionDateStr,
-            Authentication authentication,
             Principal principal) throws IOException {
 
         // Parse inspection date, default to now if not provided
@@ -56,20 +49,16 @@ public class InspectionController {
         }
 
         // Determine if the user is an admin or regular user
-        boolean isAdmin = authentication.getAuthorities().stream()
-                .anyMatch(authority -> authority.getAuthority().equals("ROLE_ADMIN"));
+        CachedPrincipal caller = principalCache.current(principal)
+                .orElseThrow(() -> new RuntimeException("User not found"));
 
         Inspection inspection;
-        if (isAdmin) {
-            Admin admin = adminRepository.findByUsername(principal.getName())
-                    .orElseThrow(() -> new RuntimeException("Admin not found"));
+        if (caller.isAdmin()) {
             inspection = inspectionService.createInspectionByAdmin(
-                    transformerRecordId, notes, images, admin, inspectionDate);
+                    transformerRecordId, notes, images, caller.toAdmin(), inspectionDate);
         } else {
-            User user = userRepository.findByUsername(principal.getName())
-                    .orElseThrow(() -> new RuntimeException("User not found"));
             inspection = inspectionService.createInspectionByUser(
-                    transformerRecordId, notes, images, user, inspectionDate);
+                    transformerRecordId, notes, images, caller.toUser(), inspectionDate);
         }
 
         return ResponseEntity.ok(inspection);
@@ -77,14 +66,14 @@ public class InspectionController {
 
     @GetMapping("/transformer/{transformerRecordId}")
     @PreAuthorize("hasRole('ADMIN') or hasRole('USER')")
-    public ResponseEntity<List<Inspection>> getInspectionsByTransformerRecord(
+    public ResponseEntity<List<InspectionView>> getInspectionsByTransformerRecord(
             @PathVariable Long transformerRecordId) {
         return ResponseEntity.ok(inspectionService.getInspectionsByTransformerRecordId(transformerRecordId));
     }
 
     @GetMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN') or hasRole('USER')")
-    public ResponseEntity<Inspection> getInspectionById(@PathVariable Long id) {
+    public ResponseEntity<InspectionView> getInspectionById(@PathVariable Long id) {
         return ResponseEntity.ok(inspectionService.getInspectionById(id));
     }
 
@@ -93,22 +82,17 @@ public class InspectionController {
     public ResponseEntity<Inspection> addImagesToInspection(
             @PathVariable Long id,
             @RequestParam("images") List<MultipartFile> images,
-            Authentication authentication,
             Principal principal) throws IOException {
 
         // Determine if the user is an admin or regular user
-        boolean isAdmin = authentication.getAuthorities().stream()
-                .anyMatch(authority -> authority.getAuthority().equals("ROLE_ADMIN"));
+        CachedPrincipal caller = principalCache.current(principal)
+                .orElseThrow(() -> new RuntimeException("User not found"));
 
         Inspection updatedInspection;
-        if (isAdmin) {
-            Admin admin = adminRepository.findByUsername(principal.getName())
-                    .orElseThrow(() -> new RuntimeException("Admin not found"));
-            updatedInspection = inspectionService.addImagesToInspection(id, images, admin);
+        if (caller.isAdmin()) {
+            updatedInspection = inspectionService.addImagesToInspection(id, images, caller.toAdmin());
         } else {
-            User user = userRepository.findByUsername(principal.getName())
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-            updatedInspection = inspectionService.addImagesToInspection(id, images, user);
+            updatedInspection = inspectionService.addImagesToInspection(id, images, caller.toUser());
         }
 
         return ResponseEntity.ok(updatedInspection);
@@ -117,20 +101,17 @@ public class InspectionController {
     @DeleteMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN') or hasRole('USER')")
     public ResponseEntity<?> deleteInspection(@PathVariable Long id,
-            Authentication authentication,
             Principal principal) throws IOException {
 
         // Allow users to delete only their own inspections, admins can delete any
-        boolean isAdmin = authentication.getAuthorities().stream()
-                .anyMatch(authority -> authority.getAuthority().equals("ROLE_ADMIN"));
+        CachedPrincipal caller = principalCache.current(principal)
+                .orElseThrow(() -> new RuntimeException("User not found"));
 
-        if (isAdmin) {
+        if (caller.isAdmin()) {
             inspectionService.deleteInspection(id);
         } else {
             // For users, verify they are the ones who created the inspection
-            User user = userRepository.findByUsername(principal.getName())
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-            inspectionService.deleteInspectionByUser(id, user);
+            inspectionService.deleteInspectionByUser(id, caller.toUser());
         }
 
         return ResponseEntity.ok().build();
@@ -140,21 +121,16 @@ public class InspectionController {
     @PreAuthorize("hasRole('ADMIN') or hasRole('USER')")
     public ResponseEntity<?> deleteInspectionImage(
             @PathVariable Long imageId,
-            Authentication authentication,
             Principal principal) throws IOException {
 
         // Determine if the user is an admin or regular user
-        boolean isAdmin = authentication.getAuthorities().stream()
-                .anyMatch(authority -> authority.getAuthority().equals("ROLE_ADMIN"));
+        CachedPrincipal caller = principalCache.current(principal)
+                .orElseThrow(() -> new RuntimeException("User not found"));
 
-        if (isAdmin) {
-            Admin admin = adminRepository.findByUsername(principal.getName())
-                    .orElseThrow(() -> new RuntimeException("Admin not found"));
-            inspectionService.deleteInspectionImage(imageId, admin);
+        if (caller.isAdmin()) {
+            inspectionService.deleteInspectionImage(imageId, caller.toAdmin());
         } else {
-            User user = userRepository.findByUsername(principal.getName())
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-            inspectionService.deleteInspectionImage(imageId, user);
+            inspectionService.deleteInspectionImage(imageId, caller.toUser());
         }
 
         return ResponseEntity.ok().build();
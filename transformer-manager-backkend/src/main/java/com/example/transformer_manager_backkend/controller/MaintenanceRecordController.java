@@ -2,16 +2,14 @@ package com.example.transformer_manager_backkend.controller;
 
 import com.example.transformer_manager_backkend.entity.Admin;
 import com.example.transformer_manager_backkend.entity.MaintenanceRecord;
-import com.example.transformer_manager_backkend.entity.User;
-import com.example.transformer_manager_backkend.repository.AdminRepository;
-import com.example.transformer_manager_backkend.repository.UserRepository;
 import com.example.transformer_manager_backkend.service.MaintenanceRecordPdfService;
 import com.example.transformer_manager_backkend.service.MaintenanceRecordService;
+import com.example.transformer_manager_backkend.service.PrincipalCache;
+import com.example.transformer_manager_backkend.service.PrincipalCache.CachedPrincipal;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.security.Principal;
@@ -25,17 +23,14 @@ public class MaintenanceRecordController {
 
     private final MaintenanceRecordService maintenanceRecordService;
     private final MaintenanceRecordPdfService maintenanceRecordPdfService;
-    private final AdminRepository adminRepository;
-    private final UserRepository userRepository;
+    private final PrincipalCache principalCache;
 
     public MaintenanceRecordController(MaintenanceRecordService maintenanceRecordService,
                                       MaintenanceRecordPdfService maintenanceRecordPdfService,
-                                      AdminRepository adminRepository,
-                                      UserRepository userRepository) {
+                                      PrincipalCache principalCache) {
         this.maintenanceRecordService = maintenanceRecordService;
         this.maintenanceRecordPdfService = maintenanceRecordPdfService;
-        this.adminRepository = adminRepository;
-        this.userRepository = userRepository;
+        this.principalCache = principalCache;
     }
 
     @PostMapping("/inspection/{inspectionId}")
@@ -43,21 +38,16 @@ public class MaintenanceRecordController {
     public ResponseEntity<MaintenanceRecord> createOrUpdateMaintenanceRecord(
             @PathVariable Long inspectionId,
             @RequestBody MaintenanceRecord recordData,
-            Authentication authentication,
             Principal principal) {
 
-        boolean isAdmin = authentication.getAuthorities().stream()
-                .anyMatch(authority -> authority.getAuthority().equals("ROLE_ADMIN"));
+        CachedPrincipal caller = principalCache.current(principal)
+                .orElseThrow(() -> new RuntimeException("User not found"));
 
         MaintenanceRecord record;
-        if (isAdmin) {
-            Admin admin = adminRepository.findByUsername(principal.getName())
-                    .orElseThrow(() -> new RuntimeException("Admin not found"));
-            record = maintenanceRecordService.createOrUpdateMaintenanceRecord(inspectionId, recordData, admin);
+        if (caller.isAdmin()) {
+            record = maintenanceRecordService.createOrUpdateMaintenanceRecord(inspectionId, recordData, caller.toAdmin());
         } else {
-            User user = userRepository.findByUsername(principal.getName())
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-            record = maintenanceRecordService.createOrUpdateMaintenanceRecord(inspectionId, recordData, user);
+            record = maintenanceRecordService.createOrUpdateMaintenanceRecord(inspectionId, recordData, caller.toUser());
         }
 
         return ResponseEntity.ok(record);
@@ -121,21 +111,16 @@ public class MaintenanceRecordController {
     @PreAuthorize("hasRole('ADMIN') or hasRole('USER')")
     public ResponseEntity<MaintenanceRecord> submitRecord(
             @PathVariable Long id,
-            Authentication authentication,
             Principal principal) {
 
-        boolean isAdmin = authentication.getAuthorities().stream()
-                .anyMatch(authority -> authority.getAuthority().equals("ROLE_ADMIN"));
+        CachedPrincipal caller = principalCache.current(principal)
+                .orElseThrow(() -> new RuntimeException("User not found"));
 
         MaintenanceRecord record;
-        if (isAdmin) {
-            Admin admin = adminRepository.findByUsername(principal.getName())
-                    .orElseThrow(() -> new RuntimeException("Admin not found"));
-            record = maintenanceRecordService.submitRecord(id, admin);
+        if (caller.isAdmin()) {
+            record = maintenanceRecordService.submitRecord(id, caller.toAdmin());
         } else {
-            User user = userRepository.findByUsername(principal.getName())
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-            record = maintenanceRecordService.submitRecord(id, user);
+            record = maintenanceRecordService.submitRecord(id, caller.toUser());
         }
 
         return ResponseEntity.ok(record);
@@ -148,7 +133,7 @@ public class MaintenanceRecordController {
             @RequestParam String status,
             Principal principal) {
 
-        Admin admin = adminRepository.findByUsername(principal.getName())
+        Admin admin = principalCache.currentAdmin(principal)
                 .orElseThrow(() -> new RuntimeException("Admin not found"));
 
         MaintenanceRecord record = maintenanceRecordService.reviewRecord(id, admin, status);
@@ -2,9 +2,13 @@ package com.example.transformer_manager_backkend.controller;
 
 import com.example.transformer_manager_backkend.entity.Admin;
 import com.example.transformer_manager_backkend.entity.TransformerRecord;
-import com.example.transformer_manager_backkend.repository.AdminRepository;
+import com.example.transformer_manager_backkend.service.PrincipalCache;
+import com.example.transformer_manager_backkend.service.TransformerLocationIndex;
+import com.example.transformer_manager_backkend.service.TransformerLocationIndex.NearbyLocation;
+import com.example.transformer_manager_backkend.service.TransformerLocationIndex.ViewportResult;
 import com.example.transformer_manager_backkend.service.TransformerRecordService;
 import com.example.transformer_manager_backkend.service.TransformerRecordService.ImageDTO;
+import com.example.transformer_manager_backkend.service.TransformerRecordService.SummaryPage;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -21,12 +25,14 @@ import java.util.List;
 public class TransformerRecordController {
 
     private final TransformerRecordService transformerRecordService;
-    private final AdminRepository adminRepository;
+    private final PrincipalCache principalCache;
+    private final TransformerLocationIndex locationIndex;
 
     public TransformerRecordController(TransformerRecordService transformerRecordService,
-            AdminRepository adminRepository) {
+            PrincipalCache principalCache, TransformerLocationIndex locationIndex) {
         this.transformerRecordService = transformerRecordService;
-        this.adminRepository = adminRepository;
+        this.principalCache = principalCache;
+        this.locationIndex = locationIndex;
     }
 
     @PostMapping
@@ -44,7 +50,7 @@ public class TransformerRecordController {
             @RequestParam(value = "weatherConditions", required = false) List<String> weatherConditions,
             Principal principal) throws IOException {
 
-        Admin admin = adminRepository.findByUsername(principal.getName())
+        Admin admin = principalCache.currentAdmin(principal)
                 .orElseThrow(() -> new RuntimeException("Admin not found"));
 
         List<ImageDTO> imageDTOs = new ArrayList<>();
@@ -70,6 +76,63 @@ public class TransformerRecordController {
         return ResponseEntity.ok(transformerRecordService.getAllTransformerRecords());
     }
 
+    /**
+     * Keyset-paginated transformer summaries: counts, latest inspection date and a thumbnail
+     * instead of the full image and inspection collections.
+     */
+    @GetMapping("/summaries")
+    public ResponseEntity<SummaryPage> getTransformerRecordSummaries(
+            @RequestParam(value = "starred", required = false) Boolean starred,
+            @RequestParam(value = "type", required = false) String type,
+            @RequestParam(value = "location", required = false) String location,
+            @RequestParam(value = "sort", defaultValue = TransformerRecordService.SORT_NAME) String sort,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "20") int size) {
+        try {
+            return ResponseEntity.ok(transformerRecordService.getTransformerRecordSummaries(starred, type, location,
+                    sort, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Transformers inside a map viewport, clustered when more than maxLocations match.
+     * west > east selects a viewport crossing the antimeridian.
+     */
+    @GetMapping("/locations")
+    public ResponseEntity<ViewportResult> getLocationsInViewport(
+            @RequestParam("south") double south,
+            @RequestParam("west") double west,
+            @RequestParam("north") double north,
+            @RequestParam("east") double east,
+            @RequestParam(value = "maxLocations", defaultValue = "500") int maxLocations) {
+        if (!isLatitude(south) || !isLatitude(north) || south > north || !isLongitude(west) || !isLongitude(east)
+                || maxLocations < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(locationIndex.findInViewport(south, west, north, east, Math.min(maxLocations, 5000)));
+    }
+
+    @GetMapping("/locations/nearest")
+    public ResponseEntity<List<NearbyLocation>> getNearestLocations(
+            @RequestParam("lat") double lat,
+            @RequestParam("lng") double lng,
+            @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        if (!isLatitude(lat) || !isLongitude(lng) || limit < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(locationIndex.findNearest(lat, lng, Math.min(limit, 100)));
+    }
+
+    private static boolean isLatitude(double value) {
+        return value >= -90 && value <= 90;
+    }
+
+    private static boolean isLongitude(double value) {
+        return value >= -180 && value <= 180;
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<TransformerRecord> getTransformerRecordById(@PathVariable Long id) {
         return ResponseEntity.ok(transformerRecordService.getTransformerRecordById(id));
@@ -105,7 +168,7 @@ public class TransformerRecordController {
             @RequestParam(value = "weatherConditions", required = false) String[] weatherConditions,
             Principal principal) throws IOException {
 
-        Admin admin = adminRepository.findByUsername(principal.getName())
+        Admin admin = principalCache.currentAdmin(principal)
                 .orElseThrow(() -> new RuntimeException("Admin not found"));
 
         List<ImageDTO> imageDTOs = null;
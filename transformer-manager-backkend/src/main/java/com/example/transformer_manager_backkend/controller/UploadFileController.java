@@ -0,0 +1,68 @@
+package com.example.transformer_manager_backkend.controller;
+
+import com.example.transformer_manager_backkend.service.BlobStore;
+import com.example.transformer_manager_backkend.service.FileServingService;
+import com.example.transformer_manager_backkend.service.ImageDerivativeService;
+import com.example.transformer_manager_backkend.service.UploadStorageService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Optional;
+
+/**
+ * Content-addressed uploads ({@code /uploads/ab/cd/<sha256>.<ext>}), wherever the blob store
+ * keeps them. Takes precedence over the static {@code /uploads/**} handler, which only sees the
+ * local disk.
+ */
+@RestController
+@CrossOrigin(origins = "*")
+public class UploadFileController {
+
+    private final UploadStorageService uploadStorageService;
+    private final FileServingService fileServingService;
+    private final ImageDerivativeService imageDerivativeService;
+
+    public UploadFileController(UploadStorageService uploadStorageService, FileServingService fileServingService,
+            ImageDerivativeService imageDerivativeService) {
+        this.uploadStorageService = uploadStorageService;
+        this.fileServingService = fileServingService;
+        this.imageDerivativeService = imageDerivativeService;
+    }
+
+    /**
+     * Serve an upload; with {@code w}, a downscaled JPEG at least that many pixels wide. When
+     * the blob store hands out direct URLs, full-size requests are redirected there.
+     */
+    @GetMapping({ "/uploads/{shard1:[0-9a-f][0-9a-f]}/{shard2:[0-9a-f][0-9a-f]}/{filename:[0-9a-f]+(?:\\.[a-z0-9]+)?}",
+            "/api/files/uploads/{shard1:[0-9a-f][0-9a-f]}/{shard2:[0-9a-f][0-9a-f]}/{filename:[0-9a-f]+(?:\\.[a-z0-9]+)?}" })
+    public void serveStoredUpload(@PathVariable String shard1, @PathVariable String shard2,
+            @PathVariable String filename, @RequestParam(value = "w", required = false) Integer width,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!filename.startsWith(shard1 + shard2) || (width != null && width <= 0)) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        String key = shard1 + "/" + shard2 + "/" + filename;
+        if (width == null) {
+            Optional<URI> directUrl = uploadStorageService.directUrl(key);
+            if (directUrl.isPresent()) {
+                response.sendRedirect(directUrl.get().toString());
+                return;
+            }
+        }
+        Optional<BlobStore.LocalFile> file = uploadStorageService.localFile(key);
+        if (file.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        // Named by their content, so they can never change
+        try (BlobStore.LocalFile local = file.get();
+                BlobStore.LocalFile served = width != null ? imageDerivativeService.derivativeFor(local, width)
+                        : local) {
+            fileServingService.serve(served, true, request, response);
+        }
+    }
+}
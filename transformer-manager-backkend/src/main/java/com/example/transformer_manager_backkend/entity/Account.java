@@ -0,0 +1,72 @@
+package com.example.transformer_manager_backkend.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.Subselect;
+import org.hibernate.annotations.Synchronize;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only union of {@link Admin} and {@link User}, so resolving a username (for login or for
+ * a request's caller) is one query instead of one per table. A username lookup is pushed into
+ * both branches, where the per-table unique username indexes serve it.
+ */
+@Entity
+@Immutable
+@Subselect("SELECT 'ADMIN:' || a.id AS principal_key, 'ADMIN' AS role, a.id AS account_id, a.username, "
+        + "a.password, a.display_name, a.tokens_valid_after FROM admins a "
+        + "UNION ALL "
+        + "SELECT 'USER:' || u.id, 'USER', u.id, u.username, u.password, u.display_name, u.tokens_valid_after "
+        + "FROM users u")
+@Synchronize({ "admins", "users" })
+public class Account {
+
+    public static final String ROLE_ADMIN = "ADMIN";
+    public static final String ROLE_USER = "USER";
+
+    @Id
+    @Column(name = "principal_key")
+    private String key;
+
+    // ROLE_ADMIN or ROLE_USER
+    private String role;
+
+    // Id in the admins or users table, depending on the role
+    @Column(name = "account_id")
+    private Long accountId;
+
+    private String username;
+
+    private String password;
+
+    @Column(name = "display_name")
+    private String displayName;
+
+    @Column(name = "tokens_valid_after")
+    private LocalDateTime tokensValidAfter;
+
+    public String getRole() {
+        return role;
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public LocalDateTime getTokensValidAfter() {
+        return tokensValidAfter;
+    }
+}
@@ -1,7 +1,10 @@
 package com.example.transformer_manager_backkend.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 
+import java.time.LocalDateTime;
+
 @Entity
 @Table(name = "admins")
 public class Admin {
@@ -18,6 +21,11 @@ public class Admin {
     @Column(nullable = false)
     private String displayName;
 
+    // Tokens issued before this instant are rejected (null: none revoked)
+    @Column
+    @JsonIgnore
+    private LocalDateTime tokensValidAfter;
+
     // Default constructor
     public Admin() {
     }
@@ -61,4 +69,12 @@ public class Admin {
     public void setDisplayName(String displayName) {
         this.displayName = displayName;
     }
-}
\ No newline at end of file
+
+    public LocalDateTime getTokensValidAfter() {
+        return tokensValidAfter;
+    }
+
+    public void setTokensValidAfter(LocalDateTime tokensValidAfter) {
+        this.tokensValidAfter = tokensValidAfter;
+    }
+}
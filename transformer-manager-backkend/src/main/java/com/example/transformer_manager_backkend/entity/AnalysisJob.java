@@ -28,10 +28,19 @@ public class AnalysisJob {
     @Column
     private String boxedImagePath;
 
+    // Image-level label of the result, and how many rows it has in the detections table
+    // (null for results stored before detections were normalized)
+    @Column
+    private String resultLabel;
+
+    @Column
+    private Integer detectionCount;
+
     @Column(columnDefinition = "TEXT")
     private String errorMessage;
 
-    @Column
+    // Derived on read from the job id (the enqueue sequence) relative to the queue head
+    @Transient
     private Integer queuePosition;
 
     @CreationTimestamp
@@ -47,6 +56,20 @@ public class AnalysisJob {
     @Column
     private LocalDateTime completedAt;
 
+    // Node currently holding the processing lease, and when that lease lapses unless renewed
+    @Column
+    private String leaseOwner;
+
+    @Column
+    private LocalDateTime leaseExpiresAt;
+
+    // Remote calls made for this job so far, and the earliest time a failed job may be retried
+    @Column
+    private Integer attemptCount = 0;
+
+    @Column
+    private LocalDateTime nextAttemptAt;
+
     // Constructors
     public AnalysisJob() {
     }
@@ -103,6 +126,22 @@ public class AnalysisJob {
         this.boxedImagePath = boxedImagePath;
     }
 
+    public String getResultLabel() {
+        return resultLabel;
+    }
+
+    public void setResultLabel(String resultLabel) {
+        this.resultLabel = resultLabel;
+    }
+
+    public Integer getDetectionCount() {
+        return detectionCount;
+    }
+
+    public void setDetectionCount(Integer detectionCount) {
+        this.detectionCount = detectionCount;
+    }
+
     public String getErrorMessage() {
         return errorMessage;
     }
@@ -151,6 +190,38 @@ public class AnalysisJob {
         this.completedAt = completedAt;
     }
 
+    public String getLeaseOwner() {
+        return leaseOwner;
+    }
+
+    public void setLeaseOwner(String leaseOwner) {
+        this.leaseOwner = leaseOwner;
+    }
+
+    public LocalDateTime getLeaseExpiresAt() {
+        return leaseExpiresAt;
+    }
+
+    public void setLeaseExpiresAt(LocalDateTime leaseExpiresAt) {
+        this.leaseExpiresAt = leaseExpiresAt;
+    }
+
+    public Integer getAttemptCount() {
+        return attemptCount;
+    }
+
+    public void setAttemptCount(Integer attemptCount) {
+        this.attemptCount = attemptCount;
+    }
+
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
     public enum AnalysisStatus {
         QUEUED,
         PROCESSING,
@@ -0,0 +1,152 @@
+package com.example.transformer_manager_backkend.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * One detected (or annotator-corrected) bounding box of an analysis job, normalized out of the
+ * job's result JSON when the result is stored. Mirrors the boxes of {@link AnalysisJob#getResultJson()}.
+ */
+@Entity
+@Table(name = "detections", indexes = {
+        @Index(name = "idx_detections_job", columnList = "analysis_job_id, box_index"),
+        @Index(name = "idx_detections_label", columnList = "label")
+})
+public class Detection {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "analysis_job_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @JsonIgnore
+    private AnalysisJob analysisJob;
+
+    // Position of the box in the result JSON
+    @Column(name = "box_index", nullable = false)
+    private int boxIndex;
+
+    @Column(nullable = false)
+    private String label;
+
+    @Column(nullable = false)
+    private int x;
+
+    @Column(nullable = false)
+    private int y;
+
+    @Column(nullable = false)
+    private int width;
+
+    @Column(nullable = false)
+    private int height;
+
+    @Column
+    private Double confidence;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Source source = Source.MODEL;
+
+    public Detection() {
+    }
+
+    public Detection(AnalysisJob analysisJob, int boxIndex, String label, int x, int y, int width, int height,
+            Double confidence, Source source) {
+        this.analysisJob = analysisJob;
+        this.boxIndex = boxIndex;
+        this.label = label;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.confidence = confidence;
+        this.source = source;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public AnalysisJob getAnalysisJob() {
+        return analysisJob;
+    }
+
+    public void setAnalysisJob(AnalysisJob analysisJob) {
+        this.analysisJob = analysisJob;
+    }
+
+    public int getBoxIndex() {
+        return boxIndex;
+    }
+
+    public void setBoxIndex(int boxIndex) {
+        this.boxIndex = boxIndex;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public void setX(int x) {
+        this.x = x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public void setY(int y) {
+        this.y = y;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    public Double getConfidence() {
+        return confidence;
+    }
+
+    public void setConfidence(Double confidence) {
+        this.confidence = confidence;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    public void setSource(Source source) {
+        this.source = source;
+    }
+
+    public enum Source {
+        MODEL,      // As returned by the inference endpoint
+        ANNOTATION  // Replaced by an annotator's edit
+    }
+}
@@ -8,7 +8,7 @@ import java.time.LocalDateTime;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 @Entity
-@Table(name = "images")
+@Table(name = "images", indexes = @Index(name = "idx_images_content_hash", columnList = "content_hash"))
 public class Image {
 
     @Id
@@ -18,6 +18,10 @@ public class Image {
     @Column(nullable = false)
     private String filePath;
 
+    // SHA-256 of the uploaded bytes; images sharing a hash share one blob (null for older uploads)
+    @Column(length = 64)
+    private String contentHash;
+
     @CreationTimestamp
     @Column(updatable = false)
     private LocalDateTime uploadTime;
@@ -60,6 +64,14 @@ public class Image {
         this.filePath = filePath;
     }
 
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
     public LocalDateTime getUploadTime() {
         return uploadTime;
     }
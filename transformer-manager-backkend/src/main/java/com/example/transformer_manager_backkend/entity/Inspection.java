@@ -15,14 +15,33 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
+import jakarta.persistence.NamedSubgraph;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.OneToOne;
 import jakarta.persistence.Table;
 
 @Entity
 @Table(name = "inspections")
+// Everything the inspection views render. The one-to-ones mapped by image and inspection (analysis
+// job, maintenance record) can't be lazy, so anything not fetched here costs a select per row.
+@NamedEntityGraph(name = Inspection.VIEW_GRAPH, attributeNodes = {
+        @NamedAttributeNode(value = "transformerRecord", subgraph = "transformerRecord"),
+        @NamedAttributeNode("conductedByAdmin"),
+        @NamedAttributeNode("conductedByUser"),
+        @NamedAttributeNode(value = "images", subgraph = "images"),
+        @NamedAttributeNode(value = "maintenanceRecord", subgraph = "maintenanceRecord") }, subgraphs = {
+                @NamedSubgraph(name = "transformerRecord", attributeNodes = @NamedAttributeNode("uploadedBy")),
+                @NamedSubgraph(name = "images", attributeNodes = @NamedAttributeNode("analysisJob")),
+                @NamedSubgraph(name = "maintenanceRecord", attributeNodes = {
+                        @NamedAttributeNode("submittedByAdmin"),
+                        @NamedAttributeNode("submittedByUser"),
+                        @NamedAttributeNode("reviewedByAdmin") }) })
 public class Inspection {
 
+    public static final String VIEW_GRAPH = "Inspection.view";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
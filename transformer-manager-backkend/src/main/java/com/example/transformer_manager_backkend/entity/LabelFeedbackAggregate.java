@@ -0,0 +1,134 @@
+package com.example.transformer_manager_backkend.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * Running totals of how annotators changed the model's detections for one label, summed over
+ * every annotation. Kept up to date as annotations are saved so feedback can be derived without
+ * rescanning the annotation history.
+ */
+@Entity
+@Table(name = "label_feedback_aggregates")
+public class LabelFeedbackAggregate {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "label", nullable = false, unique = true)
+    private String label;
+
+    @Column(name = "total_count_delta", nullable = false)
+    private double totalCountDelta;
+
+    @Column(name = "total_area_delta", nullable = false)
+    private double totalAreaDelta;
+
+    @Column(name = "total_orig_area", nullable = false)
+    private double totalOrigArea;
+
+    @Column(name = "total_user_area", nullable = false)
+    private double totalUserArea;
+
+    @Column(name = "total_confidence_delta", nullable = false)
+    private double totalConfidenceDelta;
+
+    @Column(name = "sample_count", nullable = false)
+    private int sampleCount;
+
+    // Bumped on every write so readers can cheaply tell whether any aggregate changed
+    @Column(name = "revision", nullable = false, columnDefinition = "BIGINT DEFAULT 0")
+    private long revision;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public LabelFeedbackAggregate() {
+    }
+
+    public LabelFeedbackAggregate(String label) {
+        this.label = label;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    public double getTotalCountDelta() {
+        return totalCountDelta;
+    }
+
+    public void setTotalCountDelta(double totalCountDelta) {
+        this.totalCountDelta = totalCountDelta;
+    }
+
+    public double getTotalAreaDelta() {
+        return totalAreaDelta;
+    }
+
+    public void setTotalAreaDelta(double totalAreaDelta) {
+        this.totalAreaDelta = totalAreaDelta;
+    }
+
+    public double getTotalOrigArea() {
+        return totalOrigArea;
+    }
+
+    public void setTotalOrigArea(double totalOrigArea) {
+        this.totalOrigArea = totalOrigArea;
+    }
+
+    public double getTotalUserArea() {
+        return totalUserArea;
+    }
+
+    public void setTotalUserArea(double totalUserArea) {
+        this.totalUserArea = totalUserArea;
+    }
+
+    public double getTotalConfidenceDelta() {
+        return totalConfidenceDelta;
+    }
+
+    public void setTotalConfidenceDelta(double totalConfidenceDelta) {
+        this.totalConfidenceDelta = totalConfidenceDelta;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public void setSampleCount(int sampleCount) {
+        this.sampleCount = sampleCount;
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    public void setRevision(long revision) {
+        this.revision = revision;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.transformer_manager_backkend.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * One stored upload blob, keyed by its content hash. Every node locks this row before deleting
+ * the blob, and records on it when it last handed the blob out for a new image row, so a blob
+ * another node has just deduplicated against is not deleted before that row commits.
+ */
+@Entity
+@Table(name = "upload_blobs")
+public class UploadBlob {
+
+    @Id
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "last_stored_at", nullable = false)
+    private LocalDateTime lastStoredAt;
+
+    public UploadBlob() {
+    }
+
+    public UploadBlob(String contentHash, LocalDateTime lastStoredAt) {
+        this.contentHash = contentHash;
+        this.lastStoredAt = lastStoredAt;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public LocalDateTime getLastStoredAt() {
+        return lastStoredAt;
+    }
+
+    public void setLastStoredAt(LocalDateTime lastStoredAt) {
+        this.lastStoredAt = lastStoredAt;
+    }
+}
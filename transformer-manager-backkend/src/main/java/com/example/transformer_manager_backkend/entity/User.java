@@ -1,7 +1,10 @@
 package com.example.transformer_manager_backkend.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 
+import java.time.LocalDateTime;
+
 @Entity
 @Table(name = "users")
 public class User {
@@ -18,6 +21,11 @@ public class User {
     @Column(nullable = false)
     private String displayName;
 
+    // Tokens issued before this instant are rejected (null: none revoked)
+    @Column
+    @JsonIgnore
+    private LocalDateTime tokensValidAfter;
+
     // Default constructor
     public User() {
     }
@@ -61,4 +69,12 @@ public class User {
     public void setDisplayName(String displayName) {
         this.displayName = displayName;
     }
+
+    public LocalDateTime getTokensValidAfter() {
+        return tokensValidAfter;
+    }
+
+    public void setTokensValidAfter(LocalDateTime tokensValidAfter) {
+        this.tokensValidAfter = tokensValidAfter;
+    }
 }
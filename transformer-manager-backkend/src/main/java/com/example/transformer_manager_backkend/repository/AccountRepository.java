@@ -0,0 +1,12 @@
+package com.example.transformer_manager_backkend.repository;
+
+import com.example.transformer_manager_backkend.entity.Account;
+import org.springframework.data.repository.Repository;
+
+import java.util.Optional;
+
+public interface AccountRepository extends Repository<Account, String> {
+
+    // Admins win if the same username exists in both tables, as they always have
+    Optional<Account> findFirstByUsernameOrderByRoleAsc(String username);
+}
@@ -2,10 +2,19 @@ package com.example.transformer_manager_backkend.repository;
 
 import com.example.transformer_manager_backkend.entity.Admin;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 public interface AdminRepository extends JpaRepository<Admin, Long> {
     Optional<Admin> findByUsername(String username);
 
     boolean existsByUsername(String username);
+
+    @Modifying
+    @Query("UPDATE Admin a SET a.tokensValidAfter = :cutoff WHERE a.username = :username")
+    int updateTokensValidAfter(@Param("username") String username, @Param("cutoff") LocalDateTime cutoff);
 }
\ No newline at end of file
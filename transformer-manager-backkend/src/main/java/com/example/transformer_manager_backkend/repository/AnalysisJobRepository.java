@@ -3,19 +3,20 @@ package com.example.transformer_manager_backkend.repository;
 import com.example.transformer_manager_backkend.entity.AnalysisJob;
 import com.example.transformer_manager_backkend.entity.Image;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface AnalysisJobRepository extends JpaRepository<AnalysisJob, Long> {
 
-    // Find jobs by status
-    List<AnalysisJob> findByStatusOrderByCreatedAtAsc(AnalysisJob.AnalysisStatus status);
-
     // Find job by image
     Optional<AnalysisJob> findByImage(Image image);
 
@@ -26,9 +27,110 @@ public interface AnalysisJobRepository extends JpaRepository<AnalysisJob, Long>
     // Count queued jobs
     Long countByStatus(AnalysisJob.AnalysisStatus status);
 
-    // Find next job in queue
-    @Query("SELECT aj FROM AnalysisJob aj WHERE aj.status = 'QUEUED' ORDER BY aj.createdAt ASC LIMIT 1")
-    Optional<AnalysisJob> findNextQueuedJob();
+    /**
+     * {@code [job id, jobs ahead of it]} for each of the given jobs: the queued jobs with a lower
+     * id that are due now. Ids are assigned at enqueue, so they double as the queue sequence;
+     * finished jobs and jobs waiting out a retry backoff don't hold anyone up.
+     */
+    @Query("SELECT aj.id, (SELECT COUNT(q) FROM AnalysisJob q WHERE q.status = 'QUEUED' AND q.id < aj.id "
+            + "AND (q.nextAttemptAt IS NULL OR q.nextAttemptAt <= :now)) "
+            + "FROM AnalysisJob aj WHERE aj.id IN :jobIds")
+    List<Object[]> findJobsAhead(@Param("jobIds") Collection<Long> jobIds, @Param("now") LocalDateTime now);
+
+    /**
+     * Atomically claim the oldest queued job (or one whose lease has lapsed) for a worker.
+     * SKIP LOCKED lets concurrent claimers on other nodes pass over a row that is being
+     * claimed instead of blocking on it or claiming it twice. Jobs waiting out a retry
+     * backoff are passed over until their next attempt is due. A PROCESSING row without a
+     * lease (claimed before leases existed) counts as lapsed; one that has used up its
+     * attempts is left for {@link #failAbandonedJobs} instead of being run again. Each kind of
+     * candidate is looked up on its own so the queued one can be read off the partial queue index
+     * in id order; a single OR'd lookup walks the primary key past every finished job instead.
+     */
+    @Transactional
+    @Query(value = "UPDATE analysis_jobs SET status = 'PROCESSING', started_at = :now, updated_at = :now, "
+            + "lease_owner = :owner, lease_expires_at = :leaseExpiresAt, "
+            + "attempt_count = COALESCE(attempt_count, 0) + 1, next_attempt_at = NULL "
+            + "WHERE id = LEAST((SELECT id FROM analysis_jobs "
+            + "WHERE status = 'QUEUED' AND (next_attempt_at IS NULL OR next_attempt_at <= :now) "
+            + "ORDER BY id ASC LIMIT 1 FOR UPDATE SKIP LOCKED), "
+            + "(SELECT id FROM analysis_jobs "
+            + "WHERE status = 'PROCESSING' AND (lease_expires_at IS NULL OR lease_expires_at < :now) "
+            + "AND COALESCE(attempt_count, 0) < :maxAttempts "
+            + "ORDER BY id ASC LIMIT 1 FOR UPDATE SKIP LOCKED)) "
+            + "RETURNING id", nativeQuery = true)
+    Optional<Long> claimNextQueuedJob(@Param("owner") String owner, @Param("now") LocalDateTime now,
+            @Param("leaseExpiresAt") LocalDateTime leaseExpiresAt, @Param("maxAttempts") int maxAttempts);
+
+    /**
+     * Whether {@link #claimNextQueuedJob} would find a job, without claiming it. Lets one poller
+     * per node check the queue instead of every worker running the claim.
+     */
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM analysis_jobs "
+            + "WHERE status = 'QUEUED' AND (next_attempt_at IS NULL OR next_attempt_at <= :now)) "
+            + "OR EXISTS (SELECT 1 FROM analysis_jobs "
+            + "WHERE status = 'PROCESSING' AND (lease_expires_at IS NULL OR lease_expires_at < :now) "
+            + "AND COALESCE(attempt_count, 0) < :maxAttempts)", nativeQuery = true)
+    boolean existsClaimableJob(@Param("now") LocalDateTime now, @Param("maxAttempts") int maxAttempts);
+
+    // Fail jobs whose lease lapsed after their last allowed attempt, e.g. because they keep crashing their worker
+    @Modifying
+    @Transactional
+    @Query("UPDATE AnalysisJob aj SET aj.status = 'FAILED', aj.completedAt = :now, aj.updatedAt = :now, "
+            + "aj.leaseOwner = NULL, aj.leaseExpiresAt = NULL, "
+            + "aj.errorMessage = 'Abandoned by its worker after the last allowed attempt' "
+            + "WHERE aj.status = 'PROCESSING' AND (aj.leaseExpiresAt IS NULL OR aj.leaseExpiresAt < :now) "
+            + "AND COALESCE(aj.attemptCount, 0) >= :maxAttempts")
+    int failAbandonedJobs(@Param("now") LocalDateTime now, @Param("maxAttempts") int maxAttempts);
+
+    /**
+     * Lock the job's row if {@code owner} still holds the lease it took on claim
+     * {@code attemptCount}, so the outcome it records can't overwrite a job reclaimed in the
+     * meantime. Every claim bumps the attempt count, so a reclaim by another worker on the same
+     * node is told apart too.
+     *
+     * @return 0 if the lease was lost
+     */
+    @Modifying
+    @Query("UPDATE AnalysisJob aj SET aj.updatedAt = :now "
+            + "WHERE aj.id = :id AND aj.leaseOwner = :owner AND aj.attemptCount = :attemptCount "
+            + "AND aj.status = 'PROCESSING'")
+    int confirmLease(@Param("id") Long id, @Param("owner") String owner, @Param("attemptCount") int attemptCount,
+            @Param("now") LocalDateTime now);
+
+    // Claim up to :limit more queued jobs from one inspection so they can share a batch inference call
+    @Transactional
+    @Query(value = "UPDATE analysis_jobs SET status = 'PROCESSING', started_at = :now, updated_at = :now, "
+            + "lease_owner = :owner, lease_expires_at = :leaseExpiresAt, "
+            + "attempt_count = COALESCE(attempt_count, 0) + 1, next_attempt_at = NULL "
+            + "WHERE id IN (SELECT aj.id FROM analysis_jobs aj JOIN images i ON i.id = aj.image_id "
+            + "WHERE aj.status = 'QUEUED' AND i.inspection_id = :inspectionId "
+            + "AND (aj.next_attempt_at IS NULL OR aj.next_attempt_at <= :now) "
+            + "ORDER BY aj.id ASC LIMIT :limit FOR UPDATE OF aj SKIP LOCKED) "
+            + "RETURNING id", nativeQuery = true)
+    List<Long> claimQueuedJobsForInspection(@Param("owner") String owner, @Param("now") LocalDateTime now,
+            @Param("leaseExpiresAt") LocalDateTime leaseExpiresAt, @Param("inspectionId") Long inspectionId,
+            @Param("limit") int limit);
+
+    /**
+     * Queue a job for each of the images that has none yet, in one statement, in image id order
+     * so they are claimed in upload order.
+     *
+     * @return how many jobs were queued
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO analysis_jobs (image_id, status, attempt_count, created_at, updated_at) "
+            + "SELECT i.id, 'QUEUED', 0, :now, :now FROM images i "
+            + "WHERE i.id IN (:imageIds) AND NOT EXISTS (SELECT 1 FROM analysis_jobs aj WHERE aj.image_id = i.id) "
+            + "ORDER BY i.id", nativeQuery = true)
+    int enqueueImages(@Param("imageIds") Collection<Long> imageIds, @Param("now") LocalDateTime now);
+
+    // Extend the leases of every job this node is still processing
+    @Modifying
+    @Transactional
+    @Query("UPDATE AnalysisJob aj SET aj.leaseExpiresAt = :leaseExpiresAt WHERE aj.leaseOwner = :owner AND aj.status = 'PROCESSING'")
+    int renewLeases(@Param("owner") String owner, @Param("leaseExpiresAt") LocalDateTime leaseExpiresAt);
 
     // Find jobs by transformer record ID
     @Query("SELECT aj FROM AnalysisJob aj WHERE aj.image.transformerRecord.id = :transformerId ORDER BY aj.createdAt DESC")
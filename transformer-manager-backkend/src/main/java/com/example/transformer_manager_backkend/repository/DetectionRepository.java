@@ -0,0 +1,20 @@
+package com.example.transformer_manager_backkend.repository;
+
+import com.example.transformer_manager_backkend.entity.Detection;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface DetectionRepository extends JpaRepository<Detection, Long> {
+
+    List<Detection> findByAnalysisJobIdOrderByBoxIndexAsc(Long analysisJobId);
+
+    @Modifying
+    @Query("DELETE FROM Detection d WHERE d.analysisJob.id = :analysisJobId")
+    int deleteByAnalysisJobId(@Param("analysisJobId") Long analysisJobId);
+}
@@ -3,8 +3,7 @@ package com.example.transformer_manager_backkend.repository;
 import com.example.transformer_manager_backkend.entity.Image;
 import org.springframework.data.jpa.repository.JpaRepository;
 
-import java.util.Optional;
-
 public interface ImageRepository extends JpaRepository<Image, Long> {
-	Optional<Image> findByFilePath(String filePath);
-}
\ No newline at end of file
+	// References to a content-addressed upload
+	long countByContentHash(String contentHash);
+}
@@ -1,9 +1,22 @@
 package com.example.transformer_manager_backkend.repository;
 
 import com.example.transformer_manager_backkend.entity.Inspection;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
 import java.util.List;
+import java.util.Optional;
 
 public interface InspectionRepository extends JpaRepository<Inspection, Long> {
-    List<Inspection> findByTransformerRecordId(Long transformerRecordId);
+
+    // Inspections of a transformer with everything the inspection views render, in one query
+    @EntityGraph(Inspection.VIEW_GRAPH)
+    @Query("SELECT i FROM Inspection i WHERE i.transformerRecord.id = :transformerRecordId ORDER BY i.id")
+    List<Inspection> findViewsByTransformerRecordId(@Param("transformerRecordId") Long transformerRecordId);
+
+    @EntityGraph(Inspection.VIEW_GRAPH)
+    @Query("SELECT i FROM Inspection i WHERE i.id = :id")
+    Optional<Inspection> findViewById(@Param("id") Long id);
 }
@@ -0,0 +1,44 @@
+package com.example.transformer_manager_backkend.repository;
+
+import com.example.transformer_manager_backkend.entity.LabelFeedbackAggregate;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface LabelFeedbackAggregateRepository extends JpaRepository<LabelFeedbackAggregate, Long> {
+
+    List<LabelFeedbackAggregate> findAllByOrderByLabelAsc();
+
+    // Changes whenever any aggregate is written, added or removed, or the number of annotations
+    // changes (the payload reports it); used to invalidate cached feedback
+    @Query(value = "SELECT COALESCE(SUM(revision), 0) || '/' || COUNT(*) || '/' "
+            + "|| (SELECT COUNT(*) FROM annotations) FROM label_feedback_aggregates", nativeQuery = true)
+    String findAggregateStamp();
+
+    /**
+     * Add a delta to a label's running totals, creating the row on first use. The increment
+     * happens in the database, so concurrent annotation saves never overwrite each other.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO label_feedback_aggregates (label, total_count_delta, total_area_delta, "
+            + "total_orig_area, total_user_area, total_confidence_delta, sample_count, revision, updated_at) "
+            + "VALUES (:label, :countDelta, :areaDelta, :origArea, :userArea, :confidenceDelta, :samples, 1, :now) "
+            + "ON CONFLICT (label) DO UPDATE SET "
+            + "total_count_delta = label_feedback_aggregates.total_count_delta + EXCLUDED.total_count_delta, "
+            + "total_area_delta = label_feedback_aggregates.total_area_delta + EXCLUDED.total_area_delta, "
+            + "total_orig_area = label_feedback_aggregates.total_orig_area + EXCLUDED.total_orig_area, "
+            + "total_user_area = label_feedback_aggregates.total_user_area + EXCLUDED.total_user_area, "
+            + "total_confidence_delta = label_feedback_aggregates.total_confidence_delta + EXCLUDED.total_confidence_delta, "
+            + "sample_count = label_feedback_aggregates.sample_count + EXCLUDED.sample_count, "
+            + "revision = label_feedback_aggregates.revision + 1, "
+            + "updated_at = EXCLUDED.updated_at", nativeQuery = true)
+    void addToLabel(@Param("label") String label, @Param("countDelta") double countDelta,
+            @Param("areaDelta") double areaDelta, @Param("origArea") double origArea,
+            @Param("userArea") double userArea, @Param("confidenceDelta") double confidenceDelta,
+            @Param("samples") int samples, @Param("now") LocalDateTime now);
+}
@@ -1,7 +1,123 @@
 package com.example.transformer_manager_backkend.repository;
 
 import com.example.transformer_manager_backkend.entity.TransformerRecord;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 public interface TransformerRecordRepository extends JpaRepository<TransformerRecord, Long> {
-}
\ No newline at end of file
+
+    // Scalar columns plus per-record aggregates, so list pages never load images or inspections
+    String SUMMARY_SELECT = "SELECT t.id AS id, t.name AS name, t.locationName AS locationName, "
+            + "t.locationLat AS locationLat, t.locationLng AS locationLng, t.capacity AS capacity, "
+            + "t.transformerType AS transformerType, t.poleNo AS poleNo, t.starred AS starred, "
+            + "t.createdAt AS createdAt, "
+            + "(SELECT COUNT(i) FROM Image i WHERE i.transformerRecord = t) AS imageCount, "
+            + "(SELECT COUNT(ins) FROM Inspection ins WHERE ins.transformerRecord = t) AS inspectionCount, "
+            + "(SELECT MAX(COALESCE(ins.inspectionDate, ins.createdAt)) FROM Inspection ins "
+            + "WHERE ins.transformerRecord = t) AS latestInspectionDate, "
+            + "(SELECT i.filePath FROM Image i WHERE i.id = "
+            + "(SELECT MAX(i2.id) FROM Image i2 WHERE i2.transformerRecord = t)) AS thumbnailPath "
+            + "FROM TransformerRecord t ";
+
+    // Every parameter is compared with a column, so Hibernate binds it with that column's type even
+    // when it is null; inside LOWER() a null would be sent untyped, which Postgres rejects
+    String SUMMARY_FILTERS = "WHERE (:starred IS NULL OR t.starred = :starred) "
+            + "AND (:type IS NULL OR LOWER(t.transformerType) = :type) "
+            + "AND (:location IS NULL OR LOWER(t.locationName) LIKE :location ESCAPE '\\') ";
+
+    /**
+     * First page of summaries ordered by name. {@code type} is lower-cased and {@code location} is a
+     * lower-cased LIKE pattern.
+     */
+    @Query(SUMMARY_SELECT + SUMMARY_FILTERS + "ORDER BY t.name ASC, t.id ASC")
+    List<TransformerRecordSummaryRow> findSummariesByName(@Param("starred") Boolean starred,
+            @Param("type") String type, @Param("location") String location, Limit limit);
+
+    /**
+     * Page of summaries ordered by name, starting after the (afterName, afterId) key. The row-value
+     * comparison is a range condition on the (name, id) index, so later pages cost no more than the first.
+     */
+    @Query(SUMMARY_SELECT + SUMMARY_FILTERS + "AND (t.name, t.id) > (:afterName, :afterId) "
+            + "ORDER BY t.name ASC, t.id ASC")
+    List<TransformerRecordSummaryRow> findSummariesByNameAfter(@Param("starred") Boolean starred,
+            @Param("type") String type, @Param("location") String location,
+            @Param("afterName") String afterName, @Param("afterId") Long afterId, Limit limit);
+
+    /**
+     * First page of summaries, newest first. Records without a creation time (created before it
+     * was recorded) come after all others, through {@link #findSummariesWithoutCreatedAt}.
+     */
+    @Query(SUMMARY_SELECT + SUMMARY_FILTERS + "AND t.createdAt IS NOT NULL ORDER BY t.createdAt DESC, t.id DESC")
+    List<TransformerRecordSummaryRow> findSummariesByNewest(@Param("starred") Boolean starred,
+            @Param("type") String type, @Param("location") String location, Limit limit);
+
+    /**
+     * Page of summaries, newest first, starting after the (afterCreatedAt, afterId) key.
+     */
+    @Query(SUMMARY_SELECT + SUMMARY_FILTERS + "AND (t.createdAt, t.id) < (:afterCreatedAt, :afterId) "
+            + "ORDER BY t.createdAt DESC, t.id DESC")
+    List<TransformerRecordSummaryRow> findSummariesByNewestAfter(@Param("starred") Boolean starred,
+            @Param("type") String type, @Param("location") String location,
+            @Param("afterCreatedAt") LocalDateTime afterCreatedAt, @Param("afterId") Long afterId, Limit limit);
+
+    // Tail of the newest-first order: records without a creation time, by descending id below :beforeId
+    @Query(SUMMARY_SELECT + SUMMARY_FILTERS + "AND t.createdAt IS NULL AND t.id < :beforeId ORDER BY t.id DESC")
+    List<TransformerRecordSummaryRow> findSummariesWithoutCreatedAt(@Param("starred") Boolean starred,
+            @Param("type") String type, @Param("location") String location, @Param("beforeId") Long beforeId,
+            Limit limit);
+
+    // Coordinates of every placed transformer, for the in-memory location index
+    @Query("SELECT t.id AS id, t.name AS name, t.locationName AS locationName, t.locationLat AS lat, "
+            + "t.locationLng AS lng, t.starred AS starred FROM TransformerRecord t "
+            + "WHERE t.locationLat IS NOT NULL AND t.locationLng IS NOT NULL")
+    List<TransformerLocationRow> findAllLocations();
+
+    interface TransformerLocationRow {
+        Long getId();
+
+        String getName();
+
+        String getLocationName();
+
+        Double getLat();
+
+        Double getLng();
+
+        Boolean getStarred();
+    }
+
+    interface TransformerRecordSummaryRow {
+        Long getId();
+
+        String getName();
+
+        String getLocationName();
+
+        Double getLocationLat();
+
+        Double getLocationLng();
+
+        Double getCapacity();
+
+        String getTransformerType();
+
+        String getPoleNo();
+
+        Boolean getStarred();
+
+        LocalDateTime getCreatedAt();
+
+        Long getImageCount();
+
+        Long getInspectionCount();
+
+        LocalDateTime getLatestInspectionDate();
+
+        String getThumbnailPath();
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.transformer_manager_backkend.repository;
+
+import com.example.transformer_manager_backkend.entity.UploadBlob;
+import jakarta.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UploadBlobRepository extends JpaRepository<UploadBlob, String> {
+
+    // Waits for a release of the same blob in progress on any node
+    @Modifying
+    @Query("UPDATE UploadBlob b SET b.lastStoredAt = :now WHERE b.contentHash = :hash")
+    int markStored(@Param("hash") String hash, @Param("now") LocalDateTime now);
+
+    // SELECT … FOR UPDATE: held while the blob is checked for references and deleted
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM UploadBlob b WHERE b.contentHash = :hash")
+    Optional<UploadBlob> lockForRelease(@Param("hash") String hash);
+}
@@ -2,10 +2,19 @@ package com.example.transformer_manager_backkend.repository;
 
 import com.example.transformer_manager_backkend.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
 
     boolean existsByUsername(String username);
+
+    @Modifying
+    @Query("UPDATE User u SET u.tokensValidAfter = :cutoff WHERE u.username = :username")
+    int updateTokensValidAfter(@Param("username") String username, @Param("cutoff") LocalDateTime cutoff);
 }
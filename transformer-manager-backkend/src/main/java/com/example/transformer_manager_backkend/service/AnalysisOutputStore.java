@@ -0,0 +1,249 @@
+package com.example.transformer_manager_backkend.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Analysis outputs (boxed images and detection JSON) in the {@link BlobStore}, under the
+ * {@code analysis/} key prefix, so every node can serve, redraw and reuse them.
+ *
+ * <p>Each write of a job's outputs goes to a fresh revision (key
+ * {@code analysis/<revision>/<name>}, web path {@code /analysis/<revision>/<name>}) and is never
+ * rewritten: redrawing after an annotation edit stores a new revision and deletes the old one.
+ * That keeps the local copies remote stores cache valid, and lets browsers cache outputs for good.
+ *
+ * <p>Outputs from before revisions ({@code /analysis/<name>}) sit directly under the prefix. With
+ * the local store that is the directory they were always written to; with a remote store they
+ * are still read from the local analysis directory.
+ */
+@Component
+public class AnalysisOutputStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnalysisOutputStore.class);
+
+    private static final String KEY_PREFIX = "analysis/";
+    private static final String WEB_PREFIX = "/analysis/";
+    private static final Pattern REVISION = Pattern.compile("[0-9a-f]{12}");
+
+    private final BlobStore blobStore;
+    // Scratch space for outputs being decoded or redrawn before they are stored
+    private final Path workDir;
+    // Where outputs were written before they went through the blob store
+    private final Path legacyDir;
+    private final Duration directUrlTtl;
+
+    @Autowired
+    public AnalysisOutputStore(BlobStore blobStore, @Value("${upload.directory:./uploads}") String uploadDirectory,
+            @Value("${app.storage.direct-url-ttl-seconds:300}") long directUrlTtlSeconds) {
+        this(blobStore, Paths.get(uploadDirectory), Duration.ofSeconds(directUrlTtlSeconds));
+    }
+
+    AnalysisOutputStore(BlobStore blobStore, Path uploadRoot, Duration directUrlTtl) {
+        this.blobStore = blobStore;
+        this.workDir = uploadRoot.resolve("analysis-work");
+        this.legacyDir = uploadRoot.resolve("analysis");
+        this.directUrlTtl = directUrlTtl;
+    }
+
+    /**
+     * A new, empty revision to store a set of outputs under.
+     */
+    public String newRevision() {
+        return UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+    }
+
+    /**
+     * A fresh local file to write an output into before it is stored.
+     */
+    public Path newWorkFile(String prefix) throws IOException {
+        Files.createDirectories(workDir);
+        return Files.createTempFile(workDir, prefix + "_", ".part");
+    }
+
+    /**
+     * A fresh local directory for tools that write their outputs next to their input.
+     */
+    public Path newWorkDirectory(String prefix) throws IOException {
+        Files.createDirectories(workDir);
+        return Files.createTempDirectory(workDir, prefix + "_");
+    }
+
+    /**
+     * Store {@code file} as {@code name} in {@code revision}. The file is consumed.
+     *
+     * @return the web path of the stored output
+     */
+    public String store(String revision, String name, Path file) throws IOException {
+        blobStore.putFile(keyOf(revision, name), file);
+        return WEB_PREFIX + revision + "/" + name;
+    }
+
+    /**
+     * Store {@code text} as {@code name} in {@code revision}.
+     *
+     * @return the web path of the stored output
+     */
+    public String storeText(String revision, String name, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        blobStore.put(keyOf(revision, name), new ByteArrayInputStream(bytes), bytes.length);
+        return WEB_PREFIX + revision + "/" + name;
+    }
+
+    /**
+     * A local file holding the output at {@code webPath} ({@code /analysis/...}, optionally
+     * under {@code /uploads}), or empty if the path isn't an output or the output is gone.
+     * Close it once done with the path.
+     */
+    public Optional<BlobStore.LocalFile> localFile(String webPath) throws IOException {
+        Optional<String> key = keyFor(webPath);
+        if (key.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(blobStore.localFile(key.get()));
+        } catch (NoSuchFileException e) {
+            if (isRevisioned(key.get())) {
+                return Optional.empty();
+            }
+            Path legacy = legacyDir.resolve(key.get().substring(KEY_PREFIX.length()));
+            return Files.isRegularFile(legacy) ? Optional.of(BlobStore.LocalFile.of(legacy)) : Optional.empty();
+        }
+    }
+
+    /**
+     * A short-lived URL clients can fetch the output at {@code webPath} from without going
+     * through this backend, if the blob store offers one.
+     */
+    public Optional<URI> directUrl(String webPath) {
+        return keyFor(webPath).filter(AnalysisOutputStore::isRevisioned)
+                .flatMap(key -> blobStore.presignedGetUrl(key, directUrlTtl));
+    }
+
+    /**
+     * Whether the output at {@code webPath} can never change under that path.
+     */
+    public boolean isImmutable(String webPath) {
+        return keyFor(webPath).map(AnalysisOutputStore::isRevisioned).orElse(false);
+    }
+
+    /**
+     * Delete the set of outputs {@code webPath} belongs to: its whole revision, or for outputs
+     * from before revisions, the boxed image and its JSON. Paths that aren't outputs are ignored
+     * and failures are logged.
+     */
+    public void discard(String webPath) {
+        Optional<String> key = keyFor(webPath);
+        if (key.isEmpty()) {
+            return;
+        }
+        try {
+            if (isRevisioned(key.get())) {
+                String revisionPrefix = key.get().substring(0, key.get().lastIndexOf('/') + 1);
+                for (String output : blobStore.list(revisionPrefix)) {
+                    blobStore.delete(output);
+                }
+            } else {
+                String name = key.get().substring(KEY_PREFIX.length());
+                String baseName = name.contains(".") ? name.substring(0, name.lastIndexOf('.')) : name;
+                if (baseName.endsWith("_boxed")) {
+                    baseName = baseName.substring(0, baseName.length() - "_boxed".length());
+                }
+                for (String legacyName : new String[] { name, baseName + ".json" }) {
+                    blobStore.delete(KEY_PREFIX + legacyName);
+                    Files.deleteIfExists(legacyDir.resolve(legacyName));
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to delete analysis outputs {}: {}", webPath, e.getMessage());
+        }
+    }
+
+    /**
+     * Once the current transaction completes (immediately outside one), delete the outputs the
+     * job no longer points at: {@code previous} if it committed, {@code current} if it rolled back.
+     */
+    public void replaceAfterCompletion(String previous, String current) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            discard(previous);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                discard(status == STATUS_COMMITTED ? previous : current);
+            }
+        });
+    }
+
+    /**
+     * Delete a local work file or directory and everything in it. Failures are logged.
+     */
+    public void deleteWorkFiles(Path path) {
+        try (Stream<Path> files = Files.walk(path)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        } catch (NoSuchFileException e) {
+            // Already consumed
+        } catch (IOException e) {
+            logger.warn("Failed to delete analysis work files {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static String keyOf(String revision, String name) {
+        if (!REVISION.matcher(revision).matches() || !isValidName(name)) {
+            throw new IllegalArgumentException("Invalid analysis output: " + revision + "/" + name);
+        }
+        return KEY_PREFIX + revision + "/" + name;
+    }
+
+    // "/analysis/<revision>/<name>" or "/analysis/<name>", with or without "/uploads" in front
+    private static Optional<String> keyFor(String webPath) {
+        if (webPath == null) {
+            return Optional.empty();
+        }
+        String normalized = webPath.trim().replace('\\', '/');
+        while (normalized.startsWith("/")) {
+            normalized = normalized.substring(1);
+        }
+        if (normalized.startsWith("uploads/")) {
+            normalized = normalized.substring("uploads/".length());
+        }
+        if (!normalized.startsWith(KEY_PREFIX)) {
+            return Optional.empty();
+        }
+        String[] segments = normalized.substring(KEY_PREFIX.length()).split("/", -1);
+        boolean valid = segments.length == 1 ? isValidName(segments[0])
+                : segments.length == 2 && REVISION.matcher(segments[0]).matches() && isValidName(segments[1]);
+        return valid ? Optional.of(normalized) : Optional.empty();
+    }
+
+    private static boolean isRevisioned(String key) {
+        return key.indexOf('/', KEY_PREFIX.length()) > 0;
+    }
+
+    private static boolean isValidName(String name) {
+        return !name.isBlank() && !name.startsWith(".") && !name.contains("/") && !name.contains("\\")
+                && !name.contains("..");
+    }
+}
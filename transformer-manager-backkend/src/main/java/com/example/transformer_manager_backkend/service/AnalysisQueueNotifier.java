@@ -0,0 +1,166 @@
+package com.example.transformer_manager_backkend.service;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Wakes idle analysis workers when new jobs are queued. Workers on this node are signalled
+ * in-process once the queueing transaction commits; other nodes are reached through
+ * Postgres LISTEN/NOTIFY, which also only delivers on commit.
+ *
+ * <p>NOTIFY goes through the pooled datasource, but LISTEN needs a session of its own, which a
+ * transaction-mode pooler doesn't keep. The listener therefore connects to
+ * {@code app.anomaly.queue.listen-url} when set, else to the datasource URL with a Neon
+ * {@code -pooler} host swapped for the direct host.
+ */
+@Component
+public class AnalysisQueueNotifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnalysisQueueNotifier.class);
+
+    static final String CHANNEL = "analysis_jobs_queued";
+    private static final int LISTEN_TIMEOUT_MS = 10000;
+    private static final long RECONNECT_DELAY_MS = 15000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSourceProperties dataSourceProperties;
+    private final String listenUrl;
+    private final boolean notifyEnabled;
+    private final Object monitor = new Object();
+    private boolean pending;
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    public AnalysisQueueNotifier(JdbcTemplate jdbcTemplate, DataSourceProperties dataSourceProperties,
+            @Value("${app.anomaly.queue.listen-notify:true}") boolean listenNotify,
+            @Value("${app.anomaly.queue.listen-url:}") String listenUrl) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSourceProperties = dataSourceProperties;
+        this.listenUrl = listenUrl == null || listenUrl.isBlank() ? directUrl(dataSourceProperties.getUrl())
+                : listenUrl;
+        this.notifyEnabled = listenNotify && this.listenUrl != null && this.listenUrl.startsWith("jdbc:postgresql:");
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!notifyEnabled) {
+            logger.info("Cross-node queue notifications disabled; relying on in-process signals and the queue poll");
+            return;
+        }
+        running = true;
+        listenerThread = new Thread(this::listen, "analysis-queue-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    /**
+     * Announce that a job was queued. Safe to call inside the queueing transaction: local
+     * workers are only woken after commit, so they never race ahead of the new row.
+     */
+    public void publishJobQueued() {
+        if (notifyEnabled) {
+            try {
+                jdbcTemplate.execute("NOTIFY " + CHANNEL);
+            } catch (DataAccessException e) {
+                logger.warn("Failed to send queue notification: {}", e.getMessage());
+            }
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    signalLocal();
+                }
+            });
+        } else {
+            signalLocal();
+        }
+    }
+
+    /**
+     * Block until work may be available. A signal sent while no worker was waiting is kept for
+     * the next one to wait; a spurious wakeup only costs the caller an empty claim.
+     */
+    public void awaitWork() throws InterruptedException {
+        synchronized (monitor) {
+            if (!pending) {
+                monitor.wait();
+            }
+            pending = false;
+        }
+    }
+
+    /**
+     * Wake every worker on this node that is waiting for work.
+     */
+    public void signalLocal() {
+        synchronized (monitor) {
+            pending = true;
+            monitor.notifyAll();
+        }
+    }
+
+    // Neon serves the pooler on "<endpoint>-pooler.<region>" and the endpoint itself on "<endpoint>.<region>"
+    static String directUrl(String datasourceUrl) {
+        return datasourceUrl == null ? null : datasourceUrl.replaceFirst("-pooler\\.", ".");
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(listenUrl,
+                    dataSourceProperties.getUsername(), dataSourceProperties.getPassword())) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                logger.info("Listening for analysis queue notifications on channel {}", CHANNEL);
+                // Jobs may have been queued while we were disconnected
+                signalLocal();
+
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(LISTEN_TIMEOUT_MS);
+                    if (notifications != null && notifications.length > 0) {
+                        signalLocal();
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    break;
+                }
+                logger.warn("Analysis queue listener connection failed: {}", e.getMessage());
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+}
@@ -32,6 +32,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Service
 public class AnnotationService {
@@ -41,6 +42,10 @@ public class AnnotationService {
     private final AnnotationRepository annotationRepository;
     private final AnnotationBoxRepository annotationBoxRepository;
     private final AnalysisJobRepository analysisJobRepository;
+    private final ModelFeedbackService modelFeedbackService;
+    private final DetectionService detectionService;
+    private final UploadStorageService uploadStorageService;
+    private final AnalysisOutputStore analysisOutputStore;
     private final ObjectMapper objectMapper;
 
     @Value("${app.annotation.python.executable:python}")
@@ -51,10 +56,18 @@ public class AnnotationService {
 
     public AnnotationService(AnnotationRepository annotationRepository,
             AnnotationBoxRepository annotationBoxRepository,
-            AnalysisJobRepository analysisJobRepository) {
+            AnalysisJobRepository analysisJobRepository,
+            ModelFeedbackService modelFeedbackService,
+            DetectionService detectionService,
+            UploadStorageService uploadStorageService,
+            AnalysisOutputStore analysisOutputStore) {
         this.annotationRepository = annotationRepository;
         this.annotationBoxRepository = annotationBoxRepository;
         this.analysisJobRepository = analysisJobRepository;
+        this.modelFeedbackService = modelFeedbackService;
+        this.detectionService = detectionService;
+        this.uploadStorageService = uploadStorageService;
+        this.analysisOutputStore = analysisOutputStore;
         this.objectMapper = new ObjectMapper();
     }
 
@@ -89,8 +102,12 @@ public class AnnotationService {
             annotation.setAnnotatedByAdmin((Admin) annotator);
         }
 
-        // Parse original JSON and create annotation boxes
-        List<AnnotationBox> boxes = parseJsonToAnnotationBoxes(analysisJob.getResultJson());
+        // Start from the job's current detections
+        List<AnnotationBox> boxes = new ArrayList<>();
+        for (Detection detection : detectionService.getDetections(analysisJob)) {
+            boxes.add(new AnnotationBox(detection.getX(), detection.getY(), detection.getWidth(),
+                    detection.getHeight(), detection.getLabel(), detection.getConfidence()));
+        }
         annotation = annotationRepository.save(annotation);
 
         for (AnnotationBox box : boxes) {
@@ -99,6 +116,8 @@ public class AnnotationService {
         }
         annotationBoxRepository.saveAll(boxes);
         annotation.setAnnotationBoxes(boxes);
+        modelFeedbackService.recordAnnotationFeedback(annotation.getId(), annotation.getOriginalResultJson(), null,
+                annotation.getModifiedResultJson());
 
         logger.info("Created annotation for analysis job {}", analysisJobId);
         return annotation;
@@ -131,6 +150,7 @@ public class AnnotationService {
         }
 
         Annotation annotation = annotationOpt.get();
+        String previousModifiedJson = annotation.getModifiedResultJson();
 
         // Allow any user to edit for now (open access per request)
 
@@ -179,10 +199,13 @@ public class AnnotationService {
 
         annotation.setModifiedResultJson(persistedJson);
         annotation = annotationRepository.save(annotation);
+        modelFeedbackService.recordAnnotationFeedback(annotation.getId(), annotation.getOriginalResultJson(),
+                previousModifiedJson, persistedJson);
 
         AnalysisJob job = annotation.getAnalysisJob();
         if (job != null) {
             job.setResultJson(persistedJson);
+            detectionService.indexAnnotation(job, managedBoxes);
             analysisJobRepository.save(job);
         }
 
@@ -385,7 +408,7 @@ public class AnnotationService {
             root.set("originalAIDetections", detections);
             root.set("finalUserAnnotations", detections);
 
-            int boxesCount = countBoxes(detections);
+            int boxesCount = job.getDetectionCount() != null ? job.getDetectionCount() : countBoxes(detections);
 
             ArrayNode boxesArray = objectMapper.createArrayNode();
             if (detections != null && detections.has("boxes") && detections.get("boxes").isArray()) {
@@ -475,37 +498,6 @@ public class AnnotationService {
         }
     }
 
-    /**
-     * Parse JSON result to annotation boxes
-     */
-    private List<AnnotationBox> parseJsonToAnnotationBoxes(String resultJson) {
-        List<AnnotationBox> boxes = new ArrayList<>();
-        try {
-            JsonNode rootNode = objectMapper.readTree(resultJson);
-            JsonNode boxesNode = rootNode.get("boxes");
-
-            if (boxesNode != null && boxesNode.isArray()) {
-                for (JsonNode boxNode : boxesNode) {
-                    JsonNode boxArray = boxNode.get("box");
-                    if (boxArray != null && boxArray.isArray() && boxArray.size() >= 4) {
-                        int x = boxArray.get(0).asInt();
-                        int y = boxArray.get(1).asInt();
-                        int width = boxArray.get(2).asInt();
-                        int height = boxArray.get(3).asInt();
-                        String type = boxNode.get("type").asText("Unknown");
-                        Double confidence = boxNode.has("confidence") ? boxNode.get("confidence").asDouble() : null;
-
-                        AnnotationBox box = new AnnotationBox(x, y, width, height, type, confidence);
-                        boxes.add(box);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            logger.error("Error parsing JSON to annotation boxes", e);
-        }
-        return boxes;
-    }
-
     private int countBoxes(JsonNode detections) {
         if (detections == null) {
             return 0;
@@ -579,34 +571,63 @@ public class AnnotationService {
         String baseNameWithSuffix = removeExtension(fileName);
         String baseName = stripBoxedSuffix(baseNameWithSuffix);
 
-        Path analysisDir = Paths.get("uploads", "analysis");
-        Files.createDirectories(analysisDir);
-
-        Path jsonFilePath = analysisDir.resolve(baseName + ".json");
-        String boxedFileName = baseName + "_boxed" + extension;
-        Path boxedImagePath = analysisDir.resolve(boxedFileName);
-        Path originalImagePath = resolveOriginalImagePath(baseName, extension, annotation);
-
-        String adjustedJson = adjustJsonPaths(annotation, modifiedJson, originalImagePath, boxedImagePath);
-        Files.writeString(jsonFilePath, adjustedJson, StandardCharsets.UTF_8);
-        logger.info("Updated JSON file: {}", jsonFilePath);
+        // Redrawn in scratch space and stored as a new revision; stored outputs are never rewritten
+        String revision = analysisOutputStore.newRevision();
+        Path workDir = analysisOutputStore.newWorkDirectory(baseName);
+        // Blob copies the redraw reads stay pinned until it is done
+        List<BlobStore.LocalFile> pinned = new ArrayList<>();
+        try {
+            Path jsonFilePath = workDir.resolve(baseName + ".json");
+            String boxedFileName = baseName + "_boxed" + extension;
+            Path boxedImagePath = workDir.resolve(boxedFileName);
+            Path originalImagePath = resolveOriginalImagePath(baseName, extension, annotation, boxedImageWebPath,
+                    pinned);
+
+            String adjustedJson = adjustJsonPaths(annotation, modifiedJson, originalImagePath,
+                    "/analysis/" + revision + "/" + boxedFileName);
+            Files.writeString(jsonFilePath, adjustedJson, StandardCharsets.UTF_8);
+
+            List<AnnotationBox> safeBoxes = boxes != null ? boxes : Collections.emptyList();
+            boolean refreshed = refreshBoxedImageWithJava(annotation, safeBoxes, boxedImagePath, originalImagePath,
+                    extension);
+            if (!refreshed) {
+                logger.info("Falling back to Python refresh script for annotation {}", annotation.getId());
+                runRefreshScript(jsonFilePath);
+                // The script names its output after the original image
+                boxedImagePath = findRefreshedImage(workDir).orElse(boxedImagePath);
+            }
+            if (!Files.exists(boxedImagePath)) {
+                logger.warn("Boxed image for annotation {} was not redrawn; keeping the previous one",
+                        annotation.getId());
+                return modifiedJson;
+            }
 
-        List<AnnotationBox> safeBoxes = boxes != null ? boxes : Collections.emptyList();
-        boolean refreshed = refreshBoxedImageWithJava(annotation, safeBoxes, boxedImagePath, originalImagePath, extension);
-        if (!refreshed) {
-            logger.info("Falling back to Python refresh script for annotation {}", annotation.getId());
-            runRefreshScript(jsonFilePath);
-        }
+            String webBoxedPath = analysisOutputStore.store(revision, boxedFileName, boxedImagePath);
+            try {
+                analysisOutputStore.storeText(revision, baseName + ".json", adjustedJson);
+            } catch (IOException e) {
+                analysisOutputStore.discard(webBoxedPath);
+                throw e;
+            }
+            logger.info("Stored redrawn outputs for annotation {} at {}", annotation.getId(), webBoxedPath);
 
-        String webBoxedPath = "/analysis/" + boxedFileName;
-        if (job != null) {
+            analysisOutputStore.replaceAfterCompletion(boxedImageWebPath, webBoxedPath);
             job.setBoxedImagePath(webBoxedPath);
             if (job.getImage() != null) {
                 job.getImage().setFilePath(webBoxedPath);
             }
+            return adjustedJson;
+        } finally {
+            pinned.forEach(BlobStore.LocalFile::close);
+            analysisOutputStore.deleteWorkFiles(workDir);
         }
+    }
 
-        return adjustedJson;
+    private Optional<Path> findRefreshedImage(Path workDir) throws IOException {
+        try (Stream<Path> files = Files.list(workDir)) {
+            return files.filter(file -> removeExtension(file.getFileName().toString()).endsWith("_boxed"))
+                    .findFirst();
+        }
     }
 
     private JsonNode readJsonSafely(String json) {
@@ -673,31 +694,52 @@ public class AnnotationService {
         return name.endsWith("_boxed") ? name.substring(0, name.length() - "_boxed".length()) : name;
     }
 
-    private Path resolveOriginalImagePath(String baseName, String extension, Annotation annotation) {
+    private Path resolveOriginalImagePath(String baseName, String extension, Annotation annotation,
+            String boxedImageWebPath, List<BlobStore.LocalFile> pinned) {
         String ext = (extension != null && !extension.isBlank()) ? extension : ".jpg";
         if (!ext.startsWith(".")) {
             ext = "." + ext;
         }
 
+        // Content-addressed uploads are found by hash; outputs are no longer named after them
+        Image image = annotation.getAnalysisJob() != null ? annotation.getAnalysisJob().getImage() : null;
+        if (image != null && image.getContentHash() != null) {
+            try {
+                Optional<BlobStore.LocalFile> blob = uploadStorageService.locate(image.getContentHash());
+                if (blob.isPresent()) {
+                    pinned.add(blob.get());
+                    return blob.get().getPath();
+                }
+            } catch (IOException e) {
+                logger.warn("Unable to locate upload {} for annotation {}", image.getContentHash(),
+                        annotation.getId(), e);
+            }
+        }
+
         Path expectedUpload = Paths.get("uploads", baseName + ext);
         if (Files.exists(expectedUpload)) {
             return expectedUpload;
         }
 
-        Path fromJson = resolvePathFromJson(annotation);
+        Path fromJson = resolvePathFromJson(annotation, pinned);
         if (fromJson != null && Files.exists(fromJson)) {
             return fromJson;
         }
 
-        Path boxed = Paths.get("uploads", "analysis", baseName + "_boxed" + ext);
-        if (Files.exists(boxed)) {
-            return boxed;
+        try {
+            Optional<BlobStore.LocalFile> boxed = analysisOutputStore.localFile(boxedImageWebPath);
+            if (boxed.isPresent()) {
+                pinned.add(boxed.get());
+                return boxed.get().getPath();
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to read boxed image {} for annotation {}", boxedImageWebPath, annotation.getId(), e);
         }
 
         return expectedUpload;
     }
 
-    private Path resolvePathFromJson(Annotation annotation) {
+    private Path resolvePathFromJson(Annotation annotation, List<BlobStore.LocalFile> pinned) {
         if (annotation == null || annotation.getOriginalResultJson() == null) {
             return null;
         }
@@ -705,7 +747,7 @@ public class AnnotationService {
             JsonNode node = objectMapper.readTree(annotation.getOriginalResultJson());
             String imagePath = node.path("image").asText(null);
             if (imagePath != null && !imagePath.isBlank()) {
-                return toLocalPath(imagePath);
+                return toLocalPath(imagePath, pinned);
             }
         } catch (Exception e) {
             logger.warn("Unable to resolve original image path from annotation {}", annotation.getId(), e);
@@ -713,7 +755,7 @@ public class AnnotationService {
         return null;
     }
 
-    private Path toLocalPath(String rawPath) {
+    private Path toLocalPath(String rawPath, List<BlobStore.LocalFile> pinned) {
         if (rawPath == null || rawPath.isBlank()) {
             return null;
         }
@@ -731,8 +773,14 @@ public class AnnotationService {
         }
 
         if (normalized.startsWith("/analysis/")) {
-            String relative = normalized.substring(1);
-            return Paths.get("uploads", relative);
+            try {
+                Optional<BlobStore.LocalFile> output = analysisOutputStore.localFile(normalized);
+                output.ifPresent(pinned::add);
+                return output.map(BlobStore.LocalFile::getPath).orElse(null);
+            } catch (IOException e) {
+                logger.warn("Unable to read analysis output {}", normalized, e);
+                return null;
+            }
         }
 
         while (normalized.startsWith("/")) {
@@ -741,7 +789,7 @@ public class AnnotationService {
         return Paths.get(normalized);
     }
 
-    private String adjustJsonPaths(Annotation annotation, String json, Path originalImagePath, Path boxedImagePath) {
+    private String adjustJsonPaths(Annotation annotation, String json, Path originalImagePath, String boxedImagePath) {
         if (json == null || json.isBlank()) {
             return json;
         }
@@ -751,7 +799,7 @@ public class AnnotationService {
                 node.put("image", originalImagePath.toAbsolutePath().toString());
             }
             if (boxedImagePath != null) {
-                node.put("boxed_image", boxedImagePath.toAbsolutePath().toString());
+                node.put("boxed_image", boxedImagePath);
             }
             return objectMapper.writeValueAsString(node);
         } catch (Exception e) {
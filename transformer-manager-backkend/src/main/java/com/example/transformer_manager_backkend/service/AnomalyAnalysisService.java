@@ -1,42 +1,46 @@
 package com.example.transformer_manager_backkend.service;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.Base64;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.web.client.RestTemplateBuilder;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
 
 import com.example.transformer_manager_backkend.entity.AnalysisJob;
 import com.example.transformer_manager_backkend.entity.Image;
 import com.example.transformer_manager_backkend.repository.AnalysisJobRepository;
 import com.example.transformer_manager_backkend.repository.ImageRepository;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.transformer_manager_backkend.service.AnomalyInferenceClient.AnalysisResult;
+import com.example.transformer_manager_backkend.service.AnomalyInferenceClient.BatchOutcome;
+import com.example.transformer_manager_backkend.service.AnomalyInferenceClient.InferenceParameters;
 
 @Service
 public class AnomalyAnalysisService {
@@ -47,35 +51,77 @@ public class AnomalyAnalysisService {
     private final ImageRepository imageRepository;
     private final MLSettingsService mlSettingsService;
     private final ModelFeedbackService modelFeedbackService;
-    private final ObjectMapper objectMapper;
-    private final ExecutorService executorService;
-    private final RestTemplate restTemplate;
-    private final String anomalyApiUrl;
-    private final long anomalyApiTimeoutMs;
-    private final Path analysisOutputDir;
+    private final AnalysisQueueNotifier queueNotifier;
+    private final AnomalyInferenceClient inferenceClient;
+    private final InferenceResultCache resultCache;
+    private final AnalysisOutputStore outputStore;
+    private final DetectionService detectionService;
+    private final UploadStorageService uploadStorageService;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService workerPool;
+    private final InferenceConcurrencyLimiter concurrencyLimiter;
+    private final InferenceCircuitBreaker circuitBreaker;
+    private final int workerCount;
+    private final ScheduledExecutorService scheduler;
+    private final String nodeId;
+    private final long leaseDurationMs;
+    private final long idlePollMs;
+    private final int batchSize;
+    private final InferenceRetryPolicy retryPolicy;
 
     public AnomalyAnalysisService(AnalysisJobRepository analysisJobRepository, ImageRepository imageRepository,
             MLSettingsService mlSettingsService, ModelFeedbackService modelFeedbackService,
-            RestTemplateBuilder restTemplateBuilder,
-            @Value("${app.anomaly.remote.api.url:https://lasidu-automatic-anamoly-detection.hf.space/infer}") String anomalyApiUrl,
-            @Value("${app.anomaly.remote.timeout-ms:120000}") long anomalyApiTimeoutMs) {
+            AnalysisQueueNotifier queueNotifier, AnomalyInferenceClient inferenceClient,
+            InferenceResultCache resultCache, AnalysisOutputStore outputStore, DetectionService detectionService,
+            UploadStorageService uploadStorageService, TransactionTemplate transactionTemplate,
+            @Value("${app.anomaly.workers:4}") int workerCount,
+            @Value("${app.anomaly.max-in-flight:4}") int maxInFlight,
+            @Value("${app.anomaly.slow-call-ms:30000}") long slowCallThresholdMs,
+            @Value("${app.anomaly.node-id:}") String nodeId,
+            @Value("${app.anomaly.lease-ms:300000}") long leaseDurationMs,
+            @Value("${app.anomaly.queue.poll-ms:30000}") long idlePollMs,
+            @Value("${app.anomaly.batch-size:1}") int batchSize,
+            @Value("${app.anomaly.retry.max-attempts:4}") int maxAttempts,
+            @Value("${app.anomaly.retry.base-delay-ms:5000}") long retryBaseDelayMs,
+            @Value("${app.anomaly.retry.max-delay-ms:300000}") long retryMaxDelayMs,
+            @Value("${app.anomaly.circuit.failure-threshold:5}") int circuitFailureThreshold,
+            @Value("${app.anomaly.circuit.open-ms:60000}") long circuitOpenMs) {
         this.analysisJobRepository = analysisJobRepository;
         this.imageRepository = imageRepository;
         this.mlSettingsService = mlSettingsService;
         this.modelFeedbackService = modelFeedbackService;
-        this.objectMapper = new ObjectMapper();
-        this.executorService = Executors.newSingleThreadExecutor();
-        this.anomalyApiUrl = anomalyApiUrl;
-        this.anomalyApiTimeoutMs = anomalyApiTimeoutMs;
-        this.analysisOutputDir = Paths.get("uploads", "analysis");
-        this.restTemplate = restTemplateBuilder
-                .setConnectTimeout(Duration.ofMillis(anomalyApiTimeoutMs))
-                .setReadTimeout(Duration.ofMillis(anomalyApiTimeoutMs))
-                .build();
+        this.queueNotifier = queueNotifier;
+        this.inferenceClient = inferenceClient;
+        this.resultCache = resultCache;
+        this.outputStore = outputStore;
+        this.detectionService = detectionService;
+        this.uploadStorageService = uploadStorageService;
+        this.transactionTemplate = transactionTemplate;
+        this.idlePollMs = Math.max(1000, idlePollMs);
+        this.batchSize = Math.max(1, batchSize);
+        this.workerCount = Math.max(1, workerCount);
+        this.workerPool = Executors.newFixedThreadPool(this.workerCount, new WorkerThreadFactory());
+        this.concurrencyLimiter = new InferenceConcurrencyLimiter(maxInFlight, slowCallThresholdMs);
+        this.circuitBreaker = new InferenceCircuitBreaker(circuitFailureThreshold, circuitOpenMs);
+        this.retryPolicy = new InferenceRetryPolicy(maxAttempts, retryBaseDelayMs, retryMaxDelayMs);
+        this.nodeId = nodeId == null || nodeId.isBlank() ? defaultNodeId() : nodeId;
+        this.leaseDurationMs = Math.max(30000, leaseDurationMs);
+        // Polls the queue, renews leases and wakes workers when a retry backoff ends
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "analysis-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
 
         startQueueProcessor();
     }
 
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        workerPool.shutdownNow();
+    }
+
     /**
      * Queue an image for anomaly analysis.
      */
@@ -84,28 +130,45 @@ public class AnomalyAnalysisService {
         Optional<AnalysisJob> existingJob = analysisJobRepository.findByImage(image);
         if (existingJob.isPresent()) {
             logger.info("Analysis job already exists for image {}", image.getId());
-            return existingJob.get();
+            return withQueuePositions(existingJob.get());
         }
 
-        AnalysisJob job = new AnalysisJob(image);
-        Long queuedCount = analysisJobRepository.countByStatus(AnalysisJob.AnalysisStatus.QUEUED);
-        job.setQueuePosition(queuedCount.intValue() + 1);
-
-        AnalysisJob savedJob = analysisJobRepository.save(job);
+        AnalysisJob savedJob = analysisJobRepository.save(new AnalysisJob(image));
+        queueNotifier.publishJobQueued();
         logger.info("Queued image {} for analysis with job ID {}", image.getId(), savedJob.getId());
-        return savedJob;
+        return withQueuePositions(savedJob);
+    }
+
+    /**
+     * Queue every image in {@code images} that has no analysis job yet, with one insert and one
+     * queue notification however many images there are.
+     *
+     * @return how many jobs were queued
+     */
+    @Transactional
+    public int queueImagesForAnalysis(Collection<Image> images) {
+        List<Long> imageIds = images.stream().map(Image::getId).filter(Objects::nonNull).toList();
+        if (imageIds.isEmpty()) {
+            return 0;
+        }
+        int queued = analysisJobRepository.enqueueImages(imageIds, LocalDateTime.now());
+        if (queued > 0) {
+            queueNotifier.publishJobQueued();
+        }
+        logger.info("Queued {} of {} images for analysis", queued, imageIds.size());
+        return queued;
     }
 
     public Optional<AnalysisJob> getAnalysisJobByImage(Image image) {
-        return analysisJobRepository.findByImage(image);
+        return analysisJobRepository.findByImage(image).map(this::withQueuePositions);
     }
 
     public Optional<AnalysisJob> getAnalysisJobById(Long jobId) {
-        return analysisJobRepository.findById(jobId);
+        return analysisJobRepository.findById(jobId).map(this::withQueuePositions);
     }
 
     public List<AnalysisJob> getAnalysisJobsByInspection(Long inspectionId) {
-        return analysisJobRepository.findByInspectionId(inspectionId);
+        return withQueuePositions(analysisJobRepository.findByInspectionId(inspectionId));
     }
 
     public QueueStatus getQueueStatus() {
@@ -114,80 +177,472 @@ public class AnomalyAnalysisService {
         return new QueueStatus(queuedCount, processingCount);
     }
 
+    private AnalysisJob withQueuePositions(AnalysisJob job) {
+        withQueuePositions(List.of(job));
+        return job;
+    }
+
+    /**
+     * Fill in the transient queue position of queued jobs: one plus the number of due queued jobs
+     * ahead of them, counted in one query for the whole list instead of renumbering every queued
+     * row whenever a job finishes.
+     */
+    private List<AnalysisJob> withQueuePositions(List<AnalysisJob> jobs) {
+        List<Long> queuedIds = jobs.stream().filter(job -> job.getStatus() == AnalysisJob.AnalysisStatus.QUEUED)
+                .map(AnalysisJob::getId).toList();
+        Map<Long, Long> ahead = new HashMap<>();
+        if (!queuedIds.isEmpty()) {
+            for (Object[] row : analysisJobRepository.findJobsAhead(queuedIds, LocalDateTime.now())) {
+                ahead.put((Long) row[0], (Long) row[1]);
+            }
+        }
+        for (AnalysisJob job : jobs) {
+            Long jobsAhead = job.getStatus() == AnalysisJob.AnalysisStatus.QUEUED ? ahead.get(job.getId()) : null;
+            job.setQueuePosition(jobsAhead == null ? null : (int) (jobsAhead + 1));
+        }
+        return jobs;
+    }
+
+    /**
+     * Start one loop per worker. Each loop takes an in-flight permit before claiming a job, so a
+     * slow endpoint automatically throttles how many jobs are pulled off the queue. Idle workers
+     * only claim when signalled; a single poller per node stands in for missed signals.
+     */
     private void startQueueProcessor() {
-        CompletableFuture.runAsync(() -> {
-            while (!Thread.currentThread().isInterrupted()) {
+        logger.info("Starting {} analysis workers on node {} (max in-flight: {})", workerCount, nodeId,
+                concurrencyLimiter.getCurrentLimit());
+        for (int i = 0; i < workerCount; i++) {
+            workerPool.submit(this::runWorkerLoop);
+        }
+        scheduler.scheduleWithFixedDelay(this::pollQueue, idlePollMs, idlePollMs, TimeUnit.MILLISECONDS);
+        long heartbeatMs = leaseDurationMs / 3;
+        scheduler.scheduleWithFixedDelay(this::renewLeases, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Safety net for jobs no signal announced: queued by a node whose notification was lost, or
+     * left behind by a lapsed lease. One cheap check per node, and workers are only woken if it
+     * finds something to claim.
+     */
+    private void pollQueue() {
+        try {
+            if (analysisJobRepository.existsClaimableJob(LocalDateTime.now(), retryPolicy.getMaxAttempts())) {
+                queueNotifier.signalLocal();
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to poll the analysis queue: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Keep the leases of in-flight jobs alive so other nodes don't reclaim them mid-inference,
+     * and fail lapsed jobs that have no attempts left.
+     */
+    private void renewLeases() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            // Every claimed job holds an in-flight permit until its outcome is recorded
+            if (concurrencyLimiter.getInFlight() > 0) {
+                int renewed = analysisJobRepository.renewLeases(nodeId, now.plus(Duration.ofMillis(leaseDurationMs)));
+                if (renewed > 0) {
+                    logger.debug("Renewed {} analysis job leases for node {}", renewed, nodeId);
+                }
+            }
+            int abandoned = analysisJobRepository.failAbandonedJobs(now, retryPolicy.getMaxAttempts());
+            if (abandoned > 0) {
+                logger.warn("Failed {} analysis jobs whose lease lapsed after their last attempt", abandoned);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to renew analysis job leases: {}", e.getMessage());
+        }
+    }
+
+    private void runWorkerLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                concurrencyLimiter.acquire();
+                // Leave jobs queued while the endpoint is down rather than burning their attempts
+                boolean circuitOpen = !circuitBreaker.allowRequest();
+                boolean dispatched = false;
+                try {
+                    dispatched = !circuitOpen && dispatchNextJob();
+                } finally {
+                    // A dispatched call returns its permit when it completes; an empty poll returns it now
+                    if (!dispatched) {
+                        concurrencyLimiter.release();
+                    }
+                }
+                if (circuitOpen) {
+                    Thread.sleep(Math.max(1000, circuitBreaker.millisUntilRetry()));
+                } else if (!dispatched) {
+                    // Woken by new jobs, ended backoffs and the queue poll
+                    queueNotifier.awaitWork();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                logger.error("Error in queue processor", e);
                 try {
-                    processNextJob();
-                    Thread.sleep(5000);
-                } catch (InterruptedException e) {
+                    Thread.sleep(10000);
+                } catch (InterruptedException ie) {
                     Thread.currentThread().interrupt();
                     break;
-                } catch (Exception e) {
-                    logger.error("Error in queue processor", e);
-                    try {
-                        Thread.sleep(10000);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        break;
-                    }
                 }
             }
-        }, executorService);
+        }
     }
 
-    @Transactional
-    private void processNextJob() {
-        Optional<AnalysisJob> nextJob = analysisJobRepository.findNextQueuedJob();
+    /**
+     * Claim the oldest queued job, plus up to {@code batchSize - 1} more queued jobs from the same
+     * inspection, and start one asynchronous remote call for them. The worker does not wait for
+     * the model: it goes back for the next job as soon as another in-flight permit is free.
+     *
+     * @return false if the queue was empty
+     */
+    private boolean dispatchNextJob() {
+        Optional<AnalysisJob> nextJob = claimNextJob();
         if (nextJob.isEmpty()) {
-            return;
+            return false;
         }
 
-        AnalysisJob job = nextJob.get();
-        logger.info("Processing analysis job {}", job.getId());
+        List<AnalysisJob> jobs = new ArrayList<>();
+        jobs.add(nextJob.get());
+        jobs.addAll(claimBatchCompanions(nextJob.get()));
 
-        job.setStatus(AnalysisJob.AnalysisStatus.PROCESSING);
-        job.setStartedAt(LocalDateTime.now());
-        analysisJobRepository.save(job);
+        long started = System.currentTimeMillis();
+        CompletableFuture<Void> call = jobs.size() == 1 ? dispatchSingleJob(jobs.get(0)) : dispatchBatch(jobs);
+        call.whenComplete((ignored, error) -> concurrencyLimiter.release(System.currentTimeMillis() - started));
+        return true;
+    }
 
+    private CompletableFuture<Void> dispatchSingleJob(AnalysisJob job) {
+        logger.info("Worker {} dispatching analysis job {}", Thread.currentThread().getName(), job.getId());
+        BlobStore.LocalFile image = null;
         try {
-            AnalysisResult result = runAnomalyAnalysis(job.getImage());
-            job.getImage().setFilePath(result.getBoxedImagePath());
-            imageRepository.save(job.getImage());
-
-            job.setResultJson(result.getJsonResult());
-            job.setBoxedImagePath(result.getBoxedImagePath());
-            job.setStatus(AnalysisJob.AnalysisStatus.COMPLETED);
-            job.setCompletedAt(LocalDateTime.now());
+            image = resolveImagePath(job.getImage());
+            Path imagePath = image.getPath();
+            InferenceParameters parameters = buildInferenceParameters();
+            Optional<String> cacheKey = cacheKeyFor(job.getImage(), imagePath, parameters);
+            if (completeFromCache(job, imagePath, cacheKey)) {
+                image.close();
+                return CompletableFuture.completedFuture(null);
+            }
 
-            logger.info("Completed analysis job {} with label: {}", job.getId(), result.getLabel());
+            // The image stays pinned until the call, hedged copies included, is over
+            BlobStore.LocalFile pinned = image;
+            return inferenceClient.analyzeAsync(imagePath, outputNameFor(job.getImage(), imagePath), parameters,
+                    concurrencyLimiter).<Void>handle((result, error) -> {
+                        if (error != null) {
+                            logger.error("Failed to process analysis job {}", job.getId(), unwrap(error));
+                            recordCallFailure(unwrap(error));
+                            retryOrFail(job, unwrap(error));
+                        } else {
+                            circuitBreaker.recordSuccess();
+                            cacheResult(cacheKey, result);
+                            completeJob(job, result);
+                        }
+                        return null;
+                    }).whenComplete((ignored, error) -> pinned.close());
         } catch (Exception e) {
+            if (image != null) {
+                image.close();
+            }
             logger.error("Failed to process analysis job {}", job.getId(), e);
+            failJob(job, e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private CompletableFuture<Void> dispatchBatch(List<AnalysisJob> jobs) {
+        logger.info("Worker {} dispatching {} analysis jobs as one batch: {}", Thread.currentThread().getName(),
+                jobs.size(), jobs.stream().map(AnalysisJob::getId).toList());
+
+        InferenceParameters parameters;
+        try {
+            parameters = buildInferenceParameters();
+        } catch (Exception e) {
+            logger.error("Failed to process analysis batch {}", jobs.stream().map(AnalysisJob::getId).toList(), e);
+            jobs.forEach(job -> failJob(job, e.getMessage()));
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // A missing original only fails its own job, and cached images never reach the endpoint
+        List<AnalysisJob> runnable = new ArrayList<>();
+        List<BlobStore.LocalFile> images = new ArrayList<>();
+        List<Path> imagePaths = new ArrayList<>();
+        List<String> outputNames = new ArrayList<>();
+        List<Optional<String>> cacheKeys = new ArrayList<>();
+        for (AnalysisJob job : jobs) {
+            BlobStore.LocalFile image = null;
+            try {
+                image = resolveImagePath(job.getImage());
+                Path imagePath = image.getPath();
+                Optional<String> cacheKey = cacheKeyFor(job.getImage(), imagePath, parameters);
+                if (completeFromCache(job, imagePath, cacheKey)) {
+                    image.close();
+                } else {
+                    images.add(image);
+                    imagePaths.add(imagePath);
+                    outputNames.add(outputNameFor(job.getImage(), imagePath));
+                    cacheKeys.add(cacheKey);
+                    runnable.add(job);
+                }
+            } catch (IOException e) {
+                if (image != null) {
+                    image.close();
+                }
+                logger.error("Failed to process analysis job {}", job.getId(), e);
+                failJob(job, e.getMessage());
+            }
+        }
+        if (runnable.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        try {
+            return inferenceClient.analyzeBatchAsync(imagePaths, outputNames, parameters)
+                    .<Void>handle((outcomes, error) -> {
+                        if (error != null) {
+                            logger.error("Failed to process analysis batch {}",
+                                    runnable.stream().map(AnalysisJob::getId).toList(), unwrap(error));
+                            recordCallFailure(unwrap(error));
+                            runnable.forEach(job -> retryOrFail(job, unwrap(error)));
+                            return null;
+                        }
+                        circuitBreaker.recordSuccess();
+                        for (int i = 0; i < runnable.size(); i++) {
+                            BatchOutcome outcome = outcomes.get(i);
+                            if (outcome.isSuccess()) {
+                                cacheResult(cacheKeys.get(i), outcome.getResult());
+                                completeJob(runnable.get(i), outcome.getResult());
+                            } else {
+                                logger.error("Failed to process analysis job {}: {}", runnable.get(i).getId(),
+                                        outcome.getErrorMessage());
+                                failJob(runnable.get(i), outcome.getErrorMessage());
+                            }
+                        }
+                        return null;
+                    }).whenComplete((ignored, error) -> images.forEach(BlobStore.LocalFile::close));
+        } catch (Exception e) {
+            images.forEach(BlobStore.LocalFile::close);
+            logger.error("Failed to process analysis batch {}", runnable.stream().map(AnalysisJob::getId).toList(), e);
+            runnable.forEach(job -> failJob(job, e.getMessage()));
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * Complete {@code job} from a cached result of an identical image and identical settings.
+     *
+     * @return false on a cache miss, or if the cached files could not be reused
+     */
+    private boolean completeFromCache(AnalysisJob job, Path imagePath, Optional<String> cacheKey) {
+        Optional<InferenceResultCache.CachedResult> cached = cacheKey.flatMap(resultCache::get);
+        if (cached.isEmpty()) {
+            return false;
+        }
+        try (InferenceResultCache.CachedResult hit = cached.get()) {
+            AnalysisResult result = inferenceClient.storeCachedResult(outputNameFor(job.getImage(), imagePath),
+                    hit.getLabel(), hit.getBoxedImage(), hit.getJsonResult());
+            logger.info("Analysis job {} served from the inference cache", job.getId());
+            completeJob(job, result);
+            return true;
+        } catch (IOException e) {
+            logger.warn("Could not reuse cached result for analysis job {}: {}", job.getId(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void cacheResult(Optional<String> cacheKey, AnalysisResult result) {
+        if (cacheKey.isEmpty()) {
+            return;
+        }
+        try {
+            Optional<BlobStore.LocalFile> boxedImage = outputStore.localFile(result.getBoxedImagePath());
+            if (boxedImage.isPresent()) {
+                try (BlobStore.LocalFile file = boxedImage.get()) {
+                    resultCache.put(cacheKey.get(), result.getLabel(), result.getJsonResult(), file.getPath());
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not cache result {}: {}", result.getBoxedImagePath(), e.getMessage());
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof UncheckedIOException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private void completeJob(AnalysisJob job, AnalysisResult result) {
+        String previousOutput = job.getBoxedImagePath();
+        boolean recorded = false;
+        try {
+            recorded = finishJob(job, () -> {
+                job.getImage().setFilePath(result.getBoxedImagePath());
+                imageRepository.save(job.getImage());
+
+                job.setResultJson(result.getJsonResult());
+                job.setBoxedImagePath(result.getBoxedImagePath());
+                detectionService.indexModelResult(job, result.getJsonResult());
+                job.setStatus(AnalysisJob.AnalysisStatus.COMPLETED);
+                job.setCompletedAt(LocalDateTime.now());
+                job.setErrorMessage(null);
+            });
+            if (recorded) {
+                logger.info("Completed analysis job {} with label: {}", job.getId(), result.getLabel());
+            }
+        } catch (Exception e) {
+            // Runs on a response thread, so nothing upstream would log this
+            logger.error("Failed to record result of analysis job {}", job.getId(), e);
+            failJob(job, e.getMessage());
+        }
+        // Delete whichever outputs the job doesn't point at: the replaced ones, or these if discarded
+        outputStore.discard(recorded ? previousOutput : result.getBoxedImagePath());
+    }
+
+    /**
+     * Only failures of the endpoint itself count towards opening the circuit; a request the
+     * endpoint rejected shows it is up.
+     */
+    private void recordCallFailure(Throwable error) {
+        if (InferenceRetryPolicy.isRetryable(error)) {
+            circuitBreaker.recordFailure();
+        } else {
+            circuitBreaker.recordSuccess();
+        }
+    }
+
+    /**
+     * Put a job whose remote call failed transiently back on the queue with an exponential
+     * backoff, or fail it once its attempts are used up. The attempt count is bumped by the
+     * claim, so it already includes the call that just failed.
+     */
+    private void retryOrFail(AnalysisJob job, Throwable error) {
+        int attempts = job.getAttemptCount() != null ? job.getAttemptCount() : 1;
+        if (!retryPolicy.shouldRetry(attempts, error)) {
+            failJob(job, error.getMessage());
+            return;
+        }
+
+        long delayMs = retryPolicy.backoffDelayMs(attempts);
+        boolean recorded = finishJob(job, () -> {
+            job.setStatus(AnalysisJob.AnalysisStatus.QUEUED);
+            job.setStartedAt(null);
+            job.setNextAttemptAt(LocalDateTime.now().plus(Duration.ofMillis(delayMs)));
+            job.setErrorMessage("Attempt " + attempts + " of " + retryPolicy.getMaxAttempts() + " failed, retrying: "
+                    + error.getMessage());
+        });
+        if (!recorded) {
+            return;
+        }
+        logger.warn("Analysis job {} will be retried in {} ms (attempt {} of {})", job.getId(), delayMs, attempts,
+                retryPolicy.getMaxAttempts());
+        // Idle workers only poll occasionally, so wake them when the backoff ends
+        scheduler.schedule(queueNotifier::signalLocal, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void failJob(AnalysisJob job, String errorMessage) {
+        finishJob(job, () -> {
             job.setStatus(AnalysisJob.AnalysisStatus.FAILED);
-            job.setErrorMessage(e.getMessage());
+            job.setErrorMessage(errorMessage);
             job.setCompletedAt(LocalDateTime.now());
-        } finally {
+        });
+    }
+
+    /**
+     * Record the outcome of a job claimed by this node and release its lease, in one transaction
+     * that first checks the lease taken by this claim is still held. If it lapsed and the job was
+     * reclaimed, by another node or by this one, nothing is written, so a slow worker can't
+     * overwrite the newer run.
+     *
+     * @return false if the lease was lost and the outcome discarded
+     */
+    private boolean finishJob(AnalysisJob job, Runnable recordOutcome) {
+        boolean recorded = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            // The attempt count read right after the claim identifies it
+            int attempt = job.getAttemptCount() != null ? job.getAttemptCount() : 0;
+            if (analysisJobRepository.confirmLease(job.getId(), nodeId, attempt, LocalDateTime.now()) == 0) {
+                return false;
+            }
+            recordOutcome.run();
+            job.setLeaseOwner(null);
+            job.setLeaseExpiresAt(null);
             analysisJobRepository.save(job);
-            updateQueuePositions();
+            return true;
+        }));
+        if (!recorded) {
+            logger.warn("Discarded outcome of analysis job {}: its lease was lost to another worker", job.getId());
         }
+        return recorded;
     }
 
-    @Transactional
-    private void updateQueuePositions() {
-        List<AnalysisJob> queuedJobs = analysisJobRepository
-                .findByStatusOrderByCreatedAtAsc(AnalysisJob.AnalysisStatus.QUEUED);
-        for (int i = 0; i < queuedJobs.size(); i++) {
-            AnalysisJob job = queuedJobs.get(i);
-            job.setQueuePosition(i + 1);
-            analysisJobRepository.save(job);
+    /**
+     * Claim the head of the queue in a single statement. The row lock taken by the claim is
+     * skipped by other workers and nodes, and a lapsed lease (e.g. a crashed node) makes the
+     * job claimable again.
+     */
+    private Optional<AnalysisJob> claimNextJob() {
+        LocalDateTime now = LocalDateTime.now();
+        Optional<Long> claimedId = analysisJobRepository.claimNextQueuedJob(nodeId, now,
+                now.plus(Duration.ofMillis(leaseDurationMs)), retryPolicy.getMaxAttempts());
+        return claimedId.flatMap(analysisJobRepository::findById);
+    }
+
+    private List<AnalysisJob> claimBatchCompanions(AnalysisJob head) {
+        if (batchSize <= 1 || head.getImage().getInspection() == null) {
+            return List.of();
         }
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> claimedIds = analysisJobRepository.claimQueuedJobsForInspection(nodeId, now,
+                now.plus(Duration.ofMillis(leaseDurationMs)), head.getImage().getInspection().getId(),
+                batchSize - 1);
+        if (claimedIds.isEmpty()) {
+            return List.of();
+        }
+        return analysisJobRepository.findAllById(claimedIds);
+    }
+
+    private static String defaultNodeId() {
+        // RuntimeMXBean name is "pid@hostname"; the suffix keeps restarts with a reused pid distinct
+        return ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    // Content-addressed uploads already carry the hash of their bytes
+    private Optional<String> cacheKeyFor(Image image, Path imagePath, InferenceParameters parameters) {
+        return image.getContentHash() != null ? resultCache.keyFor(image.getContentHash(), parameters)
+                : resultCache.keyFor(imagePath, parameters);
     }
 
     /**
-     * Call the Hugging Face Space API and persist returned assets locally.
+     * Name of the boxed image and JSON written for {@code image}. Images sharing an upload blob
+     * get their own outputs, since annotations redraw them per image.
      */
-    private AnalysisResult runAnomalyAnalysis(Image image) throws IOException {
+    private static String outputNameFor(Image image, Path imagePath) {
+        if (image.getContentHash() != null) {
+            return image.getContentHash().substring(0, 16) + "_" + image.getId();
+        }
+        String fileName = imagePath.getFileName().toString();
+        return fileName.contains(".") ? fileName.substring(0, fileName.lastIndexOf('.')) : fileName;
+    }
+
+    // Close the returned file once the image has been read
+    private BlobStore.LocalFile resolveImagePath(Image image) throws IOException {
+        if (image.getContentHash() != null) {
+            return uploadStorageService.locate(image.getContentHash())
+                    .orElseThrow(() -> new IOException("Original image blob not found: " + image.getContentHash()));
+        }
         String imageFilePath = image.getFilePath();
+        // Analysed before: the file is now the boxed output
+        Optional<BlobStore.LocalFile> output = outputStore.localFile(imageFilePath);
+        if (output.isPresent()) {
+            return output.get();
+        }
         if (imageFilePath.startsWith("/uploads/")) {
             imageFilePath = imageFilePath.substring("/uploads/".length());
         }
@@ -196,11 +651,14 @@ public class AnomalyAnalysisService {
         if (!Files.exists(originalImagePath)) {
             throw new IOException("Original image file not found: " + originalImagePath.toAbsolutePath());
         }
+        return BlobStore.LocalFile.of(originalImagePath);
+    }
 
-        byte[] imageBytes = Files.readAllBytes(originalImagePath);
-        String fileName = originalImagePath.getFileName().toString();
-        String baseName = fileName.contains(".") ? fileName.substring(0, fileName.lastIndexOf('.')) : fileName;
-
+    /**
+     * Snapshot the sensitivity and feedback adjustments once per remote call; every image in a
+     * batch is analysed with the same parameters.
+     */
+    private InferenceParameters buildInferenceParameters() {
         double sensitivity = mlSettingsService.getDetectionSensitivity();
         double learningRate = mlSettingsService.getFeedbackLearningRate();
         ModelFeedbackService.FeedbackPayload feedbackPayload = modelFeedbackService.buildFeedbackPayload(learningRate);
@@ -221,72 +679,18 @@ public class AnomalyAnalysisService {
             logger.info("No user feedback adjustments available yet.");
         }
 
-        MultiValueMap<String, Object> formData = new LinkedMultiValueMap<>();
-        formData.add("file", asFileResource(imageBytes, fileName));
-        formData.add("sensitivity", String.format(Locale.US, "%.4f", sensitivity));
-        formData.add("feedback_json", feedbackPayload.toJsonString());
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
-
-        HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(formData, headers);
-
-        logger.info("Calling remote anomaly API: {}", anomalyApiUrl);
-        ResponseEntity<String> response = restTemplate.exchange(
-                anomalyApiUrl,
-                HttpMethod.POST,
-                requestEntity,
-                String.class);
-
-        if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
-            throw new IOException("Remote inference failed with status " + response.getStatusCode());
-        }
-
-        JsonNode payload = objectMapper.readTree(response.getBody());
-        if (payload.hasNonNull("detail")) {
-            throw new IOException("Remote inference error: " + payload.get("detail").asText());
-        }
-
-        String boxedBase64 = payload.path("boxed_image_base64").asText(null);
-        String boxedExt = payload.path("boxed_image_ext").asText(".png");
-        String label = payload.path("label").asText("unknown");
-        String jsonText = payload.hasNonNull("json_text")
-                ? payload.get("json_text").asText()
-                : objectMapper.writeValueAsString(payload.path("json"));
+        return new InferenceParameters(sensitivity, feedbackPayload.toJsonString(), feedbackPayload.getFingerprint());
+    }
 
-        if (boxedBase64 == null || boxedBase64.isBlank()) {
-            throw new IOException("Remote inference did not return a boxed image payload.");
-        }
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
 
-        byte[] boxedBytes;
-        try {
-            boxedBytes = Base64.getDecoder().decode(boxedBase64);
-        } catch (IllegalArgumentException ex) {
-            throw new IOException("Failed to decode boxed image from API", ex);
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "analysis-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
         }
-
-        Files.createDirectories(analysisOutputDir);
-        String boxedFileName = baseName + "_boxed" + boxedExt;
-        Path boxedImagePath = analysisOutputDir.resolve(boxedFileName);
-        Files.write(boxedImagePath, boxedBytes);
-
-        String jsonFileName = baseName + ".json";
-        Path jsonOutputPath = analysisOutputDir.resolve(jsonFileName);
-        Files.writeString(jsonOutputPath, jsonText, StandardCharsets.UTF_8);
-
-        String webBoxedPath = "/analysis/" + boxedFileName;
-        String webJsonPath = "/analysis/" + jsonFileName;
-
-        return new AnalysisResult(label, webBoxedPath, jsonText, webJsonPath);
-    }
-
-    private ByteArrayResource asFileResource(byte[] data, String filename) {
-        return new ByteArrayResource(data) {
-            @Override
-            public String getFilename() {
-                return filename;
-            }
-        };
     }
 
     public static class QueueStatus {
@@ -306,34 +710,4 @@ public class AnomalyAnalysisService {
             return processingCount;
         }
     }
-
-    public static class AnalysisResult {
-        private final String label;
-        private final String boxedImagePath;
-        private final String jsonResult;
-        private final String jsonPath;
-
-        public AnalysisResult(String label, String boxedImagePath, String jsonResult, String jsonPath) {
-            this.label = label;
-            this.boxedImagePath = boxedImagePath;
-            this.jsonResult = jsonResult;
-            this.jsonPath = jsonPath;
-        }
-
-        public String getLabel() {
-            return label;
-        }
-
-        public String getBoxedImagePath() {
-            return boxedImagePath;
-        }
-
-        public String getJsonResult() {
-            return jsonResult;
-        }
-
-        public String getJsonPath() {
-            return jsonPath;
-        }
-    }
 }
@@ -0,0 +1,637 @@
+package com.example.transformer_manager_backkend.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Client for the remote PatchCore inference API (the Hugging Face Space). Sends images to
+ * {@code /infer} or, several at a time, to {@code /infer_batch}, and stores the returned
+ * boxed image and detection JSON in the {@link AnalysisOutputStore}.
+ *
+ * <p>Calls are non-blocking: they return as soon as the request is handed to the shared
+ * {@link HttpClient}, which keeps connections alive between calls and negotiates HTTP/2 when
+ * the endpoint supports it. Callers bound the number of calls in flight.
+ *
+ * <p>With hedging enabled, a single-image call that is still outstanding after the observed
+ * p95 latency is sent a second time, if the caller's concurrency limit has room for it, and
+ * whichever response arrives first wins, which trims the tail when one replica of the Space
+ * stalls.
+ */
+@Component
+public class AnomalyInferenceClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnomalyInferenceClient.class);
+
+    private final HttpClient httpClient;
+    private final ExecutorService responseExecutor;
+    private final ObjectMapper objectMapper;
+    private final URI anomalyApiUri;
+    private final URI batchApiUri;
+    private final Duration readTimeout;
+    private final AnalysisOutputStore outputStore;
+    private final boolean hedgingEnabled;
+    private final long hedgeMinDelayMs;
+    private final LatencyWindow latencyWindow = new LatencyWindow(200);
+
+    @Autowired
+    public AnomalyInferenceClient(
+            @Value("${app.anomaly.remote.api.url:https://lasidu-automatic-anamoly-detection.hf.space/infer}") String anomalyApiUrl,
+            @Value("${app.anomaly.remote.batch-url:}") String batchApiUrl,
+            @Value("${app.anomaly.remote.connect-timeout-ms:10000}") long connectTimeoutMs,
+            @Value("${app.anomaly.remote.timeout-ms:120000}") long readTimeoutMs,
+            @Value("${app.anomaly.remote.http2:true}") boolean http2, AnalysisOutputStore outputStore,
+            @Value("${app.anomaly.remote.hedge.enabled:false}") boolean hedgingEnabled,
+            @Value("${app.anomaly.remote.hedge.min-delay-ms:5000}") long hedgeMinDelayMs) {
+        this(anomalyApiUrl, batchApiUrl, Duration.ofMillis(connectTimeoutMs), Duration.ofMillis(readTimeoutMs),
+                http2, outputStore, hedgingEnabled, hedgeMinDelayMs);
+    }
+
+    AnomalyInferenceClient(String anomalyApiUrl, String batchApiUrl, Duration connectTimeout, Duration readTimeout,
+            boolean http2, AnalysisOutputStore outputStore, boolean hedgingEnabled, long hedgeMinDelayMs) {
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.responseExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "inference-http-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.httpClient = HttpClient.newBuilder()
+                .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .executor(responseExecutor)
+                .build();
+        this.objectMapper = new ObjectMapper();
+        this.anomalyApiUri = URI.create(anomalyApiUrl);
+        this.batchApiUri = URI.create(batchApiUrl == null || batchApiUrl.isBlank() ? defaultBatchUrl(anomalyApiUrl)
+                : batchApiUrl);
+        this.readTimeout = readTimeout;
+        this.outputStore = outputStore;
+        this.hedgingEnabled = hedgingEnabled;
+        this.hedgeMinDelayMs = Math.max(0, hedgeMinDelayMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        responseExecutor.shutdownNow();
+    }
+
+    /**
+     * Run inference for a single image. The boxed image and JSON are stored as
+     * {@code <outputName>_boxed.<ext>} and {@code <outputName>.json} in a new revision. A hedged
+     * second request only goes out if {@code concurrencyLimiter} has a free slot for it.
+     */
+    public CompletableFuture<AnalysisResult> analyzeAsync(Path imagePath, String outputName,
+            InferenceParameters parameters, InferenceConcurrencyLimiter concurrencyLimiter) {
+        long started = System.nanoTime();
+        CompletableFuture<AnalysisResult> call = hedged(() -> sendSingle(imagePath, outputName, parameters),
+                concurrencyLimiter, loser -> outputStore.discard(loser.getBoxedImagePath()));
+        call.thenRun(() -> latencyWindow.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)));
+        return call;
+    }
+
+    private CompletableFuture<AnalysisResult> sendSingle(Path imagePath, String outputName,
+            InferenceParameters parameters) {
+        MultipartBodyPublisher body = new MultipartBodyPublisher();
+        try {
+            body.addFile("file", imagePath);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        addParameters(body, parameters);
+
+        logger.info("Calling remote anomaly API: {}", anomalyApiUri);
+        return post(anomalyApiUri, readTimeout, body, parser -> {
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+            return storeResult(outputName, readItem(parser, outputName));
+        }, result -> outputStore.discard(result.getBoxedImagePath()));
+    }
+
+    /**
+     * Start {@code call} and, if hedging is on and it is still running after the p95 latency of
+     * recent calls, start it once more. The second call needs a free slot in
+     * {@code concurrencyLimiter}, which it holds until it ends; without one the hedge is skipped.
+     * The first success wins and the other call is cancelled, aborting its HTTP exchange; a
+     * result the loser had already produced is handed to {@code discardLoser}. The returned
+     * future only fails once every call made has failed.
+     */
+    <T> CompletableFuture<T> hedged(Supplier<CompletableFuture<T>> call,
+            InferenceConcurrencyLimiter concurrencyLimiter, Consumer<T> discardLoser) {
+        CompletableFuture<T> primary = call.get();
+        long p95Ms = hedgingEnabled ? latencyWindow.percentile(0.95) : -1;
+        if (p95Ms < 0) {
+            return primary;
+        }
+        long hedgeDelayMs = Math.max(p95Ms, hedgeMinDelayMs);
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        // Calls started that have not failed yet
+        AtomicInteger pending = new AtomicInteger(1);
+        BiConsumer<T, Throwable> settle = (value, error) -> {
+            if (error == null) {
+                if (!result.complete(value)) {
+                    discardLoser.accept(value);
+                }
+            } else if (pending.decrementAndGet() == 0) {
+                result.completeExceptionally(error);
+            }
+        };
+        primary.whenComplete(settle);
+
+        AtomicReference<CompletableFuture<T>> backup = new AtomicReference<>();
+        CompletableFuture<Void> hedge = CompletableFuture.runAsync(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            if (!concurrencyLimiter.tryAcquire()) {
+                logger.info("Remote inference still running after {} ms; no free slot to hedge it", hedgeDelayMs);
+                return;
+            }
+            logger.info("Remote inference still running after {} ms; sending hedged request", hedgeDelayMs);
+            pending.incrementAndGet();
+            long started = System.currentTimeMillis();
+            CompletableFuture<T> second = call.get();
+            backup.set(second);
+            second.whenComplete((value, error) -> {
+                if (second.isCancelled()) {
+                    concurrencyLimiter.release();
+                } else {
+                    concurrencyLimiter.release(System.currentTimeMillis() - started);
+                }
+            });
+            second.whenComplete(settle);
+            // The primary may have won while the hedge was being sent
+            if (result.isDone()) {
+                second.cancel(true);
+            }
+        }, CompletableFuture.delayedExecutor(hedgeDelayMs, TimeUnit.MILLISECONDS, responseExecutor));
+
+        result.whenComplete((value, error) -> {
+            hedge.cancel(false);
+            primary.cancel(true);
+            CompletableFuture<T> second = backup.get();
+            if (second != null) {
+                second.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Run inference for several images in one request, storing each image's outputs under the
+     * output name at the same position. The returned outcomes are in the same order as
+     * {@code imagePaths}; a failure reported for one image does not fail the others. The
+     * endpoint runs the images one after another, so the request gets the single-image timeout
+     * once per image.
+     */
+    public CompletableFuture<List<BatchOutcome>> analyzeBatchAsync(List<Path> imagePaths, List<String> outputNames,
+            InferenceParameters parameters) {
+        MultipartBodyPublisher body = new MultipartBodyPublisher();
+        try {
+            for (Path imagePath : imagePaths) {
+                body.addFile("files", imagePath);
+            }
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        addParameters(body, parameters);
+
+        logger.info("Calling remote anomaly batch API with {} images: {}", imagePaths.size(), batchApiUri);
+        return post(batchApiUri, readTimeout.multipliedBy(imagePaths.size()), body, parser -> {
+            List<BatchOutcome> outcomes = readBatch(parser, outputNames);
+            if (outcomes.size() != imagePaths.size()) {
+                throw new IOException("Remote batch inference returned " + outcomes.size() + " results for "
+                        + imagePaths.size() + " images");
+            }
+            return outcomes;
+        }, outcomes -> outcomes.stream().filter(BatchOutcome::isSuccess)
+                .forEach(outcome -> outputStore.discard(outcome.getResult().getBoxedImagePath())));
+    }
+
+    private void addParameters(MultipartBodyPublisher body, InferenceParameters parameters) {
+        body.addField("sensitivity", String.format(Locale.US, "%.4f", parameters.getSensitivity()));
+        body.addField("feedback_json", parameters.getFeedbackJson());
+    }
+
+    /**
+     * POST the form and hand the response body to {@code reader} as a streaming parser, so the
+     * (mostly base64) payload is never buffered as one string. The future completes on the
+     * client's response executor once the body has been consumed. If the call is cancelled
+     * after {@code reader} has stored its outputs, such as a hedged call that lost, what it
+     * returned is handed to {@code discard} instead.
+     */
+    private <T> CompletableFuture<T> post(URI uri, Duration timeout, MultipartBodyPublisher body,
+            ResponseReader<T> reader, Consumer<T> discard) {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header("Content-Type", body.contentType())
+                .header("Accept", "application/json")
+                .POST(body.build())
+                .build();
+
+        CompletableFuture<HttpResponse<InputStream>> exchange = httpClient.sendAsync(request,
+                HttpResponse.BodyHandlers.ofInputStream());
+        AtomicReference<InputStream> responseBody = new AtomicReference<>();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        // What the reader returned, until either the call or its cancellation claims it
+        AtomicReference<T> unclaimed = new AtomicReference<>();
+        CompletableFuture<T> call = exchange.thenApplyAsync(response -> {
+            responseBody.set(response.body());
+            if (cancelled.get()) {
+                closeQuietly(response.body());
+                throw new CancellationException();
+            }
+            try (InputStream in = response.body(); JsonParser parser = objectMapper.getFactory().createParser(in)) {
+                int status = response.statusCode();
+                if (status / 100 != 2) {
+                    // 5xx and 429 mean the endpoint is struggling; other statuses reject the request itself
+                    throw new RemoteInferenceException("Remote inference failed with status " + status
+                            + errorDetail(parser), status >= 500 || status == 429);
+                }
+                T value = reader.read(parser);
+                unclaimed.set(value);
+                if (cancelled.get()) {
+                    discardUnclaimed(unclaimed, discard);
+                    throw new CancellationException();
+                }
+                return value;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, responseExecutor);
+        // Cancelling the call aborts the exchange, or its body once the response has started
+        call.whenComplete((value, error) -> {
+            if (call.isCancelled()) {
+                cancelled.set(true);
+                exchange.cancel(true);
+                InputStream in = responseBody.get();
+                if (in != null) {
+                    closeQuietly(in);
+                }
+                discardUnclaimed(unclaimed, discard);
+            }
+        });
+        return call;
+    }
+
+    private static <T> void discardUnclaimed(AtomicReference<T> unclaimed, Consumer<T> discard) {
+        T value = unclaimed.getAndSet(null);
+        if (value != null) {
+            discard.accept(value);
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ignored) {
+            // The exchange is being abandoned either way
+        }
+    }
+
+    private String errorDetail(JsonParser parser) {
+        try {
+            JsonNode error = parser.readValueAsTree();
+            if (error != null && error.hasNonNull("detail")) {
+                return ": " + error.get("detail").asText();
+            }
+        } catch (IOException ignored) {
+            // Not a JSON error body; the status code is all we can report
+        }
+        return "";
+    }
+
+    private List<BatchOutcome> readBatch(JsonParser parser, List<String> outputNames) throws IOException {
+        expect(parser.nextToken(), JsonToken.START_OBJECT);
+        List<BatchOutcome> outcomes = new ArrayList<>(outputNames.size());
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("detail".equals(field) && value != JsonToken.VALUE_NULL) {
+                throw new RemoteInferenceException("Remote inference error: " + parser.getValueAsString(), false);
+            }
+            if (!"results".equals(field)) {
+                parser.skipChildren();
+                continue;
+            }
+            expect(value, JsonToken.START_ARRAY);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                int index = outcomes.size();
+                if (index >= outputNames.size()) {
+                    throw new IOException("Remote batch inference returned more results than images sent");
+                }
+                String outputName = outputNames.get(index);
+                ParsedItem item = readItem(parser, outputName);
+                try {
+                    outcomes.add(BatchOutcome.success(storeResult(outputName, item)));
+                } catch (IOException e) {
+                    outcomes.add(BatchOutcome.failure(e.getMessage()));
+                }
+            }
+        }
+        return outcomes;
+    }
+
+    /**
+     * Read one result object, starting just after its START_OBJECT. The boxed image is decoded
+     * from base64 directly into a temporary file while the field is being parsed.
+     */
+    private ParsedItem readItem(JsonParser parser, String outputName) throws IOException {
+        ParsedItem item = new ParsedItem();
+        try {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                switch (field) {
+                    case "label" -> item.label = parser.getValueAsString();
+                    case "json_text" -> item.jsonText = parser.getValueAsString();
+                    case "json" -> item.jsonFallback = objectMapper.writeValueAsString(parser.readValueAsTree());
+                    case "boxed_image_ext" -> item.boxedExt = parser.getValueAsString();
+                    case "detail" -> item.detail = parser.getValueAsString();
+                    case "boxed_image_base64" -> item.boxedTempFile = decodeToTempFile(parser, outputName);
+                    default -> parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            item.discard();
+            throw e;
+        }
+        return item;
+    }
+
+    private Path decodeToTempFile(JsonParser parser, String outputName) throws IOException {
+        Path tempFile = outputStore.newWorkFile(outputName);
+        try (OutputStream out = Files.newOutputStream(tempFile)) {
+            if (parser.readBinaryValue(Base64Variants.MIME_NO_LINEFEEDS, out) == 0) {
+                Files.deleteIfExists(tempFile);
+                return null;
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw new IOException("Failed to decode boxed image from API", e);
+        }
+        return tempFile;
+    }
+
+    private AnalysisResult storeResult(String baseName, ParsedItem item) throws IOException {
+        if (item.detail != null) {
+            item.discard();
+            throw new RemoteInferenceException("Remote inference error: " + item.detail, false);
+        }
+        if (item.boxedTempFile == null) {
+            throw new IOException("Remote inference did not return a boxed image payload.");
+        }
+
+        String label = item.label != null ? item.label : "unknown";
+        String boxedExt = item.boxedExt != null ? item.boxedExt : ".png";
+        String jsonText = item.jsonText != null ? item.jsonText
+                : item.jsonFallback != null ? item.jsonFallback : "null";
+
+        String revision = outputStore.newRevision();
+        String webBoxedPath;
+        try {
+            webBoxedPath = outputStore.store(revision, baseName + "_boxed" + boxedExt, item.boxedTempFile);
+        } finally {
+            Files.deleteIfExists(item.boxedTempFile);
+        }
+        String webJsonPath;
+        try {
+            webJsonPath = outputStore.storeText(revision, baseName + ".json", jsonText);
+        } catch (IOException e) {
+            outputStore.discard(webBoxedPath);
+            throw e;
+        }
+
+        return new AnalysisResult(label, webBoxedPath, jsonText, webJsonPath);
+    }
+
+    /**
+     * Record a previously computed result under {@code outputName} as if the endpoint had just
+     * returned it. The boxed image is copied, so the job gets outputs of its own that annotation
+     * edits can replace and deleting them leaves the cache entry alone.
+     */
+    public AnalysisResult storeCachedResult(String outputName, String label, Path boxedImage, String jsonText)
+            throws IOException {
+        Path tempFile = outputStore.newWorkFile(outputName);
+        try {
+            Files.copy(boxedImage, tempFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+
+        ParsedItem item = new ParsedItem();
+        item.label = label;
+        item.jsonText = jsonText;
+        item.boxedExt = extension(boxedImage);
+        item.boxedTempFile = tempFile;
+        return storeResult(outputName, item);
+    }
+
+    private static String extension(Path file) {
+        String fileName = file.getFileName().toString();
+        return fileName.contains(".") ? fileName.substring(fileName.lastIndexOf('.')) : ".png";
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Unexpected remote inference response: expected " + expected + " but got " + actual);
+        }
+    }
+
+    private static String defaultBatchUrl(String anomalyApiUrl) {
+        String base = anomalyApiUrl.endsWith("/") ? anomalyApiUrl.substring(0, anomalyApiUrl.length() - 1)
+                : anomalyApiUrl;
+        return base + "_batch";
+    }
+
+    /**
+     * Sliding window of recent call latencies, used to pick the hedging delay.
+     */
+    private static class LatencyWindow {
+        private static final int MIN_SAMPLES = 20;
+
+        private final long[] samples;
+        private int next;
+        private int size;
+
+        LatencyWindow(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        synchronized void record(long latencyMs) {
+            samples[next] = latencyMs;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+        }
+
+        /**
+         * @return the requested percentile in ms, or -1 until enough calls have been observed
+         */
+        synchronized long percentile(double percentile) {
+            if (size < MIN_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            return sorted[Math.min(size - 1, (int) Math.ceil(percentile * size) - 1)];
+        }
+    }
+
+    @FunctionalInterface
+    private interface ResponseReader<T> {
+        T read(JsonParser parser) throws IOException;
+    }
+
+    /**
+     * Fields of one result as they stream past; only the small text fields are kept in memory.
+     */
+    private static class ParsedItem {
+        String label;
+        String jsonText;
+        String jsonFallback;
+        String boxedExt;
+        String detail;
+        Path boxedTempFile;
+
+        void discard() throws IOException {
+            if (boxedTempFile != null) {
+                Files.deleteIfExists(boxedTempFile);
+            }
+        }
+    }
+
+    /**
+     * Per-call inference inputs shared by every image in a request.
+     */
+    public static class InferenceParameters {
+        private final double sensitivity;
+        private final String feedbackJson;
+        private final String feedbackFingerprint;
+
+        public InferenceParameters(double sensitivity, String feedbackJson) {
+            this(sensitivity, feedbackJson, feedbackJson);
+        }
+
+        public InferenceParameters(double sensitivity, String feedbackJson, String feedbackFingerprint) {
+            this.sensitivity = sensitivity;
+            this.feedbackJson = feedbackJson;
+            this.feedbackFingerprint = feedbackFingerprint;
+        }
+
+        public double getSensitivity() {
+            return sensitivity;
+        }
+
+        public String getFeedbackJson() {
+            return feedbackJson;
+        }
+
+        /**
+         * Identifies the feedback content independently of when the payload was generated.
+         */
+        public String getFeedbackFingerprint() {
+            return feedbackFingerprint;
+        }
+    }
+
+    public static class BatchOutcome {
+        private final AnalysisResult result;
+        private final String errorMessage;
+
+        private BatchOutcome(AnalysisResult result, String errorMessage) {
+            this.result = result;
+            this.errorMessage = errorMessage;
+        }
+
+        static BatchOutcome success(AnalysisResult result) {
+            return new BatchOutcome(result, null);
+        }
+
+        static BatchOutcome failure(String errorMessage) {
+            return new BatchOutcome(null, errorMessage);
+        }
+
+        public boolean isSuccess() {
+            return result != null;
+        }
+
+        public AnalysisResult getResult() {
+            return result;
+        }
+
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+    }
+
+    public static class AnalysisResult {
+        private final String label;
+        private final String boxedImagePath;
+        private final String jsonResult;
+        private final String jsonPath;
+
+        public AnalysisResult(String label, String boxedImagePath, String jsonResult, String jsonPath) {
+            this.label = label;
+            this.boxedImagePath = boxedImagePath;
+            this.jsonResult = jsonResult;
+            this.jsonPath = jsonPath;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public String getBoxedImagePath() {
+            return boxedImagePath;
+        }
+
+        public String getJsonResult() {
+            return jsonResult;
+        }
+
+        public String getJsonPath() {
+            return jsonPath;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.transformer_manager_backkend.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Storage for uploaded blobs, addressed by slash-separated keys such as {@code ab/cd/<hash>.jpg}.
+ * The local implementation keeps them under the upload directory; the S3 one keeps them in a
+ * bucket, so several backend nodes can share uploads without a shared disk.
+ *
+ * <p>Missing blobs are reported with {@link NoSuchFileException}, as for local files.
+ */
+public interface BlobStore {
+
+    /**
+     * Store {@code length} bytes read from {@code content} under {@code key}, replacing any
+     * blob already there. The content is streamed, never buffered whole.
+     */
+    void put(String key, InputStream content, long length) throws IOException;
+
+    /**
+     * Store the contents of {@code file} under {@code key}. The file is consumed: it is moved
+     * into place where the store allows it and deleted after the upload otherwise.
+     */
+    default void putFile(String key, Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            put(key, in, Files.size(file));
+        }
+        Files.deleteIfExists(file);
+    }
+
+    Optional<BlobInfo> stat(String key) throws IOException;
+
+    InputStream get(String key) throws IOException;
+
+    /**
+     * Read {@code length} bytes starting at {@code offset} (fewer if the blob ends first).
+     */
+    InputStream getRange(String key, long offset, long length) throws IOException;
+
+    /**
+     * Keys starting with {@code prefix}, in key order.
+     */
+    List<String> list(String prefix) throws IOException;
+
+    /**
+     * Delete the blob; deleting a missing blob is not an error.
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * A URL clients can fetch the blob from directly for {@code ttl}, or empty if the store
+     * can't hand one out (blobs are then served by the backend).
+     */
+    Optional<URI> presignedGetUrl(String key, Duration ttl);
+
+    /**
+     * A local file with the blob's content, for code that needs a path (image decoding,
+     * multipart uploads, PDF rendering). Local stores return the blob itself; remote stores
+     * download it into a local cache. Blobs are immutable, so cached copies never go stale.
+     *
+     * <p>The file stays in place until the returned handle is closed, so close it once the
+     * last reader is done with the path.
+     */
+    LocalFile localFile(String key) throws IOException;
+
+    /**
+     * A local file handed out by {@link #localFile}. Cached copies are pinned while open, so
+     * cache eviction doesn't remove them under a reader; closing more than once is harmless.
+     */
+    class LocalFile implements Closeable {
+        private final Path path;
+        private final boolean cached;
+        private final Runnable release;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        public LocalFile(Path path, boolean cached, Runnable release) {
+            this.path = path;
+            this.cached = cached;
+            this.release = release;
+        }
+
+        /**
+         * A file that is not part of a cache and needs no releasing.
+         */
+        public static LocalFile of(Path path) {
+            return new LocalFile(path, false, () -> {
+            });
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * Whether the file is a cached copy that may be removed once this handle is closed.
+         */
+        public boolean isCached() {
+            return cached;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                release.run();
+            }
+        }
+    }
+
+    /**
+     * Size and modification time of a stored blob.
+     */
+    class BlobInfo {
+        private final long size;
+        private final long lastModifiedMillis;
+
+        public BlobInfo(long size, long lastModifiedMillis) {
+            this.size = size;
+            this.lastModifiedMillis = lastModifiedMillis;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModifiedMillis() {
+            return lastModifiedMillis;
+        }
+    }
+}
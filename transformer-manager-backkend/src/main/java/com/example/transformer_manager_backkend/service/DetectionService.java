@@ -0,0 +1,110 @@
+package com.example.transformer_manager_backkend.service;
+
+import com.example.transformer_manager_backkend.entity.AnalysisJob;
+import com.example.transformer_manager_backkend.entity.AnnotationBox;
+import com.example.transformer_manager_backkend.entity.Detection;
+import com.example.transformer_manager_backkend.repository.DetectionRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the detections table in step with each analysis job's result. The result JSON is parsed
+ * once, when it is stored; readers then get typed rows instead of re-parsing the JSON.
+ */
+@Service
+public class DetectionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetectionService.class);
+
+    private final DetectionRepository detectionRepository;
+    private final ObjectMapper objectMapper;
+
+    public DetectionService(DetectionRepository detectionRepository) {
+        this.detectionRepository = detectionRepository;
+        this.objectMapper = new ObjectMapper();
+    }
+
+    /**
+     * Store the detections of a freshly received model result and record the result label and
+     * detection count on {@code job}. The caller saves the job.
+     */
+    @Transactional
+    public void indexModelResult(AnalysisJob job, String resultJson) {
+        ParsedResult parsed = parse(job, resultJson, Detection.Source.MODEL);
+        replace(job, parsed.detections);
+        job.setResultLabel(parsed.label);
+    }
+
+    /**
+     * Replace a job's detections with the boxes of an annotator's edit.
+     */
+    @Transactional
+    public void indexAnnotation(AnalysisJob job, List<AnnotationBox> boxes) {
+        List<Detection> detections = new ArrayList<>(boxes.size());
+        for (AnnotationBox box : boxes) {
+            detections.add(new Detection(job, detections.size(), box.getType(), box.getX(), box.getY(),
+                    box.getWidth(), box.getHeight(), box.getConfidence(), Detection.Source.ANNOTATION));
+        }
+        replace(job, detections);
+    }
+
+    /**
+     * Current detections of {@code job}, in result order. Jobs completed before detections were
+     * normalized are parsed from their result JSON instead.
+     */
+    @Transactional(readOnly = true)
+    public List<Detection> getDetections(AnalysisJob job) {
+        if (job.getDetectionCount() == null) {
+            return parse(job, job.getResultJson(), Detection.Source.MODEL).detections;
+        }
+        if (job.getDetectionCount() == 0) {
+            return List.of();
+        }
+        return detectionRepository.findByAnalysisJobIdOrderByBoxIndexAsc(job.getId());
+    }
+
+    private void replace(AnalysisJob job, List<Detection> detections) {
+        detectionRepository.deleteByAnalysisJobId(job.getId());
+        detectionRepository.saveAll(detections);
+        job.setDetectionCount(detections.size());
+    }
+
+    private ParsedResult parse(AnalysisJob job, String resultJson, Detection.Source source) {
+        ParsedResult parsed = new ParsedResult();
+        if (resultJson == null || resultJson.isBlank()) {
+            return parsed;
+        }
+        try {
+            JsonNode root = objectMapper.readTree(resultJson);
+            parsed.label = root.path("label").asText(null);
+            JsonNode boxes = root.path("boxes");
+            if (boxes.isArray()) {
+                for (JsonNode box : boxes) {
+                    JsonNode coords = box.get("box");
+                    if (coords == null || !coords.isArray() || coords.size() < 4) {
+                        continue;
+                    }
+                    Double confidence = box.hasNonNull("confidence") ? box.get("confidence").asDouble() : null;
+                    parsed.detections.add(new Detection(job, parsed.detections.size(),
+                            box.path("type").asText("Unknown"), coords.get(0).asInt(), coords.get(1).asInt(),
+                            coords.get(2).asInt(), coords.get(3).asInt(), confidence, source));
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to parse detections of analysis job {}: {}", job.getId(), e.getMessage());
+        }
+        return parsed;
+    }
+
+    private static class ParsedResult {
+        String label;
+        final List<Detection> detections = new ArrayList<>();
+    }
+}
@@ -0,0 +1,281 @@
+package com.example.transformer_manager_backkend.service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Downscaled JPEG copies of uploaded and analysis images, so list pages and thumbnail strips
+ * don't pull full-size images. Requested widths snap to a few fixed variants (thumbnail,
+ * preview, large), each generated on first request and kept on disk under a total byte budget
+ * with least-recently-used eviction. Derivatives handed out are pinned until closed, so one
+ * being served is never evicted under the response.
+ *
+ * <p>A derivative's name includes the source's size and modification time, so a source that
+ * is rewritten in place (boxed images) gets fresh derivatives and the stale ones age out.
+ */
+@Service
+public class ImageDerivativeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageDerivativeService.class);
+
+    // Thumbnail, preview and large variants
+    static final int[] WIDTHS = { 160, 640, 1280 };
+
+    private final Path derivativeDir;
+    private final long maxBytes;
+    private final float jpegQuality;
+    // Derivative file -> entry, in access order
+    private final LinkedHashMap<Path, Derivative> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Path, Object> generationLocks = new ConcurrentHashMap<>();
+    private long totalBytes;
+
+    @Autowired
+    public ImageDerivativeService(@Value("${upload.directory:./uploads}") String uploadDirectory,
+            @Value("${app.files.derivatives.max-bytes:536870912}") long maxBytes,
+            @Value("${app.files.derivatives.jpeg-quality:0.8}") float jpegQuality) {
+        this(Paths.get(uploadDirectory, "derivatives"), maxBytes, jpegQuality);
+    }
+
+    ImageDerivativeService(Path derivativeDir, long maxBytes, float jpegQuality) {
+        this.derivativeDir = derivativeDir;
+        this.maxBytes = maxBytes;
+        this.jpegQuality = jpegQuality;
+        loadExisting();
+    }
+
+    /**
+     * The variant of {@code source} for a display width of {@code requestedWidth} pixels,
+     * generating it if needed, or {@code source} itself when the request is wider than the
+     * largest variant or the source can't be decoded. Close it once served; closing a returned
+     * source leaves the caller's handle on it open.
+     */
+    public BlobStore.LocalFile derivativeFor(BlobStore.LocalFile source, int requestedWidth) throws IOException {
+        BlobStore.LocalFile original = new BlobStore.LocalFile(source.getPath(), source.isCached(), () -> {
+        });
+        int width = snapWidth(requestedWidth);
+        if (width < 0) {
+            return original;
+        }
+        Path sourcePath = source.getPath();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(sourcePath, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return original;
+        }
+        String fileName = sourcePath.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        String baseName = dot > 0 ? fileName.substring(0, dot) : fileName;
+        Path target = derivativeDir.resolve(baseName + "-" + Long.toHexString(attributes.size()) + "-"
+                + Long.toHexString(attributes.lastModifiedTime().toMillis()) + "-w" + width + ".jpg");
+
+        BlobStore.LocalFile existing = pinIfPresent(target);
+        if (existing != null) {
+            return existing;
+        }
+        Object lock = generationLocks.computeIfAbsent(target, key -> new Object());
+        try {
+            // Concurrent requests for the same variant wait for one generation
+            synchronized (lock) {
+                existing = pinIfPresent(target);
+                if (existing != null) {
+                    return existing;
+                }
+                BlobStore.LocalFile generated = generate(sourcePath, target, width);
+                return generated != null ? generated : original;
+            }
+        } finally {
+            generationLocks.remove(target, lock);
+        }
+    }
+
+    // Smallest variant at least as wide as requested, or -1 for the original
+    static int snapWidth(int requestedWidth) {
+        for (int width : WIDTHS) {
+            if (requestedWidth <= width) {
+                return width;
+            }
+        }
+        return -1;
+    }
+
+    private BlobStore.LocalFile generate(Path source, Path target, int width) throws IOException {
+        BufferedImage image = ImageIO.read(source.toFile());
+        if (image == null) {
+            return null;
+        }
+        BufferedImage scaled = scaleToWidth(image, width);
+
+        Files.createDirectories(derivativeDir);
+        Path temp = derivativeDir.resolve(target.getFileName() + "." + UUID.randomUUID() + ".part");
+        try {
+            writeJpeg(scaled, temp);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return record(target, Files.size(target), true);
+    }
+
+    /**
+     * Downscale in halving steps so bilinear filtering still averages every source pixel.
+     * Narrower images keep their size (they are only re-encoded).
+     */
+    static BufferedImage scaleToWidth(BufferedImage image, int width) {
+        int targetWidth = Math.min(width, image.getWidth());
+        int targetHeight = Math.max(1, (int) Math.round((double) image.getHeight() * targetWidth / image.getWidth()));
+        BufferedImage current = image;
+        int currentWidth = image.getWidth();
+        int currentHeight = image.getHeight();
+        do {
+            int nextWidth = Math.max(targetWidth, currentWidth / 2);
+            int nextHeight = nextWidth == targetWidth ? targetHeight : Math.max(targetHeight, currentHeight / 2);
+            // JPEG has no alpha, so draw onto an opaque RGB canvas
+            BufferedImage next = new BufferedImage(nextWidth, nextHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(current, 0, 0, nextWidth, nextHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+            currentWidth = nextWidth;
+            currentHeight = nextHeight;
+        } while (currentWidth > targetWidth);
+        return current;
+    }
+
+    private void writeJpeg(BufferedImage image, Path file) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private BlobStore.LocalFile pinIfPresent(Path target) {
+        synchronized (entries) {
+            Derivative derivative = entries.get(target);
+            return derivative != null ? pin(target, derivative) : null;
+        }
+    }
+
+    // Callers hold the lock on entries
+    private BlobStore.LocalFile pin(Path target, Derivative derivative) {
+        derivative.pins++;
+        return new BlobStore.LocalFile(target, true, () -> {
+            synchronized (entries) {
+                derivative.pins--;
+            }
+            evictOverBudget();
+        });
+    }
+
+    private BlobStore.LocalFile record(Path target, long size, boolean pinned) {
+        BlobStore.LocalFile file = null;
+        synchronized (entries) {
+            Derivative derivative = entries.get(target);
+            if (derivative == null) {
+                derivative = new Derivative(size);
+                entries.put(target, derivative);
+                totalBytes += size;
+            } else if (derivative.size != size) {
+                totalBytes += size - derivative.size;
+                derivative.size = size;
+            }
+            if (pinned) {
+                file = pin(target, derivative);
+            }
+        }
+        evictOverBudget();
+        return file;
+    }
+
+    // Pinned derivatives are passed over; they are evicted on a later pass once released
+    private void evictOverBudget() {
+        List<Path> evicted = new ArrayList<>();
+        synchronized (entries) {
+            Iterator<Map.Entry<Path, Derivative>> eldest = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<Path, Derivative> entry = eldest.next();
+                if (entry.getValue().pins > 0) {
+                    continue;
+                }
+                totalBytes -= entry.getValue().size;
+                evicted.add(entry.getKey());
+                eldest.remove();
+            }
+        }
+        for (Path path : evicted) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                logger.warn("Failed to evict image derivative {}: {}", path, e.getMessage());
+            }
+        }
+    }
+
+    // Pick up derivatives from earlier runs, oldest first so they are evicted first
+    private void loadExisting() {
+        if (!Files.isDirectory(derivativeDir)) {
+            return;
+        }
+        List<Map.Entry<Path, BasicFileAttributes>> existing = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(derivativeDir, "*.jpg")) {
+            for (Path file : files) {
+                existing.add(Map.entry(file, Files.readAttributes(file, BasicFileAttributes.class)));
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to index image derivatives in {}: {}", derivativeDir, e.getMessage());
+            return;
+        }
+        existing.sort(Comparator.comparing(entry -> entry.getValue().lastModifiedTime()));
+        for (Map.Entry<Path, BasicFileAttributes> entry : existing) {
+            record(entry.getKey(), entry.getValue().size(), false);
+        }
+    }
+
+    // Guarded by the lock on entries
+    private static class Derivative {
+        private long size;
+        private int pins;
+
+        Derivative(long size) {
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.transformer_manager_backkend.service;
+
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stops analysis workers from dequeuing while the inference endpoint is down. After
+ * {@code failureThreshold} consecutive endpoint failures the breaker opens for
+ * {@code openDurationMs}; then a single trial call is let through, and its outcome either
+ * closes the breaker or opens it for another window.
+ */
+class InferenceCircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(InferenceCircuitBreaker.class);
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openDurationMs;
+    private final LongSupplier clock;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long retryAtMs;
+
+    InferenceCircuitBreaker(int failureThreshold, long openDurationMs) {
+        this(failureThreshold, openDurationMs, System::currentTimeMillis);
+    }
+
+    InferenceCircuitBreaker(int failureThreshold, long openDurationMs, LongSupplier clock) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openDurationMs = Math.max(1000, openDurationMs);
+        this.clock = clock;
+    }
+
+    /**
+     * Whether a new call may start now. While half-open only one trial is allowed per open
+     * window, so a trial that never reports back cannot wedge the breaker.
+     */
+    synchronized boolean allowRequest() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        long now = clock.getAsLong();
+        if (now < retryAtMs) {
+            return false;
+        }
+        state = State.HALF_OPEN;
+        retryAtMs = now + openDurationMs;
+        logger.info("Inference circuit half-open; letting a trial call through");
+        return true;
+    }
+
+    synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            logger.info("Inference circuit closed; endpoint is responding again");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            logger.warn("Inference circuit open after {} consecutive failures; pausing dequeue for {} ms",
+                    consecutiveFailures, openDurationMs);
+            state = State.OPEN;
+            retryAtMs = clock.getAsLong() + openDurationMs;
+        }
+    }
+
+    synchronized long millisUntilRetry() {
+        return state == State.CLOSED ? 0 : Math.max(0, retryAtMs - clock.getAsLong());
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+}
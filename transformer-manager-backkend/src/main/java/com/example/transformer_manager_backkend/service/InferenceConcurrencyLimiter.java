@@ -0,0 +1,83 @@
+package com.example.transformer_manager_backkend.service;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the number of remote inference calls in flight. The limit shrinks by one
+ * whenever a call is slower than the configured threshold and grows back towards the
+ * configured maximum as calls complete quickly again, so a struggling endpoint sees
+ * less concurrent load instead of a growing pile of timed-out requests.
+ */
+class InferenceConcurrencyLimiter {
+
+    private final LimitSemaphore permits;
+    private final int maxLimit;
+    private final long slowCallThresholdMs;
+    private int currentLimit;
+
+    InferenceConcurrencyLimiter(int maxLimit, long slowCallThresholdMs) {
+        this.maxLimit = Math.max(1, maxLimit);
+        this.slowCallThresholdMs = slowCallThresholdMs;
+        this.currentLimit = this.maxLimit;
+        this.permits = new LimitSemaphore(this.maxLimit);
+    }
+
+    void acquire() throws InterruptedException {
+        permits.acquire();
+    }
+
+    /**
+     * Take a permit only if one is free right now; waiting workers keep their turn.
+     */
+    boolean tryAcquire() {
+        try {
+            return permits.tryAcquire(0, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Return a permit without recording a call, e.g. when there was nothing to process.
+     */
+    void release() {
+        permits.release();
+    }
+
+    /**
+     * Return a permit and adapt the limit to the observed call latency.
+     */
+    synchronized void release(long elapsedMs) {
+        if (slowCallThresholdMs > 0 && elapsedMs > slowCallThresholdMs) {
+            if (currentLimit > 1) {
+                currentLimit--;
+                permits.shrink();
+            }
+        } else if (currentLimit < maxLimit) {
+            currentLimit++;
+            permits.release();
+        }
+        permits.release();
+    }
+
+    synchronized int getCurrentLimit() {
+        return currentLimit;
+    }
+
+    int getInFlight() {
+        return Math.max(0, getCurrentLimit() - permits.availablePermits());
+    }
+
+    private static class LimitSemaphore extends Semaphore {
+
+        LimitSemaphore(int permits) {
+            super(permits, true);
+        }
+
+        void shrink() {
+            reducePermits(1);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.example.transformer_manager_backkend.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.transformer_manager_backkend.service.AnomalyInferenceClient.InferenceParameters;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Content-addressed cache of inference results. Entries are keyed by the SHA-256 of the image
+ * bytes (the upload's content hash), the detection sensitivity and the feedback fingerprint, so
+ * a byte-identical image analysed under the same settings reuses the earlier label, JSON and
+ * boxed image instead of making another remote call.
+ *
+ * <p>Each entry is an index blob ({@code analysis/cache/<key>.json}) plus its own copy of the
+ * boxed image, kept in the {@link BlobStore} so entries are shared by every node, survive
+ * restarts and outlive the images that produced them. The entries a node knows of are kept under
+ * a total byte budget with least-recently-used eviction. Entries made under feedback that has
+ * since changed are left to age out the same way: feedback can return to an earlier
+ * fingerprint, and nodes can briefly disagree on the current one. Recently used entries are also
+ * kept in a bounded in-memory LRU.
+ */
+@Component
+public class InferenceResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(InferenceResultCache.class);
+
+    private static final String KEY_PREFIX = "analysis/cache/";
+
+    private final boolean enabled;
+    private final BlobStore blobStore;
+    private final long maxBytes;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, CachedEntry> memory;
+    // Entry key -> bytes stored (index plus image), in access order
+    private final LinkedHashMap<String, Long> storedEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long storedBytes;
+
+    public InferenceResultCache(BlobStore blobStore, @Value("${app.anomaly.cache.enabled:true}") boolean enabled,
+            @Value("${app.anomaly.cache.memory-entries:1000}") int memoryEntries,
+            @Value("${app.anomaly.cache.max-bytes:268435456}") long maxBytes) {
+        this.enabled = enabled;
+        this.blobStore = blobStore;
+        this.maxBytes = maxBytes;
+        int capacity = Math.max(1, memoryEntries);
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedEntry> eldest) {
+                return size() > capacity;
+            }
+        };
+        if (enabled) {
+            loadExisting();
+        }
+    }
+
+    /**
+     * Cache key for analysing {@code imagePath} with {@code parameters}, or empty when caching
+     * is disabled or the image can't be read.
+     */
+    public Optional<String> keyFor(Path imagePath, InferenceParameters parameters) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        try {
+            MessageDigest digest = sha256();
+            try (InputStream in = new DigestInputStream(Files.newInputStream(imagePath), digest)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            return keyFor(HexFormat.of().formatHex(digest.digest()), parameters);
+        } catch (IOException e) {
+            logger.warn("Could not hash {} for the inference cache: {}", imagePath, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Cache key for an image whose SHA-256 is already known (content-addressed uploads), so
+     * the image isn't read again. Matches {@link #keyFor(Path, InferenceParameters)} for the
+     * same bytes.
+     */
+    public Optional<String> keyFor(String contentHash, InferenceParameters parameters) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        MessageDigest digest = sha256();
+        digest.update(contentHash.getBytes(StandardCharsets.UTF_8));
+        digest.update(String.format(Locale.US, "|%.4f|", parameters.getSensitivity())
+                .getBytes(StandardCharsets.UTF_8));
+        digest.update(String.valueOf(parameters.getFeedbackFingerprint()).getBytes(StandardCharsets.UTF_8));
+        return Optional.of(HexFormat.of().formatHex(digest.digest()));
+    }
+
+    /**
+     * The result stored under {@code key}, with a local copy of its boxed image (downloaded
+     * first when the blob store is remote). Close it once the image has been copied.
+     */
+    public Optional<CachedResult> get(String key) {
+        CachedEntry entry;
+        synchronized (memory) {
+            entry = memory.get(key);
+        }
+        try {
+            if (entry == null) {
+                JsonNode index;
+                try (InputStream in = blobStore.get(KEY_PREFIX + key + ".json")) {
+                    index = objectMapper.readTree(in);
+                }
+                entry = new CachedEntry(index.path("label").asText(null), index.path("json_text").asText(),
+                        KEY_PREFIX + index.path("boxed_file").asText());
+                synchronized (memory) {
+                    memory.put(key, entry);
+                }
+            }
+            BlobStore.LocalFile boxedImage = blobStore.localFile(entry.boxedImageKey);
+            touch(key);
+            return Optional.of(new CachedResult(entry.label, entry.jsonResult, boxedImage));
+        } catch (NoSuchFileException e) {
+            // Evicted, possibly by another node
+            synchronized (memory) {
+                memory.remove(key);
+            }
+            return Optional.empty();
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable inference cache entry {}: {}", key, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Store a result under {@code key}. Failures are logged and otherwise ignored; the cache is
+     * only an optimisation.
+     */
+    public void put(String key, String label, String jsonText, Path boxedImage) {
+        try {
+            String fileName = boxedImage.getFileName().toString();
+            String extension = fileName.contains(".") ? fileName.substring(fileName.lastIndexOf('.')) : ".png";
+            String boxedFile = key + "_boxed" + extension;
+            long imageSize = Files.size(boxedImage);
+            try (InputStream in = Files.newInputStream(boxedImage)) {
+                blobStore.put(KEY_PREFIX + boxedFile, in, imageSize);
+            }
+
+            ObjectNode index = objectMapper.createObjectNode();
+            index.put("label", label);
+            index.put("json_text", jsonText);
+            index.put("boxed_file", boxedFile);
+            // The index is stored last, so a reader never sees an entry without its image
+            byte[] indexBytes = objectMapper.writeValueAsBytes(index);
+            blobStore.put(KEY_PREFIX + key + ".json", new ByteArrayInputStream(indexBytes), indexBytes.length);
+
+            synchronized (memory) {
+                memory.put(key, new CachedEntry(label, jsonText, KEY_PREFIX + boxedFile));
+            }
+            record(key, indexBytes.length + imageSize);
+        } catch (IOException e) {
+            logger.warn("Failed to store inference cache entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    private void touch(String key) {
+        synchronized (storedEntries) {
+            storedEntries.get(key);
+        }
+    }
+
+    // Add an entry and evict the least recently used ones beyond the byte budget
+    private void record(String key, long size) {
+        List<String> evicted = new ArrayList<>();
+        synchronized (storedEntries) {
+            Long previous = storedEntries.put(key, size);
+            storedBytes += size - (previous == null ? 0 : previous);
+            Iterator<Map.Entry<String, Long>> eldest = storedEntries.entrySet().iterator();
+            while (storedBytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, Long> entry = eldest.next();
+                if (entry.getKey().equals(key)) {
+                    continue;
+                }
+                storedBytes -= entry.getValue();
+                evicted.add(entry.getKey());
+                eldest.remove();
+            }
+        }
+        evicted.forEach(this::deleteEntry);
+    }
+
+    private void deleteEntry(String key) {
+        synchronized (memory) {
+            memory.remove(key);
+        }
+        // The index goes first, so a reader never finds an entry without its image
+        try {
+            blobStore.delete(KEY_PREFIX + key + ".json");
+            for (String blob : blobStore.list(KEY_PREFIX + key)) {
+                blobStore.delete(blob);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to evict inference cache entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    // Pick up entries from earlier runs, least recently written first so they are evicted first
+    private void loadExisting() {
+        List<Map.Entry<String, Long>> existing = new ArrayList<>();
+        Map<String, Long> sizes = new LinkedHashMap<>();
+        try {
+            for (String blob : blobStore.list(KEY_PREFIX)) {
+                Optional<BlobStore.BlobInfo> info = blobStore.stat(blob);
+                if (info.isEmpty()) {
+                    continue;
+                }
+                String fileName = blob.substring(KEY_PREFIX.length());
+                int dot = fileName.indexOf('.');
+                String key = fileName.substring(0, dot < 0 ? fileName.length() : dot);
+                if (key.endsWith("_boxed")) {
+                    key = key.substring(0, key.length() - "_boxed".length());
+                } else if (fileName.endsWith(".json")) {
+                    existing.add(Map.entry(key, info.get().getLastModifiedMillis()));
+                }
+                sizes.merge(key, info.get().getSize(), Long::sum);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to index inference cache: {}", e.getMessage());
+            return;
+        }
+        existing.sort(Map.Entry.comparingByValue());
+        for (Map.Entry<String, Long> entry : existing) {
+            record(entry.getKey(), sizes.remove(entry.getKey()));
+        }
+        // Images whose index was never written
+        sizes.keySet().forEach(this::deleteEntry);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static class CachedEntry {
+        private final String label;
+        private final String jsonResult;
+        private final String boxedImageKey;
+
+        CachedEntry(String label, String jsonResult, String boxedImageKey) {
+            this.label = label;
+            this.jsonResult = jsonResult;
+            this.boxedImageKey = boxedImageKey;
+        }
+    }
+
+    public static class CachedResult implements Closeable {
+        private final String label;
+        private final String jsonResult;
+        private final BlobStore.LocalFile boxedImage;
+
+        CachedResult(String label, String jsonResult, BlobStore.LocalFile boxedImage) {
+            this.label = label;
+            this.jsonResult = jsonResult;
+            this.boxedImage = boxedImage;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public String getJsonResult() {
+            return jsonResult;
+        }
+
+        public Path getBoxedImage() {
+            return boxedImage.getPath();
+        }
+
+        @Override
+        public void close() {
+            boxedImage.close();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.transformer_manager_backkend.service;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Decides whether a failed remote inference call is retried, and after how long. Only
+ * failures of the endpoint itself are retried, with exponential backoff and jitter: half of
+ * the delay is fixed and half random, so jobs that failed together during an outage don't all
+ * hit the endpoint again at the same moment.
+ */
+class InferenceRetryPolicy {
+
+    private final int maxAttempts;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    // Random value between 0 and the bound, inclusive
+    private final LongUnaryOperator jitter;
+
+    InferenceRetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs) {
+        this(maxAttempts, baseDelayMs, maxDelayMs, bound -> ThreadLocalRandom.current().nextLong(bound + 1));
+    }
+
+    InferenceRetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs, LongUnaryOperator jitter) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMs = Math.max(100, baseDelayMs);
+        this.maxDelayMs = Math.max(this.baseDelayMs, maxDelayMs);
+        this.jitter = jitter;
+    }
+
+    int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Whether {@code error} is a failure of the endpoint rather than of the request or of local
+     * files, so the same call may succeed later.
+     */
+    static boolean isRetryable(Throwable error) {
+        if (error instanceof RemoteInferenceException remote) {
+            return remote.isRetryable();
+        }
+        // Timeouts, refused connections and truncated responses; local file problems won't heal on retry
+        return error instanceof IOException && !(error instanceof FileNotFoundException)
+                && !(error instanceof FileSystemException);
+    }
+
+    /**
+     * Whether a job whose call failed with {@code error} after {@code attempts} attempts
+     * (including that call) gets another one.
+     */
+    boolean shouldRetry(int attempts, Throwable error) {
+        return isRetryable(error) && attempts < maxAttempts;
+    }
+
+    long backoffDelayMs(int attempts) {
+        long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(Math.max(attempts, 1) - 1, 20));
+        return ceiling / 2 + jitter.applyAsLong(ceiling / 2);
+    }
+}
@@ -1,50 +1,50 @@
 package com.example.transformer_manager_backkend.service;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
+import java.util.function.Supplier;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.example.transformer_manager_backkend.entity.Admin;
+import com.example.transformer_manager_backkend.entity.AnalysisJob;
 import com.example.transformer_manager_backkend.entity.Image;
 import com.example.transformer_manager_backkend.entity.Inspection;
+import com.example.transformer_manager_backkend.entity.MaintenanceRecord;
 import com.example.transformer_manager_backkend.entity.TransformerRecord;
 import com.example.transformer_manager_backkend.entity.User;
 import com.example.transformer_manager_backkend.repository.ImageRepository;
 import com.example.transformer_manager_backkend.repository.InspectionRepository;
 import com.example.transformer_manager_backkend.repository.TransformerRecordRepository;
+import com.fasterxml.jackson.annotation.JsonInclude;
 
 @Service
 public class InspectionService {
 
-    private static final Logger logger = LoggerFactory.getLogger(InspectionService.class);
-
     private final InspectionRepository inspectionRepository;
     private final TransformerRecordRepository transformerRecordRepository;
     private final AnomalyAnalysisService anomalyAnalysisService;
     private final ImageRepository imageRepository;
-
-    @Value("${upload.directory}")
-    private String uploadDirectory;
+    private final UploadStorageService uploadStorageService;
+    private final TransactionTemplate transactionTemplate;
 
     public InspectionService(InspectionRepository inspectionRepository,
             TransformerRecordRepository transformerRecordRepository,
             AnomalyAnalysisService anomalyAnalysisService,
-            ImageRepository imageRepository) {
+            ImageRepository imageRepository,
+            UploadStorageService uploadStorageService,
+            TransactionTemplate transactionTemplate) {
         this.inspectionRepository = inspectionRepository;
         this.transformerRecordRepository = transformerRecordRepository;
         this.anomalyAnalysisService = anomalyAnalysisService;
         this.imageRepository = imageRepository;
+        this.uploadStorageService = uploadStorageService;
+        this.transactionTemplate = transactionTemplate;
     }
 
     public Inspection createInspection(
@@ -53,32 +53,8 @@ public class InspectionService {
             List<MultipartFile> maintenanceImages,
             Admin conductedBy,
             java.time.LocalDateTime inspectionDate) throws IOException {
-
-        TransformerRecord transformerRecord = transformerRecordRepository.findById(transformerRecordId)
-                .orElseThrow(() -> new RuntimeException("Transformer record not found"));
-
-        Inspection inspection = new Inspection();
-        inspection.setTransformerRecord(transformerRecord);
-        inspection.setConductedByAdmin(conductedBy);
-        inspection.setNotes(notes);
-        inspection.setInspectionDate(inspectionDate);
-
-        List<Image> imageEntities = createImageEntities(maintenanceImages, inspection);
-        inspection.setImages(imageEntities);
-
-        Inspection savedInspection = inspectionRepository.saveAndFlush(inspection);
-
-        // Queue maintenance images for anomaly analysis after saving
-        for (Image image : savedInspection.getImages()) {
-            if ("Maintenance".equalsIgnoreCase(image.getType())) {
-                anomalyAnalysisService.queueImageForAnalysis(image);
-            }
-        }
-
-        // Ensure images are initialized for serialization
-        savedInspection.getImages().size();
-
-        return savedInspection;
+        List<UploadStorageService.StoredBlob> blobs = uploadStorageService.storeAll(maintenanceImages);
+        return attachImages(blobs, () -> newInspection(transformerRecordId, notes, inspectionDate, conductedBy, null));
     }
 
     public Inspection createInspectionByAdmin(
@@ -96,62 +72,90 @@ public class InspectionService {
             List<MultipartFile> maintenanceImages,
             User conductedBy,
             java.time.LocalDateTime inspectionDate) throws IOException {
+        List<UploadStorageService.StoredBlob> blobs = uploadStorageService.storeAll(maintenanceImages);
+        return attachImages(blobs, () -> newInspection(transformerRecordId, notes, inspectionDate, null, conductedBy));
+    }
 
+    private Inspection newInspection(Long transformerRecordId, String notes, LocalDateTime inspectionDate,
+            Admin conductedByAdmin, User conductedByUser) {
         TransformerRecord transformerRecord = transformerRecordRepository.findById(transformerRecordId)
                 .orElseThrow(() -> new RuntimeException("Transformer record not found"));
 
         Inspection inspection = new Inspection();
         inspection.setTransformerRecord(transformerRecord);
-        inspection.setConductedByUser(conductedBy);
+        inspection.setConductedByAdmin(conductedByAdmin);
+        inspection.setConductedByUser(conductedByUser);
         inspection.setNotes(notes);
         inspection.setInspectionDate(inspectionDate);
+        return inspection;
+    }
 
-        List<Image> imageEntities = createImageEntities(maintenanceImages, inspection);
-        inspection.setImages(imageEntities);
+    /**
+     * Record uploads that are already in storage as maintenance images of the inspection from
+     * {@code inspectionLoader}, and queue them for anomaly analysis, in one short transaction:
+     * the slow part of an upload never holds a database connection. If the transaction fails,
+     * the blobs are given back.
+     */
+    private Inspection attachImages(List<UploadStorageService.StoredBlob> blobs,
+            Supplier<Inspection> inspectionLoader) throws IOException {
+        try {
+            uploadStorageService.restamp(blobs);
+            return transactionTemplate.execute(status -> {
+                Inspection inspection = inspectionLoader.get();
+                List<Image> newImages = createImageEntities(blobs, inspection);
+                if (inspection.getImages() == null) {
+                    inspection.setImages(new ArrayList<>());
+                }
+                inspection.getImages().addAll(newImages);
+                if (inspection.getId() == null) {
+                    // Cascades to the images
+                    inspectionRepository.save(inspection);
+                } else {
+                    // Persisted directly so these instances get their ids (uploads may share a file path)
+                    imageRepository.saveAll(newImages);
+                }
 
-        Inspection savedInspection = inspectionRepository.saveAndFlush(inspection);
+                anomalyAnalysisService.queueImagesForAnalysis(newImages);
 
-        // Queue maintenance images for anomaly analysis after saving
-        for (Image image : savedInspection.getImages()) {
-            if ("Maintenance".equalsIgnoreCase(image.getType())) {
-                anomalyAnalysisService.queueImageForAnalysis(image);
-            }
+                // Ensure images are initialized for serialization
+                inspection.getImages().size();
+                return inspection;
+            });
+        } catch (IOException | RuntimeException e) {
+            uploadStorageService.discard(blobs);
+            throw e;
         }
-
-        savedInspection.getImages().size();
-
-        return savedInspection;
     }
 
-    private List<Image> createImageEntities(List<MultipartFile> maintenanceImages, Inspection inspection)
-            throws IOException {
+    private List<Image> createImageEntities(List<UploadStorageService.StoredBlob> blobs, Inspection inspection) {
         List<Image> imageEntities = new ArrayList<>();
-        if (maintenanceImages != null && !maintenanceImages.isEmpty()) {
-            for (MultipartFile imageFile : maintenanceImages) {
-                String fileName = System.currentTimeMillis() + "_" + imageFile.getOriginalFilename();
-                Path uploadPath = Paths.get(uploadDirectory);
-                if (!Files.exists(uploadPath))
-                    Files.createDirectories(uploadPath);
-                Path filePath = uploadPath.resolve(fileName);
-                Files.copy(imageFile.getInputStream(), filePath);
-
-                Image image = new Image();
-                image.setFilePath("/uploads/" + fileName);
-                image.setType("Maintenance");
-                image.setInspection(inspection);
-
-                imageEntities.add(image);
-            }
+        for (UploadStorageService.StoredBlob blob : blobs) {
+            Image image = new Image();
+            image.setFilePath(blob.getWebPath());
+            image.setContentHash(blob.getContentHash());
+            image.setType("Maintenance");
+            image.setInspection(inspection);
+
+            imageEntities.add(image);
         }
         return imageEntities;
     }
 
-    public List<Inspection> getInspectionsByTransformerRecordId(Long transformerRecordId) {
-        return inspectionRepository.findByTransformerRecordId(transformerRecordId);
+    /**
+     * List view of a transformer's inspections, loaded through {@link Inspection#VIEW_GRAPH} so
+     * the number of queries doesn't grow with inspections or images.
+     */
+    @Transactional(readOnly = true)
+    public List<InspectionView> getInspectionsByTransformerRecordId(Long transformerRecordId) {
+        return inspectionRepository.findViewsByTransformerRecordId(transformerRecordId).stream()
+                .map(inspection -> new InspectionView(inspection, false))
+                .toList();
     }
 
-    public Inspection getInspectionById(Long id) {
-        return inspectionRepository.findById(id)
+    @Transactional(readOnly = true)
+    public InspectionView getInspectionById(Long id) {
+        return inspectionRepository.findViewById(id)
+                .map(inspection -> new InspectionView(inspection, true))
                 .orElseThrow(() -> new RuntimeException("Inspection not found"));
     }
 
@@ -159,8 +163,9 @@ public class InspectionService {
         Inspection inspection = inspectionRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Inspection not found"));
 
-        deleteInspectionImages(inspection);
+        List<Image> images = new ArrayList<>(inspection.getImages());
         inspectionRepository.deleteById(id);
+        uploadStorageService.releaseAfterCommit(images);
     }
 
     public void deleteInspectionByUser(Long id, User user) throws IOException {
@@ -173,116 +178,25 @@ public class InspectionService {
             throw new RuntimeException("You can only delete your own inspections");
         }
 
-        deleteInspectionImages(inspection);
+        List<Image> images = new ArrayList<>(inspection.getImages());
         inspectionRepository.deleteById(id);
+        uploadStorageService.releaseAfterCommit(images);
     }
 
-    @Transactional
     public Inspection addImagesToInspection(Long inspectionId, List<MultipartFile> newImages, Admin admin)
             throws IOException {
-        Inspection inspection = inspectionRepository.findById(inspectionId)
-                .orElseThrow(() -> new RuntimeException("Inspection not found"));
-
-        // Create new image entities for the additional images
-        List<Image> additionalImageEntities = createImageEntities(newImages, inspection);
-
-        // Add new images to existing list
-        List<Image> existingImages = inspection.getImages();
-        if (existingImages == null) {
-            existingImages = new ArrayList<>();
-        }
-        existingImages.addAll(additionalImageEntities);
-        inspection.setImages(existingImages);
-
-        Inspection savedInspection = inspectionRepository.saveAndFlush(inspection);
-
-        // Queue new maintenance images for anomaly analysis without breaking the upload flow
-        for (Image image : additionalImageEntities) {
-            if ("Maintenance".equalsIgnoreCase(image.getType())) {
-                try {
-                    Image imageToQueue = image;
-                    if (imageToQueue.getId() == null) {
-                        Optional<Image> persisted = imageRepository.findByFilePath(image.getFilePath());
-                        if (persisted.isPresent()) {
-                            imageToQueue = persisted.get();
-                        }
-                    }
-                    if (imageToQueue.getId() != null) {
-                        anomalyAnalysisService.queueImageForAnalysis(imageToQueue);
-                    } else {
-                        logger.warn("Skipping anomaly queue for image with file {} because it has no ID", image.getFilePath());
-                    }
-                } catch (Exception queueError) {
-                    logger.error("Failed to queue image {} for anomaly analysis", image.getId(), queueError);
-                }
-            }
-        }
-
-        savedInspection.getImages().size();
-
-        return savedInspection;
+        List<UploadStorageService.StoredBlob> blobs = uploadStorageService.storeAll(newImages);
+        return attachImages(blobs, () -> inspectionRepository.findById(inspectionId)
+                .orElseThrow(() -> new RuntimeException("Inspection not found")));
     }
 
-    @Transactional
     public Inspection addImagesToInspection(Long inspectionId, List<MultipartFile> newImages, User user)
             throws IOException {
-        Inspection inspection = inspectionRepository.findById(inspectionId)
-                .orElseThrow(() -> new RuntimeException("Inspection not found"));
-
-        // Verify the user can add images to this inspection (either they created it or
-        // they're adding to any if they're admin)
         // For simplicity, allow any authenticated user to add images to any inspection
         // You can add more restrictive logic here if needed
-
-        // Create new image entities for the additional images
-        List<Image> additionalImageEntities = createImageEntities(newImages, inspection);
-
-        // Add new images to existing list
-        List<Image> existingImages = inspection.getImages();
-        if (existingImages == null) {
-            existingImages = new ArrayList<>();
-        }
-        existingImages.addAll(additionalImageEntities);
-        inspection.setImages(existingImages);
-
-        Inspection savedInspection = inspectionRepository.saveAndFlush(inspection);
-
-        // Queue new maintenance images for anomaly analysis without failing the request
-        for (Image image : additionalImageEntities) {
-            if ("Maintenance".equalsIgnoreCase(image.getType())) {
-                try {
-                    Image imageToQueue = image;
-                    if (imageToQueue.getId() == null) {
-                        Optional<Image> persisted = imageRepository.findByFilePath(image.getFilePath());
-                        if (persisted.isPresent()) {
-                            imageToQueue = persisted.get();
-                        }
-                    }
-                    if (imageToQueue.getId() != null) {
-                        anomalyAnalysisService.queueImageForAnalysis(imageToQueue);
-                    } else {
-                        logger.warn("Skipping anomaly queue for image with file {} because it has no ID", image.getFilePath());
-                    }
-                } catch (Exception queueError) {
-                    logger.error("Failed to queue image {} for anomaly analysis", image.getId(), queueError);
-                }
-            }
-        }
-
-        savedInspection.getImages().size();
-
-        return savedInspection;
-    }
-
-    private void deleteInspectionImages(Inspection inspection) throws IOException {
-        // Delete associated images
-        for (Image image : inspection.getImages()) {
-            try {
-                Path filePath = Paths.get(uploadDirectory, image.getFilePath().replace("/uploads/", ""));
-                Files.deleteIfExists(filePath);
-            } catch (Exception ignore) {
-            }
-        }
+        List<UploadStorageService.StoredBlob> blobs = uploadStorageService.storeAll(newImages);
+        return attachImages(blobs, () -> inspectionRepository.findById(inspectionId)
+                .orElseThrow(() -> new RuntimeException("Inspection not found")));
     }
 
     public void deleteInspectionImage(Long imageId, User user) throws IOException {
@@ -306,8 +220,8 @@ public class InspectionService {
             throw new RuntimeException("Only admins can delete images from admin-conducted inspections");
         }
         
-        deleteImageFile(image);
         imageRepository.deleteById(imageId);
+        uploadStorageService.releaseAfterCommit(List.of(image));
     }
 
     public void deleteInspectionImage(Long imageId, Admin admin) throws IOException {
@@ -315,17 +229,267 @@ public class InspectionService {
                 .orElseThrow(() -> new RuntimeException("Image not found"));
         
         // Admins can delete any image
-        deleteImageFile(image);
         imageRepository.deleteById(imageId);
+        uploadStorageService.releaseAfterCommit(List.of(image));
     }
 
-    private void deleteImageFile(Image image) throws IOException {
-        try {
-            Path filePath = Paths.get(uploadDirectory, image.getFilePath().replace("/uploads/", ""));
-            Files.deleteIfExists(filePath);
-        } catch (Exception e) {
-            // Log the error but don't throw to allow DB record deletion
-            System.err.println("Failed to delete image file: " + e.getMessage());
-        }
-    }    
-}
\ No newline at end of file
+
+    /**
+     * Inspection as rendered by the list and detail views: the entity's own fields plus
+     * summaries of its images, their analysis jobs and the maintenance record. The transformer
+     * is only included for the detail view.
+     */
+    public static class InspectionView {
+        private final Long id;
+        private final String notes;
+        private final LocalDateTime inspectionDate;
+        private final LocalDateTime createdAt;
+        private final PersonView conductedByAdmin;
+        private final PersonView conductedByUser;
+        private final String conductorName;
+        private final String conductorRole;
+        private final TransformerView transformerRecord;
+        private final List<ImageView> images;
+        private final MaintenanceRecordView maintenanceRecord;
+
+        InspectionView(Inspection inspection, boolean includeTransformer) {
+            this.id = inspection.getId();
+            this.notes = inspection.getNotes();
+            this.inspectionDate = inspection.getInspectionDate();
+            this.createdAt = inspection.getCreatedAt();
+            Admin admin = inspection.getConductedByAdmin();
+            User user = inspection.getConductedByUser();
+            this.conductedByAdmin = admin == null ? null
+                    : new PersonView(admin.getId(), admin.getUsername(), admin.getDisplayName());
+            this.conductedByUser = user == null ? null
+                    : new PersonView(user.getId(), user.getUsername(), user.getDisplayName());
+            this.conductorName = inspection.getConductorName();
+            this.conductorRole = inspection.getConductorRole();
+            this.transformerRecord = includeTransformer && inspection.getTransformerRecord() != null
+                    ? new TransformerView(inspection.getTransformerRecord())
+                    : null;
+            this.images = inspection.getImages() == null ? List.of()
+                    : inspection.getImages().stream().map(ImageView::new).toList();
+            this.maintenanceRecord = inspection.getMaintenanceRecord() == null ? null
+                    : new MaintenanceRecordView(inspection.getMaintenanceRecord());
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getNotes() {
+            return notes;
+        }
+
+        public LocalDateTime getInspectionDate() {
+            return inspectionDate;
+        }
+
+        public LocalDateTime getCreatedAt() {
+            return createdAt;
+        }
+
+        public PersonView getConductedByAdmin() {
+            return conductedByAdmin;
+        }
+
+        public PersonView getConductedByUser() {
+            return conductedByUser;
+        }
+
+        // Legacy field still read by the frontend; the admin who conducted the inspection
+        public PersonView getConductedBy() {
+            return conductedByAdmin;
+        }
+
+        public String getConductorName() {
+            return conductorName;
+        }
+
+        public String getConductorRole() {
+            return conductorRole;
+        }
+
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        public TransformerView getTransformerRecord() {
+            return transformerRecord;
+        }
+
+        public List<ImageView> getImages() {
+            return images;
+        }
+
+        public MaintenanceRecordView getMaintenanceRecord() {
+            return maintenanceRecord;
+        }
+    }
+
+    public static class PersonView {
+        private final Long id;
+        private final String username;
+        private final String displayName;
+
+        PersonView(Long id, String username, String displayName) {
+            this.id = id;
+            this.username = username;
+            this.displayName = displayName;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    public static class TransformerView {
+        private final Long id;
+        private final String name;
+        private final String locationName;
+        private final String poleNo;
+        private final String transformerType;
+        private final Double capacity;
+
+        TransformerView(TransformerRecord record) {
+            this.id = record.getId();
+            this.name = record.getName();
+            this.locationName = record.getLocationName();
+            this.poleNo = record.getPoleNo();
+            this.transformerType = record.getTransformerType();
+            this.capacity = record.getCapacity();
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getLocationName() {
+            return locationName;
+        }
+
+        public String getPoleNo() {
+            return poleNo;
+        }
+
+        public String getTransformerType() {
+            return transformerType;
+        }
+
+        public Double getCapacity() {
+            return capacity;
+        }
+    }
+
+    public static class ImageView {
+        private final Long id;
+        private final String filePath;
+        private final LocalDateTime uploadTime;
+        private final String type;
+        private final String weatherCondition;
+        private final AnalysisJobView analysisJob;
+
+        ImageView(Image image) {
+            this.id = image.getId();
+            this.filePath = image.getFilePath();
+            this.uploadTime = image.getUploadTime();
+            this.type = image.getType();
+            this.weatherCondition = image.getWeatherCondition();
+            this.analysisJob = image.getAnalysisJob() == null ? null : new AnalysisJobView(image.getAnalysisJob());
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getFilePath() {
+            return filePath;
+        }
+
+        public LocalDateTime getUploadTime() {
+            return uploadTime;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getWeatherCondition() {
+            return weatherCondition;
+        }
+
+        public AnalysisJobView getAnalysisJob() {
+            return analysisJob;
+        }
+    }
+
+    public static class AnalysisJobView {
+        private final Long id;
+        private final AnalysisJob.AnalysisStatus status;
+        private final String resultLabel;
+        private final Integer detectionCount;
+        private final String boxedImagePath;
+
+        AnalysisJobView(AnalysisJob job) {
+            this.id = job.getId();
+            this.status = job.getStatus();
+            this.resultLabel = job.getResultLabel();
+            this.detectionCount = job.getDetectionCount();
+            this.boxedImagePath = job.getBoxedImagePath();
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public AnalysisJob.AnalysisStatus getStatus() {
+            return status;
+        }
+
+        public String getResultLabel() {
+            return resultLabel;
+        }
+
+        public Integer getDetectionCount() {
+            return detectionCount;
+        }
+
+        public String getBoxedImagePath() {
+            return boxedImagePath;
+        }
+    }
+
+    public static class MaintenanceRecordView {
+        private final Long id;
+        private final String transformerStatus;
+        private final String recordStatus;
+
+        MaintenanceRecordView(MaintenanceRecord record) {
+            this.id = record.getId();
+            this.transformerStatus = record.getTransformerStatus();
+            this.recordStatus = record.getRecordStatus();
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getTransformerStatus() {
+            return transformerStatus;
+        }
+
+        public String getRecordStatus() {
+            return recordStatus;
+        }
+    }
+}
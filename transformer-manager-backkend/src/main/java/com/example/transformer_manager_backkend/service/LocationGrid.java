@@ -0,0 +1,225 @@
+package com.example.transformer_manager_backkend.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Immutable uniform grid over latitude/longitude. Each occupied cell lists the locations that
+ * fall in it, so a viewport only touches the cells it overlaps and a nearest-N search walks
+ * outward ring by ring from the query's cell until nothing unvisited can be closer.
+ */
+final class LocationGrid {
+
+    static final double EARTH_RADIUS_KM = 6371.0;
+
+    private final double cellDegrees;
+    private final int rows;
+    private final int cols;
+    private final Map<Long, List<TransformerLocationIndex.Location>> cells = new HashMap<>();
+    private final int size;
+
+    LocationGrid(Collection<TransformerLocationIndex.Location> locations, double cellDegrees) {
+        this.cellDegrees = cellDegrees;
+        this.rows = (int) Math.ceil(180 / cellDegrees);
+        this.cols = (int) Math.ceil(360 / cellDegrees);
+        for (TransformerLocationIndex.Location location : locations) {
+            cells.computeIfAbsent(key(row(location.getLat()), col(location.getLng())), k -> new ArrayList<>())
+                    .add(location);
+        }
+        this.size = locations.size();
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Locations inside the box. {@code west > east} means the box crosses the antimeridian.
+     */
+    List<TransformerLocationIndex.Location> within(double south, double west, double north, double east) {
+        List<TransformerLocationIndex.Location> result = new ArrayList<>();
+        if (west <= east) {
+            collect(south, west, north, east, result);
+        } else {
+            collect(south, west, north, 180, result);
+            collect(south, -180, north, east, result);
+        }
+        return result;
+    }
+
+    private void collect(double south, double west, double north, double east,
+            List<TransformerLocationIndex.Location> result) {
+        int firstRow = row(south);
+        int lastRow = row(north);
+        int firstCol = col(west);
+        int lastCol = col(east);
+        long spanned = (long) (lastRow - firstRow + 1) * (lastCol - firstCol + 1);
+
+        if (spanned > cells.size()) {
+            // Zoomed far out: fewer occupied cells than covered ones
+            for (List<TransformerLocationIndex.Location> cell : cells.values()) {
+                addInside(cell, south, west, north, east, result);
+            }
+            return;
+        }
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstCol; c <= lastCol; c++) {
+                List<TransformerLocationIndex.Location> cell = cells.get(key(r, c));
+                if (cell != null) {
+                    addInside(cell, south, west, north, east, result);
+                }
+            }
+        }
+    }
+
+    private static void addInside(List<TransformerLocationIndex.Location> cell, double south, double west,
+            double north, double east, List<TransformerLocationIndex.Location> result) {
+        for (TransformerLocationIndex.Location location : cell) {
+            if (location.getLat() >= south && location.getLat() <= north
+                    && location.getLng() >= west && location.getLng() <= east) {
+                result.add(location);
+            }
+        }
+    }
+
+    /**
+     * The {@code limit} locations closest to the point by great-circle distance, nearest first.
+     */
+    List<TransformerLocationIndex.NearbyLocation> nearest(double lat, double lng, int limit) {
+        if (limit <= 0 || size == 0) {
+            return List.of();
+        }
+        // Max-heap on distance holding the best candidates seen so far
+        PriorityQueue<TransformerLocationIndex.NearbyLocation> best = new PriorityQueue<>(
+                Comparator.comparingDouble(TransformerLocationIndex.NearbyLocation::getDistanceKm).reversed());
+        int centerRow = row(lat);
+        int centerCol = col(lng);
+
+        for (int ring = 0;; ring++) {
+            long visitedCells = (long) (2 * ring + 1) * (2 * ring + 1);
+            if (visitedCells > 4L * cells.size() || 2 * ring + 1 > cols) {
+                // Sparse grid (or the rings would wrap onto themselves): scan the occupied cells instead
+                best.clear();
+                for (List<TransformerLocationIndex.Location> cell : cells.values()) {
+                    offerAll(cell, lat, lng, limit, best);
+                }
+                break;
+            }
+            for (int r = centerRow - ring; r <= centerRow + ring; r++) {
+                if (r < 0 || r >= rows) {
+                    continue;
+                }
+                boolean edgeRow = Math.abs(r - centerRow) == ring;
+                for (int c = centerCol - ring; c <= centerCol + ring; c += edgeRow ? 1 : 2 * ring) {
+                    List<TransformerLocationIndex.Location> cell = cells.get(key(r, Math.floorMod(c, cols)));
+                    if (cell != null) {
+                        offerAll(cell, lat, lng, limit, best);
+                    }
+                    if (ring == 0) {
+                        break;
+                    }
+                }
+            }
+            if (best.size() == Math.min(limit, size) && best.peek().getDistanceKm() <= unvisitedLowerBoundKm(lat, ring)) {
+                break;
+            }
+        }
+
+        List<TransformerLocationIndex.NearbyLocation> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingDouble(TransformerLocationIndex.NearbyLocation::getDistanceKm));
+        return result;
+    }
+
+    /**
+     * Lower bound on the distance from a point to anything outside the (2r+1)^2 cells around
+     * its own: such a location is either more than r rows away (a latitude gap of at least
+     * r cells) or within the rows but more than r columns away.
+     */
+    private double unvisitedLowerBoundKm(double lat, int ring) {
+        double gap = Math.toRadians(ring * cellDegrees);
+        double maxLat = Math.min(90, Math.abs(lat) + (ring + 1) * cellDegrees);
+        double lngGap = Math.min(Math.PI, gap);
+        // Two points with latitudes at most maxLat apart by lngGap in longitude are at least this far apart
+        double lngBound = 2 * Math.asin(Math.min(1, Math.cos(Math.toRadians(maxLat)) * Math.sin(lngGap / 2)));
+        return EARTH_RADIUS_KM * Math.min(gap, lngBound);
+    }
+
+    private static void offerAll(List<TransformerLocationIndex.Location> cell, double lat, double lng, int limit,
+            PriorityQueue<TransformerLocationIndex.NearbyLocation> best) {
+        for (TransformerLocationIndex.Location location : cell) {
+            double distance = distanceKm(lat, lng, location.getLat(), location.getLng());
+            if (best.size() < limit) {
+                best.add(new TransformerLocationIndex.NearbyLocation(location, distance));
+            } else if (distance < best.peek().getDistanceKm()) {
+                best.poll();
+                best.add(new TransformerLocationIndex.NearbyLocation(location, distance));
+            }
+        }
+    }
+
+    /**
+     * Groups locations inside the box into at most {@code side x side} clusters placed at
+     * their members' centroid. A cell holding a single location stays a plain location.
+     */
+    static void cluster(List<TransformerLocationIndex.Location> locations, double south, double west,
+            double north, double east, int side, List<TransformerLocationIndex.Location> singles,
+            List<TransformerLocationIndex.LocationCluster> clusters) {
+        double lngSpan = west <= east ? east - west : east - west + 360;
+        double cellLat = Math.max((north - south) / side, 1e-9);
+        double cellLng = Math.max(lngSpan / side, 1e-9);
+
+        Map<Long, List<TransformerLocationIndex.Location>> groups = new LinkedHashMap<>();
+        for (TransformerLocationIndex.Location location : locations) {
+            int r = Math.min(side - 1, (int) ((location.getLat() - south) / cellLat));
+            int c = Math.min(side - 1, (int) (offsetFromWest(location.getLng(), west) / cellLng));
+            groups.computeIfAbsent(key(r, c), k -> new ArrayList<>()).add(location);
+        }
+        for (List<TransformerLocationIndex.Location> group : groups.values()) {
+            if (group.size() == 1) {
+                singles.add(group.get(0));
+                continue;
+            }
+            double sumLat = 0;
+            double sumOffset = 0;
+            for (TransformerLocationIndex.Location location : group) {
+                sumLat += location.getLat();
+                sumOffset += offsetFromWest(location.getLng(), west);
+            }
+            double lng = west + sumOffset / group.size();
+            clusters.add(new TransformerLocationIndex.LocationCluster(sumLat / group.size(),
+                    lng > 180 ? lng - 360 : lng, group.size()));
+        }
+    }
+
+    // Longitude measured eastward from the box's west edge, so boxes across the antimeridian average correctly
+    private static double offsetFromWest(double lng, double west) {
+        double offset = lng - west;
+        return offset < 0 ? offset + 360 : offset;
+    }
+
+    static double distanceKm(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) + Math.cos(Math.toRadians(lat1))
+                * Math.cos(Math.toRadians(lat2)) * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private int row(double lat) {
+        return Math.min(rows - 1, Math.max(0, (int) Math.floor((lat + 90) / cellDegrees)));
+    }
+
+    private int col(double lng) {
+        return Math.min(cols - 1, Math.max(0, (int) Math.floor((lng + 180) / cellDegrees)));
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+}
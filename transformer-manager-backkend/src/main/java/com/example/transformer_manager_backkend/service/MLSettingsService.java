@@ -2,14 +2,29 @@ package com.example.transformer_manager_backkend.service;
 
 import com.example.transformer_manager_backkend.entity.MLSettings;
 import com.example.transformer_manager_backkend.repository.MLSettingsRepository;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * ML settings backed by the ml_settings table. Reads are served from an immutable in-memory
+ * snapshot: writes on this node replace it as soon as they commit, and every node reloads it
+ * periodically so changes made elsewhere are picked up within the refresh interval.
+ */
 @Service
 public class MLSettingsService {
 
@@ -24,10 +39,59 @@ public class MLSettingsService {
     public static final double DEFAULT_FEEDBACK_LEARNING_RATE = 0.0001; // 0.01%
 
     private final MLSettingsRepository mlSettingsRepository;
+    private final ScheduledExecutorService refresher;
+    private volatile SettingsSnapshot snapshot = SettingsSnapshot.EMPTY;
 
-    public MLSettingsService(MLSettingsRepository mlSettingsRepository) {
+    public MLSettingsService(MLSettingsRepository mlSettingsRepository,
+            @Value("${app.ml-settings.refresh-ms:15000}") long refreshIntervalMs) {
         this.mlSettingsRepository = mlSettingsRepository;
         initializeDefaultSettings();
+        refreshSnapshot();
+
+        long interval = Math.max(1000, refreshIntervalMs);
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ml-settings-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refreshQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * Reload the snapshot from the database.
+     */
+    public void refreshSnapshot() {
+        snapshot = SettingsSnapshot.of(mlSettingsRepository.findAll());
+    }
+
+    private void refreshQuietly() {
+        try {
+            refreshSnapshot();
+        } catch (Exception e) {
+            logger.warn("Failed to refresh ML settings: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Replace the snapshot once the current transaction commits, so readers never see a value
+     * that could still be rolled back.
+     */
+    private void refreshAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refreshQuietly();
+                }
+            });
+        } else {
+            refreshQuietly();
+        }
     }
 
     /**
@@ -50,35 +114,14 @@ public class MLSettingsService {
      * Get detection sensitivity
      */
     public double getDetectionSensitivity() {
-        Optional<MLSettings> setting = mlSettingsRepository.findBySettingKey(DETECTION_SENSITIVITY);
-        if (setting.isPresent()) {
-            try {
-                double value = Double.parseDouble(setting.get().getSettingValue());
-                // Clamp to valid range
-                return clamp(value, 0.1, 2.0);
-            } catch (NumberFormatException e) {
-                logger.warn("Invalid sensitivity value: {}, using default", setting.get().getSettingValue());
-                return DEFAULT_SENSITIVITY;
-            }
-        }
-        return DEFAULT_SENSITIVITY;
+        return snapshot.detectionSensitivity;
     }
 
     /**
      * Get feedback learning rate
      */
     public double getFeedbackLearningRate() {
-        Optional<MLSettings> setting = mlSettingsRepository.findBySettingKey(FEEDBACK_LEARNING_RATE);
-        if (setting.isPresent()) {
-            try {
-                double value = Double.parseDouble(setting.get().getSettingValue());
-                return clamp(value, 0.00001, 0.05);
-            } catch (NumberFormatException e) {
-                logger.warn("Invalid feedback learning rate: {}, using default", setting.get().getSettingValue());
-                return DEFAULT_FEEDBACK_LEARNING_RATE;
-            }
-        }
-        return DEFAULT_FEEDBACK_LEARNING_RATE;
+        return snapshot.feedbackLearningRate;
     }
 
     /**
@@ -112,14 +155,14 @@ public class MLSettingsService {
      * Get all ML settings
      */
     public List<MLSettings> getAllSettings() {
-        return mlSettingsRepository.findAll();
+        return List.copyOf(snapshot.settings.values());
     }
 
     /**
      * Get setting by key
      */
     public Optional<MLSettings> getSettingByKey(String key) {
-        return mlSettingsRepository.findBySettingKey(key);
+        return Optional.ofNullable(snapshot.settings.get(key));
     }
 
     /**
@@ -139,6 +182,7 @@ public class MLSettingsService {
             MLSettings setting = new MLSettings(key, value, description);
             mlSettingsRepository.save(setting);
         }
+        refreshAfterCommit();
 
         logger.info("Updated setting {}: {}", key, value);
     }
@@ -151,6 +195,7 @@ public class MLSettingsService {
         Optional<MLSettings> setting = mlSettingsRepository.findBySettingKey(key);
         if (setting.isPresent()) {
             mlSettingsRepository.delete(setting.get());
+            refreshAfterCommit();
             logger.info("Deleted setting: {}", key);
             return true;
         }
@@ -178,9 +223,53 @@ public class MLSettingsService {
             MLSettings setting = new MLSettings(key, value, description);
             mlSettingsRepository.save(setting);
         }
+        refreshAfterCommit();
     }
 
-    private double clamp(double value, double min, double max) {
+    private static double clamp(double value, double min, double max) {
         return Math.max(min, Math.min(max, value));
     }
+
+    private static double parseSetting(Map<String, MLSettings> settings, String key, double defaultValue,
+            double min, double max) {
+        MLSettings setting = settings.get(key);
+        if (setting == null) {
+            return defaultValue;
+        }
+        try {
+            return clamp(Double.parseDouble(setting.getSettingValue()), min, max);
+        } catch (NumberFormatException | NullPointerException e) {
+            logger.warn("Invalid value for {}: {}, using default", key, setting.getSettingValue());
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Immutable view of all settings with the typed values parsed once.
+     */
+    private static final class SettingsSnapshot {
+        static final SettingsSnapshot EMPTY = new SettingsSnapshot(Map.of(), DEFAULT_SENSITIVITY,
+                DEFAULT_FEEDBACK_LEARNING_RATE);
+
+        final Map<String, MLSettings> settings;
+        final double detectionSensitivity;
+        final double feedbackLearningRate;
+
+        private SettingsSnapshot(Map<String, MLSettings> settings, double detectionSensitivity,
+                double feedbackLearningRate) {
+            this.settings = settings;
+            this.detectionSensitivity = detectionSensitivity;
+            this.feedbackLearningRate = feedbackLearningRate;
+        }
+
+        static SettingsSnapshot of(List<MLSettings> rows) {
+            Map<String, MLSettings> settings = new LinkedHashMap<>();
+            for (MLSettings row : rows) {
+                settings.put(row.getSettingKey(), row);
+            }
+            return new SettingsSnapshot(Collections.unmodifiableMap(settings),
+                    parseSetting(settings, DETECTION_SENSITIVITY, DEFAULT_SENSITIVITY, 0.1, 2.0),
+                    parseSetting(settings, FEEDBACK_LEARNING_RATE, DEFAULT_FEEDBACK_LEARNING_RATE, 0.00001, 0.05));
+        }
+    }
 }
@@ -80,15 +80,22 @@ public class MaintenanceRecordPdfService {
 
     private final MaintenanceRecordRepository maintenanceRecordRepository;
     private final AnnotationService annotationService;
+    private final DetectionService detectionService;
+    private final UploadStorageService uploadStorageService;
+    private final AnalysisOutputStore analysisOutputStore;
     private final DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("MMM dd, yyyy HH:mm", Locale.ENGLISH);
 
     @Value("${upload.directory}")
     private String uploadDirectory;
 
     public MaintenanceRecordPdfService(MaintenanceRecordRepository maintenanceRecordRepository,
-            AnnotationService annotationService) {
+            AnnotationService annotationService, DetectionService detectionService,
+            UploadStorageService uploadStorageService, AnalysisOutputStore analysisOutputStore) {
         this.maintenanceRecordRepository = maintenanceRecordRepository;
         this.annotationService = annotationService;
+        this.detectionService = detectionService;
+        this.uploadStorageService = uploadStorageService;
+        this.analysisOutputStore = analysisOutputStore;
     }
 
     @Transactional(readOnly = true)
@@ -99,6 +106,8 @@ public class MaintenanceRecordPdfService {
         MaintenanceRecord record = maintenanceRecordRepository.findById(safeId)
                 .orElseThrow(() -> new RuntimeException("Maintenance record not found"));
 
+        // Blob copies read into the document stay pinned until it is written
+        List<BlobStore.LocalFile> pinned = new ArrayList<>();
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
             @SuppressWarnings("resource")
             Document document = new Document(PageSize.A4, 40, 40, 40, 40);
@@ -118,8 +127,8 @@ public class MaintenanceRecordPdfService {
                     .filter(img -> img != null && "Maintenance".equalsIgnoreCase(img.getType()))
                     .toList();
             Map<Long, String> maintenanceLabelMap = buildMaintenanceLabelMap(maintenanceImages);
-            List<Path> baselineImages = collectBaselineImages(record);
-            List<Path> maintenanceAnnotatedImages = collectMaintenanceAnnotatedImages(maintenanceImages);
+            List<Path> baselineImages = collectBaselineImages(record, pinned);
+            List<Path> maintenanceAnnotatedImages = collectMaintenanceAnnotatedImages(maintenanceImages, pinned);
 
             if (!baselineImages.isEmpty() || !maintenanceAnnotatedImages.isEmpty()) {
                 addImageSection(document, "Baseline Images", baselineImages, "baseline");
@@ -134,6 +143,8 @@ public class MaintenanceRecordPdfService {
             return baos.toByteArray();
         } catch (DocumentException | IOException e) {
             throw new RuntimeException("Failed to generate maintenance record PDF", e);
+        } finally {
+            pinned.forEach(BlobStore.LocalFile::close);
         }
     }
 
@@ -313,7 +324,7 @@ public class MaintenanceRecordPdfService {
             String friendlyLabel = maintenanceLabelMap.getOrDefault(image.getId(), extractFileName(image.getFilePath()));
             table.addCell(createBodyCell(friendlyLabel));
             table.addCell(createBodyCell(job.getStatus() != null ? job.getStatus().name() : NOT_AVAILABLE));
-            table.addCell(createAnomalyCell(job.getResultJson()));
+            table.addCell(createAnomalyCell(job));
             table.addCell(createAnnotationDetailsCell(job, friendlyLabel));
         }
         table.setSpacingAfter(12f);
@@ -410,24 +421,25 @@ public class MaintenanceRecordPdfService {
         document.add(imageTable);
     }
 
-    private List<Path> collectMaintenanceAnnotatedImages(List<Image> maintenanceImages) {
+    private List<Path> collectMaintenanceAnnotatedImages(List<Image> maintenanceImages,
+            List<BlobStore.LocalFile> pinned) {
         Set<Path> collected = new LinkedHashSet<>();
 
         for (Image image : maintenanceImages) {
             AnalysisJob job = image.getAnalysisJob();
             if (job != null && job.getBoxedImagePath() != null) {
-                resolveUploadsPath(job.getBoxedImagePath()).ifPresent(collected::add);
+                resolveUploadsPath(job.getBoxedImagePath(), pinned).ifPresent(collected::add);
                 continue;
             }
 
-            deriveBoxedPathFromOriginal(image).ifPresent(collected::add);
+            deriveBoxedPathFromOriginal(image, pinned).ifPresent(collected::add);
 
-            resolveUploadsPath(image.getFilePath()).ifPresent(collected::add);
+            resolveUploadsPath(image.getFilePath(), pinned).ifPresent(collected::add);
         }
         return new ArrayList<>(collected);
     }
 
-    private List<Path> collectBaselineImages(MaintenanceRecord record) {
+    private List<Path> collectBaselineImages(MaintenanceRecord record, List<BlobStore.LocalFile> pinned) {
         return Optional.ofNullable(record.getInspection())
                 .map(Inspection::getTransformerRecord)
                 .map(TransformerRecord::getImages)
@@ -435,7 +447,7 @@ public class MaintenanceRecordPdfService {
                 .stream()
                 .filter(img -> "Baseline".equalsIgnoreCase(img.getType()))
                 .map(Image::getFilePath)
-                .map(this::resolveUploadsPath)
+                .map(path -> resolveUploadsPath(path, pinned))
                 .flatMap(Optional::stream)
                 .toList();
     }
@@ -537,10 +549,11 @@ public class MaintenanceRecordPdfService {
         document.add(bulletList);
     }
 
-    private PdfPCell createAnomalyCell(String resultJson) {
+    private PdfPCell createAnomalyCell(AnalysisJob job) {
         PdfPCell cell = new PdfPCell();
         cell.setPadding(6f);
-        AnomalySummary summary = extractAnomalySummary(resultJson);
+        AnomalySummary summary = job.getDetectionCount() != null ? summarizeDetections(job)
+                : extractAnomalySummary(job.getResultJson());
 
         if (summary.label != null) {
             Paragraph labelParagraph = new Paragraph("Label: " + summary.label, CELL_FONT);
@@ -612,6 +625,15 @@ public class MaintenanceRecordPdfService {
         return cell;
     }
 
+    private AnomalySummary summarizeDetections(AnalysisJob job) {
+        List<String> anomalies = detectionService.getDetections(job).stream()
+                .limit(6)
+                .map(detection -> String.format(Locale.ENGLISH, "%s (%.1f%%)", detection.getLabel(),
+                        (detection.getConfidence() != null ? detection.getConfidence() : 0) * 100))
+                .toList();
+        return new AnomalySummary(job.getResultLabel(), anomalies);
+    }
+
     private AnomalySummary extractAnomalySummary(String resultJson) {
         if (resultJson == null || resultJson.isBlank()) {
             return new AnomalySummary(null, List.of());
@@ -688,7 +710,7 @@ public class MaintenanceRecordPdfService {
                 transformerRecord.getLocationLng());
     }
 
-    private Optional<Path> deriveBoxedPathFromOriginal(Image image) {
+    private Optional<Path> deriveBoxedPathFromOriginal(Image image, List<BlobStore.LocalFile> pinned) {
         if (image.getFilePath() == null || image.getFilePath().isBlank()) {
             return Optional.empty();
         }
@@ -707,15 +729,28 @@ public class MaintenanceRecordPdfService {
         }
         String extension = fileName.substring(dotIndex);
         String candidate = "analysis/" + baseName + "_boxed" + extension;
-        return resolveUploadsPath(candidate);
+        return resolveUploadsPath(candidate, pinned);
     }
 
-    private Optional<Path> resolveUploadsPath(String storedPath) {
+    private Optional<Path> resolveUploadsPath(String storedPath, List<BlobStore.LocalFile> pinned) {
         if (storedPath == null || storedPath.isBlank()) {
             return Optional.empty();
         }
 
         String normalized = storedPath.replace("\\", "/");
+        // Content-addressed uploads and analysis outputs live in the blob store, which may not be this disk
+        try {
+            Optional<BlobStore.LocalFile> blob = uploadStorageService.localFileFor(normalized);
+            if (blob.isEmpty()) {
+                blob = analysisOutputStore.localFile(normalized);
+            }
+            if (blob.isPresent()) {
+                pinned.add(blob.get());
+                return Optional.of(blob.get().getPath());
+            }
+        } catch (IOException e) {
+            return Optional.empty();
+        }
         if (normalized.startsWith("/")) {
             normalized = normalized.substring(1);
         }
@@ -2,23 +2,33 @@ package com.example.transformer_manager_backkend.service;
 
 import com.example.transformer_manager_backkend.entity.Annotation;
 import com.example.transformer_manager_backkend.entity.FeedbackSnapshot;
+import com.example.transformer_manager_backkend.entity.LabelFeedbackAggregate;
 import com.example.transformer_manager_backkend.repository.AnnotationRepository;
 import com.example.transformer_manager_backkend.repository.FeedbackSnapshotRepository;
+import com.example.transformer_manager_backkend.repository.LabelFeedbackAggregateRepository;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -36,80 +46,160 @@ public class ModelFeedbackService {
 
     private final AnnotationRepository annotationRepository;
     private final FeedbackSnapshotRepository feedbackSnapshotRepository;
+    private final LabelFeedbackAggregateRepository labelFeedbackAggregateRepository;
     private final ObjectMapper objectMapper;
+    private final Object payloadLock = new Object();
+    private volatile CachedPayload cachedPayload;
+    private long payloadVersion;
 
     public ModelFeedbackService(AnnotationRepository annotationRepository,
-            FeedbackSnapshotRepository feedbackSnapshotRepository) {
+            FeedbackSnapshotRepository feedbackSnapshotRepository,
+            LabelFeedbackAggregateRepository labelFeedbackAggregateRepository) {
         this.annotationRepository = annotationRepository;
         this.feedbackSnapshotRepository = feedbackSnapshotRepository;
+        this.labelFeedbackAggregateRepository = labelFeedbackAggregateRepository;
         this.objectMapper = new ObjectMapper();
     }
 
     /**
-     * Generate summary statistics describing the feedback impact using the provided learning rate.
+     * Seed the running aggregates from the annotation history the first time the service runs
+     * against a database that predates them.
      */
-    public FeedbackSummary generateFeedbackSummary(double learningRate) {
-        List<Annotation> annotations = annotationRepository.findAll();
-        Map<String, LabelAggregate> aggregates = new HashMap<>();
-        int annotationSamples = 0;
+    @EventListener(ApplicationReadyEvent.class)
+    public void initializeAggregates() {
+        try {
+            if (labelFeedbackAggregateRepository.count() == 0 && annotationRepository.count() > 0) {
+                rebuildFeedbackAggregates();
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to initialize feedback aggregates: {}", e.getMessage());
+        }
+    }
 
-        for (Annotation annotation : annotations) {
+    /**
+     * Recompute the per-label aggregates from every annotation. Only needed to seed the table
+     * or to repair it after annotations were removed outside the application.
+     */
+    @Transactional
+    public void rebuildFeedbackAggregates() {
+        Map<String, LabelAggregate> totals = new HashMap<>();
+        for (Annotation annotation : annotationRepository.findAll()) {
             if (annotation == null) {
                 continue;
             }
+            contribution(annotation.getId(), annotation.getOriginalResultJson(), annotation.getModifiedResultJson())
+                    .forEach((label, aggregate) -> totals.computeIfAbsent(label, key -> new LabelAggregate())
+                            .add(aggregate, 1));
+        }
+
+        labelFeedbackAggregateRepository.deleteAllInBatch();
+        LocalDateTime now = LocalDateTime.now();
+        List<LabelFeedbackAggregate> rows = new ArrayList<>();
+        totals.forEach((label, aggregate) -> {
+            LabelFeedbackAggregate row = new LabelFeedbackAggregate(label);
+            row.setTotalCountDelta(aggregate.totalCountDelta);
+            row.setTotalAreaDelta(aggregate.totalAreaDelta);
+            row.setTotalOrigArea(aggregate.totalOrigArea);
+            row.setTotalUserArea(aggregate.totalUserArea);
+            row.setTotalConfidenceDelta(aggregate.totalConfidenceDelta);
+            row.setSampleCount(aggregate.sampleCount);
+            row.setRevision(1);
+            row.setUpdatedAt(now);
+            rows.add(row);
+        });
+        labelFeedbackAggregateRepository.saveAll(rows);
+        logger.info("Rebuilt feedback aggregates for {} labels", rows.size());
+    }
+
+    /**
+     * Apply one annotation save to the running aggregates: its previous contribution (if any)
+     * is replaced by the contribution of the new modified result. Joins the caller's
+     * transaction, so the aggregates commit together with the annotation.
+     */
+    @Transactional
+    public void recordAnnotationFeedback(Long annotationId, String originalJson, String previousModifiedJson,
+            String modifiedJson) {
+        Map<String, LabelAggregate> previous = previousModifiedJson == null ? Map.of()
+                : contribution(annotationId, originalJson, previousModifiedJson);
+        Map<String, LabelAggregate> current = contribution(annotationId, originalJson, modifiedJson);
+
+        Set<String> labels = new HashSet<>(previous.keySet());
+        labels.addAll(current.keySet());
+        LocalDateTime now = LocalDateTime.now();
+        for (String label : labels) {
+            LabelAggregate delta = new LabelAggregate();
+            delta.add(current.get(label), 1);
+            delta.add(previous.get(label), -1);
+            if (!delta.isZero()) {
+                labelFeedbackAggregateRepository.addToLabel(label, delta.totalCountDelta, delta.totalAreaDelta,
+                        delta.totalOrigArea, delta.totalUserArea, delta.totalConfidenceDelta, delta.sampleCount, now);
+            }
+        }
+    }
 
-            try {
-                Map<String, LabelStats> original = extractLabelStats(annotation.getOriginalResultJson());
-                Map<String, LabelStats> updated = extractLabelStats(annotation.getModifiedResultJson());
-
-                if (original.isEmpty() && updated.isEmpty()) {
-                    continue;
-                }
-
-                Set<String> labels = new HashSet<>();
-                labels.addAll(original.keySet());
-                labels.addAll(updated.keySet());
-
-                for (String label : labels) {
-                    LabelStats origStats = Optional.ofNullable(original.get(label)).orElse(LabelStats.empty());
-                    LabelStats newStats = Optional.ofNullable(updated.get(label)).orElse(LabelStats.empty());
-
-                    LabelAggregate aggregate = aggregates.computeIfAbsent(label, key -> new LabelAggregate());
-                    aggregate.totalCountDelta += (newStats.count - origStats.count);
-                    aggregate.totalAreaDelta += (newStats.areaSum - origStats.areaSum);
-                    aggregate.totalOrigArea += origStats.areaSum;
-                    aggregate.totalUserArea += newStats.areaSum;
-                    aggregate.totalConfidenceDelta += (newStats.confidenceSum - origStats.confidenceSum);
-                    aggregate.sampleCount += 1;
-                }
-
-                annotationSamples++;
-            } catch (Exception e) {
-                logger.warn("Failed to parse annotation feedback for annotation {}: {}", annotation.getId(), e.getMessage());
+    /**
+     * Per-label contribution of one annotation: one sample for every label in either result.
+     */
+    private Map<String, LabelAggregate> contribution(Long annotationId, String originalJson, String modifiedJson) {
+        Map<String, LabelAggregate> contribution = new HashMap<>();
+        try {
+            Map<String, LabelStats> original = extractLabelStats(originalJson);
+            Map<String, LabelStats> updated = extractLabelStats(modifiedJson);
+
+            Set<String> labels = new HashSet<>();
+            labels.addAll(original.keySet());
+            labels.addAll(updated.keySet());
+
+            for (String label : labels) {
+                LabelStats origStats = Optional.ofNullable(original.get(label)).orElse(LabelStats.empty());
+                LabelStats newStats = Optional.ofNullable(updated.get(label)).orElse(LabelStats.empty());
+
+                LabelAggregate aggregate = new LabelAggregate();
+                aggregate.totalCountDelta = newStats.count - origStats.count;
+                aggregate.totalAreaDelta = newStats.areaSum - origStats.areaSum;
+                aggregate.totalOrigArea = origStats.areaSum;
+                aggregate.totalUserArea = newStats.areaSum;
+                aggregate.totalConfidenceDelta = newStats.confidenceSum - origStats.confidenceSum;
+                aggregate.sampleCount = 1;
+                contribution.put(label, aggregate);
             }
+        } catch (Exception e) {
+            logger.warn("Failed to parse annotation feedback for annotation {}: {}", annotationId, e.getMessage());
+            return Map.of();
         }
+        return contribution;
+    }
+
+    /**
+     * Generate summary statistics describing the feedback impact using the provided learning rate.
+     * Reads the running per-label aggregates, so the cost depends on the number of labels rather
+     * than the size of the annotation history.
+     */
+    public FeedbackSummary generateFeedbackSummary(double learningRate) {
+        List<LabelFeedbackAggregate> aggregates = labelFeedbackAggregateRepository.findAllByOrderByLabelAsc();
+        int annotationSamples = (int) annotationRepository.count();
 
         List<LabelFeedback> labelFeedback = new ArrayList<>();
         double totalAdjustment = 0.0;
 
-        for (Map.Entry<String, LabelAggregate> entry : aggregates.entrySet()) {
-            String label = entry.getKey();
-            LabelAggregate aggregate = entry.getValue();
-            if (aggregate.sampleCount == 0) {
+        for (LabelFeedbackAggregate aggregate : aggregates) {
+            String label = aggregate.getLabel();
+            int sampleCount = aggregate.getSampleCount();
+            if (sampleCount <= 0) {
                 continue;
             }
 
-            double avgCountDelta = aggregate.totalCountDelta / aggregate.sampleCount;
-            double avgAreaDelta = aggregate.totalAreaDelta / aggregate.sampleCount;
-            double avgOrigArea = aggregate.totalOrigArea / aggregate.sampleCount;
-            double avgConfidenceDelta = aggregate.totalConfidenceDelta / aggregate.sampleCount;
+            double avgCountDelta = aggregate.getTotalCountDelta() / sampleCount;
+            double avgAreaDelta = aggregate.getTotalAreaDelta() / sampleCount;
+            double avgOrigArea = aggregate.getTotalOrigArea() / sampleCount;
+            double avgConfidenceDelta = aggregate.getTotalConfidenceDelta() / sampleCount;
 
             double areaRatio;
             if (avgOrigArea > 1e-6) {
                 areaRatio = avgAreaDelta / (avgOrigArea + 1e-6);
-            } else if (aggregate.totalAreaDelta > 0) {
+            } else if (aggregate.getTotalAreaDelta() > 0) {
                 areaRatio = 1.0;
-            } else if (aggregate.totalAreaDelta < 0) {
+            } else if (aggregate.getTotalAreaDelta() < 0) {
                 areaRatio = -1.0;
             } else {
                 areaRatio = 0.0;
@@ -126,7 +216,7 @@ public class ModelFeedbackService {
                     areaRatio,
                     avgConfidenceDelta,
                     adjustment,
-                    aggregate.sampleCount);
+                    sampleCount);
             labelFeedback.add(feedback);
             totalAdjustment += adjustment;
         }
@@ -142,10 +232,37 @@ public class ModelFeedbackService {
     }
 
     /**
-     * Build payload for inference consumption.
+     * Build payload for inference consumption. The payload is cached and only rebuilt when the
+     * learning rate differs or the label aggregates or the number of annotations have changed
+     * since it was built (on any node, as the check reads the aggregate table's stamp), which
+     * makes the common case a single tiny query. A feedback snapshot is persisted only when a rebuild changes the
+     * payload's content.
      */
     public FeedbackPayload buildFeedbackPayload(double learningRate) {
-        FeedbackSummary summary = generateFeedbackSummary(learningRate);
+        String aggregateStamp = labelFeedbackAggregateRepository.findAggregateStamp();
+        CachedPayload cached = cachedPayload;
+        if (cached != null && cached.matches(aggregateStamp, learningRate)) {
+            return cached.payload;
+        }
+
+        synchronized (payloadLock) {
+            cached = cachedPayload;
+            if (cached != null && cached.matches(aggregateStamp, learningRate)) {
+                return cached.payload;
+            }
+            FeedbackSummary summary = generateFeedbackSummary(learningRate);
+            ObjectNode root = toPayloadJson(summary);
+            FeedbackPayload payload = new FeedbackPayload(summary, root, fingerprint(root), ++payloadVersion);
+            if (cached == null || !cached.payload.getFingerprint().equals(payload.getFingerprint())) {
+                persistSnapshot(payload);
+            }
+            cachedPayload = new CachedPayload(aggregateStamp, learningRate, payload);
+            logger.info("Feedback payload rebuilt as version {}", payload.getVersion());
+            return payload;
+        }
+    }
+
+    private ObjectNode toPayloadJson(FeedbackSummary summary) {
         ObjectNode root = objectMapper.createObjectNode();
 
         root.put("generated_at", summary.getGeneratedAt().toString());
@@ -173,9 +290,22 @@ public class ModelFeedbackService {
             detailObject.put("samples", feedback.getSamples());
         }
 
-        FeedbackPayload payload = new FeedbackPayload(summary, root);
-        persistSnapshot(payload);
-        return payload;
+        return root;
+    }
+
+    /**
+     * Hash of everything in the payload that affects inference, i.e. all of it except the
+     * generation timestamp. Equal fingerprints mean the model sees identical feedback.
+     */
+    private String fingerprint(ObjectNode payload) {
+        ObjectNode content = payload.deepCopy();
+        content.remove("generated_at");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 
     private Map<String, LabelStats> extractLabelStats(String json) throws Exception {
@@ -343,6 +473,25 @@ public class ModelFeedbackService {
         }
     }
 
+    /**
+     * Payload together with the inputs it was built from.
+     */
+    private static class CachedPayload {
+        final String aggregateStamp;
+        final double learningRate;
+        final FeedbackPayload payload;
+
+        CachedPayload(String aggregateStamp, double learningRate, FeedbackPayload payload) {
+            this.aggregateStamp = aggregateStamp;
+            this.learningRate = learningRate;
+            this.payload = payload;
+        }
+
+        boolean matches(String stamp, double rate) {
+            return Objects.equals(aggregateStamp, stamp) && Double.compare(learningRate, rate) == 0;
+        }
+    }
+
     /**
      * Container for aggregated statistics per label.
      */
@@ -353,6 +502,23 @@ public class ModelFeedbackService {
         double totalUserArea = 0.0;
         double totalConfidenceDelta = 0.0;
         int sampleCount = 0;
+
+        void add(LabelAggregate other, int sign) {
+            if (other == null) {
+                return;
+            }
+            totalCountDelta += sign * other.totalCountDelta;
+            totalAreaDelta += sign * other.totalAreaDelta;
+            totalOrigArea += sign * other.totalOrigArea;
+            totalUserArea += sign * other.totalUserArea;
+            totalConfidenceDelta += sign * other.totalConfidenceDelta;
+            sampleCount += sign * other.sampleCount;
+        }
+
+        boolean isZero() {
+            return sampleCount == 0 && totalCountDelta == 0.0 && totalAreaDelta == 0.0 && totalOrigArea == 0.0
+                    && totalUserArea == 0.0 && totalConfidenceDelta == 0.0;
+        }
     }
 
     private static class LabelStats {
@@ -448,10 +614,17 @@ public class ModelFeedbackService {
     public static class FeedbackPayload {
         private final FeedbackSummary summary;
         private final ObjectNode payload;
+        private final String fingerprint;
+        private final long version;
+        private final String json;
 
-        FeedbackPayload(FeedbackSummary summary, ObjectNode payload) {
+        FeedbackPayload(FeedbackSummary summary, ObjectNode payload, String fingerprint, long version) {
             this.summary = summary;
             this.payload = payload;
+            this.fingerprint = fingerprint;
+            this.version = version;
+            // Serialized once; the payload is shared by every job until it is rebuilt
+            this.json = payload.toPrettyString();
         }
 
         public FeedbackSummary getSummary() {
@@ -463,7 +636,18 @@ public class ModelFeedbackService {
         }
 
         public String toJsonString() {
-            return payload.toPrettyString();
+            return json;
+        }
+
+        /**
+         * Increases every time this node rebuilds the payload.
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
         }
 
         public boolean hasAdjustments() {
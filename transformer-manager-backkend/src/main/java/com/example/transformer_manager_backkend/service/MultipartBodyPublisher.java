@@ -0,0 +1,53 @@
+package com.example.transformer_manager_backkend.service;
+
+import java.io.FileNotFoundException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Builds a multipart/form-data body for {@link java.net.http.HttpClient}. File parts are
+ * published straight from disk and every part has a known length, so the request goes out
+ * with a Content-Length and without buffering the images.
+ */
+class MultipartBodyPublisher {
+
+    private final String boundary = "----analysis" + UUID.randomUUID().toString().replace("-", "");
+    private final List<BodyPublisher> parts = new ArrayList<>();
+
+    MultipartBodyPublisher addField(String name, String value) {
+        parts.add(text("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + name + "\"\r\n\r\n"
+                + value + "\r\n"));
+        return this;
+    }
+
+    MultipartBodyPublisher addFile(String name, Path file) throws FileNotFoundException {
+        String filename = file.getFileName().toString().replace("\"", "%22");
+        parts.add(text("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + name + "\"; filename=\"" + filename + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n"));
+        parts.add(BodyPublishers.ofFile(file));
+        parts.add(text("\r\n"));
+        return this;
+    }
+
+    String contentType() {
+        return "multipart/form-data; boundary=" + boundary;
+    }
+
+    HttpRequest.BodyPublisher build() {
+        List<BodyPublisher> all = new ArrayList<>(parts);
+        all.add(text("--" + boundary + "--\r\n"));
+        return BodyPublishers.concat(all.toArray(BodyPublisher[]::new));
+    }
+
+    private static BodyPublisher text(String value) {
+        return BodyPublishers.ofByteArray(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.transformer_manager_backkend.service;
+
+import java.security.Principal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.AuthenticatedPrincipal;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.transformer_manager_backkend.entity.Account;
+import com.example.transformer_manager_backkend.entity.Admin;
+import com.example.transformer_manager_backkend.entity.User;
+import com.example.transformer_manager_backkend.repository.AccountRepository;
+import com.example.transformer_manager_backkend.repository.AdminRepository;
+import com.example.transformer_manager_backkend.repository.UserRepository;
+
+/**
+ * Short-lived cache of principals, resolving each username with a single query against the
+ * admin/user union ({@link Account}). It backs both the JWT filter and the controllers, so a
+ * request resolves its caller at most once per TTL instead of per table per call site.
+ *
+ * <p>Tokens are trusted on their signature and role claims; the filter only asks this cache
+ * whether the account still exists and whether the token predates a revocation. Revocation
+ * moves the principal's {@code tokens_valid_after} cutoff forward. It applies on this node at
+ * once and on other nodes when their cached entry expires.
+ */
+@Service
+public class PrincipalCache {
+
+    private final AccountRepository accountRepository;
+    private final AdminRepository adminRepository;
+    private final UserRepository userRepository;
+    private final long ttlMs;
+    private final LongSupplier clock;
+    private final Map<String, CachedPrincipal> entries;
+
+    @Autowired
+    public PrincipalCache(AccountRepository accountRepository, AdminRepository adminRepository,
+            UserRepository userRepository,
+            @Value("${app.auth.principal-cache.ttl-ms:60000}") long ttlMs,
+            @Value("${app.auth.principal-cache.max-entries:10000}") int maxEntries) {
+        this(accountRepository, adminRepository, userRepository, ttlMs, maxEntries, System::currentTimeMillis);
+    }
+
+    PrincipalCache(AccountRepository accountRepository, AdminRepository adminRepository,
+            UserRepository userRepository, long ttlMs, int maxEntries, LongSupplier clock) {
+        this.accountRepository = accountRepository;
+        this.adminRepository = adminRepository;
+        this.userRepository = userRepository;
+        this.ttlMs = ttlMs;
+        this.clock = clock;
+        int capacity = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedPrincipal> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * The principal a token issued at {@code issuedAt} stands for, or empty if the account no
+     * longer exists or its tokens were revoked after that.
+     */
+    public Optional<CachedPrincipal> resolveToken(String username, Instant issuedAt) {
+        return resolve(username).filter(principal -> principal.tokensValidAfter == null
+                || (issuedAt != null && !issuedAt.isBefore(principal.tokensValidAfter)));
+    }
+
+    public Optional<CachedPrincipal> resolve(String username) {
+        return Optional.ofNullable(get(username));
+    }
+
+    /**
+     * The caller of the current request. Requests authenticated by the JWT filter already
+     * carry their {@link CachedPrincipal}, so this normally costs nothing.
+     */
+    public Optional<CachedPrincipal> current(Principal principal) {
+        if (principal instanceof Authentication authentication
+                && authentication.getPrincipal() instanceof CachedPrincipal cached) {
+            return Optional.of(cached);
+        }
+        return principal == null ? Optional.empty() : resolve(principal.getName());
+    }
+
+    public Optional<Admin> currentAdmin(Principal principal) {
+        return current(principal).filter(CachedPrincipal::isAdmin).map(CachedPrincipal::toAdmin);
+    }
+
+    /**
+     * Reject every token issued to {@code username} so far.
+     *
+     * @return false if no such principal exists
+     */
+    @Transactional
+    public boolean revokeTokens(String username) {
+        // JWT issue times have second precision: tokens issued from this second on stay valid, so
+        // signing back in right after revoking works (tokens issued earlier in the second do too)
+        LocalDateTime cutoff = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        int updated = adminRepository.updateTokensValidAfter(username, cutoff)
+                + userRepository.updateTokensValidAfter(username, cutoff);
+        evict(username);
+        return updated > 0;
+    }
+
+    public void evict(String username) {
+        synchronized (entries) {
+            entries.remove(username);
+        }
+    }
+
+    private CachedPrincipal get(String username) {
+        long now = clock.getAsLong();
+        synchronized (entries) {
+            CachedPrincipal cached = entries.get(username);
+            if (cached != null && now - cached.loadedAt < ttlMs) {
+                return cached.exists ? cached : null;
+            }
+        }
+        CachedPrincipal loaded = load(username, now);
+        synchronized (entries) {
+            entries.put(username, loaded);
+        }
+        return loaded.exists ? loaded : null;
+    }
+
+    private CachedPrincipal load(String username, long now) {
+        Optional<Account> account = accountRepository.findFirstByUsernameOrderByRoleAsc(username);
+        if (account.isPresent()) {
+            Account found = account.get();
+            return new CachedPrincipal(username, found.getRole(), found.getAccountId(), found.getDisplayName(),
+                    toInstant(found.getTokensValidAfter()), true, now);
+        }
+        // Unknown names are cached too, so a stale token can't turn every request into a query
+        return new CachedPrincipal(username, null, null, null, null, false, now);
+    }
+
+    private static Instant toInstant(LocalDateTime time) {
+        return time == null ? null : time.atZone(ZoneId.systemDefault()).toInstant();
+    }
+
+    /**
+     * Used as the authenticated principal, so {@code Principal.getName()} in controllers keeps
+     * returning the username.
+     */
+    public static class CachedPrincipal implements AuthenticatedPrincipal {
+        private final String username;
+        private final String role;
+        private final Long accountId;
+        private final String displayName;
+        private final Instant tokensValidAfter;
+        private final boolean exists;
+        private final long loadedAt;
+
+        CachedPrincipal(String username, String role, Long accountId, String displayName,
+                Instant tokensValidAfter, boolean exists, long loadedAt) {
+            this.username = username;
+            this.role = role;
+            this.accountId = accountId;
+            this.displayName = displayName;
+            this.tokensValidAfter = tokensValidAfter;
+            this.exists = exists;
+            this.loadedAt = loadedAt;
+        }
+
+        @Override
+        public String getName() {
+            return username;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        // Account.ROLE_ADMIN or Account.ROLE_USER
+        public String getRole() {
+            return role;
+        }
+
+        public boolean isAdmin() {
+            return Account.ROLE_ADMIN.equals(role);
+        }
+
+        // Id in the admins or users table, depending on the role
+        public Long getAccountId() {
+            return accountId;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        /**
+         * A detached {@link Admin} carrying this principal's id, for use as an association
+         * (e.g. "conducted by") without loading the row. It has no password.
+         */
+        public Admin toAdmin() {
+            if (!isAdmin()) {
+                throw new IllegalStateException(username + " is not an admin");
+            }
+            Admin admin = new Admin(username, null, displayName);
+            admin.setId(accountId);
+            return admin;
+        }
+
+        public User toUser() {
+            if (!Account.ROLE_USER.equals(role)) {
+                throw new IllegalStateException(username + " is not a user");
+            }
+            User user = new User(username, null, displayName);
+            user.setId(accountId);
+            return user;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.transformer_manager_backkend.service;
+
+import java.io.IOException;
+
+/**
+ * Failure reported by the remote inference endpoint. Retryable failures (5xx, 429) mean the
+ * endpoint is struggling and the same request may succeed later; the rest mean the request
+ * itself was rejected.
+ */
+public class RemoteInferenceException extends IOException {
+
+    private final boolean retryable;
+
+    public RemoteInferenceException(String message, boolean retryable) {
+        super(message);
+        this.retryable = retryable;
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+}
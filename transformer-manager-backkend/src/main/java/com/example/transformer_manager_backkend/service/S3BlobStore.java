@@ -0,0 +1,551 @@
+package com.example.transformer_manager_backkend.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * {@link BlobStore} on an S3-compatible object store (AWS S3, MinIO, Ceph RGW and the like),
+ * spoken to directly over the JDK {@link HttpClient} with Signature Version 4 authentication.
+ * Request bodies are streamed unsigned ({@code UNSIGNED-PAYLOAD}) so large uploads are never
+ * buffered or read twice.
+ *
+ * <p>Blobs needed as local files are downloaded into a cache directory bounded by a byte
+ * budget, evicting least recently used copies first. Copies handed out by {@link #localFile}
+ * are pinned until closed; eviction passes over them and deletes them once released.
+ */
+public class S3BlobStore implements BlobStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3BlobStore.class);
+
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+    private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+
+    private final HttpClient httpClient;
+    private final URI endpoint;
+    private final String bucket;
+    private final String region;
+    private final String accessKey;
+    private final String secretKey;
+    private final boolean pathStyle;
+    private final Duration timeout;
+    private final Clock clock;
+    private final Path cacheDir;
+    private final long cacheMaxBytes;
+    // Cached local copy -> entry, in access order
+    private final LinkedHashMap<Path, CachedCopy> cached = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    public S3BlobStore(URI endpoint, String bucket, String region, String accessKey, String secretKey,
+            boolean pathStyle, Duration timeout, Path cacheDir, long cacheMaxBytes) {
+        this(endpoint, bucket, region, accessKey, secretKey, pathStyle, timeout, cacheDir, cacheMaxBytes,
+                Clock.systemUTC());
+    }
+
+    S3BlobStore(URI endpoint, String bucket, String region, String accessKey, String secretKey, boolean pathStyle,
+            Duration timeout, Path cacheDir, long cacheMaxBytes, Clock clock) {
+        this.httpClient = HttpClient.newBuilder().connectTimeout(timeout).build();
+        String base = endpoint.toString();
+        this.endpoint = URI.create(base.endsWith("/") ? base.substring(0, base.length() - 1) : base);
+        this.bucket = bucket;
+        this.region = region;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.pathStyle = pathStyle;
+        this.timeout = timeout;
+        this.cacheDir = cacheDir;
+        this.cacheMaxBytes = cacheMaxBytes;
+        this.clock = clock;
+        loadCached();
+    }
+
+    /**
+     * The stream can be read only once, so the body can't be sent again; a client that tries
+     * to (on a redirect, say) fails the upload instead of sending a truncated blob.
+     */
+    @Override
+    public void put(String key, InputStream content, long length) throws IOException {
+        AtomicBoolean subscribed = new AtomicBoolean();
+        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.fromPublisher(
+                HttpRequest.BodyPublishers.ofInputStream(() -> {
+                    if (!subscribed.compareAndSet(false, true)) {
+                        throw new IllegalStateException("Upload stream for " + key + " was already sent");
+                    }
+                    return content;
+                }), length);
+        upload(key, body);
+    }
+
+    // Sent from the file, so the client can re-send the body if it has to
+    @Override
+    public void putFile(String key, Path file) throws IOException {
+        upload(key, HttpRequest.BodyPublishers.ofFile(file));
+        Files.deleteIfExists(file);
+    }
+
+    private void upload(String key, HttpRequest.BodyPublisher body) throws IOException {
+        try (InputStream response = expectSuccess(send("PUT", key, new TreeMap<>(), null, body), "PUT", key)) {
+            response.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    @Override
+    public Optional<BlobInfo> stat(String key) throws IOException {
+        HttpResponse<InputStream> response = send("HEAD", key, new TreeMap<>(), null,
+                HttpRequest.BodyPublishers.noBody());
+        response.body().close();
+        if (response.statusCode() == 404) {
+            return Optional.empty();
+        }
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("S3 HEAD " + key + " failed with status " + response.statusCode());
+        }
+        long size = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+        long lastModified = response.headers().firstValue("Last-Modified").map(S3BlobStore::parseHttpDate)
+                .orElse(0L);
+        return Optional.of(new BlobInfo(size, lastModified));
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        return expectSuccess(send("GET", key, new TreeMap<>(), null, HttpRequest.BodyPublishers.noBody()), "GET",
+                key);
+    }
+
+    @Override
+    public InputStream getRange(String key, long offset, long length) throws IOException {
+        if (length <= 0) {
+            return InputStream.nullInputStream();
+        }
+        HttpResponse<InputStream> response = send("GET", key, new TreeMap<>(),
+                "bytes=" + offset + "-" + (offset + length - 1), HttpRequest.BodyPublishers.noBody());
+        if (response.statusCode() == 416) {
+            response.body().close();
+            return InputStream.nullInputStream();
+        }
+        InputStream body = expectSuccess(response, "GET", key);
+        if (response.statusCode() == 206) {
+            return body;
+        }
+        // The server ignored the range and sent the whole blob
+        body.skipNBytes(offset);
+        return new LocalBlobStore.BoundedInputStream(body, length);
+    }
+
+    @Override
+    public List<String> list(String prefix) throws IOException {
+        List<String> keys = new ArrayList<>();
+        String continuationToken = null;
+        do {
+            SortedMap<String, String> query = new TreeMap<>();
+            query.put("list-type", "2");
+            query.put("prefix", prefix);
+            if (continuationToken != null) {
+                query.put("continuation-token", continuationToken);
+            }
+            Document page;
+            try (InputStream body = expectSuccess(send("GET", null, query, null,
+                    HttpRequest.BodyPublishers.noBody()), "LIST", prefix)) {
+                page = parseXml(body);
+            }
+            NodeList contents = page.getElementsByTagNameNS("*", "Key");
+            for (int i = 0; i < contents.getLength(); i++) {
+                keys.add(contents.item(i).getTextContent());
+            }
+            boolean truncated = "true".equals(text(page, "IsTruncated"));
+            continuationToken = truncated ? text(page, "NextContinuationToken") : null;
+        } while (continuationToken != null);
+        return keys;
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        HttpResponse<InputStream> response = send("DELETE", key, new TreeMap<>(), null,
+                HttpRequest.BodyPublishers.noBody());
+        if (response.statusCode() == 404) {
+            response.body().close();
+        } else {
+            expectSuccess(response, "DELETE", key).close();
+        }
+        Path local = cacheDir.resolve(key).normalize();
+        synchronized (cached) {
+            CachedCopy copy = cached.remove(local);
+            if (copy != null) {
+                cachedBytes -= copy.size;
+                if (copy.pins > 0) {
+                    // Whoever still reads the copy deletes it when done
+                    copy.dropped = true;
+                    return;
+                }
+            }
+        }
+        Files.deleteIfExists(local);
+    }
+
+    @Override
+    public Optional<URI> presignedGetUrl(String key, Duration ttl) {
+        ZonedDateTime now = ZonedDateTime.now(clock).withZoneSameInstant(ZoneOffset.UTC);
+        String amzDate = AMZ_DATE.format(now);
+        SortedMap<String, String> query = new TreeMap<>();
+        query.put("X-Amz-Algorithm", ALGORITHM);
+        query.put("X-Amz-Credential", accessKey + "/" + scope(amzDate));
+        query.put("X-Amz-Date", amzDate);
+        query.put("X-Amz-Expires", String.valueOf(Math.max(1, ttl.getSeconds())));
+        query.put("X-Amz-SignedHeaders", "host");
+
+        SortedMap<String, String> headers = new TreeMap<>();
+        headers.put("host", hostHeader());
+        String signature = signature(canonicalRequest("GET", canonicalPath(key), canonicalQuery(query), headers,
+                UNSIGNED_PAYLOAD), amzDate);
+        return Optional.of(URI.create(baseUri() + canonicalPath(key) + "?" + canonicalQuery(query)
+                + "&X-Amz-Signature=" + signature));
+    }
+
+    @Override
+    public LocalFile localFile(String key) throws IOException {
+        Path local = cacheDir.resolve(key).normalize();
+        if (!local.startsWith(cacheDir.normalize())) {
+            throw new IllegalArgumentException("Invalid blob key: " + key);
+        }
+        synchronized (cached) {
+            CachedCopy copy = cached.get(local);
+            if (copy != null && Files.exists(local)) {
+                return pin(local, copy);
+            }
+        }
+        Files.createDirectories(local.getParent());
+        Path temp = local.resolveSibling(local.getFileName() + "." + UUID.randomUUID() + ".part");
+        try {
+            try (InputStream in = get(key)) {
+                Files.copy(in, temp);
+            }
+            Files.move(temp, local, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return recordCached(local, Files.size(local), true);
+    }
+
+    // Callers hold the lock on cached
+    private LocalFile pin(Path local, CachedCopy copy) {
+        copy.pins++;
+        return new LocalFile(local, true, () -> unpin(local, copy));
+    }
+
+    private void unpin(Path local, CachedCopy copy) {
+        boolean delete;
+        synchronized (cached) {
+            copy.pins--;
+            delete = copy.pins == 0 && copy.dropped && !cached.containsKey(local);
+        }
+        if (delete) {
+            deleteCopy(local);
+        } else {
+            evictOverBudget();
+        }
+    }
+
+    private HttpResponse<InputStream> send(String method, String key, SortedMap<String, String> query, String range,
+            HttpRequest.BodyPublisher body) throws IOException {
+        ZonedDateTime now = ZonedDateTime.now(clock).withZoneSameInstant(ZoneOffset.UTC);
+        String amzDate = AMZ_DATE.format(now);
+        String path = canonicalPath(key);
+        String canonicalQuery = canonicalQuery(query);
+
+        SortedMap<String, String> headers = new TreeMap<>();
+        headers.put("host", hostHeader());
+        headers.put("x-amz-content-sha256", UNSIGNED_PAYLOAD);
+        headers.put("x-amz-date", amzDate);
+        String signature = signature(canonicalRequest(method, path, canonicalQuery, headers, UNSIGNED_PAYLOAD),
+                amzDate);
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(
+                URI.create(baseUri() + path + (canonicalQuery.isEmpty() ? "" : "?" + canonicalQuery)))
+                .timeout(timeout)
+                .method(method, body)
+                .header("x-amz-content-sha256", UNSIGNED_PAYLOAD)
+                .header("x-amz-date", amzDate)
+                .header("Authorization", ALGORITHM + " Credential=" + accessKey + "/" + scope(amzDate)
+                        + ", SignedHeaders=" + String.join(";", headers.keySet()) + ", Signature=" + signature);
+        if (range != null) {
+            request.header("Range", range);
+        }
+        try {
+            return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during S3 " + method + " " + key);
+        }
+    }
+
+    private static InputStream expectSuccess(HttpResponse<InputStream> response, String operation, String key)
+            throws IOException {
+        int status = response.statusCode();
+        if (status / 100 == 2) {
+            return response.body();
+        }
+        String detail;
+        try (InputStream body = response.body()) {
+            detail = new String(body.readNBytes(512), StandardCharsets.UTF_8);
+        }
+        if (status == 404) {
+            throw new NoSuchFileException(key);
+        }
+        throw new IOException("S3 " + operation + " " + key + " failed with status " + status + ": " + detail);
+    }
+
+    // Object URLs are /bucket/key on path-style endpoints (MinIO) and /key on bucket.host otherwise
+    private String baseUri() {
+        if (pathStyle) {
+            return endpoint.toString();
+        }
+        return endpoint.getScheme() + "://" + bucket + "." + endpoint.getRawAuthority();
+    }
+
+    private String hostHeader() {
+        String host = pathStyle ? endpoint.getHost() : bucket + "." + endpoint.getHost();
+        int port = endpoint.getPort();
+        boolean defaultPort = port == -1 || (port == 80 && "http".equals(endpoint.getScheme()))
+                || (port == 443 && "https".equals(endpoint.getScheme()));
+        return defaultPort ? host : host + ":" + port;
+    }
+
+    String canonicalPath(String key) {
+        StringBuilder path = new StringBuilder();
+        if (pathStyle) {
+            path.append('/').append(uriEncode(bucket));
+        }
+        path.append('/');
+        if (key != null) {
+            String[] segments = key.split("/", -1);
+            for (int i = 0; i < segments.length; i++) {
+                if (i > 0) {
+                    path.append('/');
+                }
+                path.append(uriEncode(segments[i]));
+            }
+        }
+        return path.toString();
+    }
+
+    static String canonicalQuery(SortedMap<String, String> query) {
+        StringBuilder canonical = new StringBuilder();
+        for (Map.Entry<String, String> parameter : query.entrySet()) {
+            if (canonical.length() > 0) {
+                canonical.append('&');
+            }
+            canonical.append(uriEncode(parameter.getKey())).append('=').append(uriEncode(parameter.getValue()));
+        }
+        return canonical.toString();
+    }
+
+    static String canonicalRequest(String method, String path, String query, SortedMap<String, String> headers,
+            String payloadHash) {
+        StringBuilder canonical = new StringBuilder();
+        canonical.append(method).append('\n').append(path).append('\n').append(query).append('\n');
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            canonical.append(header.getKey()).append(':').append(header.getValue().trim()).append('\n');
+        }
+        canonical.append('\n').append(String.join(";", headers.keySet())).append('\n').append(payloadHash);
+        return canonical.toString();
+    }
+
+    String signature(String canonicalRequest, String amzDate) {
+        String stringToSign = ALGORITHM + "\n" + amzDate + "\n" + scope(amzDate) + "\n"
+                + HexFormat.of().formatHex(sha256(canonicalRequest.getBytes(StandardCharsets.UTF_8)));
+        byte[] key = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), amzDate.substring(0, 8));
+        key = hmac(key, region);
+        key = hmac(key, "s3");
+        key = hmac(key, "aws4_request");
+        return HexFormat.of().formatHex(hmac(key, stringToSign));
+    }
+
+    private String scope(String amzDate) {
+        return amzDate.substring(0, 8) + "/" + region + "/s3/aws4_request";
+    }
+
+    // RFC 3986 unreserved characters pass through; everything else is percent-encoded as UTF-8
+    static String uriEncode(String value) {
+        StringBuilder encoded = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xff);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_'
+                    || c == '.' || c == '~') {
+                encoded.append(c);
+            } else {
+                encoded.append('%').append(String.format("%02X", b & 0xff));
+            }
+        }
+        return encoded.toString();
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static Document parseXml(InputStream body) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            return factory.newDocumentBuilder().parse(new ByteArrayInputStream(body.readAllBytes()));
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Unreadable S3 listing", e);
+        }
+    }
+
+    private static String text(Document document, String element) {
+        NodeList nodes = document.getElementsByTagNameNS("*", element);
+        return nodes.getLength() == 0 ? null : nodes.item(0).getTextContent();
+    }
+
+    private static long parseHttpDate(String value) {
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return 0L;
+        }
+    }
+
+    private LocalFile recordCached(Path local, long size, boolean pinned) {
+        LocalFile file = null;
+        synchronized (cached) {
+            CachedCopy copy = cached.get(local);
+            if (copy == null) {
+                copy = new CachedCopy(size);
+                cached.put(local, copy);
+                cachedBytes += size;
+            } else if (copy.size != size) {
+                cachedBytes += size - copy.size;
+                copy.size = size;
+            }
+            if (pinned) {
+                file = pin(local, copy);
+            }
+        }
+        evictOverBudget();
+        return file;
+    }
+
+    // Pinned copies are passed over; they are evicted on a later pass once released
+    private void evictOverBudget() {
+        List<Path> evicted = new ArrayList<>();
+        synchronized (cached) {
+            Iterator<Map.Entry<Path, CachedCopy>> eldest = cached.entrySet().iterator();
+            while (cachedBytes > cacheMaxBytes && eldest.hasNext()) {
+                Map.Entry<Path, CachedCopy> entry = eldest.next();
+                if (entry.getValue().pins > 0) {
+                    continue;
+                }
+                cachedBytes -= entry.getValue().size;
+                evicted.add(entry.getKey());
+                eldest.remove();
+            }
+        }
+        evicted.forEach(this::deleteCopy);
+    }
+
+    private void deleteCopy(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Failed to evict cached blob {}: {}", path, e.getMessage());
+        }
+    }
+
+    // Pick up copies cached by earlier runs, oldest first so they are evicted first
+    private void loadCached() {
+        if (!Files.isDirectory(cacheDir)) {
+            return;
+        }
+        List<Map.Entry<Path, BasicFileAttributes>> existing = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(cacheDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                if (attributes.isRegularFile() && !file.getFileName().toString().endsWith(".part")) {
+                    existing.add(Map.entry(file, attributes));
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to index cached blobs in {}: {}", cacheDir, e.getMessage());
+            return;
+        }
+        existing.sort(Comparator.comparing(entry -> entry.getValue().lastModifiedTime()));
+        for (Map.Entry<Path, BasicFileAttributes> entry : existing) {
+            recordCached(entry.getKey(), entry.getValue().size(), false);
+        }
+    }
+
+    // Guarded by the lock on cached
+    private static class CachedCopy {
+        private long size;
+        private int pins;
+        // Deleted from the store while pinned; the last reader removes the file
+        private boolean dropped;
+
+        CachedCopy(long size) {
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.transformer_manager_backkend.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.transformer_manager_backkend.repository.TransformerRecordRepository;
+import com.example.transformer_manager_backkend.repository.TransformerRecordRepository.TransformerLocationRow;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * In-memory grid index of transformer coordinates backing the map endpoints. The grid is an
+ * immutable snapshot rebuilt from the database after transformer writes on this node commit
+ * and periodically, so records created on other nodes show up within the refresh interval.
+ */
+@Service
+public class TransformerLocationIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransformerLocationIndex.class);
+
+    private final TransformerRecordRepository transformerRecordRepository;
+    private final double cellDegrees;
+    private final ScheduledExecutorService refresher;
+    private volatile LocationGrid grid;
+
+    public TransformerLocationIndex(TransformerRecordRepository transformerRecordRepository,
+            @Value("${app.locations.cell-degrees:0.1}") double cellDegrees,
+            @Value("${app.locations.refresh-ms:60000}") long refreshIntervalMs) {
+        this.transformerRecordRepository = transformerRecordRepository;
+        this.cellDegrees = cellDegrees > 0 ? cellDegrees : 0.1;
+        this.grid = new LocationGrid(List.of(), this.cellDegrees);
+
+        long interval = Math.max(1000, refreshIntervalMs);
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "location-index-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refreshQuietly, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * Rebuild the grid from the database.
+     */
+    public void refresh() {
+        List<Location> locations = new ArrayList<>();
+        for (TransformerLocationRow row : transformerRecordRepository.findAllLocations()) {
+            locations.add(new Location(row.getId(), row.getName(), row.getLocationName(), row.getLat(), row.getLng(),
+                    Boolean.TRUE.equals(row.getStarred())));
+        }
+        grid = new LocationGrid(locations, cellDegrees);
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            logger.warn("Failed to refresh the transformer location index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuild once the current transaction commits (immediately outside one). The rebuild runs
+     * on the refresher thread so writers don't wait for it.
+     */
+    public void refreshAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refresher.execute(TransformerLocationIndex.this::refreshQuietly);
+                }
+            });
+        } else {
+            refresher.execute(this::refreshQuietly);
+        }
+    }
+
+    /**
+     * Transformers inside the viewport. When more than {@code maxLocations} match, they are
+     * grouped into at most roughly {@code maxLocations} clusters instead; clusters of one come
+     * back as plain locations.
+     */
+    public ViewportResult findInViewport(double south, double west, double north, double east, int maxLocations) {
+        List<Location> matches = grid.within(south, west, north, east);
+        if (matches.size() <= maxLocations) {
+            return new ViewportResult(matches.size(), matches, List.of());
+        }
+        int side = Math.max(1, (int) Math.sqrt(maxLocations));
+        List<Location> singles = new ArrayList<>();
+        List<LocationCluster> clusters = new ArrayList<>();
+        LocationGrid.cluster(matches, south, west, north, east, side, singles, clusters);
+        return new ViewportResult(matches.size(), singles, clusters);
+    }
+
+    public List<NearbyLocation> findNearest(double lat, double lng, int limit) {
+        return grid.nearest(lat, lng, limit);
+    }
+
+    public static class Location {
+        private final Long id;
+        private final String name;
+        private final String locationName;
+        private final double lat;
+        private final double lng;
+        private final boolean starred;
+
+        Location(Long id, String name, String locationName, double lat, double lng, boolean starred) {
+            this.id = id;
+            this.name = name;
+            this.locationName = locationName;
+            this.lat = lat;
+            this.lng = lng;
+            this.starred = starred;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getLocationName() {
+            return locationName;
+        }
+
+        public double getLat() {
+            return lat;
+        }
+
+        public double getLng() {
+            return lng;
+        }
+
+        public boolean isStarred() {
+            return starred;
+        }
+    }
+
+    public static class NearbyLocation {
+        private final Location location;
+        private final double distanceKm;
+
+        NearbyLocation(Location location, double distanceKm) {
+            this.location = location;
+            this.distanceKm = distanceKm;
+        }
+
+        @JsonUnwrapped
+        public Location getLocation() {
+            return location;
+        }
+
+        public double getDistanceKm() {
+            return distanceKm;
+        }
+    }
+
+    public static class LocationCluster {
+        private final double lat;
+        private final double lng;
+        private final int count;
+
+        LocationCluster(double lat, double lng, int count) {
+            this.lat = lat;
+            this.lng = lng;
+            this.count = count;
+        }
+
+        public double getLat() {
+            return lat;
+        }
+
+        public double getLng() {
+            return lng;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+
+    public static class ViewportResult {
+        private final int total;
+        private final List<Location> locations;
+        private final List<LocationCluster> clusters;
+
+        ViewportResult(int total, List<Location> locations, List<LocationCluster> clusters) {
+            this.total = total;
+            this.locations = locations;
+            this.clusters = clusters;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public List<Location> getLocations() {
+            return locations;
+        }
+
+        public List<LocationCluster> getClusters() {
+            return clusters;
+        }
+    }
+}
@@ -2,31 +2,46 @@ package com.example.transformer_manager_backkend.service;
 
 import com.example.transformer_manager_backkend.entity.Admin;
 import com.example.transformer_manager_backkend.entity.Image;
+import com.example.transformer_manager_backkend.entity.Inspection;
 import com.example.transformer_manager_backkend.entity.TransformerRecord;
 import com.example.transformer_manager_backkend.repository.TransformerRecordRepository;
+import com.example.transformer_manager_backkend.repository.TransformerRecordRepository.TransformerRecordSummaryRow;
 import com.example.transformer_manager_backkend.repository.ImageRepository;
-import org.springframework.beans.factory.annotation.Value;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Locale;
 
 @Service
 public class TransformerRecordService {
 
     private final TransformerRecordRepository transformerRecordRepository;
     private final ImageRepository imageRepository;
+    private final TransformerLocationIndex locationIndex;
+    private final UploadStorageService uploadStorageService;
 
-    @Value("${upload.directory}")
-    private String uploadDirectory;
+    public static final String SORT_NAME = "name";
+    public static final String SORT_NEWEST = "newest";
+    // Cursor key of records without a creation time, which come last in the newest-first order
+    private static final String NO_CREATED_AT = "none";
+    private static final int MAX_PAGE_SIZE = 100;
 
     public TransformerRecordService(TransformerRecordRepository transformerRecordRepository,
-            ImageRepository imageRepository) {
+            ImageRepository imageRepository, TransformerLocationIndex locationIndex,
+            UploadStorageService uploadStorageService) {
         this.transformerRecordRepository = transformerRecordRepository;
         this.imageRepository = imageRepository;
+        this.locationIndex = locationIndex;
+        this.uploadStorageService = uploadStorageService;
     }
 
     public TransformerRecord saveTransformerRecord(
@@ -50,35 +65,114 @@ public class TransformerRecordService {
         transformerRecord.setPoleNo(poleNo);
         transformerRecord.setUploadedBy(uploadedBy);
 
-        List<Image> imageEntities = new ArrayList<>();
-        for (ImageDTO imgDto : images) {
-            // Only allow baseline images for transformer creation
-            if (!"Baseline".equals(imgDto.type)) {
-                throw new IllegalArgumentException("Only baseline images are allowed for transformer creation");
-            }
+        // Only allow baseline images for transformer creation; checked before anything is stored
+        requireBaseline(images, "Only baseline images are allowed for transformer creation");
+        List<UploadStorageService.StoredBlob> blobs = storeImages(images);
+        try {
+            uploadStorageService.restamp(blobs);
+            transformerRecord.setImages(createImageEntities(images, blobs, transformerRecord));
+            TransformerRecord saved = transformerRecordRepository.save(transformerRecord);
+            locationIndex.refreshAfterCommit();
+            return saved;
+        } catch (IOException | RuntimeException e) {
+            uploadStorageService.discard(blobs);
+            throw e;
+        }
+    }
 
-            String fileName = System.currentTimeMillis() + "_" + imgDto.file.getOriginalFilename();
-            Path uploadPath = Paths.get(uploadDirectory);
-            if (!Files.exists(uploadPath))
-                Files.createDirectories(uploadPath);
-            Path filePath = uploadPath.resolve(fileName);
-            Files.copy(imgDto.file.getInputStream(), filePath);
+    public List<TransformerRecord> getAllTransformerRecords() {
+        return transformerRecordRepository.findAll();
+    }
 
-            Image image = new Image();
-            image.setFilePath("/uploads/" + fileName);
-            image.setType(imgDto.type);
-            image.setWeatherCondition(imgDto.weatherCondition);
-            image.setTransformerRecord(transformerRecord);
+    /**
+     * One keyset page of transformer summaries. {@code sort} is "name" (A-Z) or "newest";
+     * {@code cursor} is the {@code nextCursor} of the previous page, or null for the first.
+     *
+     * @throws IllegalArgumentException for an unknown sort or a cursor from another sort
+     */
+    public SummaryPage getTransformerRecordSummaries(Boolean starred, String type, String location,
+            String sort, String cursor, int size) {
+        String sortKey = sort == null ? SORT_NAME : sort;
+        if (!SORT_NAME.equals(sortKey) && !SORT_NEWEST.equals(sortKey)) {
+            throw new IllegalArgumentException("Unknown sort: " + sort);
+        }
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        String typeFilter = type == null || type.isBlank() ? null : type.trim().toLowerCase(Locale.ROOT);
+        String locationPattern = location == null || location.isBlank() ? null
+                : "%" + location.trim().toLowerCase(Locale.ROOT).replace("\\", "\\\\").replace("%", "\\%")
+                        .replace("_", "\\_") + "%";
+
+        String afterKey = null;
+        Long afterId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] decoded = decodeCursor(cursor, sortKey);
+            afterKey = decoded[0];
+            afterId = Long.valueOf(decoded[1]);
+        }
 
-            imageEntities.add(image);
+        // One extra row tells whether another page follows
+        Limit limit = Limit.of(pageSize + 1);
+        List<TransformerRecordSummaryRow> rows;
+        if (SORT_NAME.equals(sortKey)) {
+            rows = afterId == null
+                    ? transformerRecordRepository.findSummariesByName(starred, typeFilter, locationPattern, limit)
+                    : transformerRecordRepository.findSummariesByNameAfter(starred, typeFilter, locationPattern,
+                            afterKey, afterId, limit);
+        } else if (NO_CREATED_AT.equals(afterKey)) {
+            rows = transformerRecordRepository.findSummariesWithoutCreatedAt(starred, typeFilter, locationPattern,
+                    afterId, limit);
+        } else {
+            rows = new ArrayList<>(afterId == null
+                    ? transformerRecordRepository.findSummariesByNewest(starred, typeFilter, locationPattern, limit)
+                    : transformerRecordRepository.findSummariesByNewestAfter(starred, typeFilter, locationPattern,
+                            parseCursorTime(afterKey), afterId, limit));
+            // Records without a creation time follow the dated ones
+            if (rows.size() < pageSize + 1) {
+                rows.addAll(transformerRecordRepository.findSummariesWithoutCreatedAt(starred, typeFilter,
+                        locationPattern, Long.MAX_VALUE, Limit.of(pageSize + 1 - rows.size())));
+            }
         }
 
-        transformerRecord.setImages(imageEntities);
-        return transformerRecordRepository.save(transformerRecord);
+        List<TransformerRecordSummary> items = new ArrayList<>();
+        for (int i = 0; i < Math.min(rows.size(), pageSize); i++) {
+            items.add(new TransformerRecordSummary(rows.get(i)));
+        }
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            TransformerRecordSummaryRow last = rows.get(pageSize - 1);
+            String key = SORT_NAME.equals(sortKey) ? last.getName()
+                    : last.getCreatedAt() == null ? NO_CREATED_AT : last.getCreatedAt().toString();
+            nextCursor = encodeCursor(sortKey, key, last.getId());
+        }
+        return new SummaryPage(items, nextCursor);
     }
 
-    public List<TransformerRecord> getAllTransformerRecords() {
-        return transformerRecordRepository.findAll();
+    private static LocalDateTime parseCursorTime(String key) {
+        try {
+            return LocalDateTime.parse(key);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+
+    private static String encodeCursor(String sort, String key, Long id) {
+        String raw = sort + "|" + id + "|" + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Returns {key, id}; the key goes last because names may contain the separator
+    private static String[] decodeCursor(String cursor, String sort) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+        String[] parts = raw.split("\\|", 3);
+        if (parts.length != 3 || !parts[0].equals(sort) || !parts[1].matches("\\d+")) {
+            throw new IllegalArgumentException("Cursor does not belong to sort " + sort);
+        }
+        return new String[] { parts[2], parts[1] };
     }
 
     public TransformerRecord getTransformerRecordById(Long id) {
@@ -90,29 +184,25 @@ public class TransformerRecordService {
         TransformerRecord transformerRecord = transformerRecordRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Transformer record not found"));
 
-        // Delete associated images
-        for (Image image : transformerRecord.getImages()) {
-            try {
-                Path filePath = Paths.get(uploadDirectory, image.getFilePath().replace("/uploads/", ""));
-                Files.deleteIfExists(filePath);
-            } catch (Exception ignore) {
+        // Deleting the record cascades to its images and to its inspections' images
+        List<Image> images = new ArrayList<>(transformerRecord.getImages());
+        if (transformerRecord.getInspections() != null) {
+            for (Inspection inspection : transformerRecord.getInspections()) {
+                images.addAll(inspection.getImages());
             }
         }
 
         transformerRecordRepository.deleteById(id);
+        uploadStorageService.releaseAfterCommit(images);
+        locationIndex.refreshAfterCommit();
     }
 
     public void deleteImage(Long imageId) throws IOException {
         Image image = imageRepository.findById(imageId)
                 .orElseThrow(() -> new RuntimeException("Image not found"));
 
-        try {
-            Path filePath = Paths.get(uploadDirectory, image.getFilePath().replace("/uploads/", ""));
-            Files.deleteIfExists(filePath);
-        } catch (Exception ignore) {
-        }
-
         imageRepository.deleteById(imageId);
+        uploadStorageService.releaseAfterCommit(List.of(image));
     }
 
     public TransformerRecord updateTransformerRecord(
@@ -145,33 +235,50 @@ public class TransformerRecordService {
         if (poleNo != null)
             transformerRecord.setPoleNo(poleNo);
 
-        if (newImages != null && !newImages.isEmpty()) {
-            List<Image> imageEntities = transformerRecord.getImages();
-
-            for (ImageDTO imgDto : newImages) {
-                // Only allow baseline images for transformer updates
-                if (!"Baseline".equals(imgDto.type)) {
-                    throw new IllegalArgumentException("Only baseline images are allowed for transformer updates");
-                }
-
-                String fileName = System.currentTimeMillis() + "_" + imgDto.file.getOriginalFilename();
-                Path uploadPath = Paths.get(uploadDirectory);
-                if (!Files.exists(uploadPath))
-                    Files.createDirectories(uploadPath);
-                Path filePath = uploadPath.resolve(fileName);
-                Files.copy(imgDto.file.getInputStream(), filePath);
-
-                Image image = new Image();
-                image.setFilePath("/uploads/" + fileName);
-                image.setType(imgDto.type);
-                image.setWeatherCondition(imgDto.weatherCondition);
-                image.setTransformerRecord(transformerRecord);
-
-                imageEntities.add(image);
+        List<ImageDTO> images = newImages != null ? newImages : List.of();
+        // Only allow baseline images for transformer updates; checked before anything is stored
+        requireBaseline(images, "Only baseline images are allowed for transformer updates");
+        List<UploadStorageService.StoredBlob> blobs = storeImages(images);
+        try {
+            uploadStorageService.restamp(blobs);
+            if (!images.isEmpty()) {
+                transformerRecord.getImages().addAll(createImageEntities(images, blobs, transformerRecord));
             }
+            TransformerRecord saved = transformerRecordRepository.save(transformerRecord);
+            locationIndex.refreshAfterCommit();
+            return saved;
+        } catch (IOException | RuntimeException e) {
+            uploadStorageService.discard(blobs);
+            throw e;
         }
+    }
+
+    private static void requireBaseline(List<ImageDTO> images, String message) {
+        for (ImageDTO imgDto : images) {
+            if (!"Baseline".equals(imgDto.type)) {
+                throw new IllegalArgumentException(message);
+            }
+        }
+    }
 
-        return transformerRecordRepository.save(transformerRecord);
+    // Stored side by side; if one fails, the others are given back
+    private List<UploadStorageService.StoredBlob> storeImages(List<ImageDTO> images) throws IOException {
+        return uploadStorageService.storeAll(images.stream().map(imgDto -> imgDto.file).toList());
+    }
+
+    private static List<Image> createImageEntities(List<ImageDTO> images, List<UploadStorageService.StoredBlob> blobs,
+            TransformerRecord transformerRecord) {
+        List<Image> imageEntities = new ArrayList<>();
+        for (int i = 0; i < images.size(); i++) {
+            Image image = new Image();
+            image.setFilePath(blobs.get(i).getWebPath());
+            image.setContentHash(blobs.get(i).getContentHash());
+            image.setType(images.get(i).type);
+            image.setWeatherCondition(images.get(i).weatherCondition);
+            image.setTransformerRecord(transformerRecord);
+            imageEntities.add(image);
+        }
+        return imageEntities;
     }
 
     public TransformerRecord toggleStarred(Long id) {
@@ -179,7 +286,9 @@ public class TransformerRecordService {
                 .orElseThrow(() -> new RuntimeException("Transformer record not found"));
 
         transformerRecord.setStarred(!transformerRecord.getStarred());
-        return transformerRecordRepository.save(transformerRecord);
+        TransformerRecord saved = transformerRecordRepository.save(transformerRecord);
+        locationIndex.refreshAfterCommit();
+        return saved;
     }
 
     public static class ImageDTO {
@@ -187,4 +296,114 @@ public class TransformerRecordService {
         public String type;
         public String weatherCondition;
     }
-}
\ No newline at end of file
+
+    public static class TransformerRecordSummary {
+        private final Long id;
+        private final String name;
+        private final String locationName;
+        private final Double locationLat;
+        private final Double locationLng;
+        private final Double capacity;
+        private final String transformerType;
+        private final String poleNo;
+        private final Boolean starred;
+        private final LocalDateTime createdAt;
+        private final long imageCount;
+        private final long inspectionCount;
+        private final LocalDateTime latestInspectionDate;
+        private final String thumbnailUrl;
+
+        TransformerRecordSummary(TransformerRecordSummaryRow row) {
+            this.id = row.getId();
+            this.name = row.getName();
+            this.locationName = row.getLocationName();
+            this.locationLat = row.getLocationLat();
+            this.locationLng = row.getLocationLng();
+            this.capacity = row.getCapacity();
+            this.transformerType = row.getTransformerType();
+            this.poleNo = row.getPoleNo();
+            this.starred = row.getStarred();
+            this.createdAt = row.getCreatedAt();
+            this.imageCount = row.getImageCount() == null ? 0 : row.getImageCount();
+            this.inspectionCount = row.getInspectionCount() == null ? 0 : row.getInspectionCount();
+            this.latestInspectionDate = row.getLatestInspectionDate();
+            this.thumbnailUrl = row.getThumbnailPath();
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getLocationName() {
+            return locationName;
+        }
+
+        public Double getLocationLat() {
+            return locationLat;
+        }
+
+        public Double getLocationLng() {
+            return locationLng;
+        }
+
+        public Double getCapacity() {
+            return capacity;
+        }
+
+        public String getTransformerType() {
+            return transformerType;
+        }
+
+        public String getPoleNo() {
+            return poleNo;
+        }
+
+        public Boolean getStarred() {
+            return starred;
+        }
+
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss")
+        public LocalDateTime getCreatedAt() {
+            return createdAt;
+        }
+
+        public long getImageCount() {
+            return imageCount;
+        }
+
+        public long getInspectionCount() {
+            return inspectionCount;
+        }
+
+        public LocalDateTime getLatestInspectionDate() {
+            return latestInspectionDate;
+        }
+
+        public String getThumbnailUrl() {
+            return thumbnailUrl;
+        }
+    }
+
+    public static class SummaryPage {
+        private final List<TransformerRecordSummary> items;
+        private final String nextCursor;
+
+        SummaryPage(List<TransformerRecordSummary> items, String nextCursor) {
+            this.items = items;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<TransformerRecordSummary> getItems() {
+            return items;
+        }
+
+        // Null on the last page
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+}
@@ -1,9 +1,7 @@
 package com.example.transformer_manager_backkend.service;
 
-import com.example.transformer_manager_backkend.entity.Admin;
-import com.example.transformer_manager_backkend.entity.User;
-import com.example.transformer_manager_backkend.repository.AdminRepository;
-import com.example.transformer_manager_backkend.repository.UserRepository;
+import com.example.transformer_manager_backkend.entity.Account;
+import com.example.transformer_manager_backkend.repository.AccountRepository;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -16,51 +14,28 @@ public class UniversalDetailsService implements UserDetailsService {
 
     private static final Logger logger = LoggerFactory.getLogger(UniversalDetailsService.class);
 
-    private final AdminRepository adminRepository;
-    private final UserRepository userRepository;
+    private final AccountRepository accountRepository;
 
-    public UniversalDetailsService(AdminRepository adminRepository, UserRepository userRepository) {
-        this.adminRepository = adminRepository;
-        this.userRepository = userRepository;
+    public UniversalDetailsService(AccountRepository accountRepository) {
+        this.accountRepository = accountRepository;
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         logger.info("Attempting to load user: {}", username);
 
-        // First check if it's an admin
-        Admin admin = adminRepository.findByUsername(username).orElse(null);
-        if (admin != null) {
-            logger.info("Found admin: {}", username);
-            return org.springframework.security.core.userdetails.User.builder()
-                    .username(admin.getUsername())
-                    .password(admin.getPassword())
-                    .roles("ADMIN")
-                    .build();
+        // Admins and users in one query
+        Account account = accountRepository.findFirstByUsernameOrderByRoleAsc(username).orElse(null);
+        if (account == null) {
+            logger.warn("User not found: {}", username);
+            throw new UsernameNotFoundException("User not found with username: " + username);
         }
 
-        // Then check if it's a user
-        User user = userRepository.findByUsername(username).orElse(null);
-        if (user != null) {
-            logger.info("Found user: {}", username);
-            return org.springframework.security.core.userdetails.User.builder()
-                    .username(user.getUsername())
-                    .password(user.getPassword())
-                    .roles("USER")
-                    .build();
-        }
-
-        logger.warn("User not found: {}", username);
-        throw new UsernameNotFoundException("User not found with username: " + username);
-    }
-
-    public String getUserRole(String username) {
-        if (adminRepository.findByUsername(username).isPresent()) {
-            return "ADMIN";
-        }
-        if (userRepository.findByUsername(username).isPresent()) {
-            return "USER";
-        }
-        return null;
+        logger.info("Found {}: {}", account.getRole().toLowerCase(), username);
+        return org.springframework.security.core.userdetails.User.builder()
+                .username(account.getUsername())
+                .password(account.getPassword())
+                .roles(account.getRole())
+                .build();
     }
 }
@@ -0,0 +1,495 @@
+package com.example.transformer_manager_backkend.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.example.transformer_manager_backkend.entity.Image;
+import com.example.transformer_manager_backkend.entity.UploadBlob;
+import com.example.transformer_manager_backkend.repository.ImageRepository;
+import com.example.transformer_manager_backkend.repository.UploadBlobRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Content-addressed storage for uploaded images. A file is stored once in the {@link BlobStore}
+ * under the SHA-256 of its bytes, sharded by the first two byte pairs of the hash (key
+ * {@code ab/cd/abcd…ef.jpg}, web path {@code /uploads/ab/cd/abcd…ef.jpg}), so identical uploads
+ * share one blob and no directory grows without bound.
+ *
+ * <p>Blobs are reference counted by the {@link Image} rows carrying their hash. A blob is
+ * deleted once the rows releasing it have committed and no other row refers to it. Blobs
+ * handed out by a recent {@link #store} are kept for a grace period, since the row that will
+ * reference them may not have committed yet; {@link #restamp} restarts it just before that
+ * row is written, so slow uploads don't eat into it. Blobs stored inside a transaction that rolls back
+ * are released again. Both the hand-out time and the release go through the blob's
+ * {@link UploadBlob} row, so nodes sharing a blob store agree on them: a release holds the row
+ * locked while it checks and deletes, and a store on any node waits for it.
+ *
+ * <p>Images uploaded before content addressing have no hash; their files are deleted with the
+ * row as before.
+ */
+@Service
+public class UploadStorageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadStorageService.class);
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+    private static final Pattern EXTENSION = Pattern.compile("\\.[a-z0-9]{1,5}");
+    private static final Pattern KEY = Pattern.compile("[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}(\\.[a-z0-9]{1,5})?");
+    private static final String WEB_PREFIX = "/uploads/";
+
+    private final ImageRepository imageRepository;
+    private final UploadBlobRepository uploadBlobRepository;
+    private final BlobStore blobStore;
+    private final TransactionTemplate transactionTemplate;
+    // Hand-out stamps commit on their own, before the blob is handed out
+    private final TransactionTemplate newTransactionTemplate;
+    // Staging area for incoming uploads, and home of uploads that predate content addressing
+    private final Path uploadRoot;
+    private final Duration directUrlTtl;
+    private final long releaseGraceMs;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService releaser;
+    // Copies the files of a multi-file upload into the blob store side by side
+    private final ExecutorService ingester;
+
+    @Autowired
+    public UploadStorageService(ImageRepository imageRepository, UploadBlobRepository uploadBlobRepository,
+            BlobStore blobStore, PlatformTransactionManager transactionManager,
+            @Value("${upload.directory:./uploads}") String uploadDirectory,
+            @Value("${app.uploads.release-grace-ms:60000}") long releaseGraceMs,
+            @Value("${app.storage.direct-url-ttl-seconds:300}") long directUrlTtlSeconds,
+            @Value("${app.uploads.ingest-threads:4}") int ingestThreads) {
+        this(imageRepository, uploadBlobRepository, blobStore, transactionManager, Paths.get(uploadDirectory),
+                releaseGraceMs, Duration.ofSeconds(directUrlTtlSeconds), ingestThreads, System::currentTimeMillis);
+    }
+
+    UploadStorageService(ImageRepository imageRepository, UploadBlobRepository uploadBlobRepository,
+            BlobStore blobStore, PlatformTransactionManager transactionManager, Path uploadRoot, long releaseGraceMs,
+            Duration directUrlTtl, int ingestThreads, LongSupplier clock) {
+        this.imageRepository = imageRepository;
+        this.uploadBlobRepository = uploadBlobRepository;
+        this.blobStore = blobStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.uploadRoot = uploadRoot;
+        this.directUrlTtl = directUrlTtl;
+        this.releaseGraceMs = Math.max(0, releaseGraceMs);
+        this.clock = clock;
+        this.releaser = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "upload-release");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger ingestThreadCount = new AtomicInteger();
+        this.ingester = Executors.newFixedThreadPool(Math.max(1, ingestThreads), runnable -> {
+            Thread thread = new Thread(runnable, "upload-ingest-" + ingestThreadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        releaser.shutdownNow();
+        ingester.shutdownNow();
+    }
+
+    /**
+     * Store several uploads in parallel and return their blobs in the same order. Nothing here
+     * touches the database, so call it before opening the transaction that records the rows. If
+     * any upload fails, the blobs already stored are given back and the first failure is thrown.
+     */
+    public List<StoredBlob> storeAll(List<MultipartFile> files) throws IOException {
+        if (files == null || files.isEmpty()) {
+            return List.of();
+        }
+        if (files.size() == 1) {
+            return List.of(store(files.get(0)));
+        }
+        List<Future<StoredBlob>> pending = new ArrayList<>();
+        for (MultipartFile file : files) {
+            pending.add(ingester.submit(() -> store(file)));
+        }
+        List<StoredBlob> stored = new ArrayList<>();
+        IOException failure = null;
+        boolean interrupted = false;
+        for (Future<StoredBlob> upload : pending) {
+            try {
+                stored.add(interrupted ? upload.get(0, TimeUnit.MILLISECONDS) : upload.get());
+            } catch (InterruptedException e) {
+                interrupted = true;
+                pending.forEach(remaining -> remaining.cancel(true));
+                failure = new InterruptedIOException("Interrupted while storing uploads");
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof IOException io ? io
+                            : new IOException("Failed to store upload", e.getCause());
+                }
+            } catch (CancellationException | TimeoutException e) {
+                // Abandoned after an interrupt; a blob it finished anyway is not given back
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            discard(stored);
+            throw failure;
+        }
+        return stored;
+    }
+
+    public StoredBlob store(MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return store(in, file.getOriginalFilename());
+        }
+    }
+
+    /**
+     * Store {@code content}, or reuse the blob already holding the same bytes. The content is
+     * hashed while it is written to a temporary file, so it is read only once.
+     */
+    public StoredBlob store(InputStream content, String originalFilename) throws IOException {
+        Files.createDirectories(uploadRoot);
+        Path temp = Files.createTempFile(uploadRoot, "upload-", ".part");
+        try {
+            MessageDigest digest = sha256();
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), digest)) {
+                content.transferTo(out);
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+
+            // Stamped first: a release that starts after this sees the stamp and keeps the
+            // blob, one already underway finishes deleting before the stamp goes through
+            markStored(hash);
+            releaseOnRollback(hash);
+            Optional<String> existing = keyOf(hash);
+            if (existing.isPresent()) {
+                return new StoredBlob(hash, WEB_PREFIX + existing.get(), true);
+            }
+            String key = shardPrefix(hash) + hash + extension(originalFilename);
+            blobStore.putFile(key, temp);
+            return new StoredBlob(hash, WEB_PREFIX + key, false);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Restart the grace period of blobs handed out by {@link #store}. Call it just before the
+     * transaction that records their rows, so the grace period covers that transaction however
+     * long the uploads before it took.
+     *
+     * @throws NoSuchFileException if a blob was released in the meantime
+     */
+    public void restamp(Collection<StoredBlob> blobs) throws IOException {
+        LocalDateTime now = LocalDateTime.ofInstant(Instant.ofEpochMilli(clock.getAsLong()), ZoneOffset.UTC);
+        for (String hash : blobs.stream().map(StoredBlob::getContentHash).distinct().toList()) {
+            // Waits for a release holding the row; no row left means the blob is gone
+            Integer updated = newTransactionTemplate.execute(status -> uploadBlobRepository.markStored(hash, now));
+            if (updated == null || updated == 0) {
+                throw new NoSuchFileException("Upload " + hash + " was released before it was recorded");
+            }
+        }
+    }
+
+    /**
+     * Give back blobs handed out by {@link #store} whose rows were never written, e.g. because
+     * the transaction inserting them failed. They are deleted once nothing refers to them.
+     */
+    public void discard(Collection<StoredBlob> blobs) {
+        blobs.stream().map(StoredBlob::getContentHash).distinct()
+                .forEach(hash -> releaser.execute(() -> releaseQuietly(hash)));
+    }
+
+    // A row that never commits never references the blob, so give it back
+    private void releaseOnRollback(String hash) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        releaser.execute(() -> releaseQuietly(hash));
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * A local file holding the blob stored under {@code contentHash}, if any (downloaded first
+     * when the blob store is remote). Close it once done with the path.
+     */
+    public Optional<BlobStore.LocalFile> locate(String contentHash) throws IOException {
+        if (contentHash == null || !HASH.matcher(contentHash).matches()) {
+            return Optional.empty();
+        }
+        Optional<String> key = keyOf(contentHash);
+        return key.isPresent() ? localFile(key.get()) : Optional.empty();
+    }
+
+    /**
+     * A local file holding the upload at {@code webPath}, or empty if the path isn't a
+     * content-addressed upload or the blob is gone.
+     */
+    public Optional<BlobStore.LocalFile> localFileFor(String webPath) throws IOException {
+        if (webPath == null || !webPath.startsWith(WEB_PREFIX)) {
+            return Optional.empty();
+        }
+        return localFile(webPath.substring(WEB_PREFIX.length()));
+    }
+
+    /**
+     * A local file holding the blob under {@code key} ({@code ab/cd/<hash>.<ext>}).
+     */
+    public Optional<BlobStore.LocalFile> localFile(String key) throws IOException {
+        if (!KEY.matcher(key).matches()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(blobStore.localFile(key));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * A short-lived URL clients can fetch the blob under {@code key} from without going
+     * through this backend, if the blob store offers one.
+     */
+    public Optional<URI> directUrl(String key) {
+        return KEY.matcher(key).matches() ? blobStore.presignedGetUrl(key, directUrlTtl) : Optional.empty();
+    }
+
+    /**
+     * Drop the references held by {@code images} once the current transaction commits
+     * (immediately outside one); call it after deleting the rows. Blobs no longer referenced
+     * by any row are deleted on a background thread.
+     */
+    public void releaseAfterCommit(Collection<Image> images) {
+        Set<String> hashes = new LinkedHashSet<>();
+        List<Path> legacyFiles = new ArrayList<>();
+        for (Image image : images) {
+            if (image.getContentHash() != null) {
+                hashes.add(image.getContentHash());
+            } else if (image.getFilePath() != null) {
+                legacyFiles.add(legacyFile(image.getFilePath()));
+            }
+        }
+        if (hashes.isEmpty() && legacyFiles.isEmpty()) {
+            return;
+        }
+        Runnable release = () -> {
+            legacyFiles.forEach(UploadStorageService::deleteQuietly);
+            hashes.forEach(this::releaseQuietly);
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    releaser.execute(release);
+                }
+            });
+        } else {
+            releaser.execute(release);
+        }
+    }
+
+    /**
+     * Delete the blob for {@code hash} if no row refers to it. The blob's row stays locked until
+     * the blob is gone, so no node can hand it out in the meantime.
+     *
+     * @return false if the blob was kept, either because it is referenced or because it was
+     *         handed out too recently to tell (a later check is then scheduled)
+     */
+    boolean release(String hash) throws IOException {
+        // Blobs stored before the rows existed get one now, so there is something to lock
+        insertIfAbsent(hash, LocalDateTime.ofInstant(Instant.EPOCH, ZoneOffset.UTC));
+        try {
+            return transactionTemplate.execute(status -> {
+                Optional<UploadBlob> blob = uploadBlobRepository.lockForRelease(hash);
+                if (blob.isEmpty()) {
+                    // Released by another node in the meantime
+                    return true;
+                }
+                long storedAt = blob.get().getLastStoredAt().toInstant(ZoneOffset.UTC).toEpochMilli();
+                long waitMs = storedAt + releaseGraceMs - clock.getAsLong();
+                if (waitMs > 0) {
+                    releaser.schedule(() -> releaseQuietly(hash), waitMs, TimeUnit.MILLISECONDS);
+                    return false;
+                }
+                if (imageRepository.countByContentHash(hash) > 0) {
+                    return false;
+                }
+                try {
+                    for (String key : blobStore.list(shardPrefix(hash) + hash)) {
+                        blobStore.delete(key);
+                        logger.info("Deleted unreferenced upload {}", key);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                uploadBlobRepository.delete(blob.get());
+                return true;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Record that the blob for hash is being handed out now, committed before this returns
+    private void markStored(String hash) {
+        LocalDateTime now = LocalDateTime.ofInstant(Instant.ofEpochMilli(clock.getAsLong()), ZoneOffset.UTC);
+        Integer updated = newTransactionTemplate.execute(status -> uploadBlobRepository.markStored(hash, now));
+        if (updated == null || updated == 0) {
+            if (!insertIfAbsent(hash, now)) {
+                // Inserted by another node at the same time
+                newTransactionTemplate.execute(status -> uploadBlobRepository.markStored(hash, now));
+            }
+        }
+    }
+
+    // Whether this call created the row
+    private boolean insertIfAbsent(String hash, LocalDateTime lastStoredAt) {
+        try {
+            return Boolean.TRUE.equals(newTransactionTemplate.execute(status -> {
+                if (uploadBlobRepository.existsById(hash)) {
+                    return false;
+                }
+                uploadBlobRepository.saveAndFlush(new UploadBlob(hash, lastStoredAt));
+                return true;
+            }));
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    private void releaseQuietly(String hash) {
+        try {
+            release(hash);
+        } catch (Exception e) {
+            logger.warn("Failed to release upload {}: {}", hash, e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete upload {}: {}", file, e.getMessage());
+        }
+    }
+
+    private Path legacyFile(String filePath) {
+        String relative = filePath.replace("/uploads/", "");
+        while (relative.startsWith("/")) {
+            relative = relative.substring(1);
+        }
+        return uploadRoot.resolve(relative);
+    }
+
+    private Optional<String> keyOf(String hash) throws IOException {
+        return blobStore.list(shardPrefix(hash) + hash).stream().findFirst();
+    }
+
+    private static String shardPrefix(String hash) {
+        return hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/";
+    }
+
+    // Lower-case original extension, kept so the blob is served with the right content type
+    private static String extension(String originalFilename) {
+        if (originalFilename == null || originalFilename.lastIndexOf('.') < 0) {
+            return "";
+        }
+        String extension = originalFilename.substring(originalFilename.lastIndexOf('.')).toLowerCase(Locale.ROOT);
+        if (".jpeg".equals(extension)) {
+            return ".jpg";
+        }
+        return EXTENSION.matcher(extension).matches() ? extension : "";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Where an upload ended up: its content hash and the web path recorded on the image row.
+     */
+    public static class StoredBlob {
+        private final String contentHash;
+        private final String webPath;
+        private final boolean deduplicated;
+
+        StoredBlob(String contentHash, String webPath, boolean deduplicated) {
+            this.contentHash = contentHash;
+            this.webPath = webPath;
+            this.deduplicated = deduplicated;
+        }
+
+        public String getContentHash() {
+            return contentHash;
+        }
+
+        public String getWebPath() {
+            return webPath;
+        }
+
+        // Whether the bytes were already stored and the existing blob was reused
+        public boolean isDeduplicated() {
+            return deduplicated;
+        }
+    }
+}
@@ -0,0 +1,2 @@
+-- Write counter summed by the backend to detect aggregate changes without reading every row
+ALTER TABLE label_feedback_aggregates ADD COLUMN IF NOT EXISTS revision BIGINT NOT NULL DEFAULT 0;
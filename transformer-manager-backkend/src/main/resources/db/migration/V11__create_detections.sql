@@ -0,0 +1,18 @@
+-- Detection boxes normalized out of analysis_jobs.result_json when results are stored
+CREATE TABLE IF NOT EXISTS detections (
+    id BIGSERIAL PRIMARY KEY,
+    analysis_job_id BIGINT NOT NULL REFERENCES analysis_jobs(id) ON DELETE CASCADE,
+    box_index INTEGER NOT NULL,
+    label VARCHAR(255) NOT NULL,
+    x INTEGER NOT NULL,
+    y INTEGER NOT NULL,
+    width INTEGER NOT NULL,
+    height INTEGER NOT NULL,
+    confidence DOUBLE PRECISION,
+    source VARCHAR(32) NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_detections_job ON detections (analysis_job_id, box_index);
+CREATE INDEX IF NOT EXISTS idx_detections_label ON detections (label);
+
+ALTER TABLE analysis_jobs ADD COLUMN IF NOT EXISTS result_label VARCHAR(255);
+ALTER TABLE analysis_jobs ADD COLUMN IF NOT EXISTS detection_count INTEGER;
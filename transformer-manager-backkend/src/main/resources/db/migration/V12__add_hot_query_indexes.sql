@@ -0,0 +1,29 @@
+-- Indexes for the queue claim, job/annotation lookups and image lookups on hot paths.
+-- Applied on startup after Hibernate's schema update (spring.sql.init), so every statement is idempotent.
+
+-- No query orders the queue by created_at any more; the partial indexes below serve the queue
+DROP INDEX IF EXISTS idx_analysis_jobs_status_created;
+-- claimNextQueuedJob, existsClaimableJob, findJobsAhead and countByStatus(QUEUED) walk queued rows in
+-- id order; the partial index stays as small as the backlog
+CREATE INDEX IF NOT EXISTS idx_analysis_jobs_queued ON analysis_jobs (id) WHERE status = 'QUEUED';
+-- Lapsed-lease takeover, renewLeases, failAbandonedJobs and countByStatus(PROCESSING) only ever look
+-- at PROCESSING rows
+CREATE INDEX IF NOT EXISTS idx_analysis_jobs_processing_lease ON analysis_jobs (lease_expires_at, lease_owner)
+    WHERE status = 'PROCESSING';
+-- findByImage
+CREATE INDEX IF NOT EXISTS idx_analysis_jobs_image ON analysis_jobs (image_id);
+
+-- Nothing looks images up by path; content-addressed uploads go through idx_images_content_hash
+DROP INDEX IF EXISTS idx_images_file_path;
+-- AnalysisJobRepository.findByInspectionId and claimQueuedJobsForInspection
+CREATE INDEX IF NOT EXISTS idx_images_inspection ON images (inspection_id);
+-- Per-record image count and thumbnail in the transformer summaries
+CREATE INDEX IF NOT EXISTS idx_images_transformer_record ON images (transformer_record_id);
+
+-- AnnotationRepository.findByAnalysisJobId
+CREATE INDEX IF NOT EXISTS idx_annotations_analysis_job ON annotations (analysis_job_id);
+-- Loading an annotation's boxes
+CREATE INDEX IF NOT EXISTS idx_annotation_boxes_annotation ON annotation_boxes (annotation_id);
+
+-- findViewsByTransformerRecordId and the per-record inspection aggregates in the transformer summaries
+CREATE INDEX IF NOT EXISTS idx_inspections_transformer_record ON inspections (transformer_record_id);
@@ -0,0 +1,6 @@
+-- Keyset pagination of transformer summaries, by name and newest first
+CREATE INDEX IF NOT EXISTS idx_transformer_records_name_id ON transformer_records (name, id);
+CREATE INDEX IF NOT EXISTS idx_transformer_records_created_id ON transformer_records (created_at DESC, id DESC);
+-- The tail of the newest-first order, records without a creation time by descending id. IS NULL doesn't
+-- fix the (created_at, id) order for the planner, so without this it walks the primary key past every dated row
+CREATE INDEX IF NOT EXISTS idx_transformer_records_undated_id ON transformer_records (id DESC) WHERE created_at IS NULL;
@@ -0,0 +1,3 @@
+-- Revoking a principal's tokens moves this cutoff forward; tokens issued before it are rejected
+ALTER TABLE admins ADD COLUMN IF NOT EXISTS tokens_valid_after TIMESTAMP;
+ALTER TABLE users ADD COLUMN IF NOT EXISTS tokens_valid_after TIMESTAMP;
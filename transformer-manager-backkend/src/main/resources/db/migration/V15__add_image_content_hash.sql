@@ -0,0 +1,3 @@
+-- Uploads are stored once per content hash; image rows sharing a hash share the blob and count as its references
+ALTER TABLE images ADD COLUMN IF NOT EXISTS content_hash VARCHAR(64);
+CREATE INDEX IF NOT EXISTS idx_images_content_hash ON images (content_hash);
@@ -0,0 +1,5 @@
+-- One row per upload blob; nodes lock it to delete the blob and stamp it when they hand the blob out for reuse
+CREATE TABLE IF NOT EXISTS upload_blobs (
+    content_hash VARCHAR(64) PRIMARY KEY,
+    last_stored_at TIMESTAMP NOT NULL
+);
@@ -0,0 +1,3 @@
+-- Lease columns used by analysis workers to claim jobs across multiple backend nodes
+ALTER TABLE analysis_jobs ADD COLUMN IF NOT EXISTS lease_owner VARCHAR(255);
+ALTER TABLE analysis_jobs ADD COLUMN IF NOT EXISTS lease_expires_at TIMESTAMP;
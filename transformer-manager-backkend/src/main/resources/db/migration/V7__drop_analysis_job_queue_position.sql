@@ -0,0 +1,2 @@
+-- Queue position is now derived on read from the job id, so the stored column is no longer maintained
+ALTER TABLE analysis_jobs DROP COLUMN IF EXISTS queue_position;
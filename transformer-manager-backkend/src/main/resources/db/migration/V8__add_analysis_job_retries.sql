@@ -0,0 +1,3 @@
+-- Retry bookkeeping: failed remote calls are requeued with a backoff until the attempt budget is spent
+ALTER TABLE analysis_jobs ADD COLUMN IF NOT EXISTS attempt_count INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE analysis_jobs ADD COLUMN IF NOT EXISTS next_attempt_at TIMESTAMP;
@@ -0,0 +1,12 @@
+-- Per-label running totals of annotation feedback, maintained as annotations are saved
+CREATE TABLE IF NOT EXISTS label_feedback_aggregates (
+    id BIGSERIAL PRIMARY KEY,
+    label VARCHAR(255) NOT NULL UNIQUE,
+    total_count_delta DOUBLE PRECISION NOT NULL DEFAULT 0,
+    total_area_delta DOUBLE PRECISION NOT NULL DEFAULT 0,
+    total_orig_area DOUBLE PRECISION NOT NULL DEFAULT 0,
+    total_user_area DOUBLE PRECISION NOT NULL DEFAULT 0,
+    total_confidence_delta DOUBLE PRECISION NOT NULL DEFAULT 0,
+    sample_count INTEGER NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP
+);
@@ -0,0 +1,63 @@
+package com.example.transformer_manager_backkend.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import com.example.transformer_manager_backkend.entity.Account;
+import com.example.transformer_manager_backkend.entity.Admin;
+import com.example.transformer_manager_backkend.entity.User;
+
+@DataJpaTest(properties = "spring.sql.init.mode=never")
+class AccountRepositoryTests {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private AdminRepository adminRepository;
+
+    @Test
+    void resolvesAdminsAndUsersInOneLookup() {
+        Admin admin = entityManager.persist(new Admin("admin1", "hash-a", "Admin One"));
+        User user = entityManager.persist(new User("user1", "hash-u", "User One"));
+        entityManager.persist(new Admin("shared", "hash", "Shared Admin"));
+        entityManager.persist(new User("shared", "hash", "Shared User"));
+        entityManager.flush();
+
+        Account foundAdmin = accountRepository.findFirstByUsernameOrderByRoleAsc("admin1").orElseThrow();
+        assertThat(foundAdmin.getRole()).isEqualTo(Account.ROLE_ADMIN);
+        assertThat(foundAdmin.getAccountId()).isEqualTo(admin.getId());
+        assertThat(foundAdmin.getPassword()).isEqualTo("hash-a");
+
+        Account foundUser = accountRepository.findFirstByUsernameOrderByRoleAsc("user1").orElseThrow();
+        assertThat(foundUser.getRole()).isEqualTo(Account.ROLE_USER);
+        assertThat(foundUser.getAccountId()).isEqualTo(user.getId());
+        assertThat(foundUser.getDisplayName()).isEqualTo("User One");
+
+        assertThat(accountRepository.findFirstByUsernameOrderByRoleAsc("shared").orElseThrow().getRole())
+                .isEqualTo(Account.ROLE_ADMIN);
+        assertThat(accountRepository.findFirstByUsernameOrderByRoleAsc("nobody")).isEmpty();
+    }
+
+    @Test
+    void revocationCutoffIsVisibleThroughTheUnion() {
+        entityManager.persist(new Admin("admin1", "hash", "Admin One"));
+        entityManager.flush();
+        LocalDateTime cutoff = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+        assertThat(adminRepository.updateTokensValidAfter("admin1", cutoff)).isEqualTo(1);
+        entityManager.clear();
+
+        assertThat(accountRepository.findFirstByUsernameOrderByRoleAsc("admin1").orElseThrow().getTokensValidAfter())
+                .isEqualTo(cutoff);
+    }
+}
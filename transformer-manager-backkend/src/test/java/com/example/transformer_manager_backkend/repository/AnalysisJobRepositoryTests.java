@@ -0,0 +1,112 @@
+package com.example.transformer_manager_backkend.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import com.example.transformer_manager_backkend.entity.AnalysisJob;
+import com.example.transformer_manager_backkend.entity.Image;
+
+@DataJpaTest(properties = "spring.sql.init.mode=never")
+class AnalysisJobRepositoryTests {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private AnalysisJobRepository analysisJobRepository;
+
+    @Test
+    void onlyDueQueuedJobsCountTowardsQueuePosition() {
+        LocalDateTime now = LocalDateTime.now();
+        job(AnalysisJob.AnalysisStatus.COMPLETED, null);
+        job(AnalysisJob.AnalysisStatus.QUEUED, now.plusMinutes(5));
+        AnalysisJob first = job(AnalysisJob.AnalysisStatus.QUEUED, null);
+        job(AnalysisJob.AnalysisStatus.PROCESSING, null);
+        job(AnalysisJob.AnalysisStatus.FAILED, null);
+        AnalysisJob second = job(AnalysisJob.AnalysisStatus.QUEUED, now.minusMinutes(1));
+        AnalysisJob third = job(AnalysisJob.AnalysisStatus.QUEUED, null);
+        entityManager.flush();
+
+        Map<Long, Long> ahead = new HashMap<>();
+        for (Object[] row : analysisJobRepository.findJobsAhead(List.of(first.getId(), second.getId(), third.getId()),
+                now)) {
+            ahead.put((Long) row[0], (Long) row[1]);
+        }
+
+        assertThat(ahead).containsEntry(first.getId(), 0L).containsEntry(second.getId(), 1L)
+                .containsEntry(third.getId(), 2L);
+    }
+
+    @Test
+    void onlyTheLeaseHolderCanFinishAJobAndLapsedJobsWithoutAttemptsLeftFail() {
+        LocalDateTime now = LocalDateTime.now();
+        AnalysisJob held = job(AnalysisJob.AnalysisStatus.PROCESSING, null);
+        held.setLeaseOwner("node-a");
+        held.setLeaseExpiresAt(now.plusMinutes(5));
+        held.setAttemptCount(2);
+        AnalysisJob legacy = job(AnalysisJob.AnalysisStatus.PROCESSING, null);
+        legacy.setAttemptCount(4);
+        AnalysisJob retryable = job(AnalysisJob.AnalysisStatus.PROCESSING, null);
+        retryable.setAttemptCount(1);
+        retryable.setLeaseOwner("node-b");
+        retryable.setLeaseExpiresAt(now.minusMinutes(1));
+        entityManager.flush();
+
+        assertThat(analysisJobRepository.confirmLease(held.getId(), "node-b", 2, now)).isZero();
+        // An earlier claim by the same node, since reclaimed by another of its workers
+        assertThat(analysisJobRepository.confirmLease(held.getId(), "node-a", 1, now)).isZero();
+        assertThat(analysisJobRepository.confirmLease(held.getId(), "node-a", 2, now)).isEqualTo(1);
+
+        assertThat(analysisJobRepository.failAbandonedJobs(now, 4)).isEqualTo(1);
+        entityManager.clear();
+        assertThat(analysisJobRepository.findById(legacy.getId()).orElseThrow().getStatus())
+                .isEqualTo(AnalysisJob.AnalysisStatus.FAILED);
+        assertThat(analysisJobRepository.findById(retryable.getId()).orElseThrow().getStatus())
+                .isEqualTo(AnalysisJob.AnalysisStatus.PROCESSING);
+        assertThat(analysisJobRepository.findById(held.getId()).orElseThrow().getStatus())
+                .isEqualTo(AnalysisJob.AnalysisStatus.PROCESSING);
+    }
+
+    @Test
+    void queuePollFindsDueAndLapsedJobsOnly() {
+        LocalDateTime now = LocalDateTime.now();
+        job(AnalysisJob.AnalysisStatus.COMPLETED, null);
+        job(AnalysisJob.AnalysisStatus.QUEUED, now.plusMinutes(5));
+        AnalysisJob held = job(AnalysisJob.AnalysisStatus.PROCESSING, null);
+        held.setLeaseOwner("node-a");
+        held.setLeaseExpiresAt(now.plusMinutes(5));
+        AnalysisJob exhausted = job(AnalysisJob.AnalysisStatus.PROCESSING, null);
+        exhausted.setAttemptCount(4);
+        entityManager.flush();
+
+        assertThat(analysisJobRepository.existsClaimableJob(now, 4)).isFalse();
+
+        held.setLeaseExpiresAt(now.minusMinutes(1));
+        entityManager.flush();
+        assertThat(analysisJobRepository.existsClaimableJob(now, 4)).isTrue();
+
+        held.setStatus(AnalysisJob.AnalysisStatus.COMPLETED);
+        job(AnalysisJob.AnalysisStatus.QUEUED, now.minusMinutes(1));
+        entityManager.flush();
+        assertThat(analysisJobRepository.existsClaimableJob(now, 4)).isTrue();
+    }
+
+    private AnalysisJob job(AnalysisJob.AnalysisStatus status, LocalDateTime nextAttemptAt) {
+        Image image = new Image();
+        image.setFilePath("/uploads/image.png");
+        image.setType("Maintenance");
+        AnalysisJob job = new AnalysisJob(entityManager.persist(image));
+        job.setStatus(status);
+        job.setNextAttemptAt(nextAttemptAt);
+        return entityManager.persist(job);
+    }
+}
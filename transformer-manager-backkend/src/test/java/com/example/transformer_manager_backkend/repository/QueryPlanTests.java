@@ -0,0 +1,344 @@
+package com.example.transformer_manager_backkend.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.transformer_manager_backkend.entity.AnalysisJob;
+
+/**
+ * Checks that each hot query reads through the index meant for it, seeking to its key (an Index
+ * Cond) rather than walking a whole index or table and filtering.
+ *
+ * <p>Each case calls the repository method itself and explains the statement Hibernate sent for
+ * it, with the same bound parameters, so a changed query is checked as it now reads. Calls run in
+ * a transaction that is rolled back, which keeps the claims and lease updates from touching the
+ * seeded rows.
+ *
+ * <p>Runs against the Postgres database named by QUERY_PLAN_TEST_URL (plus QUERY_PLAN_TEST_USER
+ * and QUERY_PLAN_TEST_PASSWORD) and is skipped when that variable is not set. The database must be
+ * a throwaway one: Hibernate creates the schema from the entities and drops it afterwards. CI runs
+ * it against a Postgres service container, see .github/workflows/query-plans.yml.
+ *
+ * <p>The index scripts applied on startup are applied the same way here, then the tables are
+ * seeded with production-like row counts and analyzed, so the plans are the ones the planner picks
+ * with sequential scans enabled.
+ */
+@DataJpaTest(properties = { "spring.sql.init.mode=never", "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.datasource.url=${QUERY_PLAN_TEST_URL}", "spring.datasource.username=${QUERY_PLAN_TEST_USER:}",
+        "spring.datasource.password=${QUERY_PLAN_TEST_PASSWORD:}" })
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfEnvironmentVariable(named = "QUERY_PLAN_TEST_URL", matches = ".+")
+class QueryPlanTests {
+
+    // The seeded tables; the few admin, user and maintenance rows are cheapest read whole
+    private static final List<String> LARGE_TABLES = List.of("transformer_records", "inspections", "images",
+            "analysis_jobs", "annotations", "annotation_boxes");
+
+    private static final String[] INDEX_SCRIPTS = { "db/migration/V12__add_hot_query_indexes.sql",
+            "db/migration/V13__add_transformer_record_keyset_indexes.sql",
+            "db/migration/V15__add_image_content_hash.sql" };
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private StatementRecorder recorder;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private AnalysisJobRepository analysisJobRepository;
+
+    @Autowired
+    private AnnotationRepository annotationRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private InspectionRepository inspectionRepository;
+
+    @Autowired
+    private TransformerRecordRepository transformerRecordRepository;
+
+    @BeforeAll
+    void seed() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            // Same splitter as spring.sql.init, which applies the index scripts on startup
+            for (String script : INDEX_SCRIPTS) {
+                ScriptUtils.executeSqlScript(connection, new ClassPathResource(script));
+            }
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/query-plan-seed.sql"));
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("VACUUM ANALYZE");
+            }
+        }
+    }
+
+    /**
+     * Name, repository call, the table the statement to explain reads or updates, the index it
+     * must use and, for seeks, a fragment of the index condition.
+     */
+    Stream<Arguments> hotQueries() throws NoSuchAlgorithmException {
+        LocalDateTime now = LocalDateTime.now();
+        String contentHash = sha256Hex("4242");
+        LocalDateTime leaseExpiresAt = now.plusMinutes(5);
+        return Stream.of(
+                Arguments.of("AnalysisJob.countByStatus(QUEUED)",
+                        call(() -> analysisJobRepository.countByStatus(AnalysisJob.AnalysisStatus.QUEUED)),
+                        "analysis_jobs", "idx_analysis_jobs_queued", null),
+                Arguments.of("AnalysisJob.countByStatus(PROCESSING)",
+                        call(() -> analysisJobRepository.countByStatus(AnalysisJob.AnalysisStatus.PROCESSING)),
+                        "analysis_jobs", "idx_analysis_jobs_processing_lease", null),
+                Arguments.of("findJobsAhead",
+                        call(() -> analysisJobRepository.findJobsAhead(List.of(99500L, 99900L), now)),
+                        "analysis_jobs", "idx_analysis_jobs_queued", "id <"),
+                Arguments.of("claimNextQueuedJob",
+                        call(() -> analysisJobRepository.claimNextQueuedJob("planner", now, leaseExpiresAt, 4)),
+                        "analysis_jobs", "idx_analysis_jobs_queued", null),
+                Arguments.of("claimQueuedJobsForInspection",
+                        call(() -> analysisJobRepository.claimQueuedJobsForInspection("planner", now, leaseExpiresAt,
+                                49501L, 4)),
+                        "analysis_jobs", "idx_images_inspection", "inspection_id ="),
+                Arguments.of("existsClaimableJob", call(() -> analysisJobRepository.existsClaimableJob(now, 4)),
+                        "analysis_jobs", "idx_analysis_jobs_queued", null),
+                Arguments.of("renewLeases", call(() -> analysisJobRepository.renewLeases("node-a", leaseExpiresAt)),
+                        "analysis_jobs", "idx_analysis_jobs_processing_lease", null),
+                Arguments.of("failAbandonedJobs", call(() -> analysisJobRepository.failAbandonedJobs(now, 4)),
+                        "analysis_jobs", "idx_analysis_jobs_processing_lease", null),
+                Arguments.of("AnalysisJob.findByImage",
+                        call(() -> analysisJobRepository.findByImage(imageRepository.getReferenceById(4242L))),
+                        "analysis_jobs", "idx_analysis_jobs_image", "image_id ="),
+                Arguments.of("AnalysisJob.findByInspectionId",
+                        call(() -> analysisJobRepository.findByInspectionId(4242L)),
+                        "analysis_jobs", "idx_images_inspection", "inspection_id ="),
+                Arguments.of("Annotation.findByAnalysisJobId",
+                        call(() -> annotationRepository.findByAnalysisJobId(4240L)),
+                        "annotations", "idx_annotations_analysis_job", "analysis_job_id ="),
+                Arguments.of("annotation boxes",
+                        call(() -> annotationRepository.findByAnalysisJobId(4240L)
+                                .ifPresent(annotation -> Hibernate.initialize(annotation.getAnnotationBoxes()))),
+                        "annotation_boxes", "idx_annotation_boxes_annotation", "annotation_id ="),
+                Arguments.of("countByContentHash", call(() -> imageRepository.countByContentHash(contentHash)),
+                        "images", "idx_images_content_hash", "(content_hash)::text ="),
+                Arguments.of("findViewsByTransformerRecordId",
+                        call(() -> inspectionRepository.findViewsByTransformerRecordId(4242L)),
+                        "inspections", "idx_inspections_transformer_record", "transformer_record_id ="),
+                Arguments.of("findSummariesByName",
+                        call(() -> transformerRecordRepository.findSummariesByName(null, null, null, Limit.of(21))),
+                        "transformer_records", "idx_transformer_records_name_id", null),
+                Arguments.of("findSummariesByNewest",
+                        call(() -> transformerRecordRepository.findSummariesByNewest(null, null, null, Limit.of(21))),
+                        "transformer_records", "idx_transformer_records_created_id", "created_at IS NOT NULL"),
+                // Later keyset pages must start the scan at the key, or page N costs as much as OFFSET
+                Arguments.of("findSummariesByNameAfter",
+                        call(() -> transformerRecordRepository.findSummariesByNameAfter(null, null, null, "TX-8", 1L,
+                                Limit.of(21))),
+                        "transformer_records", "idx_transformer_records_name_id", "ROW((name)::text, id) >"),
+                Arguments.of("findSummariesByNewestAfter",
+                        call(() -> transformerRecordRepository.findSummariesByNewestAfter(null, null, null,
+                                LocalDateTime.of(2024, 1, 1, 0, 0), 8760L, Limit.of(21))),
+                        "transformer_records", "idx_transformer_records_created_id", "ROW(created_at, id) <"),
+                Arguments.of("findSummariesWithoutCreatedAt",
+                        call(() -> transformerRecordRepository.findSummariesWithoutCreatedAt(null, null, null, 10000L,
+                                Limit.of(21))),
+                        "transformer_records", "idx_transformer_records_undated_id", "id <"));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hotQueries")
+    void hotQueryReadsThroughItsIndex(String name, Runnable call, String table, String index, String indexCondition)
+            throws Exception {
+        List<String> plan = explain(record(call, table));
+
+        assertThat(plan).as(String.join("\n", plan))
+                .noneMatch(line -> LARGE_TABLES.stream().anyMatch(large -> line.contains("Seq Scan on " + large + " ")))
+                .anyMatch(line -> line.contains(" " + index + " "));
+        if (indexCondition != null) {
+            assertThat(plan).as(String.join("\n", plan))
+                    .anyMatch(line -> line.contains("Index Cond") && line.contains(indexCondition));
+        }
+    }
+
+    // Gives the lambdas in Arguments.of a target type
+    private static Runnable call(Runnable call) {
+        return call;
+    }
+
+    /**
+     * Run {@code call} in a rolled-back transaction and return the first statement it sent that
+     * reads or updates {@code table}.
+     */
+    private RecordedStatement record(Runnable call, String table) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        List<RecordedStatement> statements = recorder.record(() -> transaction.executeWithoutResult(status -> {
+            call.run();
+            status.setRollbackOnly();
+        }));
+        return statements.stream()
+                .filter(statement -> statement.references(table))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No statement on " + table + " in " + statements));
+    }
+
+    private List<String> explain(RecordedStatement recorded) throws Exception {
+        List<String> plan = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement("EXPLAIN " + recorded.sql())) {
+            for (Bind bind : recorded.binds()) {
+                bind.method().invoke(statement, bind.args());
+            }
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    plan.add(rows.getString(1));
+                }
+            }
+        }
+        return plan;
+    }
+
+    private static String sha256Hex(String text) throws NoSuchAlgorithmException {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest);
+    }
+
+    record Bind(Method method, Object[] args) {
+    }
+
+    record RecordedStatement(String sql, List<Bind> binds) {
+
+        boolean references(String table) {
+            String lower = sql.toLowerCase(Locale.ROOT);
+            return lower.contains("from " + table + " ") || lower.contains("update " + table + " ");
+        }
+
+        @Override
+        public String toString() {
+            return sql;
+        }
+    }
+
+    /**
+     * Wraps the datasource so prepared statements are recorded, SQL and bound parameters, while a
+     * call is being recorded.
+     */
+    static class StatementRecorder implements BeanPostProcessor {
+
+        private final List<RecordedStatement> statements = new CopyOnWriteArrayList<>();
+        private volatile boolean recording;
+
+        synchronized List<RecordedStatement> record(Runnable call) {
+            statements.clear();
+            recording = true;
+            try {
+                call.run();
+            } finally {
+                recording = false;
+            }
+            return List.copyOf(statements);
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof DataSource dataSource)) {
+                return bean;
+            }
+            return proxy(DataSource.class, (proxy, method, args) -> {
+                Object result = invoke(dataSource, method, args);
+                return result instanceof Connection connection ? recording(connection) : result;
+            });
+        }
+
+        private Connection recording(Connection connection) {
+            return proxy(Connection.class, (proxy, method, args) -> {
+                Object result = invoke(connection, method, args);
+                if (result instanceof PreparedStatement statement && method.getName().equals("prepareStatement")) {
+                    return recording(statement, (String) args[0]);
+                }
+                return result;
+            });
+        }
+
+        private PreparedStatement recording(PreparedStatement statement, String sql) {
+            List<Bind> binds = new ArrayList<>();
+            return proxy(PreparedStatement.class, (proxy, method, args) -> {
+                // setLong(1, ...), setNull(2, ...) and so on: the parameter index comes first
+                if (method.getName().startsWith("set") && args != null && args.length >= 2
+                        && method.getParameterTypes()[0] == int.class) {
+                    binds.add(new Bind(method, args.clone()));
+                } else if (method.getName().startsWith("execute") && (args == null || args.length == 0)
+                        && recording) {
+                    statements.add(new RecordedStatement(sql, List.copyOf(binds)));
+                }
+                return invoke(statement, method, args);
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+            return (T) Proxy.newProxyInstance(QueryPlanTests.class.getClassLoader(), new Class<?>[] { type }, handler);
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    @TestConfiguration
+    static class RecorderConfiguration {
+
+        @Bean
+        static StatementRecorder statementRecorder() {
+            return new StatementRecorder();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.transformer_manager_backkend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AnalysisOutputStoreTests {
+
+    @TempDir
+    Path uploads;
+
+    private BlobStore blobStore;
+    private AnalysisOutputStore store;
+
+    @BeforeEach
+    void setUp() {
+        blobStore = new LocalBlobStore(uploads);
+        store = new AnalysisOutputStore(blobStore, uploads, Duration.ofMinutes(5));
+    }
+
+    @Test
+    void outputsAreStoredUnderARevisionAndDiscardedTogether() throws IOException {
+        String revision = store.newRevision();
+        Path work = Files.writeString(store.newWorkFile("a"), "boxed");
+        String boxed = store.store(revision, "a_boxed.png", work);
+        String json = store.storeText(revision, "a.json", "{}");
+
+        assertThat(boxed).isEqualTo("/analysis/" + revision + "/a_boxed.png");
+        assertThat(work).doesNotExist();
+        assertThat(store.localFile(boxed)).get().satisfies(file -> assertThat(file.getPath()).hasContent("boxed"));
+        assertThat(store.localFile("/uploads" + json)).get().satisfies(file -> assertThat(file.getPath()).hasContent("{}"));
+        assertThat(store.isImmutable(boxed)).isTrue();
+
+        store.discard(boxed);
+
+        assertThat(blobStore.list("analysis/")).isEmpty();
+        assertThat(store.localFile(boxed)).isEmpty();
+    }
+
+    @Test
+    void outputsFromBeforeRevisionsAreStillFoundAndDiscarded() throws IOException {
+        Files.createDirectories(uploads.resolve("analysis"));
+        Files.writeString(uploads.resolve("analysis/old_boxed.png"), "boxed");
+        Files.writeString(uploads.resolve("analysis/old.json"), "{}");
+
+        assertThat(store.localFile("/analysis/old_boxed.png")).isPresent();
+        assertThat(store.isImmutable("/analysis/old_boxed.png")).isFalse();
+
+        store.discard("/analysis/old_boxed.png");
+
+        assertThat(uploads.resolve("analysis")).isEmptyDirectory();
+    }
+
+    @Test
+    void pathsOutsideTheAnalysisPrefixAreRejected() throws IOException {
+        Files.writeString(uploads.resolve("secret.txt"), "secret");
+
+        assertThat(store.localFile("/analysis/../secret.txt")).isEmpty();
+        assertThat(store.localFile("/analysis/0123456789ab/../../secret.txt")).isEmpty();
+        assertThat(store.localFile("/uploads/secret.txt")).isEmpty();
+        assertThat(store.localFile("/analysis/cache/entry.json")).isEmpty();
+
+        store.discard("/uploads/secret.txt");
+        assertThat(uploads.resolve("secret.txt")).exists();
+    }
+}
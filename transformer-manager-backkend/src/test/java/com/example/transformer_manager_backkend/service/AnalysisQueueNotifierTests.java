@@ -0,0 +1,75 @@
+package com.example.transformer_manager_backkend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class AnalysisQueueNotifierTests {
+
+    // No Postgres URL, so only in-process signals
+    private final AnalysisQueueNotifier notifier = new AnalysisQueueNotifier(null, new DataSourceProperties(), true,
+            "");
+
+    @Test
+    void signalSentBeforeTheWorkerWaitsIsNotLost() {
+        notifier.signalLocal();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> notifier.awaitWork());
+    }
+
+    @Test
+    void signalWakesEveryWaitingWorker() throws Exception {
+        List<CompletableFuture<Void>> workers = List.of(waitingWorker(), waitingWorker());
+        Thread.sleep(200);
+        assertThat(workers).noneMatch(CompletableFuture::isDone);
+
+        notifier.signalLocal();
+
+        CompletableFuture.allOf(workers.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void jobQueuedInATransactionWakesWorkersOnlyAfterCommit() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            notifier.publishJobQueued();
+            CompletableFuture<Void> worker = waitingWorker();
+            Thread.sleep(200);
+            assertThat(worker).isNotDone();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+            worker.get(5, TimeUnit.SECONDS);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void listenerUsesTheDirectHostBehindANeonPooler() {
+        assertThat(AnalysisQueueNotifier.directUrl(
+                "jdbc:postgresql://ep-a-1-pooler.c-2.us-east-1.aws.neon.tech:5432/neondb?sslmode=require"))
+                .isEqualTo("jdbc:postgresql://ep-a-1.c-2.us-east-1.aws.neon.tech:5432/neondb?sslmode=require");
+        assertThat(AnalysisQueueNotifier.directUrl("jdbc:postgresql://localhost:5432/app"))
+                .isEqualTo("jdbc:postgresql://localhost:5432/app");
+    }
+
+    private CompletableFuture<Void> waitingWorker() {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                notifier.awaitWork();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+}
@@ -0,0 +1,323 @@
+package com.example.transformer_manager_backkend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+class AnomalyInferenceClientTests {
+
+    private static final String BOXED_BASE64 = Base64.getEncoder()
+            .encodeToString("boxed".getBytes(StandardCharsets.UTF_8));
+
+    @TempDir
+    Path tempDir;
+
+    private BlobStore blobStore;
+    private AnalysisOutputStore outputStore;
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private final AtomicInteger batchCalls = new AtomicInteger();
+    private final AtomicInteger hedgeCalls = new AtomicInteger();
+    private final AtomicBoolean stallNext = new AtomicBoolean();
+    private final CountDownLatch stalled = new CountDownLatch(1);
+    private final AtomicReference<String> lastBatchBody = new AtomicReference<>();
+
+    @BeforeEach
+    void startStubServer() throws IOException {
+        blobStore = new LocalBlobStore(tempDir.resolve("store"));
+        outputStore = new AnalysisOutputStore(blobStore, tempDir.resolve("store"), Duration.ofMinutes(5));
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/infer", exchange -> respond(exchange, result("Faulty", "a")));
+        server.createContext("/infer_batch", exchange -> {
+            batchCalls.incrementAndGet();
+            lastBatchBody.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.ISO_8859_1));
+            respond(exchange, "{\"results\": [" + result("Faulty", "a") + ","
+                    + "{\"filename\": \"b.png\", \"detail\": \"model exploded\"},"
+                    + result("Normal", "c") + "], \"duration_ms\": 12}");
+        });
+        server.createContext("/hedge", exchange -> {
+            hedgeCalls.incrementAndGet();
+            if (stallNext.getAndSet(false)) {
+                try {
+                    stalled.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            respond(exchange, result("Faulty", "a"));
+        });
+        server.createContext("/unavailable", exchange -> {
+            byte[] bytes = "{\"detail\": \"model loading\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(503, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        // Handlers run side by side, so one stalled request doesn't hold up the rest
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+    }
+
+    @AfterEach
+    void stopStubServer() {
+        stalled.countDown();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void batchSendsAllImagesInOneRequestAndFansOutResults() throws IOException {
+        AnomalyInferenceClient client = newClient();
+        List<Path> images = List.of(image("a.png"), image("b.png"), image("c.png"));
+
+        List<AnomalyInferenceClient.BatchOutcome> outcomes = client.analyzeBatchAsync(images, List.of("a", "b", "c"),
+                new AnomalyInferenceClient.InferenceParameters(1.25, "{\"label_feedback\": []}")).join();
+
+        assertThat(batchCalls.get()).isEqualTo(1);
+        assertThat(lastBatchBody.get()).contains("a.png", "b.png", "c.png", "1.2500");
+        assertThat(outcomes).hasSize(3);
+
+        assertThat(outcomes.get(0).isSuccess()).isTrue();
+        assertThat(outcomes.get(0).getResult().getLabel()).isEqualTo("Faulty");
+        assertThat(outcomes.get(0).getResult().getBoxedImagePath()).matches("/analysis/[0-9a-f]{12}/a_boxed\\.png");
+        assertThat(outcomes.get(0).getResult().getJsonResult()).isEqualTo("{\"id\":\"a\"}");
+
+        assertThat(outcomes.get(1).isSuccess()).isFalse();
+        assertThat(outcomes.get(1).getErrorMessage()).contains("model exploded");
+
+        assertThat(outcomes.get(2).getResult().getLabel()).isEqualTo("Normal");
+        assertThat(outputStore.localFile(outcomes.get(2).getResult().getBoxedImagePath())).get()
+                .satisfies(file -> assertThat(file.getPath()).hasContent("boxed"));
+        assertThat(outputStore.localFile(outcomes.get(2).getResult().getJsonPath())).get()
+                .satisfies(file -> assertThat(file.getPath()).hasContent("{\"id\":\"c\"}"));
+        assertThat(blobStore.list("analysis/")).hasSize(4)
+                .noneMatch(key -> key.endsWith("/b.json") || key.contains("/b_boxed"));
+        try (Stream<Path> work = Files.list(tempDir.resolve("store/analysis-work"))) {
+            assertThat(work).isEmpty();
+        }
+    }
+
+    @Test
+    void singleImageUsesInferEndpoint() throws IOException {
+        AnomalyInferenceClient.AnalysisResult result = newClient().analyzeAsync(image("a.png"), "a",
+                new AnomalyInferenceClient.InferenceParameters(1.0, "{}"), limiter(1)).join();
+
+        assertThat(result.getLabel()).isEqualTo("Faulty");
+        assertThat(batchCalls.get()).isZero();
+        assertThat(outputStore.localFile(result.getBoxedImagePath())).isPresent();
+    }
+
+    @Test
+    void serverErrorsAreReportedAsRetryable() throws IOException {
+        AnomalyInferenceClient client = newClient("/unavailable");
+
+        assertThatThrownBy(() -> client.analyzeAsync(image("a.png"), "a",
+                new AnomalyInferenceClient.InferenceParameters(1.0, "{}"), limiter(1)).join())
+                .isInstanceOf(CompletionException.class)
+                .rootCause()
+                .isInstanceOfSatisfying(RemoteInferenceException.class, e -> {
+                    assertThat(e.isRetryable()).isTrue();
+                    assertThat(e.getMessage()).contains("503", "model loading");
+                });
+    }
+
+    @Test
+    void stalledCallIsHedgedAndTheFasterResponseWins() throws Exception {
+        AnomalyInferenceClient client = newClient(stubUrl("/hedge"), true, Duration.ofSeconds(5));
+        InferenceConcurrencyLimiter limiter = limiter(2);
+        warmUp(client, limiter);
+
+        stallNext.set(true);
+        AnomalyInferenceClient.AnalysisResult result = client.analyzeAsync(image("a.png"), "a",
+                new AnomalyInferenceClient.InferenceParameters(1.0, "{}"), limiter).get(5, TimeUnit.SECONDS);
+
+        assertThat(result.getLabel()).isEqualTo("Faulty");
+        assertThat(hedgeCalls.get()).isEqualTo(22);
+        // The hedge gives back the slot it took
+        awaitUntil(() -> limiter.getInFlight() == 0);
+    }
+
+    @Test
+    void callIsNotHedgedWithoutAFreeSlot() throws Exception {
+        AnomalyInferenceClient client = newClient(stubUrl("/hedge"), true, Duration.ofSeconds(5));
+        InferenceConcurrencyLimiter limiter = limiter(1);
+        warmUp(client, limiter);
+        // The slot the call itself runs in
+        limiter.acquire();
+
+        stallNext.set(true);
+        CompletableFuture<AnomalyInferenceClient.AnalysisResult> call = client.analyzeAsync(image("a.png"), "a",
+                new AnomalyInferenceClient.InferenceParameters(1.0, "{}"), limiter);
+        Thread.sleep(500);
+        assertThat(call).isNotDone();
+        stalled.countDown();
+
+        assertThat(call.get(5, TimeUnit.SECONDS).getLabel()).isEqualTo("Faulty");
+        assertThat(hedgeCalls.get()).isEqualTo(21);
+    }
+
+    @Test
+    void cancellingACallAbortsItsHttpExchange() throws Exception {
+        try (ServerSocket listener = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            listener.setSoTimeout(5000);
+            // Far longer than the test waits, so only the cancellation can close the connection
+            AnomalyInferenceClient client = newClient("http://127.0.0.1:" + listener.getLocalPort() + "/infer", false,
+                    Duration.ofMinutes(5));
+            CompletableFuture<AnomalyInferenceClient.AnalysisResult> call = client.analyzeAsync(image("a.png"), "a",
+                    new AnomalyInferenceClient.InferenceParameters(1.0, "{}"), limiter(1));
+
+            try (Socket connection = listener.accept()) {
+                connection.setSoTimeout(3000);
+                InputStream in = connection.getInputStream();
+                assertThat(in.read()).isNotNegative();
+                call.cancel(true);
+
+                assertThat(closedByClient(in)).isTrue();
+            }
+        }
+    }
+
+    @Test
+    void callCancelledWhileStoringGivesBackItsOutputs() throws Exception {
+        CountDownLatch storing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        blobStore = new LocalBlobStore(tempDir.resolve("store")) {
+            @Override
+            public void putFile(String key, Path file) throws IOException {
+                super.putFile(key, file);
+                storing.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        outputStore = new AnalysisOutputStore(blobStore, tempDir.resolve("store"), Duration.ofMinutes(5));
+        CompletableFuture<AnomalyInferenceClient.AnalysisResult> call = newClient().analyzeAsync(image("a.png"), "a",
+                new AnomalyInferenceClient.InferenceParameters(1.0, "{}"), limiter(1));
+
+        // Like a hedged call that lost after its response had come in
+        assertThat(storing.await(5, TimeUnit.SECONDS)).isTrue();
+        call.cancel(true);
+        release.countDown();
+
+        awaitUntil(() -> {
+            try {
+                return blobStore.list("analysis/").isEmpty();
+            } catch (IOException e) {
+                return false;
+            }
+        });
+    }
+
+    // Reads the rest of the request; true once the client closes the connection
+    private static boolean closedByClient(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        try {
+            while (in.read(buffer) >= 0) {
+                // Request bytes still in flight
+            }
+            return true;
+        } catch (SocketTimeoutException e) {
+            return false;
+        } catch (SocketException e) {
+            // Reset rather than closed
+            return true;
+        }
+    }
+
+    // Hedging waits for enough latency samples to know the p95
+    private void warmUp(AnomalyInferenceClient client, InferenceConcurrencyLimiter limiter) throws IOException {
+        for (int i = 0; i < 20; i++) {
+            client.analyzeAsync(image("warm.png"), "warm", new AnomalyInferenceClient.InferenceParameters(1.0, "{}"),
+                    limiter).join();
+        }
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+
+    private static InferenceConcurrencyLimiter limiter(int slots) {
+        return new InferenceConcurrencyLimiter(slots, 0);
+    }
+
+    private AnomalyInferenceClient newClient() {
+        return newClient("/infer");
+    }
+
+    private AnomalyInferenceClient newClient(String inferPath) {
+        return newClient(stubUrl(inferPath), false, Duration.ofSeconds(5));
+    }
+
+    private AnomalyInferenceClient newClient(String inferUrl, boolean hedging, Duration timeout) {
+        // Hedges go out once a call outlives the p95 of the warm-up calls, and at least 50 ms
+        return new AnomalyInferenceClient(inferUrl, stubUrl("/infer_batch"), Duration.ofSeconds(5), timeout, false,
+                outputStore, hedging, 50);
+    }
+
+    private String stubUrl(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private Path image(String name) throws IOException {
+        return Files.write(tempDir.resolve(name), new byte[] { 1, 2, 3 });
+    }
+
+    private static String result(String label, String id) {
+        return "{\"filename\": \"" + id + ".png\", \"label\": \"" + label + "\", "
+                + "\"json_text\": \"{\\\"id\\\":\\\"" + id + "\\\"}\", "
+                + "\"boxed_image_base64\": \"" + BOXED_BASE64 + "\", \"boxed_image_ext\": \".png\"}";
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getRequestBody().readAllBytes();
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
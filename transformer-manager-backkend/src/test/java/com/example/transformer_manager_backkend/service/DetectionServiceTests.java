@@ -0,0 +1,96 @@
+package com.example.transformer_manager_backkend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.groups.Tuple.tuple;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import com.example.transformer_manager_backkend.entity.AnalysisJob;
+import com.example.transformer_manager_backkend.entity.AnnotationBox;
+import com.example.transformer_manager_backkend.entity.Detection;
+import com.example.transformer_manager_backkend.entity.Image;
+import com.example.transformer_manager_backkend.repository.DetectionRepository;
+
+@DataJpaTest(properties = "spring.sql.init.mode=never")
+class DetectionServiceTests {
+
+    private static final String RESULT = "{\"label\": \"Faulty\", \"boxes\": ["
+            + "{\"type\": \"Loose Joint\", \"box\": [10, 20, 30, 40], \"confidence\": 0.91},"
+            + "{\"type\": \"Broken\", \"box\": [1, 2]},"
+            + "{\"type\": \"Point Overload\", \"box\": [5, 6, 7, 8]}]}";
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private DetectionRepository detectionRepository;
+
+    private DetectionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new DetectionService(detectionRepository);
+    }
+
+    @Test
+    void modelResultIsIndexedAndReadBackInResultOrder() {
+        AnalysisJob job = job(null);
+
+        service.indexModelResult(job, RESULT);
+        entityManager.flush();
+        entityManager.clear();
+
+        // The box without four coordinates is skipped
+        assertThat(job.getResultLabel()).isEqualTo("Faulty");
+        assertThat(job.getDetectionCount()).isEqualTo(2);
+        assertThat(service.getDetections(job))
+                .extracting(Detection::getBoxIndex, Detection::getLabel, Detection::getX, Detection::getY,
+                        Detection::getWidth, Detection::getHeight, Detection::getConfidence, Detection::getSource)
+                .containsExactly(tuple(0, "Loose Joint", 10, 20, 30, 40, 0.91, Detection.Source.MODEL),
+                        tuple(1, "Point Overload", 5, 6, 7, 8, null, Detection.Source.MODEL));
+    }
+
+    @Test
+    void annotationReplacesTheModelDetections() {
+        AnalysisJob job = job(null);
+        service.indexModelResult(job, RESULT);
+        entityManager.flush();
+
+        service.indexAnnotation(job, List.of(new AnnotationBox(3, 4, 50, 60, "Hotspot", null)));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(job.getDetectionCount()).isEqualTo(1);
+        assertThat(detectionRepository.findByAnalysisJobIdOrderByBoxIndexAsc(job.getId()))
+                .extracting(Detection::getLabel, Detection::getX, Detection::getSource)
+                .containsExactly(tuple("Hotspot", 3, Detection.Source.ANNOTATION));
+    }
+
+    @Test
+    void jobsFromBeforeIndexingAreParsedFromTheirResult() {
+        AnalysisJob legacy = job(RESULT);
+        AnalysisJob empty = job(RESULT);
+        empty.setDetectionCount(0);
+
+        assertThat(service.getDetections(legacy)).extracting(Detection::getLabel)
+                .containsExactly("Loose Joint", "Point Overload");
+        assertThat(detectionRepository.findByAnalysisJobIdOrderByBoxIndexAsc(legacy.getId())).isEmpty();
+        assertThat(service.getDetections(empty)).isEmpty();
+    }
+
+    private AnalysisJob job(String resultJson) {
+        Image image = new Image();
+        image.setFilePath("/uploads/image.png");
+        image.setType("Maintenance");
+        AnalysisJob job = new AnalysisJob(entityManager.persist(image));
+        job.setStatus(AnalysisJob.AnalysisStatus.COMPLETED);
+        job.setResultJson(resultJson);
+        return entityManager.persist(job);
+    }
+}
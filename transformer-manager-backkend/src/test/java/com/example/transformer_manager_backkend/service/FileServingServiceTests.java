@@ -0,0 +1,115 @@
+package com.example.transformer_manager_backkend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class FileServingServiceTests {
+
+    @TempDir
+    Path dir;
+
+    private final FileServingService service = new FileServingService(31536000, 64);
+    private Path file;
+    private byte[] content;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        content = new byte[100];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        file = Files.write(dir.resolve("1700000000000_t1.png"), content);
+    }
+
+    @Test
+    void repeatViewsAreAnsweredWithNotModified() throws Exception {
+        MockHttpServletResponse first = serve(new MockHttpServletRequest("GET", "/f"), true);
+        assertThat(first.getStatus()).isEqualTo(200);
+        assertThat(first.getContentAsByteArray()).isEqualTo(content);
+        assertThat(first.getContentType()).isEqualTo("image/png");
+        assertThat(first.getHeader("Cache-Control")).isEqualTo("public, max-age=31536000, immutable");
+        String etag = first.getHeader("ETag");
+        assertThat(etag).startsWith("\"");
+
+        MockHttpServletRequest revalidate = new MockHttpServletRequest("GET", "/f");
+        revalidate.addHeader("If-None-Match", "W/\"other\", " + etag);
+        MockHttpServletResponse second = serve(revalidate, false);
+        assertThat(second.getStatus()).isEqualTo(304);
+        assertThat(second.getContentAsByteArray()).isEmpty();
+        assertThat(second.getHeader("Cache-Control")).isEqualTo("no-cache");
+
+        MockHttpServletRequest byDate = new MockHttpServletRequest("GET", "/f");
+        byDate.addHeader("If-Modified-Since", first.getHeader("Last-Modified"));
+        assertThat(serve(byDate, false).getStatus()).isEqualTo(304);
+
+        MockHttpServletRequest stale = new MockHttpServletRequest("GET", "/f");
+        stale.addHeader("If-None-Match", "\"stale\"");
+        assertThat(serve(stale, false).getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void singleRangesAreServedPartially() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/f");
+        request.addHeader("Range", "bytes=10-19");
+        MockHttpServletResponse response = serve(request, false);
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getHeader("Content-Range")).isEqualTo("bytes 10-19/100");
+        assertThat(response.getContentAsByteArray()).containsExactly(10, 11, 12, 13, 14, 15, 16, 17, 18, 19);
+
+        MockHttpServletRequest suffix = new MockHttpServletRequest("GET", "/f");
+        suffix.addHeader("Range", "bytes=-5");
+        assertThat(serve(suffix, false).getContentAsByteArray()).containsExactly(95, 96, 97, 98, 99);
+
+        MockHttpServletRequest outside = new MockHttpServletRequest("GET", "/f");
+        outside.addHeader("Range", "bytes=500-");
+        MockHttpServletResponse unsatisfiable = serve(outside, false);
+        assertThat(unsatisfiable.getStatus()).isEqualTo(416);
+        assertThat(unsatisfiable.getHeader("Content-Range")).isEqualTo("bytes */100");
+
+        // A range against a changed file falls back to the whole file
+        MockHttpServletRequest changed = new MockHttpServletRequest("GET", "/f");
+        changed.addHeader("Range", "bytes=10-19");
+        changed.addHeader("If-Range", "\"stale\"");
+        MockHttpServletResponse full = serve(changed, false);
+        assertThat(full.getStatus()).isEqualTo(200);
+        assertThat(full.getContentAsByteArray()).isEqualTo(content);
+    }
+
+    @Test
+    void largeBodiesAreHandedToSendfile() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/f");
+        request.setAttribute(FileServingService.SENDFILE_SUPPORTED_ATTR, Boolean.TRUE);
+        request.addHeader("Range", "bytes=0-79");
+        MockHttpServletResponse response = serve(request, false);
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getContentLengthLong()).isEqualTo(80);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+        assertThat(request.getAttribute(FileServingService.SENDFILE_FILENAME_ATTR))
+                .isEqualTo(file.toAbsolutePath().toString());
+        assertThat(request.getAttribute(FileServingService.SENDFILE_START_ATTR)).isEqualTo(0L);
+        assertThat(request.getAttribute(FileServingService.SENDFILE_END_ATTR)).isEqualTo(80L);
+
+        assertThat(serve(new MockHttpServletRequest("GET", "/f"), false, dir.resolve("missing.png")).getStatus())
+                .isEqualTo(404);
+    }
+
+    private MockHttpServletResponse serve(MockHttpServletRequest request, boolean immutable) throws Exception {
+        return serve(request, immutable, file);
+    }
+
+    private MockHttpServletResponse serve(MockHttpServletRequest request, boolean immutable, Path target)
+            throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        service.serve(target, immutable, request, response);
+        return response;
+    }
+}
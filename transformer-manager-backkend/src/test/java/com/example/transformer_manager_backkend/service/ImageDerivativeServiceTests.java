@@ -0,0 +1,113 @@
+package com.example.transformer_manager_backkend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ImageDerivativeServiceTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void widthsSnapToTheNextVariantAndAreGeneratedOnce() throws Exception {
+        Path source = image("1700000000000_t1.png", 2000, 1500);
+        ImageDerivativeService service = new ImageDerivativeService(dir.resolve("derivatives"), 1L << 30, 0.8f);
+
+        Path thumbnail = derivative(service, source, 100);
+        BufferedImage decoded = ImageIO.read(thumbnail.toFile());
+        assertThat(decoded.getWidth()).isEqualTo(160);
+        assertThat(decoded.getHeight()).isEqualTo(120);
+        assertThat(Files.size(thumbnail)).isLessThan(Files.size(source) / 20);
+
+        FileTime generatedAt = Files.getLastModifiedTime(thumbnail);
+        assertThat(derivative(service, source, 160)).isEqualTo(thumbnail);
+        assertThat(Files.getLastModifiedTime(thumbnail)).isEqualTo(generatedAt);
+
+        assertThat(ImageIO.read(derivative(service, source, 600).toFile()).getWidth()).isEqualTo(640);
+        assertThat(derivative(service, source, 4000)).isEqualTo(source);
+        assertThat(derivative(service, dir.resolve("missing.png"), 160)).isEqualTo(dir.resolve("missing.png"));
+
+        // A rewritten source gets a new derivative
+        Files.setLastModifiedTime(source, FileTime.fromMillis(generatedAt.toMillis() + 5000));
+        assertThat(derivative(service, source, 160)).isNotEqualTo(thumbnail);
+    }
+
+    @Test
+    void leastRecentlyUsedDerivativesAreEvictedOverBudget() throws Exception {
+        Path first = image("a.png", 800, 600);
+        Path second = image("b.png", 800, 600);
+        Path third = image("c.png", 800, 600);
+        Path derivatives = dir.resolve("derivatives");
+        ImageDerivativeService probe = new ImageDerivativeService(dir.resolve("probe"), 1L << 30, 0.8f);
+        long size = Files.size(derivative(probe, first, 640));
+
+        // Room for two derivatives
+        ImageDerivativeService service = new ImageDerivativeService(derivatives, size * 2 + size / 2, 0.8f);
+        Path a = derivative(service, first, 640);
+        Path b = derivative(service, second, 640);
+        derivative(service, first, 640);
+        Path c = derivative(service, third, 640);
+
+        assertThat(a).exists();
+        assertThat(b).doesNotExist();
+        assertThat(c).exists();
+
+        // A restart picks up what is on disk
+        ImageDerivativeService restarted = new ImageDerivativeService(derivatives, size * 2 + size / 2, 0.8f);
+        FileTime cachedAt = Files.getLastModifiedTime(a);
+        assertThat(derivative(restarted, first, 640)).isEqualTo(a);
+        assertThat(Files.getLastModifiedTime(a)).isEqualTo(cachedAt);
+    }
+
+    @Test
+    void derivativesInUseAreNotEvictedUntilClosed() throws Exception {
+        Path first = image("a.png", 800, 600);
+        Path second = image("b.png", 800, 600);
+        ImageDerivativeService probe = new ImageDerivativeService(dir.resolve("probe"), 1L << 30, 0.8f);
+        long size = Files.size(derivative(probe, first, 640));
+
+        // Room for one derivative
+        ImageDerivativeService service = new ImageDerivativeService(dir.resolve("derivatives"), size + size / 2,
+                0.8f);
+        BlobStore.LocalFile a = service.derivativeFor(BlobStore.LocalFile.of(first), 640);
+        BlobStore.LocalFile b = service.derivativeFor(BlobStore.LocalFile.of(second), 640);
+        assertThat(a.getPath()).exists();
+        assertThat(b.getPath()).exists();
+
+        a.close();
+        assertThat(a.getPath()).doesNotExist();
+        b.close();
+        assertThat(b.getPath()).exists();
+    }
+
+    // Released straight away, so it may be evicted
+    private static Path derivative(ImageDerivativeService service, Path source, int width) throws Exception {
+        try (BlobStore.LocalFile file = service.derivativeFor(BlobStore.LocalFile.of(source), width)) {
+            return file.getPath();
+        }
+    }
+
+    // Noisy content so the PNG is realistically large
+    private Path image(String name, int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(name.hashCode());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, (x * 255 / width) << 16 | random.nextInt(64) << 8 | (y * 255 / height));
+            }
+        }
+        Path file = dir.resolve(name);
+        ImageIO.write(image, "png", file.toFile());
+        return file;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.transformer_manager_backkend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class InferenceCircuitBreakerTests {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final InferenceCircuitBreaker breaker = new InferenceCircuitBreaker(3, 60_000, now::get);
+
+    @Test
+    void opensAfterConsecutiveFailuresOnly() {
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertThat(breaker.allowRequest()).isTrue();
+
+        breaker.recordFailure();
+
+        assertThat(breaker.getState()).isEqualTo(InferenceCircuitBreaker.State.OPEN);
+        assertThat(breaker.allowRequest()).isFalse();
+        assertThat(breaker.millisUntilRetry()).isEqualTo(60_000);
+    }
+
+    @Test
+    void letsOneTrialThroughOnceTheWindowEndsAndClosesOnSuccess() {
+        open();
+        now.addAndGet(59_999);
+        assertThat(breaker.allowRequest()).isFalse();
+
+        now.addAndGet(1);
+        assertThat(breaker.allowRequest()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(InferenceCircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.allowRequest()).isFalse();
+
+        breaker.recordSuccess();
+        assertThat(breaker.getState()).isEqualTo(InferenceCircuitBreaker.State.CLOSED);
+        assertThat(breaker.allowRequest()).isTrue();
+        assertThat(breaker.millisUntilRetry()).isZero();
+    }
+
+    @Test
+    void failedTrialOpensTheCircuitForAnotherWindow() {
+        open();
+        now.addAndGet(60_000);
+        assertThat(breaker.allowRequest()).isTrue();
+
+        breaker.recordFailure();
+
+        assertThat(breaker.getState()).isEqualTo(InferenceCircuitBreaker.State.OPEN);
+        assertThat(breaker.millisUntilRetry()).isEqualTo(60_000);
+    }
+
+    @Test
+    void trialThatNeverReportsBackDoesNotWedgeTheBreaker() {
+        open();
+        now.addAndGet(60_000);
+        assertThat(breaker.allowRequest()).isTrue();
+
+        now.addAndGet(60_000);
+
+        assertThat(breaker.allowRequest()).isTrue();
+    }
+
+    private void open() {
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure();
+        }
+        assertThat(breaker.getState()).isEqualTo(InferenceCircuitBreaker.State.OPEN);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.transformer_manager_backkend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class InferenceConcurrencyLimiterTests {
+
+    private final InferenceConcurrencyLimiter limiter = new InferenceConcurrencyLimiter(3, 1_000);
+
+    @Test
+    void slowCallsShrinkTheLimitDownToOne() {
+        acquire(3);
+
+        limiter.release(5_000);
+        assertThat(limiter.getCurrentLimit()).isEqualTo(2);
+        assertThat(limiter.getInFlight()).isEqualTo(2);
+        // The slow call's permit went away with the limit
+        assertThat(limiter.tryAcquire()).isFalse();
+
+        limiter.release(5_000);
+        limiter.release(5_000);
+        assertThat(limiter.getCurrentLimit()).isEqualTo(1);
+        assertThat(limiter.getInFlight()).isZero();
+
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void fastCallsGrowTheLimitBackToTheMaximum() {
+        acquire(3);
+        limiter.release(5_000);
+        limiter.release(5_000);
+        limiter.release(5_000);
+        assertThat(limiter.getCurrentLimit()).isEqualTo(1);
+
+        acquire(1);
+        limiter.release(10);
+        assertThat(limiter.getCurrentLimit()).isEqualTo(2);
+        acquire(2);
+        assertThat(limiter.tryAcquire()).isFalse();
+
+        limiter.release(10);
+        limiter.release(10);
+        assertThat(limiter.getCurrentLimit()).isEqualTo(3);
+        assertThat(limiter.getInFlight()).isZero();
+
+        // Never past the configured maximum
+        acquire(1);
+        limiter.release(10);
+        assertThat(limiter.getCurrentLimit()).isEqualTo(3);
+        acquire(3);
+        assertThat(limiter.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void releasingWithoutACallKeepsTheLimit() {
+        acquire(3);
+
+        limiter.release();
+
+        assertThat(limiter.getCurrentLimit()).isEqualTo(3);
+        assertThat(limiter.getInFlight()).isEqualTo(2);
+    }
+
+    private void acquire(int permits) {
+        for (int i = 0; i < permits; i++) {
+            assertThat(limiter.tryAcquire()).isTrue();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.transformer_manager_backkend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.transformer_manager_backkend.service.AnomalyInferenceClient.InferenceParameters;
+
+class InferenceResultCacheTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void identicalBytesAndSettingsShareAKey() throws IOException {
+        InferenceResultCache cache = newCache(10);
+        Path first = Files.write(tempDir.resolve("first.png"), new byte[] { 1, 2, 3 });
+        Path copy = Files.write(tempDir.resolve("copy.png"), new byte[] { 1, 2, 3 });
+        Path other = Files.write(tempDir.resolve("other.png"), new byte[] { 4, 5, 6 });
+        InferenceParameters parameters = new InferenceParameters(1.0, "{}", "feedback-a");
+
+        assertThat(cache.keyFor(first, parameters)).isEqualTo(cache.keyFor(copy, parameters));
+        assertThat(cache.keyFor(first, parameters)).isNotEqualTo(cache.keyFor(other, parameters));
+        assertThat(cache.keyFor(first, parameters))
+                .isNotEqualTo(cache.keyFor(first, new InferenceParameters(1.5, "{}", "feedback-a")));
+        assertThat(cache.keyFor(first, parameters))
+                .isNotEqualTo(cache.keyFor(first, new InferenceParameters(1.0, "{}", "feedback-b")));
+    }
+
+    @Test
+    void knownContentHashGivesTheSameKeyAsHashingTheFile() throws Exception {
+        InferenceResultCache cache = newCache(10);
+        byte[] bytes = { 1, 2, 3 };
+        Path image = Files.write(tempDir.resolve("image.png"), bytes);
+        String contentHash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        InferenceParameters parameters = new InferenceParameters(1.0, "{}", "feedback-a");
+
+        assertThat(cache.keyFor(contentHash, parameters)).isPresent().isEqualTo(cache.keyFor(image, parameters));
+    }
+
+    @Test
+    void entriesSurviveEvictionAndRestartThroughTheStoredIndex() throws IOException {
+        Path boxed = Files.writeString(tempDir.resolve("a_boxed.png"), "boxed");
+        newCache(1).put("key-a", "Faulty", "{\"boxes\":[]}", boxed);
+        Files.delete(boxed);
+
+        InferenceResultCache restarted = newCache(1);
+        restarted.put("key-b", "Normal", "{}", Files.writeString(tempDir.resolve("b_boxed.png"), "other"));
+        Optional<InferenceResultCache.CachedResult> cached = restarted.get("key-a");
+
+        assertThat(cached).isPresent();
+        assertThat(cached.get().getLabel()).isEqualTo("Faulty");
+        assertThat(cached.get().getJsonResult()).isEqualTo("{\"boxes\":[]}");
+        assertThat(cached.get().getBoxedImage()).hasContent("boxed");
+        assertThat(restarted.get("missing")).isEmpty();
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvictedBeyondTheByteBudget() throws IOException {
+        // Room for two entries of a 1000-byte image and a small index each
+        InferenceResultCache cache = new InferenceResultCache(store(), true, 10, 2_500);
+        cache.put("a", "Faulty", "{}", Files.write(tempDir.resolve("a_boxed.png"), new byte[1000]));
+        cache.put("b", "Faulty", "{}", Files.write(tempDir.resolve("b_boxed.png"), new byte[1000]));
+        assertThat(cache.get("a")).isPresent();
+
+        cache.put("c", "Faulty", "{}", Files.write(tempDir.resolve("c_boxed.png"), new byte[1000]));
+
+        assertThat(cache.get("b")).isEmpty();
+        assertThat(tempDir.resolve("store/analysis/cache").resolve("b_boxed.png")).doesNotExist();
+        assertThat(cache.get("a")).isPresent();
+        assertThat(cache.get("c")).isPresent();
+        InferenceResultCache restarted = new InferenceResultCache(store(), true, 10, 2_500);
+        assertThat(restarted.get("a")).isPresent();
+        assertThat(restarted.get("b")).isEmpty();
+    }
+
+    @Test
+    void entriesUnderOtherFeedbackStayUsable() throws IOException {
+        InferenceResultCache cache = newCache(10);
+        Path boxed = Files.writeString(tempDir.resolve("boxed.png"), "boxed");
+        String before = cache.keyFor("ab".repeat(32), new InferenceParameters(1.0, "{}", "feedback-a")).orElseThrow();
+        String after = cache.keyFor("ab".repeat(32), new InferenceParameters(1.0, "{}", "feedback-b")).orElseThrow();
+        cache.put(before, "Faulty", "{}", boxed);
+
+        cache.put(after, "Normal", "{}", boxed);
+
+        // Reverting the feedback goes back to the earlier fingerprint
+        assertThat(cache.get(before)).get().extracting(InferenceResultCache.CachedResult::getLabel)
+                .isEqualTo("Faulty");
+        assertThat(cache.get(after)).get().extracting(InferenceResultCache.CachedResult::getLabel)
+                .isEqualTo("Normal");
+    }
+
+    private InferenceResultCache newCache(int memoryEntries) {
+        return new InferenceResultCache(store(), true, memoryEntries, 1_000_000);
+    }
+
+    private BlobStore store() {
+        return new LocalBlobStore(tempDir.resolve("store"));
+    }
+}
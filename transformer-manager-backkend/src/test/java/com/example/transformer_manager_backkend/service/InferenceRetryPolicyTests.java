@@ -0,0 +1,60 @@
+package com.example.transformer_manager_backkend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.NoSuchFileException;
+
+import org.junit.jupiter.api.Test;
+
+class InferenceRetryPolicyTests {
+
+    @Test
+    void onlyEndpointFailuresAreRetried() {
+        assertThat(InferenceRetryPolicy.isRetryable(new RemoteInferenceException("503", true))).isTrue();
+        assertThat(InferenceRetryPolicy.isRetryable(new HttpTimeoutException("timed out"))).isTrue();
+        assertThat(InferenceRetryPolicy.isRetryable(new IOException("connection reset"))).isTrue();
+
+        assertThat(InferenceRetryPolicy.isRetryable(new RemoteInferenceException("400", false))).isFalse();
+        assertThat(InferenceRetryPolicy.isRetryable(new FileNotFoundException("a.png"))).isFalse();
+        assertThat(InferenceRetryPolicy.isRetryable(new NoSuchFileException("a.png"))).isFalse();
+        assertThat(InferenceRetryPolicy.isRetryable(new IllegalStateException())).isFalse();
+    }
+
+    @Test
+    void retriesStopOnceTheAttemptsAreUsedUp() {
+        InferenceRetryPolicy policy = new InferenceRetryPolicy(3, 1000, 60_000);
+        IOException error = new IOException("connection reset");
+
+        assertThat(policy.shouldRetry(1, error)).isTrue();
+        assertThat(policy.shouldRetry(2, error)).isTrue();
+        assertThat(policy.shouldRetry(3, error)).isFalse();
+        assertThat(policy.shouldRetry(1, new RemoteInferenceException("400", false))).isFalse();
+    }
+
+    @Test
+    void backoffDoublesUpToTheCapWithHalfOfItJittered() {
+        InferenceRetryPolicy shortest = new InferenceRetryPolicy(10, 1000, 6000, bound -> 0);
+        InferenceRetryPolicy longest = new InferenceRetryPolicy(10, 1000, 6000, bound -> bound);
+
+        assertThat(shortest.backoffDelayMs(1)).isEqualTo(500);
+        assertThat(longest.backoffDelayMs(1)).isEqualTo(1000);
+        assertThat(shortest.backoffDelayMs(2)).isEqualTo(1000);
+        assertThat(longest.backoffDelayMs(2)).isEqualTo(2000);
+        assertThat(longest.backoffDelayMs(3)).isEqualTo(4000);
+        assertThat(shortest.backoffDelayMs(4)).isEqualTo(3000);
+        assertThat(longest.backoffDelayMs(4)).isEqualTo(6000);
+        assertThat(longest.backoffDelayMs(40)).isEqualTo(6000);
+    }
+
+    @Test
+    void defaultJitterStaysWithinTheWindow() {
+        InferenceRetryPolicy policy = new InferenceRetryPolicy(10, 1000, 60_000);
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(policy.backoffDelayMs(3)).isBetween(2000L, 4000L);
+        }
+    }
+}
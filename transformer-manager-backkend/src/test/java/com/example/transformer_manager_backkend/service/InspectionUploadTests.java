@@ -0,0 +1,134 @@
+package com.example.transformer_manager_backkend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.example.transformer_manager_backkend.entity.Admin;
+import com.example.transformer_manager_backkend.entity.AnalysisJob;
+import com.example.transformer_manager_backkend.entity.Image;
+import com.example.transformer_manager_backkend.entity.Inspection;
+import com.example.transformer_manager_backkend.entity.TransformerRecord;
+import com.example.transformer_manager_backkend.repository.AnalysisJobRepository;
+import com.example.transformer_manager_backkend.repository.ImageRepository;
+import com.example.transformer_manager_backkend.repository.InspectionRepository;
+import com.example.transformer_manager_backkend.repository.TransformerRecordRepository;
+import com.example.transformer_manager_backkend.repository.UploadBlobRepository;
+
+@DataJpaTest(properties = "spring.sql.init.mode=never")
+class InspectionUploadTests {
+
+    @TempDir
+    Path uploads;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private InspectionRepository inspectionRepository;
+
+    @Autowired
+    private TransformerRecordRepository transformerRecordRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private AnalysisJobRepository analysisJobRepository;
+
+    @Autowired
+    private UploadBlobRepository uploadBlobRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final AnomalyAnalysisService anomalyAnalysisService = mock(AnomalyAnalysisService.class);
+    private UploadStorageService uploadStorageService;
+    private InspectionService service;
+    private Admin admin;
+    private Long transformerId;
+
+    @BeforeEach
+    void setUp() {
+        uploadStorageService = new UploadStorageService(imageRepository, uploadBlobRepository,
+                new LocalBlobStore(uploads), transactionManager, uploads, 60_000, Duration.ofSeconds(300), 4,
+                System::currentTimeMillis);
+        service = new InspectionService(inspectionRepository, transformerRecordRepository, anomalyAnalysisService,
+                imageRepository, uploadStorageService, new TransactionTemplate(transactionManager));
+
+        admin = entityManager.persist(new Admin("admin", "secret", "Admin"));
+        TransformerRecord transformer = new TransformerRecord();
+        transformer.setName("TX-1");
+        transformer.setUploadedBy(admin);
+        transformerId = entityManager.persist(transformer).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        uploadStorageService.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void uploadsAreRecordedAndQueuedTogether() throws Exception {
+        Inspection inspection = service.createInspection(transformerId, "notes", files("a", "b", "c"), admin,
+                LocalDateTime.now());
+        Inspection updated = service.addImagesToInspection(inspection.getId(), files("d", "a"), admin);
+
+        assertThat(updated.getImages()).hasSize(5)
+                .allSatisfy(image -> assertThat(image.getId()).isNotNull())
+                .extracting(Image::getContentHash).doesNotContainNull();
+        // The repeated upload shares its blob with the first one
+        assertThat(updated.getImages().get(4).getFilePath()).isEqualTo(updated.getImages().get(0).getFilePath());
+
+        ArgumentCaptor<Collection<Image>> queued = ArgumentCaptor.forClass(Collection.class);
+        verify(anomalyAnalysisService, times(2)).queueImagesForAnalysis(queued.capture());
+        assertThat(queued.getAllValues()).extracting(Collection::size).containsExactly(3, 2);
+    }
+
+    @Test
+    void enqueueImagesQueuesEachImageOnce() throws Exception {
+        Inspection inspection = service.createInspection(transformerId, null, files("a", "b"), admin,
+                LocalDateTime.now());
+        List<Long> imageIds = inspection.getImages().stream().map(Image::getId).toList();
+
+        assertThat(analysisJobRepository.enqueueImages(imageIds, LocalDateTime.now())).isEqualTo(2);
+        assertThat(analysisJobRepository.enqueueImages(imageIds, LocalDateTime.now())).isZero();
+
+        entityManager.clear();
+        List<AnalysisJob> jobs = analysisJobRepository.findByInspectionId(inspection.getId());
+        assertThat(jobs).hasSize(2)
+                .allSatisfy(job -> assertThat(job.getStatus()).isEqualTo(AnalysisJob.AnalysisStatus.QUEUED));
+        assertThat(jobs).extracting(job -> job.getImage().getId()).containsExactlyInAnyOrderElementsOf(imageIds);
+        verify(anomalyAnalysisService).queueImagesForAnalysis(anyCollection());
+    }
+
+    private static List<MultipartFile> files(String... contents) {
+        return Arrays.stream(contents)
+                .<MultipartFile>map(content -> new MockMultipartFile("images", content + ".png", "image/png",
+                        content.getBytes()))
+                .toList();
+    }
+}
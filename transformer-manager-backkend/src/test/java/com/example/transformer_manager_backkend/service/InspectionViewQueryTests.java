@@ -0,0 +1,136 @@
+package com.example.transformer_manager_backkend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.transformer_manager_backkend.entity.Admin;
+import com.example.transformer_manager_backkend.entity.AnalysisJob;
+import com.example.transformer_manager_backkend.entity.Image;
+import com.example.transformer_manager_backkend.entity.Inspection;
+import com.example.transformer_manager_backkend.entity.MaintenanceRecord;
+import com.example.transformer_manager_backkend.entity.TransformerRecord;
+import com.example.transformer_manager_backkend.entity.User;
+import com.example.transformer_manager_backkend.repository.ImageRepository;
+import com.example.transformer_manager_backkend.repository.InspectionRepository;
+import com.example.transformer_manager_backkend.repository.TransformerRecordRepository;
+
+@DataJpaTest(properties = { "spring.sql.init.mode=never",
+        "spring.jpa.properties.hibernate.generate_statistics=true" })
+class InspectionViewQueryTests {
+
+    private static final int INSPECTIONS = 50;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private InspectionRepository inspectionRepository;
+
+    @Autowired
+    private TransformerRecordRepository transformerRecordRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private InspectionService service;
+    private Statistics statistics;
+    private Long transformerId;
+    private Long lastInspectionId;
+
+    @BeforeEach
+    void setUp() {
+        service = new InspectionService(inspectionRepository, transformerRecordRepository,
+                mock(AnomalyAnalysisService.class), imageRepository, mock(UploadStorageService.class),
+                new TransactionTemplate(transactionManager));
+        statistics = entityManager.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class)
+                .getStatistics();
+
+        Admin admin = entityManager.persist(new Admin("admin", "secret", "Admin"));
+        User user = entityManager.persist(new User("user", "secret", "User"));
+        TransformerRecord transformer = new TransformerRecord();
+        transformer.setName("TX-1");
+        transformer.setUploadedBy(admin);
+        transformerId = entityManager.persist(transformer).getId();
+
+        for (int i = 0; i < INSPECTIONS; i++) {
+            Inspection inspection = new Inspection();
+            inspection.setTransformerRecord(transformer);
+            inspection.setInspectionDate(LocalDateTime.now());
+            if (i % 2 == 0) {
+                inspection.setConductedByAdmin(admin);
+            } else {
+                inspection.setConductedByUser(user);
+            }
+            lastInspectionId = entityManager.persist(inspection).getId();
+
+            for (int j = 0; j < 3; j++) {
+                Image image = new Image();
+                image.setFilePath("/uploads/" + i + "_" + j + ".png");
+                image.setType("Maintenance");
+                image.setInspection(inspection);
+                entityManager.persist(image);
+
+                AnalysisJob job = new AnalysisJob();
+                job.setImage(image);
+                job.setStatus(AnalysisJob.AnalysisStatus.COMPLETED);
+                job.setResultLabel("Faulty");
+                entityManager.persist(job);
+            }
+
+            if (i % 3 == 0) {
+                MaintenanceRecord record = new MaintenanceRecord();
+                record.setInspection(inspection);
+                record.setTransformerStatus("OK");
+                record.setSubmittedByAdmin(admin);
+                entityManager.persist(record);
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+    }
+
+    @Test
+    void listViewLoadsInOneQueryRegardlessOfInspectionCount() {
+        List<InspectionService.InspectionView> views = service.getInspectionsByTransformerRecordId(transformerId);
+
+        assertThat(views).hasSize(INSPECTIONS);
+        assertThat(views).allSatisfy(view -> {
+            assertThat(view.getImages()).hasSize(3);
+            assertThat(view.getImages()).allSatisfy(image -> assertThat(image.getAnalysisJob().getResultLabel())
+                    .isEqualTo("Faulty"));
+            assertThat(view.getTransformerRecord()).isNull();
+        });
+        assertThat(views.get(0).getMaintenanceRecord().getTransformerStatus()).isEqualTo("OK");
+        assertThat(views.get(1).getConductedByUser().getUsername()).isEqualTo("user");
+        assertThat(views.get(0).getConductedBy().getDisplayName()).isEqualTo("Admin");
+        assertThat(views.get(0).getConductorRole()).isEqualTo("ADMIN");
+        assertThat(views.get(1).getConductorName()).isEqualTo("User");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void detailViewLoadsInOneQuery() {
+        InspectionService.InspectionView view = service.getInspectionById(lastInspectionId);
+
+        assertThat(view.getTransformerRecord().getName()).isEqualTo("TX-1");
+        assertThat(view.getImages()).hasSize(3);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.transformer_manager_backkend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.transformer_manager_backkend.service.TransformerLocationIndex.Location;
+import com.example.transformer_manager_backkend.service.TransformerLocationIndex.LocationCluster;
+import com.example.transformer_manager_backkend.service.TransformerLocationIndex.NearbyLocation;
+
+class LocationGridTests {
+
+    private final Random random = new Random(42);
+
+    @Test
+    void viewportAndNearestMatchAFullScan() {
+        List<Location> locations = new ArrayList<>();
+        // Dense region (roughly Sri Lanka) plus a scattering across the globe
+        for (long id = 0; id < 2000; id++) {
+            locations.add(id < 1800 ? location(id, 6 + 4 * random.nextDouble(), 79.5 + 2.5 * random.nextDouble())
+                    : location(id, -85 + 170 * random.nextDouble(), -180 + 360 * random.nextDouble()));
+        }
+        LocationGrid grid = new LocationGrid(locations, 0.1);
+
+        assertThat(ids(grid.within(7, 80, 8, 81)))
+                .containsExactlyInAnyOrderElementsOf(ids(scan(locations, 7, 80, 8, 81)));
+        assertThat(ids(grid.within(-90, -180, 90, 180))).hasSize(2000);
+
+        for (double[] query : new double[][] { { 7.3, 80.6 }, { 51.5, -0.1 }, { -70, 179.9 }, { 89.9, 0 } }) {
+            List<NearbyLocation> nearest = grid.nearest(query[0], query[1], 15);
+            List<Long> expected = locations.stream()
+                    .sorted(Comparator.comparingDouble(
+                            l -> LocationGrid.distanceKm(query[0], query[1], l.getLat(), l.getLng())))
+                    .limit(15)
+                    .map(Location::getId)
+                    .toList();
+            assertThat(nearest).extracting(n -> n.getLocation().getId()).containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    void viewportsAcrossTheAntimeridianWrap() {
+        List<Location> locations = List.of(location(1, 0, 179.5), location(2, 0, -179.5), location(3, 0, 0));
+        LocationGrid grid = new LocationGrid(locations, 0.1);
+
+        assertThat(ids(grid.within(-1, 179, 1, -179))).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(grid.nearest(0, 179.9, 1)).extracting(n -> n.getLocation().getId()).containsExactly(1L);
+        assertThat(grid.nearest(0, -179.9, 2)).extracting(n -> n.getLocation().getId()).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void clustersCoverEveryLocationOnce() {
+        List<Location> locations = new ArrayList<>();
+        for (long id = 0; id < 500; id++) {
+            locations.add(location(id, 6 + 4 * random.nextDouble(), 79.5 + 2.5 * random.nextDouble()));
+        }
+        locations.add(location(999, 9.99, 81.99));
+        List<Location> singles = new ArrayList<>();
+        List<LocationCluster> clusters = new ArrayList<>();
+
+        LocationGrid.cluster(locations, 6, 79.5, 10, 82, 4, singles, clusters);
+
+        assertThat(clusters.size() + singles.size()).isLessThanOrEqualTo(16);
+        assertThat(clusters.stream().mapToInt(LocationCluster::getCount).sum() + singles.size()).isEqualTo(501);
+        assertThat(clusters).allSatisfy(cluster -> {
+            assertThat(cluster.getLat()).isBetween(6.0, 10.0);
+            assertThat(cluster.getLng()).isBetween(79.5, 82.0);
+        });
+    }
+
+    private static Location location(long id, double lat, double lng) {
+        return new Location(id, "TX-" + id, null, lat, lng, false);
+    }
+
+    private static List<Location> scan(List<Location> locations, double south, double west, double north,
+            double east) {
+        return locations.stream()
+                .filter(l -> l.getLat() >= south && l.getLat() <= north && l.getLng() >= west && l.getLng() <= east)
+                .toList();
+    }
+
+    private static List<Long> ids(List<Location> locations) {
+        return locations.stream().map(Location::getId).toList();
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.transformer_manager_backkend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.transformer_manager_backkend.entity.MLSettings;
+import com.example.transformer_manager_backkend.repository.MLSettingsRepository;
+
+class MLSettingsServiceTests {
+
+    private final MLSettingsRepository repository = mock(MLSettingsRepository.class);
+    // The ml_settings table, and the writes of the transaction still open on it
+    private final Map<String, String> committed = new LinkedHashMap<>();
+    private final Map<String, String> pending = new LinkedHashMap<>();
+    private MLSettingsService service;
+
+    @BeforeEach
+    void setUp() {
+        // Reads inside the open transaction see its own writes
+        when(repository.findAll()).thenAnswer(call -> {
+            Map<String, String> visible = new LinkedHashMap<>(committed);
+            visible.putAll(pending);
+            return visible.entrySet().stream().map(row -> new MLSettings(row.getKey(), row.getValue(), null))
+                    .toList();
+        });
+        when(repository.existsBySettingKey(anyString())).thenAnswer(call -> committed.containsKey(call.getArgument(0)));
+        when(repository.findBySettingKey(anyString())).thenAnswer(call -> Optional
+                .ofNullable(committed.get(call.<String>getArgument(0)))
+                .map(value -> new MLSettings(call.getArgument(0), value, null)));
+        when(repository.save(any())).thenAnswer(call -> {
+            MLSettings setting = call.getArgument(0);
+            pending.put(setting.getSettingKey(), setting.getSettingValue());
+            return setting;
+        });
+        service = new MLSettingsService(repository, 60_000);
+        // The defaults written on startup
+        committed.putAll(pending);
+        pending.clear();
+        service.refreshSnapshot();
+
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+        service.shutdown();
+    }
+
+    @Test
+    void snapshotIsReplacedOnceTheWriteCommits() {
+        service.setDetectionSensitivity(1.5);
+        assertThat(service.getDetectionSensitivity()).isEqualTo(MLSettingsService.DEFAULT_SENSITIVITY);
+
+        complete(true);
+
+        assertThat(service.getDetectionSensitivity()).isEqualTo(1.5);
+        assertThat(service.getSettingByKey(MLSettingsService.DETECTION_SENSITIVITY)).get()
+                .extracting(MLSettings::getSettingValue).isEqualTo("1.5");
+    }
+
+    @Test
+    void snapshotIsKeptWhenTheWriteRollsBack() {
+        service.setFeedbackLearningRate(0.01);
+        service.setSetting("custom", "on", null);
+
+        complete(false);
+
+        assertThat(service.getFeedbackLearningRate()).isEqualTo(MLSettingsService.DEFAULT_FEEDBACK_LEARNING_RATE);
+        assertThat(service.getSettingByKey("custom")).isEmpty();
+        assertThat(committed).doesNotContainKey("custom");
+    }
+
+    // End the transaction the way the transaction manager would
+    private void complete(boolean commit) {
+        if (commit) {
+            committed.putAll(pending);
+        }
+        pending.clear();
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (commit) {
+                synchronization.afterCommit();
+            }
+            synchronization.afterCompletion(commit ? TransactionSynchronization.STATUS_COMMITTED
+                    : TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+    }
+}
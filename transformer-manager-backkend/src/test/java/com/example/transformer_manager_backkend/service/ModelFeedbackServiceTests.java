@@ -0,0 +1,102 @@
+package com.example.transformer_manager_backkend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.transformer_manager_backkend.entity.LabelFeedbackAggregate;
+import com.example.transformer_manager_backkend.repository.AnnotationRepository;
+import com.example.transformer_manager_backkend.repository.FeedbackSnapshotRepository;
+import com.example.transformer_manager_backkend.repository.LabelFeedbackAggregateRepository;
+
+class ModelFeedbackServiceTests {
+
+    private static final String ORIGINAL = "{\"boxes\": [{\"type\": \"Hotspot\", \"box\": [0, 0, 10, 10], \"confidence\": 0.5}]}";
+    private static final String TWO_HOTSPOTS = "{\"boxes\": ["
+            + "{\"type\": \"Hotspot\", \"box\": [0, 0, 10, 10], \"confidence\": 0.5},"
+            + "{\"type\": \"Hotspot\", \"box\": [20, 20, 5, 5], \"confidence\": 1.0}]}";
+    private static final String RELABELLED = "{\"boxes\": [{\"type\": \"Loose joint\", \"box\": [0, 0, 10, 10], \"confidence\": 0.5}]}";
+
+    private LabelFeedbackAggregateRepository aggregates;
+    private FeedbackSnapshotRepository snapshots;
+    private ModelFeedbackService service;
+
+    @BeforeEach
+    void setUp() {
+        aggregates = mock(LabelFeedbackAggregateRepository.class);
+        snapshots = mock(FeedbackSnapshotRepository.class);
+        service = new ModelFeedbackService(mock(AnnotationRepository.class), snapshots, aggregates);
+    }
+
+    @Test
+    void payloadIsReusedUntilAggregatesOrLearningRateChange() {
+        LabelFeedbackAggregate hotspot = new LabelFeedbackAggregate("Hotspot");
+        hotspot.setTotalCountDelta(2.0);
+        hotspot.setSampleCount(2);
+        when(aggregates.findAllByOrderByLabelAsc()).thenReturn(List.of(hotspot));
+        when(aggregates.findAggregateStamp()).thenReturn("1/1");
+
+        ModelFeedbackService.FeedbackPayload first = service.buildFeedbackPayload(0.1);
+        assertThat(service.buildFeedbackPayload(0.1)).isSameAs(first);
+        verify(aggregates, times(1)).findAllByOrderByLabelAsc();
+        verify(snapshots, times(1)).save(any());
+
+        // A write that leaves the content unchanged bumps the version but not the snapshot history
+        when(aggregates.findAggregateStamp()).thenReturn("2/1");
+        ModelFeedbackService.FeedbackPayload rebuilt = service.buildFeedbackPayload(0.1);
+        assertThat(rebuilt.getVersion()).isGreaterThan(first.getVersion());
+        assertThat(rebuilt.getFingerprint()).isEqualTo(first.getFingerprint());
+        verify(snapshots, times(1)).save(any());
+
+        ModelFeedbackService.FeedbackPayload faster = service.buildFeedbackPayload(0.2);
+        assertThat(faster.getFingerprint()).isNotEqualTo(first.getFingerprint());
+        verify(snapshots, times(2)).save(any());
+    }
+
+    @Test
+    void newAnnotationAddsOneSamplePerLabel() {
+        service.recordAnnotationFeedback(1L, ORIGINAL, null, ORIGINAL);
+
+        verify(aggregates).addToLabel(eq("Hotspot"), eq(0.0), eq(0.0), eq(100.0), eq(100.0), eq(0.0), eq(1), any());
+        verifyNoMoreInteractions(aggregates);
+    }
+
+    @Test
+    void editReplacesThePreviousContribution() {
+        service.recordAnnotationFeedback(1L, ORIGINAL, ORIGINAL, TWO_HOTSPOTS);
+
+        // Same sample, one more box of area 25 and confidence 1.0 than before
+        verify(aggregates).addToLabel(eq("Hotspot"), eq(1.0), eq(25.0), eq(0.0), eq(25.0), eq(1.0), eq(0), any());
+        verifyNoMoreInteractions(aggregates);
+    }
+
+    @Test
+    void relabellingMovesTheSampleBetweenLabels() {
+        service.recordAnnotationFeedback(1L, ORIGINAL, TWO_HOTSPOTS, RELABELLED);
+
+        verify(aggregates).addToLabel(eq("Hotspot"), eq(-2.0), eq(-125.0), eq(0.0), eq(-125.0), eq(-1.5), eq(0), any());
+        verify(aggregates).addToLabel(eq("Loose joint"), eq(1.0), eq(100.0), eq(0.0), eq(100.0), eq(0.5), eq(1), any());
+    }
+
+    @Test
+    void unchangedSaveWritesNothing() {
+        service.recordAnnotationFeedback(1L, ORIGINAL, TWO_HOTSPOTS, TWO_HOTSPOTS);
+
+        verify(aggregates, never()).addToLabel(anyString(), anyDouble(), anyDouble(), anyDouble(), anyDouble(),
+                anyDouble(), anyInt(), any());
+    }
+}
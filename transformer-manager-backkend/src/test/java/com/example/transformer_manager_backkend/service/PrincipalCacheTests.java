@@ -0,0 +1,127 @@
+package com.example.transformer_manager_backkend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.example.transformer_manager_backkend.config.JwtAuthenticationFilter;
+import com.example.transformer_manager_backkend.config.JwtUtil;
+import com.example.transformer_manager_backkend.entity.Account;
+import com.example.transformer_manager_backkend.entity.Admin;
+import com.example.transformer_manager_backkend.repository.AccountRepository;
+import com.example.transformer_manager_backkend.repository.AdminRepository;
+import com.example.transformer_manager_backkend.repository.UserRepository;
+
+class PrincipalCacheTests {
+
+    private final JwtUtil jwtUtil = new JwtUtil("mySecretKeyForJWTSigning1234567890", 3600L);
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private AccountRepository accounts;
+    private PrincipalCache cache;
+    private JwtAuthenticationFilter filter;
+    private Account admin;
+    private AdminRepository adminRepository;
+
+    @BeforeEach
+    void setUp() {
+        accounts = mock(AccountRepository.class);
+        admin = mock(Account.class);
+        when(admin.getRole()).thenReturn(Account.ROLE_ADMIN);
+        when(admin.getAccountId()).thenReturn(7L);
+        when(admin.getDisplayName()).thenReturn("Admin One");
+        when(accounts.findFirstByUsernameOrderByRoleAsc("admin1")).thenReturn(Optional.of(admin));
+        when(accounts.findFirstByUsernameOrderByRoleAsc("ghost")).thenReturn(Optional.empty());
+        adminRepository = mock(AdminRepository.class);
+        cache = new PrincipalCache(accounts, adminRepository, mock(UserRepository.class), 60_000, 100,
+                clock::get);
+        filter = new JwtAuthenticationFilter(jwtUtil, cache);
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void tokensAreVerifiedFromClaimsWithOneLookupPerTtl() throws Exception {
+        String token = token("admin1", "ROLE_ADMIN");
+
+        for (int i = 0; i < 20; i++) {
+            Authentication authentication = authenticate(token);
+            assertThat(authentication.getName()).isEqualTo("admin1");
+            assertThat(authentication.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+                    .containsExactly("ROLE_ADMIN");
+
+            // Controllers resolve the caller from the authentication without another lookup
+            Admin caller = cache.currentAdmin(authentication).orElseThrow();
+            assertThat(caller.getId()).isEqualTo(7L);
+            assertThat(caller.getDisplayName()).isEqualTo("Admin One");
+        }
+        verify(accounts, times(1)).findFirstByUsernameOrderByRoleAsc("admin1");
+
+        clock.addAndGet(60_000);
+        assertThat(authenticate(token)).isNotNull();
+        verify(accounts, times(2)).findFirstByUsernameOrderByRoleAsc("admin1");
+    }
+
+    @Test
+    void revokedTamperedAndUnknownTokensAreIgnored() throws Exception {
+        String token = token("admin1", "ROLE_ADMIN");
+        assertThat(authenticate(token)).isNotNull();
+
+        when(admin.getTokensValidAfter()).thenReturn(LocalDateTime.now().plusSeconds(1));
+        clock.addAndGet(60_000);
+        assertThat(authenticate(token)).isNull();
+
+        assertThat(authenticate(token.substring(0, token.length() - 2) + "xx")).isNull();
+        assertThat(authenticate(token("ghost", "ROLE_ADMIN"))).isNull();
+        assertThat(authenticate(token("ghost", "ROLE_ADMIN"))).isNull();
+        verify(accounts, times(1)).findFirstByUsernameOrderByRoleAsc("ghost");
+    }
+
+    @Test
+    void signingBackInRightAfterRevokingWorks() throws Exception {
+        when(adminRepository.updateTokensValidAfter(eq("admin1"), any())).thenReturn(1);
+
+        assertThat(cache.revokeTokens("admin1")).isTrue();
+        ArgumentCaptor<LocalDateTime> cutoff = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(adminRepository).updateTokensValidAfter(eq("admin1"), cutoff.capture());
+        when(admin.getTokensValidAfter()).thenReturn(cutoff.getValue());
+
+        // Usually issued within the same second as the revocation
+        assertThat(authenticate(token("admin1", "ROLE_ADMIN"))).isNotNull();
+    }
+
+    private String token(String username, String authority) {
+        return jwtUtil.generateToken(org.springframework.security.core.userdetails.User.withUsername(username)
+                .password("").authorities(AuthorityUtils.createAuthorityList(authority)).build());
+    }
+
+    private Authentication authenticate(String token) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/transformer-records");
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.transformer_manager_backkend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import com.example.transformer_manager_backkend.entity.Admin;
+import com.example.transformer_manager_backkend.entity.TransformerRecord;
+import com.example.transformer_manager_backkend.repository.ImageRepository;
+import com.example.transformer_manager_backkend.repository.TransformerRecordRepository;
+
+@DataJpaTest(properties = "spring.sql.init.mode=never")
+class TransformerRecordPagingTests {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private TransformerRecordRepository transformerRecordRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    private TransformerRecordService service;
+    private final List<Long> ids = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        service = new TransformerRecordService(transformerRecordRepository, imageRepository,
+                mock(TransformerLocationIndex.class), mock(UploadStorageService.class));
+        Admin admin = entityManager.persist(new Admin("admin", "secret", "Admin"));
+        String[] names = { "Bravo", "Alpha", "Bravo", "Charlie", "Alpha", "Delta", "Bravo" };
+        for (String name : names) {
+            TransformerRecord record = new TransformerRecord();
+            record.setName(name);
+            record.setUploadedBy(admin);
+            ids.add(entityManager.persist(record).getId());
+        }
+        entityManager.flush();
+        // Two legacy rows without a creation time, and a tie on the rest
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (int i = 0; i < ids.size(); i++) {
+            entityManager.getEntityManager()
+                    .createNativeQuery("UPDATE transformer_records SET created_at = :createdAt WHERE id = :id")
+                    .setParameter("createdAt", i < 2 ? null : base.plusDays(i / 2))
+                    .setParameter("id", ids.get(i))
+                    .executeUpdate();
+        }
+        entityManager.clear();
+    }
+
+    @Test
+    void everyRecordIsListedOnceInNameOrder() {
+        assertThat(pageThrough(TransformerRecordService.SORT_NAME)).containsExactly(ids.get(1), ids.get(4),
+                ids.get(0), ids.get(2), ids.get(6), ids.get(3), ids.get(5));
+    }
+
+    @Test
+    void recordsWithoutCreationTimeComeLastInNewestOrder() {
+        assertThat(pageThrough(TransformerRecordService.SORT_NEWEST)).containsExactly(ids.get(6), ids.get(5),
+                ids.get(4), ids.get(3), ids.get(2), ids.get(1), ids.get(0));
+    }
+
+    private List<Long> pageThrough(String sort) {
+        List<Long> listed = new ArrayList<>();
+        String cursor = null;
+        do {
+            TransformerRecordService.SummaryPage page = service.getTransformerRecordSummaries(null, null, null, sort,
+                    cursor, 2);
+            page.getItems().forEach(item -> listed.add(item.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return listed;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.transformer_manager_backkend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.data.domain.Limit;
+import org.springframework.mock.web.MockMultipartFile;
+
+import com.example.transformer_manager_backkend.repository.ImageRepository;
+import com.example.transformer_manager_backkend.repository.TransformerRecordRepository;
+import com.example.transformer_manager_backkend.repository.TransformerRecordRepository.TransformerRecordSummaryRow;
+
+class TransformerRecordServiceTests {
+
+    private TransformerRecordRepository records;
+    private UploadStorageService uploadStorageService;
+    private TransformerRecordService service;
+
+    @BeforeEach
+    void setUp() {
+        records = mock(TransformerRecordRepository.class);
+        uploadStorageService = mock(UploadStorageService.class);
+        service = new TransformerRecordService(records, mock(ImageRepository.class), mock(TransformerLocationIndex.class),
+                uploadStorageService);
+    }
+
+    @Test
+    void nonBaselineImagesAreRejectedBeforeAnythingIsStored() {
+        List<TransformerRecordService.ImageDTO> images = List.of(image("Baseline"), image("Maintenance"));
+
+        assertThatThrownBy(() -> service.saveTransformerRecord("T1", "Kandy", null, null, null, null, null, images,
+                null)).isInstanceOf(IllegalArgumentException.class);
+
+        verifyNoInteractions(uploadStorageService);
+    }
+
+    @Test
+    void blobsAreGivenBackWhenTheRecordIsNotSaved() throws Exception {
+        List<UploadStorageService.StoredBlob> blobs = List.of(
+                new UploadStorageService.StoredBlob("a".repeat(64), "/uploads/aa/aa/a.png", false));
+        when(uploadStorageService.storeAll(any())).thenReturn(blobs);
+        when(records.save(any())).thenThrow(new IllegalStateException("constraint violated"));
+
+        assertThatThrownBy(() -> service.saveTransformerRecord("T1", "Kandy", null, null, null, null, null,
+                List.of(image("Baseline")), null)).isInstanceOf(IllegalStateException.class);
+
+        InOrder order = inOrder(uploadStorageService, records);
+        order.verify(uploadStorageService).restamp(blobs);
+        order.verify(records).save(any());
+        order.verify(uploadStorageService).discard(blobs);
+    }
+
+    @Test
+    void nextCursorResumesAfterTheLastReturnedRow() {
+        List<TransformerRecordSummaryRow> rows = List.of(row(1L, "Alpha|North"), row(7L, "Bravo"), row(3L, "Charlie"));
+        when(records.findSummariesByName(any(), any(), any(), eq(Limit.of(3)))).thenReturn(rows);
+
+        TransformerRecordService.SummaryPage first = service.getTransformerRecordSummaries(true, null, " Kandy_ ",
+                TransformerRecordService.SORT_NAME, null, 2);
+
+        assertThat(first.getItems()).extracting(TransformerRecordService.TransformerRecordSummary::getId)
+                .containsExactly(1L, 7L);
+        assertThat(first.getNextCursor()).isNotNull();
+        verify(records).findSummariesByName(true, null, "%kandy\\_%", Limit.of(3));
+
+        service.getTransformerRecordSummaries(true, null, null, TransformerRecordService.SORT_NAME,
+                first.getNextCursor(), 2);
+        verify(records).findSummariesByNameAfter(true, null, null, "Bravo", 7L, Limit.of(3));
+    }
+
+    @Test
+    void lastPageHasNoCursorAndCursorsAreBoundToTheirSort() {
+        List<TransformerRecordSummaryRow> byName = List.of(row(1L, "Alpha"), row(2L, "Bravo"));
+        List<TransformerRecordSummaryRow> newest = List.of(row(9L, "Zulu"), row(8L, "Yankee"));
+        when(records.findSummariesByName(any(), any(), any(), any())).thenReturn(byName);
+        when(records.findSummariesByNewest(any(), any(), any(), any())).thenReturn(newest);
+
+        assertThat(service.getTransformerRecordSummaries(null, null, null, "name", null, 5).getNextCursor())
+                .isNull();
+
+        String newestCursor = service.getTransformerRecordSummaries(null, null, null, "newest", null, 1)
+                .getNextCursor();
+        assertThatThrownBy(() -> service.getTransformerRecordSummaries(null, null, null, "name", newestCursor, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.getTransformerRecordSummaries(null, null, null, "size", null, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static TransformerRecordService.ImageDTO image(String type) {
+        TransformerRecordService.ImageDTO image = new TransformerRecordService.ImageDTO();
+        image.file = new MockMultipartFile("images", "a.png", "image/png", new byte[] { 1 });
+        image.type = type;
+        return image;
+    }
+
+    private static TransformerRecordSummaryRow row(Long id, String name) {
+        TransformerRecordSummaryRow row = mock(TransformerRecordSummaryRow.class);
+        when(row.getId()).thenReturn(id);
+        when(row.getName()).thenReturn(name);
+        when(row.getCreatedAt()).thenReturn(LocalDateTime.of(2024, 1, 1, 0, 0).plusDays(id));
+        return row;
+    }
+}
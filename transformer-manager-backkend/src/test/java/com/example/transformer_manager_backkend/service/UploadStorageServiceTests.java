@@ -0,0 +1,202 @@
+package com.example.transformer_manager_backkend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.example.transformer_manager_backkend.entity.UploadBlob;
+import com.example.transformer_manager_backkend.repository.ImageRepository;
+import com.example.transformer_manager_backkend.repository.UploadBlobRepository;
+
+class UploadStorageServiceTests {
+
+    @TempDir
+    Path uploads;
+
+    private final ImageRepository imageRepository = mock(ImageRepository.class);
+    private final UploadBlobRepository uploadBlobRepository = mock(UploadBlobRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    // The upload_blobs table, as another node would see it
+    private final Map<String, LocalDateTime> blobRows = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUpBlobRows() {
+        when(uploadBlobRepository.markStored(anyString(), any())).thenAnswer(
+                call -> blobRows.computeIfPresent(call.getArgument(0), (hash, at) -> call.getArgument(1)) == null ? 0
+                        : 1);
+        when(uploadBlobRepository.existsById(anyString()))
+                .thenAnswer(call -> blobRows.containsKey(call.<String>getArgument(0)));
+        when(uploadBlobRepository.saveAndFlush(any())).thenAnswer(call -> {
+            UploadBlob blob = call.getArgument(0);
+            blobRows.put(blob.getContentHash(), blob.getLastStoredAt());
+            return blob;
+        });
+        when(uploadBlobRepository.lockForRelease(anyString())).thenAnswer(call -> Optional
+                .ofNullable(blobRows.get(call.<String>getArgument(0)))
+                .map(at -> new UploadBlob(call.getArgument(0), at)));
+        doAnswer(call -> blobRows.remove(call.<UploadBlob>getArgument(0).getContentHash()))
+                .when(uploadBlobRepository).delete(any());
+    }
+
+    @Test
+    void identicalBytesAreStoredOnceUnderTheirShardedHash() throws Exception {
+        UploadStorageService storage = new UploadStorageService(imageRepository, uploadBlobRepository,
+                new LocalBlobStore(uploads), transactionManager, uploads, 0, Duration.ofSeconds(300), 4, now::get);
+
+        UploadStorageService.StoredBlob first = storage.store(new ByteArrayInputStream(new byte[] { 1, 2, 3 }),
+                "IMG_0001.JPEG");
+        UploadStorageService.StoredBlob second = storage.store(new ByteArrayInputStream(new byte[] { 1, 2, 3 }),
+                "copy.png");
+        UploadStorageService.StoredBlob other = storage.store(new ByteArrayInputStream(new byte[] { 4 }), "x");
+
+        String hash = first.getContentHash();
+        assertThat(hash).hasSize(64);
+        assertThat(first.getWebPath())
+                .isEqualTo("/uploads/" + hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + ".jpg");
+        assertThat(first.isDeduplicated()).isFalse();
+        assertThat(second.getContentHash()).isEqualTo(hash);
+        assertThat(second.getWebPath()).isEqualTo(first.getWebPath());
+        assertThat(second.isDeduplicated()).isTrue();
+        assertThat(other.getContentHash()).isNotEqualTo(hash);
+        assertThat(storage.locate(hash)).get().extracting(BlobStore.LocalFile::getPath)
+                .isEqualTo(uploads.resolve(first.getWebPath().substring("/uploads/".length())));
+
+        try (Stream<Path> files = Files.walk(uploads)) {
+            assertThat(files.filter(Files::isRegularFile)).hasSize(2);
+        }
+        storage.shutdown();
+    }
+
+    @Test
+    void blobIsDeletedOnceNoImageRefersToIt() throws Exception {
+        UploadStorageService storage = new UploadStorageService(imageRepository, uploadBlobRepository,
+                new LocalBlobStore(uploads), transactionManager, uploads, 60_000, Duration.ofSeconds(300), 4, now::get);
+        String hash = storage.store(new ByteArrayInputStream(new byte[] { 7, 7 }), "a.png").getContentHash();
+        Path blob = storage.locate(hash).orElseThrow().getPath();
+
+        // Just handed out: the row referring to it may not have committed yet
+        when(imageRepository.countByContentHash(hash)).thenReturn(0L);
+        assertThat(storage.release(hash)).isFalse();
+        assertThat(blob).exists();
+
+        now.addAndGet(120_000);
+        when(imageRepository.countByContentHash(hash)).thenReturn(1L);
+        assertThat(storage.release(hash)).isFalse();
+        assertThat(blob).exists();
+
+        when(imageRepository.countByContentHash(hash)).thenReturn(0L);
+        assertThat(storage.release(hash)).isTrue();
+        assertThat(blob).doesNotExist();
+        assertThat(storage.locate(hash)).isEmpty();
+        assertThat(blobRows).doesNotContainKey(hash);
+        storage.shutdown();
+    }
+
+    @Test
+    void restampRestartsTheGracePeriodAndFailsForReleasedBlobs() throws Exception {
+        UploadStorageService storage = new UploadStorageService(imageRepository, uploadBlobRepository,
+                new LocalBlobStore(uploads), transactionManager, uploads, 60_000, Duration.ofSeconds(300), 4, now::get);
+        UploadStorageService.StoredBlob blob = storage.store(new ByteArrayInputStream(new byte[] { 5 }), "a.png");
+        String hash = blob.getContentHash();
+        when(imageRepository.countByContentHash(hash)).thenReturn(0L);
+
+        // The uploads took longer than the grace period; the insert is about to start
+        now.addAndGet(120_000);
+        storage.restamp(List.of(blob));
+        assertThat(storage.release(hash)).isFalse();
+        assertThat(storage.locate(hash)).isPresent();
+
+        now.addAndGet(120_000);
+        assertThat(storage.release(hash)).isTrue();
+        assertThatThrownBy(() -> storage.restamp(List.of(blob))).isInstanceOf(NoSuchFileException.class);
+        storage.shutdown();
+    }
+
+    @Test
+    void blobHandedOutByAnotherNodeIsKeptUntilItsRowCanHaveCommitted() throws Exception {
+        LocalBlobStore shared = new LocalBlobStore(uploads);
+        UploadStorageService nodeA = new UploadStorageService(imageRepository, uploadBlobRepository, shared,
+                transactionManager, uploads.resolve("a"), 60_000, Duration.ofSeconds(300), 4, now::get);
+        UploadStorageService nodeB = new UploadStorageService(imageRepository, uploadBlobRepository, shared,
+                transactionManager, uploads.resolve("b"), 60_000, Duration.ofSeconds(300), 4, now::get);
+        String hash = nodeA.store(new ByteArrayInputStream(new byte[] { 9 }), "a.png").getContentHash();
+        now.addAndGet(120_000);
+
+        // Node A dedups against the blob; its image row hasn't committed when node B releases it
+        assertThat(nodeA.store(new ByteArrayInputStream(new byte[] { 9 }), "b.png").isDeduplicated()).isTrue();
+        when(imageRepository.countByContentHash(hash)).thenReturn(0L);
+        assertThat(nodeB.release(hash)).isFalse();
+        assertThat(nodeB.locate(hash)).isPresent();
+
+        now.addAndGet(120_000);
+        assertThat(nodeB.release(hash)).isTrue();
+        assertThat(nodeA.locate(hash)).isEmpty();
+        nodeA.shutdown();
+        nodeB.shutdown();
+    }
+
+    @Test
+    void storeAllKeepsUploadOrderAndGivesBackEverythingWhenOneFails() throws Exception {
+        UploadStorageService storage = new UploadStorageService(imageRepository, uploadBlobRepository,
+                new LocalBlobStore(uploads), transactionManager, uploads, 0, Duration.ofSeconds(300), 4, now::get);
+        List<MultipartFile> files = List.of(new MockMultipartFile("images", "a.png", "image/png", new byte[] { 1 }),
+                new MockMultipartFile("images", "b.png", "image/png", new byte[] { 2 }),
+                new MockMultipartFile("images", "c.png", "image/png", new byte[] { 3 }));
+
+        List<UploadStorageService.StoredBlob> blobs = storage.storeAll(files);
+
+        assertThat(blobs).hasSize(3);
+        for (int i = 0; i < files.size(); i++) {
+            assertThat(storage.locate(blobs.get(i).getContentHash()).orElseThrow().getPath())
+                    .hasBinaryContent(files.get(i).getBytes());
+        }
+
+        MockMultipartFile broken = new MockMultipartFile("images", "d.png", "image/png", new byte[] { 4 }) {
+            @Override
+            public InputStream getInputStream() throws IOException {
+                throw new IOException("client went away");
+            }
+        };
+        when(imageRepository.countByContentHash(anyString())).thenReturn(0L);
+        assertThatThrownBy(() -> storage.storeAll(List.of(files.get(0), broken, files.get(2))))
+                .isInstanceOf(IOException.class).hasMessage("client went away");
+
+        // Given back on the release thread
+        long deadline = System.currentTimeMillis() + 5_000;
+        while ((storage.locate(blobs.get(0).getContentHash()).isPresent()
+                || storage.locate(blobs.get(2).getContentHash()).isPresent())
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(storage.locate(blobs.get(0).getContentHash())).isEmpty();
+        assertThat(storage.locate(blobs.get(2).getContentHash())).isEmpty();
+        storage.shutdown();
+    }
+}
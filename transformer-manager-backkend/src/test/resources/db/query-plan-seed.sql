@@ -0,0 +1,40 @@
+-- Row counts and value spreads roughly like a busy deployment, so the planner costs the hot
+-- queries the way it would in production. Ids line up because the schema is created fresh.
+INSERT INTO admins (username, password, display_name) VALUES ('planner', 'secret', 'Planner');
+
+-- One in a hundred legacy records has no creation time
+INSERT INTO transformer_records (name, created_at, starred, uploaded_by)
+SELECT 'TX-' || md5(g::text),
+       CASE WHEN g % 100 = 0 THEN NULL ELSE TIMESTAMP '2023-01-01' + g * INTERVAL '1 hour' END,
+       g % 50 = 0, 1
+FROM generate_series(1, 20000) g;
+
+INSERT INTO inspections (transformer_record_id, created_at, inspection_date)
+SELECT 1 + g % 20000, TIMESTAMP '2023-01-01' + g * INTERVAL '10 minutes',
+       TIMESTAMP '2023-01-01' + g * INTERVAL '10 minutes'
+FROM generate_series(1, 50000) g;
+
+INSERT INTO images (file_path, content_hash, upload_time, type, transformer_record_id, inspection_id)
+SELECT 'uploads/' || md5(g::text) || '.png', encode(sha256(g::text::bytea), 'hex'),
+       TIMESTAMP '2023-01-01' + g * INTERVAL '5 minutes',
+       CASE WHEN g % 10 = 0 THEN 'Baseline' ELSE 'Maintenance' END, 1 + g % 20000, 1 + g % 50000
+FROM generate_series(1, 100000) g;
+
+-- Almost every job has finished; the live backlog is the newest thousand or so
+INSERT INTO analysis_jobs (image_id, status, created_at, updated_at, attempt_count, lease_owner, lease_expires_at)
+SELECT g,
+       CASE WHEN g > 99000 THEN 'QUEUED' WHEN g > 98900 THEN 'PROCESSING' WHEN g % 50 = 0 THEN 'FAILED'
+            ELSE 'COMPLETED' END,
+       TIMESTAMP '2023-01-01' + g * INTERVAL '5 minutes', TIMESTAMP '2023-01-01' + g * INTERVAL '5 minutes',
+       CASE WHEN g > 99000 THEN 0 ELSE 1 END,
+       CASE WHEN g > 98900 AND g <= 99000 THEN 'node-a' END,
+       CASE WHEN g > 98900 AND g <= 99000 THEN now() + INTERVAL '5 minutes' END
+FROM generate_series(1, 100000) g;
+
+INSERT INTO annotations (analysis_job_id, original_result_json, modified_result_json, annotation_type, created_at)
+SELECT g * 5, '{}', '{}', 'EDITED', TIMESTAMP '2023-01-01' + g * INTERVAL '25 minutes'
+FROM generate_series(1, 19000) g;
+
+INSERT INTO annotation_boxes (annotation_id, x, y, width, height, type, action)
+SELECT 1 + g % 19000, 10, 10, 40, 40, 'Loose Joint (Faulty)', 'UNCHANGED'
+FROM generate_series(1, 60000) g;
@@ -11,6 +11,7 @@ import {
   faTimes,
 } from "@fortawesome/free-solid-svg-icons";
 import "./ImageViewer.css";
+import resizedImageUrl from "../resizedImageUrl";
 
 const ImageViewer = ({
   show,
@@ -361,7 +362,7 @@ const ImageViewer = ({
                 typeof img === "string"
                   ? img
                   : img?.filePath
-                  ? `http://localhost:8080${img.filePath}`
+                  ? resizedImageUrl(img.filePath, 160)
                   : img?.url || img;
 
               return (
@@ -31,6 +31,7 @@ import {
   faExclamationTriangle,
 } from "@fortawesome/free-solid-svg-icons";
 import ImageViewer from "./ImageViewer";
+import resizedImageUrl from "../resizedImageUrl";
 import AnalysisDisplay from "./AnalysisDisplay";
 import MaintenanceRecordForm from "./MaintenanceRecordForm";
 import MaintenanceRecordsHistory from "./MaintenanceRecordsHistory";
@@ -626,7 +627,7 @@ const InspectionDetail = () => {
                       <Card className="h-100">
                         <div style={{ position: "relative" }}>
                           <Image
-                            src={`http://localhost:8080${image.filePath}`}
+                            src={resizedImageUrl(image.filePath, 640)}
                             alt={image.type}
                             fluid
                             style={{
@@ -1,4 +1,4 @@
-import React, { useState, useEffect } from "react";
+import React, { useState, useEffect, useRef } from "react";
 import axios from "axios";
 import {
   Card,
@@ -10,7 +10,6 @@ import {
   Col,
   Modal,
   Badge,
-  Pagination,
   Form,
   InputGroup,
   Dropdown,
@@ -28,7 +27,7 @@ import {
   faFilter,
   faSort,
   faCalendarAlt,
-  faUser,
+  faClipboardList,
   faList,
   faThLarge,
   faBolt,
@@ -39,27 +38,35 @@ import { faStar as faStarRegular } from "@fortawesome/free-regular-svg-icons";
 import { useNavigate } from "react-router-dom";
 import { useAuth } from "../AuthContext";
 
+const PAGE_SIZE = 12;
+
+// Search fields the summaries endpoint filters on; the others narrow the loaded records
+const SERVER_SEARCH_PARAMS = { location: "location", transformerType: "type" };
+
 const TransformerList = () => {
   const [transformerRecords, setTransformerRecords] = useState([]);
   const [filteredRecords, setFilteredRecords] = useState([]);
+  const [nextCursor, setNextCursor] = useState(null);
   const [loading, setLoading] = useState(true);
+  const [loadingMore, setLoadingMore] = useState(false);
   const [error, setError] = useState("");
   const [showDeleteModal, setShowDeleteModal] = useState(false);
   const [recordToDelete, setRecordToDelete] = useState(null);
-  const [currentPage, setCurrentPage] = useState(1);
-  const [itemsPerPage] = useState(6);
   const [searchTerm, setSearchTerm] = useState("");
+  const [debouncedSearchTerm, setDebouncedSearchTerm] = useState("");
   const [searchField, setSearchField] = useState("name");
-  const [sortConfig, setSortConfig] = useState({
-    key: "name",
-    direction: "asc",
-  });
+  const [sortKey, setSortKey] = useState("name"); // 'name' or 'newest'
   const [capacityFilter, setCapacityFilter] = useState("all");
   const [starredFilter, setStarredFilter] = useState("all"); // 'all', 'starred', 'unstarred'
   const [viewMode, setViewMode] = useState("cards"); // 'cards' or 'table'
 
   const navigate = useNavigate();
   const { token, isAuthenticated, isAdmin } = useAuth();
+  // Only the latest request may replace the list, so a slow earlier one can't overwrite it
+  const latestRequest = useRef(0);
+
+  const serverSearchParam = SERVER_SEARCH_PARAMS[searchField];
+  const serverSearch = serverSearchParam ? debouncedSearchTerm.trim() : "";
 
   const toggleStar = async (recordId, currentStarred) => {
     try {
@@ -78,52 +85,87 @@ const TransformerList = () => {
     }
   };
 
+  // Wait for typing to pause before searching on the server
+  useEffect(() => {
+    const timer = setTimeout(() => setDebouncedSearchTerm(searchTerm), 300);
+    return () => clearTimeout(timer);
+  }, [searchTerm]);
+
   useEffect(() => {
     fetchTransformerRecords();
-  }, [token]);
+  }, [token, sortKey, starredFilter, serverSearchParam, serverSearch]);
+
+  const fetchSummaryPage = async (cursor) => {
+    const params = { sort: sortKey, size: PAGE_SIZE };
+    if (starredFilter !== "all") {
+      params.starred = starredFilter === "starred";
+    }
+    if (serverSearch) {
+      params[serverSearchParam] = serverSearch;
+    }
+    if (cursor) {
+      params.cursor = cursor;
+    }
+    const response = await axios.get(
+      "http://localhost:8080/api/transformer-records/summaries",
+      {
+        headers: token ? { Authorization: `Bearer ${token}` } : {},
+        params,
+      }
+    );
+    return response.data;
+  };
 
   const fetchTransformerRecords = async () => {
+    const request = ++latestRequest.current;
     try {
       setLoading(true);
-      const config = {
-        headers: token ? { Authorization: `Bearer ${token}` } : {},
-      };
-      const response = await axios.get(
-        "http://localhost:8080/api/transformer-records",
-        config
-      );
-      setTransformerRecords(response.data);
-      setFilteredRecords(response.data);
+      const page = await fetchSummaryPage(null);
+      if (request !== latestRequest.current) {
+        return;
+      }
+      setTransformerRecords(page.items);
+      setNextCursor(page.nextCursor);
       setError("");
     } catch (err) {
+      if (request !== latestRequest.current) {
+        return;
+      }
       setError("Failed to fetch transformer records");
       setTransformerRecords([]);
-      setFilteredRecords([]);
+      setNextCursor(null);
+    } finally {
+      if (request === latestRequest.current) {
+        setLoading(false);
+      }
+    }
+  };
+
+  const loadMore = async () => {
+    const request = latestRequest.current;
+    try {
+      setLoadingMore(true);
+      const page = await fetchSummaryPage(nextCursor);
+      if (request !== latestRequest.current) {
+        return;
+      }
+      setTransformerRecords((records) => [...records, ...page.items]);
+      setNextCursor(page.nextCursor);
+    } catch (err) {
+      setError("Failed to load more transformer records");
     } finally {
-      setLoading(false);
+      setLoadingMore(false);
     }
   };
 
   useEffect(() => {
     let result = [...transformerRecords];
 
-    // Apply search filter
-    if (searchTerm) {
+    // Apply the searches the server doesn't do
+    if (searchTerm && !serverSearchParam) {
       result = result.filter((record) => {
         if (searchField === "name") {
           return record.name.toLowerCase().includes(searchTerm.toLowerCase());
-        } else if (searchField === "location") {
-          return record.locationName
-            ?.toLowerCase()
-            .includes(searchTerm.toLowerCase());
-        } else if (searchField === "admin") {
-          return record.uploadedBy?.displayName
-            ?.toLowerCase()
-            .includes(searchTerm.toLowerCase());
-        } else if (searchField === "transformerType") {
-          return record.transformerType
-            ?.toLowerCase()
-            .includes(searchTerm.toLowerCase());
         } else if (searchField === "poleNo") {
           return record.poleNo?.toString().includes(searchTerm.toLowerCase());
         }
@@ -147,40 +189,13 @@ const TransformerList = () => {
       });
     }
 
-    // Apply starred filter
-    if (starredFilter !== "all") {
-      result = result.filter((record) => {
-        if (starredFilter === "starred") {
-          return record.starred === true;
-        } else if (starredFilter === "unstarred") {
-          return record.starred !== true;
-        }
-        return true;
-      });
-    }
-
-    // Apply sorting
-    if (sortConfig.key) {
-      result.sort((a, b) => {
-        if (a[sortConfig.key] < b[sortConfig.key]) {
-          return sortConfig.direction === "asc" ? -1 : 1;
-        }
-        if (a[sortConfig.key] > b[sortConfig.key]) {
-          return sortConfig.direction === "asc" ? 1 : -1;
-        }
-        return 0;
-      });
-    }
-
     setFilteredRecords(result);
-    setCurrentPage(1); // Reset to first page when filters change
   }, [
     transformerRecords,
     searchTerm,
     searchField,
+    serverSearchParam,
     capacityFilter,
-    starredFilter,
-    sortConfig,
   ]);
 
   const handleDelete = async (id) => {
@@ -199,29 +214,6 @@ const TransformerList = () => {
     }
   };
 
-  const requestSort = (key) => {
-    let direction = "asc";
-    if (sortConfig.key === key && sortConfig.direction === "asc") {
-      direction = "desc";
-    }
-    setSortConfig({ key, direction });
-  };
-
-  // Pagination logic
-  const indexOfLastItem = currentPage * itemsPerPage;
-  const indexOfFirstItem = indexOfLastItem - itemsPerPage;
-  const currentItems = filteredRecords.slice(indexOfFirstItem, indexOfLastItem);
-  const totalPages = Math.ceil(filteredRecords.length / itemsPerPage);
-
-  if (loading) {
-    return (
-      <div className="text-center mt-5">
-        <Spinner animation="border" variant="primary" />
-        <p className="mt-2">Loading transformer records...</p>
-      </div>
-    );
-  }
-
   if (error) {
     return (
       <Alert variant="danger" className="mt-4">
@@ -270,7 +262,6 @@ const TransformerList = () => {
                   <Dropdown.Toggle variant="outline-secondary">
                     {searchField === "name" && "Name"}
                     {searchField === "location" && "Location"}
-                    {searchField === "admin" && "Admin"}
                     {searchField === "transformerType" && "Type"}
                     {searchField === "poleNo" && "Pole No"}
                   </Dropdown.Toggle>
@@ -281,9 +272,6 @@ const TransformerList = () => {
                     <Dropdown.Item onClick={() => setSearchField("location")}>
                       Location
                     </Dropdown.Item>
-                    <Dropdown.Item onClick={() => setSearchField("admin")}>
-                      Admin
-                    </Dropdown.Item>
                     <Dropdown.Item
                       onClick={() => setSearchField("transformerType")}
                     >
@@ -355,26 +343,21 @@ const TransformerList = () => {
               <Dropdown>
                 <Dropdown.Toggle variant="outline-secondary">
                   <FontAwesomeIcon icon={faSort} className="me-2" />
-                  Sort: {sortConfig.key === "name" && "Name"}
-                  {sortConfig.key === "createdAt" && "Date"}
-                  {sortConfig.key === "capacity" && "Capacity"}
-                  {sortConfig.direction === "asc" ? "↑" : "↓"}
+                  Sort: {sortKey === "name" && "Name"}
+                  {sortKey === "newest" && "Newest"}
                 </Dropdown.Toggle>
                 <Dropdown.Menu>
-                  <Dropdown.Item onClick={() => requestSort("name")}>
-                    Name{" "}
-                    {sortConfig.key === "name" &&
-                      (sortConfig.direction === "asc" ? "↑" : "↓")}
-                  </Dropdown.Item>
-                  <Dropdown.Item onClick={() => requestSort("createdAt")}>
-                    Date{" "}
-                    {sortConfig.key === "createdAt" &&
-                      (sortConfig.direction === "asc" ? "↑" : "↓")}
+                  <Dropdown.Item
+                    active={sortKey === "name"}
+                    onClick={() => setSortKey("name")}
+                  >
+                    Name
                   </Dropdown.Item>
-                  <Dropdown.Item onClick={() => requestSort("capacity")}>
-                    Capacity{" "}
-                    {sortConfig.key === "capacity" &&
-                      (sortConfig.direction === "asc" ? "↑" : "↓")}
+                  <Dropdown.Item
+                    active={sortKey === "newest"}
+                    onClick={() => setSortKey("newest")}
+                  >
+                    Newest
                   </Dropdown.Item>
                 </Dropdown.Menu>
               </Dropdown>
@@ -383,7 +366,12 @@ const TransformerList = () => {
         </Card.Body>
       </Card>
 
-      {filteredRecords.length === 0 ? (
+      {loading ? (
+        <div className="text-center py-4">
+          <Spinner animation="border" variant="primary" />
+          <p className="mt-2">Loading transformer records...</p>
+        </div>
+      ) : filteredRecords.length === 0 ? (
         <div className="text-center py-4">
           <FontAwesomeIcon
             icon={faImages}
@@ -391,6 +379,11 @@ const TransformerList = () => {
             className="text-muted mb-3"
           />
           <p>No transformer records found</p>
+          {nextCursor && (
+            <Button variant="outline-primary" onClick={loadMore}>
+              Load more
+            </Button>
+          )}
           {searchTerm && (
             <Button
               variant="link"
@@ -417,13 +410,13 @@ const TransformerList = () => {
                     <th>Pole No</th>
                     <th>Capacity</th>
                     <th>Images</th>
-                    <th>Admin</th>
+                    <th>Inspections</th>
                     <th>Date</th>
                     <th>Actions</th>
                   </tr>
                 </thead>
                 <tbody>
-                  {currentItems.map((record) => (
+                  {filteredRecords.map((record) => (
                     <tr key={record.id}>
                       <td>{record.name}</td>
                       <td>
@@ -473,12 +466,14 @@ const TransformerList = () => {
                         )}
                       </td>
                       <td>
-                        <Badge bg="secondary">
-                          {record.images?.length || 0}
-                        </Badge>
+                        <Badge bg="secondary">{record.imageCount}</Badge>
+                      </td>
+                      <td>{record.inspectionCount}</td>
+                      <td>
+                        {record.createdAt
+                          ? new Date(record.createdAt).toLocaleDateString()
+                          : "-"}
                       </td>
-                      <td>{record.uploadedBy?.displayName || "-"}</td>
-                      <td>{new Date(record.createdAt).toLocaleDateString()}</td>
                       <td>
                         <Button
                           variant={
@@ -536,7 +531,7 @@ const TransformerList = () => {
       ) : (
         <>
           <Row xs={1} md={2} lg={3} className="g-4">
-            {currentItems.map((record) => (
+            {filteredRecords.map((record) => (
               <Col key={record.id}>
                 <Card className="h-100 bg-light">
                   <Card.Body>
@@ -592,22 +587,25 @@ const TransformerList = () => {
 
                     <div className="d-flex justify-content-between text-muted mb-3">
                       <small>
-                        <FontAwesomeIcon icon={faUser} className="me-2" />
-                        {record.uploadedBy?.displayName || "Unknown"}
+                        <FontAwesomeIcon
+                          icon={faClipboardList}
+                          className="me-2"
+                        />
+                        {record.inspectionCount} inspections
                       </small>
                       <small>
                         <FontAwesomeIcon
                           icon={faCalendarAlt}
                           className="me-2"
                         />
-                        {new Date(record.createdAt).toLocaleDateString()}
+                        {record.createdAt
+                          ? new Date(record.createdAt).toLocaleDateString()
+                          : "-"}
                       </small>
                     </div>
 
                     <div className="d-flex justify-content-between align-items-center">
-                      <Badge bg="secondary">
-                        {record.images?.length || 0} images
-                      </Badge>
+                      <Badge bg="secondary">{record.imageCount} images</Badge>
 
                       <div>
                         <Button
@@ -665,51 +663,19 @@ const TransformerList = () => {
         </>
       )}
 
-      {totalPages > 1 && (
+      {!loading && filteredRecords.length > 0 && nextCursor && (
         <div className="d-flex justify-content-center mt-4">
-          <Pagination>
-            <Pagination.First
-              onClick={() => setCurrentPage(1)}
-              disabled={currentPage === 1}
-            />
-            <Pagination.Prev
-              onClick={() => setCurrentPage(currentPage - 1)}
-              disabled={currentPage === 1}
-            />
-            {[...Array(totalPages).keys()].map((number) => {
-              const page = number + 1;
-              // Show only first, last, and pages around current
-              if (
-                page === 1 ||
-                page === totalPages ||
-                (page >= currentPage - 1 && page <= currentPage + 1)
-              ) {
-                return (
-                  <Pagination.Item
-                    key={page}
-                    active={page === currentPage}
-                    onClick={() => setCurrentPage(page)}
-                  >
-                    {page}
-                  </Pagination.Item>
-                );
-              } else if (
-                (page === currentPage - 2 && currentPage > 3) ||
-                (page === currentPage + 2 && currentPage < totalPages - 2)
-              ) {
-                return <Pagination.Ellipsis key={page} />;
-              }
-              return null;
-            })}
-            <Pagination.Next
-              onClick={() => setCurrentPage(currentPage + 1)}
-              disabled={currentPage === totalPages}
-            />
-            <Pagination.Last
-              onClick={() => setCurrentPage(totalPages)}
-              disabled={currentPage === totalPages}
-            />
-          </Pagination>
+          <Button
+            variant="outline-primary"
+            onClick={loadMore}
+            disabled={loadingMore}
+          >
+            {loadingMore ? (
+              <Spinner animation="border" size="sm" />
+            ) : (
+              "Load more"
+            )}
+          </Button>
         </div>
       )}
 
@@ -27,6 +27,7 @@ import {
   faPlus,
 } from "@fortawesome/free-solid-svg-icons";
 import ImageViewer from "./ImageViewer";
+import resizedImageUrl from "../resizedImageUrl";
 import { useParams, useNavigate } from "react-router-dom";
 import { useAuth } from "../AuthContext";
 import { MapContainer, TileLayer, Marker, Popup } from "react-leaflet";
@@ -260,7 +261,7 @@ const TransformerRecordDetail = () => {
                       <Card className="h-100">
                         <div style={{ position: "relative" }}>
                           <Image
-                            src={`http://localhost:8080${image.filePath}`}
+                            src={resizedImageUrl(image.filePath, 640)}
                             alt={image.type}
                             fluid
                             style={{
@@ -0,0 +1,15 @@
+// resizedImageUrl.js
+const API_BASE = "http://localhost:8080";
+
+// URL of a downscaled copy of an uploaded or analysis image (e.g. "/uploads/123_t1.png", the
+// content-addressed "/uploads/ab/cd/abcd….png" or the revisioned "/analysis/0123456789ab/x_boxed.png")
+// that is at least `width` pixels wide. Other paths are returned at full size.
+const resizedImageUrl = (filePath, width) => {
+  if (!filePath) return "";
+  const match = /^\/(uploads|analysis)\/((?:[0-9a-f]{2}\/[0-9a-f]{2}\/|[0-9a-f]{12}\/)?[^/?]+)$/.exec(filePath);
+  if (!match) return `${API_BASE}${filePath}`;
+  const route = match[1] === "uploads" ? "/api/files/uploads/" : "/api/files/analysis/";
+  return `${API_BASE}${route}${match[2]}?w=${width}`;
+};
+
+export default resizedImageUrl;